@@ -0,0 +1,31 @@
+package org.cell2d.bench;
+
+import org.cell2d.CellGame;
+import org.cell2d.HeadlessRunner;
+import org.cell2d.space.SpaceState.DrawMode;
+import org.cell2d.space.basic.BasicSpaceState;
+
+/**
+ * <p>A BenchmarkGame is a headless CellGame whose only GameState is a
+ * BasicSpaceState, which benchmarks fill with SpaceObjects and then either
+ * query directly or step through frames with the BenchmarkGame's
+ * HeadlessRunner.</p>
+ * @author Alex Heyman
+ */
+class BenchmarkGame extends CellGame {
+    
+    final BasicSpaceState state;
+    final HeadlessRunner runner;
+    
+    BenchmarkGame(long cellSize, DrawMode drawMode) {
+        super("Benchmark", 0, 60);
+        state = new BasicSpaceState(this, 0, cellSize, cellSize, drawMode);
+        runner = new HeadlessRunner(this);
+    }
+    
+    @Override
+    public void initActions() {
+        enterState(0);
+    }
+    
+}
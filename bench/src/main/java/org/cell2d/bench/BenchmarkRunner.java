@@ -0,0 +1,38 @@
+package org.cell2d.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>BenchmarkRunner runs Cell2D's JMH benchmarks with JMH's GC profiler
+ * attached, so that each result reports the bytes allocated per op and the
+ * garbage collections that the benchmark caused alongside its time. It
+ * accepts the same command-line options as JMH's own main class, such as a
+ * regular expression naming the benchmarks to run.</p>
+ * @author Alex Heyman
+ */
+public class BenchmarkRunner {
+    
+    private BenchmarkRunner() {}
+    
+    /**
+     * Runs the benchmarks that the command-line options select, or all of
+     * them if there are no options, with the GC profiler attached.
+     * @param args The command-line options
+     * @throws CommandLineOptionException If the options could not be parsed
+     * @throws RunnerException If the benchmarks could not be run
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+    
+}
@@ -0,0 +1,19 @@
+package org.cell2d.bench;
+
+import org.cell2d.space.RectangleHitbox;
+import org.cell2d.space.SpaceObject;
+
+/**
+ * <p>A Block is a stationary SpaceObject with a rectangular locator Hitbox
+ * whose top left corner is at its position. It has no appearance, so drawing
+ * it costs nothing but the call.</p>
+ * @author Alex Heyman
+ */
+class Block extends SpaceObject {
+    
+    Block(long x, long y, long width, long height, boolean solid) {
+        setLocatorHitbox(new RectangleHitbox(x, y, 0, width, 0, height));
+        setSolid(solid);
+    }
+    
+}
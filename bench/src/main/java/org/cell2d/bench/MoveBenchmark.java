@@ -0,0 +1,130 @@
+package org.cell2d.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.cell2d.Direction;
+import org.cell2d.Frac;
+import org.cell2d.space.MobileObject;
+import org.cell2d.space.RectangleHitbox;
+import org.cell2d.space.SpaceState.DrawMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>MoveBenchmark measures a frame of SpaceState movement: a walled arena
+ * strewn with solid blocks, through which MobileObjects bounce off the walls,
+ * the blocks, and each other. With a positive number of threads, the
+ * SpaceState moves independent groups of MobileObjects in parallel on a
+ * movement pool of that many threads.</p>
+ * @author Alex Heyman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+    
+    private static final long UNIT = Frac.UNIT;
+    private static final int ARENA_SIZE = 1024;
+    
+    @Param({"0", "4"})
+    public int threads;
+    
+    @Param({"100", "1000"})
+    public int numMovers;
+    
+    private BenchmarkGame game;
+    private ForkJoinPool pool = null;
+    private final List<Bouncer> bouncers = new ArrayList<>();
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(0);
+        game = new BenchmarkGame(16*UNIT, DrawMode.FLAT);
+        game.state.addObject(new Block(-8*UNIT, -8*UNIT, (ARENA_SIZE + 16)*UNIT, 8*UNIT, true));
+        game.state.addObject(new Block(-8*UNIT, ARENA_SIZE*UNIT, (ARENA_SIZE + 16)*UNIT, 8*UNIT, true));
+        game.state.addObject(new Block(-8*UNIT, 0, 8*UNIT, ARENA_SIZE*UNIT, true));
+        game.state.addObject(new Block(ARENA_SIZE*UNIT, 0, 8*UNIT, ARENA_SIZE*UNIT, true));
+        for (int i = 0; i < 400; i++) {
+            game.state.addObject(new Block(random.nextInt(ARENA_SIZE - 8)*UNIT,
+                    random.nextInt(ARENA_SIZE - 8)*UNIT, 8*UNIT, 8*UNIT, true));
+        }
+        for (int i = 0; i < numMovers; i++) {
+            Bouncer bouncer = new Bouncer(random.nextInt(ARENA_SIZE - 4)*UNIT,
+                    random.nextInt(ARENA_SIZE - 4)*UNIT);
+            bouncer.setMovementPriority(i);
+            bouncer.setVelocity((random.nextInt(7) - 3)*UNIT/2, (random.nextInt(7) - 3)*UNIT/2);
+            game.state.addObject(bouncer);
+            bouncers.add(bouncer);
+        }
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            game.state.setMovementPool(pool);
+        }
+        game.runner.step();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    
+    @Benchmark
+    public void frame() {
+        for (Bouncer bouncer : bouncers) {
+            bouncer.bounce();
+        }
+        game.runner.step();
+    }
+    
+    //A MobileObject that reverses direction along each axis on which it has run into something
+    private static class Bouncer extends MobileObject {
+        
+        private long speedX = 0, speedY = 0;
+        
+        private Bouncer(long x, long y) {
+            setLocatorHitbox(new RectangleHitbox(x, y, 0, 4*UNIT, 0, 4*UNIT));
+            setCollisionHitbox(getLocatorHitbox());
+            setCollision(true);
+        }
+        
+        private void bounce() {
+            if (getVelocityX() != 0) {
+                speedX = Math.abs(getVelocityX());
+            }
+            if (getVelocityY() != 0) {
+                speedY = Math.abs(getVelocityY());
+            }
+            if (collided(Direction.LEFT)) {
+                setVelocityX(speedX);
+            } else if (collided(Direction.RIGHT)) {
+                setVelocityX(-speedX);
+            }
+            if (collided(Direction.UP)) {
+                setVelocityY(speedY);
+            } else if (collided(Direction.DOWN)) {
+                setVelocityY(-speedY);
+            }
+        }
+        
+    }
+    
+}
@@ -0,0 +1,112 @@
+package org.cell2d.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.cell2d.CellVector;
+import org.cell2d.Frac;
+import org.cell2d.space.CircleHitbox;
+import org.cell2d.space.CompositeHitbox;
+import org.cell2d.space.Hitbox;
+import org.cell2d.space.LineHitbox;
+import org.cell2d.space.PointHitbox;
+import org.cell2d.space.PolygonHitbox;
+import org.cell2d.space.RectangleHitbox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>OverlapBenchmark measures Hitbox.overlap() for every ordered pair of
+ * Hitbox shapes. Each op tests the first shape against the second shape in
+ * three positions: overlapping it, with only their bounding boxes meeting,
+ * and well apart, so that both the full test and its early exits count.</p>
+ * @author Alex Heyman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlapBenchmark {
+    
+    private static final long UNIT = Frac.UNIT;
+    
+    @Param({"POINT", "LINE", "CIRCLE", "RECTANGLE", "POLYGON", "COMPOSITE"})
+    public String shape1;
+    
+    @Param({"POINT", "LINE", "CIRCLE", "RECTANGLE", "POLYGON", "COMPOSITE"})
+    public String shape2;
+    
+    private Hitbox hitbox1, overlapping, meeting, apart;
+    
+    @Setup
+    public void setup() {
+        hitbox1 = createHitbox(shape1, 0, 0);
+        overlapping = createHitbox(shape2, 1*UNIT, 1*UNIT);
+        meeting = createHitbox(shape2, 5*UNIT, 5*UNIT);
+        apart = createHitbox(shape2, 20*UNIT, 0);
+    }
+    
+    /**
+     * Returns a new Hitbox of the specified shape, about six units across,
+     * centered on the specified position.
+     * @param shape The name of the Hitbox's shape
+     * @param x The x-coordinate of the Hitbox's position
+     * @param y The y-coordinate of the Hitbox's position
+     * @return The new Hitbox
+     */
+    static Hitbox createHitbox(String shape, long x, long y) {
+        switch (shape) {
+            case "POINT":
+                return new PointHitbox(x, y);
+            case "LINE":
+                return new LineHitbox(x - 3*UNIT, y - 2*UNIT, 6*UNIT, 4*UNIT);
+            case "CIRCLE":
+                return new CircleHitbox(x, y, 3*UNIT);
+            case "RECTANGLE":
+                return new RectangleHitbox(x, y, -3*UNIT, 3*UNIT, -2*UNIT, 2*UNIT);
+            case "POLYGON":
+                return new PolygonHitbox(x, y, hexagon(3*UNIT));
+            case "COMPOSITE":
+                CompositeHitbox composite = new CompositeHitbox(x, y);
+                composite.setComponent(0, new RectangleHitbox(-1*UNIT, 0, -2*UNIT, 2*UNIT, -1*UNIT, 1*UNIT));
+                composite.setComponent(1, new CircleHitbox(2*UNIT, -1*UNIT, 1*UNIT));
+                composite.setComponent(2, new PolygonHitbox(0, 1*UNIT, hexagon(2*UNIT)));
+                return composite;
+            default:
+                throw new RuntimeException("Attempted to create a Hitbox of unknown shape " + shape);
+        }
+    }
+    
+    private static CellVector[] hexagon(long radius) {
+        CellVector[] vertices = new CellVector[6];
+        for (int i = 0; i < 6; i++) {
+            vertices[i] = new CellVector(60*i).scale(radius);
+        }
+        return vertices;
+    }
+    
+    @Benchmark
+    public int overlap() {
+        int numOverlaps = 0;
+        if (Hitbox.overlap(hitbox1, overlapping)) {
+            numOverlaps++;
+        }
+        if (Hitbox.overlap(hitbox1, meeting)) {
+            numOverlaps++;
+        }
+        if (Hitbox.overlap(hitbox1, apart)) {
+            numOverlaps++;
+        }
+        return numOverlaps;
+    }
+    
+}
@@ -0,0 +1,97 @@
+package org.cell2d.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.cell2d.Color;
+import org.cell2d.ColorMapFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>PaletteSwapBenchmark measures a ColorMapFilter swapping the palette of a
+ * square sprite's decoded pixels, as an AssetLoader or a loading Sprite does
+ * before the sprite is uploaded. The sprite is drawn in runs of pixels from a
+ * palette twice the size of the swap, so half of its colors are swapped.</p>
+ *
+ * <p>The colorObjects() benchmark is the baseline: it looks each pixel up the
+ * way ColorMapFilter used to, by making a Color of it and looking that up in
+ * the Map, leaving out the drawing of each pixel through the graphics context
+ * that the old filter also did.</p>
+ * @author Alex Heyman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaletteSwapBenchmark {
+    
+    @Param({"32", "256"})
+    public int size;
+    
+    @Param({"4", "16"})
+    public int colors;
+    
+    private final Map<Color,Color> colorMap = new HashMap<>();
+    private ColorMapFilter filter;
+    private int[] pixels;
+    private int[] work;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        int[] palette = new int[2*colors];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        for (int i = 0; i < colors; i++) {
+            colorMap.put(toColor(palette[i]), toColor(0xFF000000 | random.nextInt(0x1000000)));
+        }
+        filter = new ColorMapFilter(colorMap);
+        pixels = new int[size*size];
+        int i = 0;
+        while (i < pixels.length) {
+            int color = palette[random.nextInt(palette.length)];
+            int end = Math.min(i + 1 + random.nextInt(8), pixels.length);
+            while (i < end) {
+                pixels[i] = color;
+                i++;
+            }
+        }
+        work = new int[pixels.length];
+    }
+    
+    private static Color toColor(int pixel) {
+        return new Color((pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF);
+    }
+    
+    @Benchmark
+    public int[] colorMap() {
+        System.arraycopy(pixels, 0, work, 0, pixels.length);
+        return filter.getFilteredPixels(work, size, size);
+    }
+    
+    @Benchmark
+    public int[] colorObjects() {
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            Color mapped = colorMap.get(toColor(pixel));
+            work[i] = (mapped == null ? pixel : (pixel & 0xFF000000)
+                    | (mapped.getRByte() << 16) | (mapped.getGByte() << 8) | mapped.getBByte());
+        }
+        return work;
+    }
+    
+}
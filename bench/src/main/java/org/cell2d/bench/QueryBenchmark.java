@@ -0,0 +1,102 @@
+package org.cell2d.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.cell2d.Frac;
+import org.cell2d.space.RectangleHitbox;
+import org.cell2d.space.SpaceObject;
+import org.cell2d.space.SpaceState.DrawMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>QueryBenchmark measures SpaceState's spatial queries on a field of
+ * scattered blocks. Each op runs one query around the next of a fixed
+ * sequence of points, adding its results to a reused list so that only the
+ * query's own allocation is counted.</p>
+ * @author Alex Heyman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+    
+    private static final long UNIT = Frac.UNIT;
+    private static final int FIELD_SIZE = 2048;
+    private static final int NUM_POINTS = 256;
+    private static final long RADIUS = 24*UNIT;
+    
+    @Param({"withinRectangle", "withinCircle", "nearest", "overlapping", "intersectingSolid"})
+    public String query;
+    
+    @Param({"4000"})
+    public int numObjects;
+    
+    private BenchmarkGame game;
+    private final long[] pointsX = new long[NUM_POINTS];
+    private final long[] pointsY = new long[NUM_POINTS];
+    private int point = 0;
+    private final RectangleHitbox probe = new RectangleHitbox(0, 0, -RADIUS, RADIUS, -RADIUS, RADIUS);
+    private final List<SpaceObject> results = new ArrayList<>();
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        game = new BenchmarkGame(16*UNIT, DrawMode.FLAT);
+        for (int i = 0; i < numObjects; i++) {
+            Block block = new Block(random.nextInt(FIELD_SIZE)*UNIT, random.nextInt(FIELD_SIZE)*UNIT,
+                    (2 + random.nextInt(6))*UNIT, (2 + random.nextInt(6))*UNIT, random.nextBoolean());
+            block.setOverlapHitbox(block.getLocatorHitbox());
+            block.setSolidHitbox(block.getLocatorHitbox());
+            game.state.addObject(block);
+        }
+        for (int i = 0; i < NUM_POINTS; i++) {
+            pointsX[i] = random.nextInt(FIELD_SIZE)*UNIT;
+            pointsY[i] = random.nextInt(FIELD_SIZE)*UNIT;
+        }
+    }
+    
+    @Benchmark
+    public Object query() {
+        long x = pointsX[point];
+        long y = pointsY[point];
+        point = (point + 1) % NUM_POINTS;
+        results.clear();
+        switch (query) {
+            case "withinRectangle":
+                game.state.objectsWithinRectangle(x - RADIUS, y - RADIUS, x + RADIUS, y + RADIUS,
+                        SpaceObject.class, results);
+                return results.size();
+            case "withinCircle":
+                game.state.objectsWithinCircle(x, y, RADIUS, SpaceObject.class, results);
+                return results.size();
+            case "nearest":
+                return game.state.nearestObject(x, y, SpaceObject.class);
+            case "overlapping":
+                probe.setRelPosition(x, y);
+                game.state.overlappingObjects(probe, SpaceObject.class, results);
+                return results.size();
+            case "intersectingSolid":
+                probe.setRelPosition(x, y);
+                game.state.intersectingSolidObjects(probe, SpaceObject.class, results);
+                return results.size();
+            default:
+                throw new RuntimeException("Attempted to run unknown query " + query);
+        }
+    }
+    
+}
@@ -0,0 +1,228 @@
+package org.cell2d.bench;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.cell2d.CellGame;
+import org.cell2d.Frac;
+import org.cell2d.celick.Graphics;
+import org.cell2d.space.Hitbox;
+import org.cell2d.space.SpaceState.DrawMode;
+import org.cell2d.space.Viewport;
+import org.cell2d.space.basic.BasicSpaceState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>RenderBenchmark measures the work that SpaceState.renderActions() does
+ * to put the locator Hitboxes in a Viewport's view in drawing order, with the
+ * drawing itself taken out: the SpaceObjects have no appearance, and the
+ * Graphics context ignores clipping. The view is a square of 1, 16, or 100
+ * cells. A still camera measures the cost of reusing the previous frame's
+ * visible set, and a panning one the cost of updating it as cells enter and
+ * leave the view.</p>
+ *
+ * <p>The mergeCells() benchmark is the baseline: it orders the same view the
+ * way renderActions() used to every frame, merging one iterator per visible
+ * cell through a PriorityQueue. The benchmark keeps its own copy of each
+ * cell's locator Hitboxes in draw priority order, as the cells used to, so
+ * only the ordering is measured.</p>
+ * @author Alex Heyman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    
+    private static final long UNIT = Frac.UNIT;
+    private static final int FIELD_SIZE = 4096;
+    private static final int CELL_SIZE = 32;
+    //Blocks are at most a cell wide, so they reach at most one cell past the field
+    private static final int FIELD_CELLS = FIELD_SIZE/CELL_SIZE + 1;
+    
+    private static final Comparator<Hitbox> FLAT_ORDER = (hitbox1, hitbox2) -> {
+        int priorityComparison = Integer.compare(
+                hitbox1.getObject().getDrawPriority(), hitbox2.getObject().getDrawPriority());
+        return (priorityComparison == 0 ?
+                Integer.compare(System.identityHashCode(hitbox1), System.identityHashCode(hitbox2))
+                : priorityComparison);
+    };
+    
+    private static final Comparator<Hitbox> OVER_ORDER = (hitbox1, hitbox2) -> {
+        int priorityComparison = Integer.compare(
+                hitbox1.getObject().getDrawPriority(), hitbox2.getObject().getDrawPriority());
+        if (priorityComparison == 0) {
+            int yComparison = Long.compare(hitbox1.getAbsY(), hitbox2.getAbsY());
+            return (yComparison == 0 ?
+                    Integer.compare(System.identityHashCode(hitbox1), System.identityHashCode(hitbox2))
+                    : yComparison);
+        }
+        return priorityComparison;
+    };
+    
+    @Param({"FLAT", "OVER"})
+    public String drawMode;
+    
+    @Param({"still", "panning"})
+    public String camera;
+    
+    @Param({"1", "16", "100"})
+    public int visibleCells;
+    
+    private BenchmarkGame game;
+    private final Graphics graphics = new NullGraphics();
+    private Block cameraObject;
+    private Viewport<CellGame,BasicSpaceState> viewport;
+    private int viewSize;
+    private long panX = 3*UNIT, panY = 2*UNIT;
+    //Each cell's locator Hitboxes in draw priority order, for mergeCells()
+    private final List<TreeSet<Hitbox>> cells = new ArrayList<>();
+    private Comparator<CellIterator> mergeOrder;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        game = new BenchmarkGame(CELL_SIZE*UNIT, DrawMode.valueOf(drawMode));
+        for (int i = 0; i < FIELD_CELLS*FIELD_CELLS; i++) {
+            cells.add(new TreeSet<>(FLAT_ORDER));
+        }
+        for (int i = 0; i < 20000; i++) {
+            Block block = new Block(random.nextInt(FIELD_SIZE)*UNIT, random.nextInt(FIELD_SIZE)*UNIT,
+                    (4 + random.nextInt(28))*UNIT, (4 + random.nextInt(28))*UNIT, false);
+            block.setDrawPriority(random.nextInt(4));
+            game.state.addObject(block);
+            Hitbox hitbox = block.getLocatorHitbox();
+            for (int y = getCell(hitbox.getTopEdge()); y <= getCell(hitbox.getBottomEdge() - 1); y++) {
+                for (int x = getCell(hitbox.getLeftEdge()); x <= getCell(hitbox.getRightEdge() - 1); x++) {
+                    cells.get(y*FIELD_CELLS + x).add(hitbox);
+                }
+            }
+        }
+        Comparator<Hitbox> order = (drawMode.equals("FLAT") ? FLAT_ORDER : OVER_ORDER);
+        mergeOrder = (iterator1, iterator2) -> order.compare(iterator1.current, iterator2.current);
+        //The view is a square of cells whose edges start out on cell boundaries
+        int side = (int)Math.round(Math.sqrt(visibleCells));
+        viewSize = side*CELL_SIZE;
+        long center = FIELD_SIZE*UNIT/2 + (side % 2)*CELL_SIZE*UNIT/2;
+        cameraObject = new Block(center, center, 0, 0, false);
+        game.state.addObject(cameraObject);
+        viewport = new Viewport<>(0, 0, viewSize*UNIT, viewSize*UNIT);
+        viewport.setCamera(cameraObject);
+        game.state.setViewport(0, viewport);
+    }
+    
+    private static int getCell(long position) {
+        return (int)Math.floorDiv(position, CELL_SIZE*UNIT);
+    }
+    
+    private void pan() {
+        if (camera.equals("panning")) {
+            long margin = Math.max(viewSize, CELL_SIZE)*UNIT;
+            long x = cameraObject.getX() + panX;
+            if (x < margin || x > FIELD_SIZE*UNIT - margin) {
+                panX = -panX;
+            }
+            long y = cameraObject.getY() + panY;
+            if (y < margin || y > FIELD_SIZE*UNIT - margin) {
+                panY = -panY;
+            }
+            cameraObject.changePosition(panX, panY);
+        }
+    }
+    
+    @Benchmark
+    public void renderActions() {
+        pan();
+        game.state.renderActions(game, graphics, 0, 0, viewSize, viewSize);
+    }
+    
+    @Benchmark
+    public void mergeCells(Blackhole blackhole) {
+        pan();
+        long leftEdge = viewport.getLeftEdge();
+        long rightEdge = viewport.getRightEdge();
+        long topEdge = viewport.getTopEdge();
+        long bottomEdge = viewport.getBottomEdge();
+        int x1 = getCell(leftEdge);
+        int y1 = getCell(topEdge);
+        int x2 = getCell(rightEdge - 1);
+        int y2 = getCell(bottomEdge - 1);
+        if (drawMode.equals("FLAT") && x1 == x2 && y1 == y2) {
+            for (Hitbox hitbox : cells.get(y1*FIELD_CELLS + x1)) {
+                if (hitbox.getLeftEdge() < rightEdge && hitbox.getRightEdge() > leftEdge
+                        && hitbox.getTopEdge() < bottomEdge && hitbox.getBottomEdge() > topEdge) {
+                    blackhole.consume(hitbox);
+                }
+            }
+            return;
+        }
+        PriorityQueue<CellIterator> queue = new PriorityQueue<>(mergeOrder);
+        for (int y = y1; y <= y2; y++) {
+            for (int x = x1; x <= x2; x++) {
+                TreeSet<Hitbox> cell = cells.get(y*FIELD_CELLS + x);
+                if (!cell.isEmpty()) {
+                    queue.add(new CellIterator(cell.iterator()));
+                }
+            }
+        }
+        Hitbox lastHitbox = null;
+        while (!queue.isEmpty()) {
+            CellIterator iterator = queue.poll();
+            Hitbox hitbox = iterator.current;
+            if (hitbox != lastHitbox) {
+                if (hitbox.getLeftEdge() < rightEdge && hitbox.getRightEdge() > leftEdge
+                        && hitbox.getTopEdge() < bottomEdge && hitbox.getBottomEdge() > topEdge) {
+                    blackhole.consume(hitbox);
+                }
+                lastHitbox = hitbox;
+            }
+            if (iterator.iterator.hasNext()) {
+                iterator.current = iterator.iterator.next();
+                queue.add(iterator);
+            }
+        }
+    }
+    
+    //An iterator over one cell's locator Hitboxes, with the Hitbox that it is on
+    private static class CellIterator {
+        
+        private final Iterator<Hitbox> iterator;
+        private Hitbox current;
+        
+        private CellIterator(Iterator<Hitbox> iterator) {
+            this.iterator = iterator;
+            current = iterator.next();
+        }
+        
+    }
+    
+    //A Graphics context with nowhere to draw, which ignores the clipping that renderActions() sets
+    private static class NullGraphics extends Graphics {
+        
+        @Override
+        public void setWorldClip(float x, float y, float width, float height) {}
+        
+        @Override
+        public void clearWorldClip() {}
+        
+    }
+    
+}
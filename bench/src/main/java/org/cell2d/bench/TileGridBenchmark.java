@@ -0,0 +1,78 @@
+package org.cell2d.bench;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.cell2d.Sprite;
+import org.cell2d.space.map.ArrayTileGrid;
+import org.cell2d.space.map.TileGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>TileGridBenchmark measures TileGrid's covering of occupied grid cells
+ * with rectangles, both through a TileGrid's own cover() and through the
+ * static coverPoints(). The grid is filled with randomly placed rectangular
+ * patches of tiles, like the walls and platforms of a level, sprinkled with
+ * lone tiles.</p>
+ * @author Alex Heyman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileGridBenchmark {
+    
+    @Param({"64", "256"})
+    public int gridSize;
+    
+    private TileGrid grid;
+    private Set<Point> points;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        grid = new ArrayTileGrid(gridSize, gridSize, 16, 16);
+        for (int i = 0; i < gridSize*gridSize/64; i++) {
+            int x = random.nextInt(gridSize);
+            int y = random.nextInt(gridSize);
+            int width = 1 + random.nextInt(12);
+            int height = 1 + random.nextInt(4);
+            for (int column = x; column < Math.min(x + width, gridSize); column++) {
+                for (int row = y; row < Math.min(y + height, gridSize); row++) {
+                    grid.setTile(column, row, Sprite.BLANK);
+                }
+            }
+        }
+        for (int i = 0; i < gridSize*gridSize/32; i++) {
+            grid.setTile(random.nextInt(gridSize), random.nextInt(gridSize), Sprite.BLANK);
+        }
+        points = new HashSet<>(grid.getTileLocations());
+    }
+    
+    @Benchmark
+    public List<Rectangle> cover() {
+        return grid.cover();
+    }
+    
+    @Benchmark
+    public List<Rectangle> coverPoints() {
+        return TileGrid.coverPoints(points);
+    }
+    
+}
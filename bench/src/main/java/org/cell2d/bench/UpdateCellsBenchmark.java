@@ -0,0 +1,101 @@
+package org.cell2d.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.cell2d.Frac;
+import org.cell2d.space.SpaceObject;
+import org.cell2d.space.SpaceState.DrawMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>UpdateCellsBenchmark measures how SpaceState brings its cells up to date
+ * after SpaceObjects move. Each op moves a batch of SpaceObjects, each of
+ * which spans the specified number of cells wide by the specified number
+ * high, and then runs a query, which makes the SpaceState update the cells of
+ * every Hitbox that moved. The sizes run from a single cell up to 6 cells by
+ * 4, the size of a typical moving platform. A nudge moves a SpaceObject a
+ * quarter of a cell, so that it keeps most of its cells; a jump moves it
+ * somewhere else in the field entirely.</p>
+ * @author Alex Heyman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateCellsBenchmark {
+    
+    private static final long UNIT = Frac.UNIT;
+    private static final long CELL_SIZE = 16*UNIT;
+    private static final int FIELD_CELLS = 128;
+    private static final int NUM_OBJECTS = 2000;
+    private static final int BATCH_SIZE = 64;
+    
+    @Param({"1x1", "4x4", "6x4"})
+    public String objectCells;
+    
+    @Param({"nudge", "jump"})
+    public String move;
+    
+    private BenchmarkGame game;
+    private final SpaceObject[] objects = new SpaceObject[NUM_OBJECTS];
+    private final long[] jumpsX = new long[NUM_OBJECTS];
+    private final long[] jumpsY = new long[NUM_OBJECTS];
+    private int next = 0;
+    private long nudge = CELL_SIZE/4;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        game = new BenchmarkGame(CELL_SIZE, DrawMode.FLAT);
+        int cellsWide = Integer.parseInt(objectCells.substring(0, objectCells.indexOf('x')));
+        int cellsHigh = Integer.parseInt(objectCells.substring(objectCells.indexOf('x') + 1));
+        long width = cellsWide*CELL_SIZE - UNIT;
+        long height = cellsHigh*CELL_SIZE - UNIT;
+        int positionsX = FIELD_CELLS - cellsWide;
+        int positionsY = FIELD_CELLS - cellsHigh;
+        for (int i = 0; i < NUM_OBJECTS; i++) {
+            objects[i] = new Block(random.nextInt(positionsX)*CELL_SIZE + UNIT/2,
+                    random.nextInt(positionsY)*CELL_SIZE + UNIT/2, width, height, false);
+            game.state.addObject(objects[i]);
+            jumpsX[i] = random.nextInt(positionsX)*CELL_SIZE + UNIT/2;
+            jumpsY[i] = random.nextInt(positionsY)*CELL_SIZE + UNIT/2;
+        }
+    }
+    
+    @Benchmark
+    public boolean updateCells() {
+        boolean jump = move.equals("jump");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            SpaceObject object = objects[next];
+            if (jump) {
+                long x = object.getX();
+                long y = object.getY();
+                object.setPosition(jumpsX[next], jumpsY[next]);
+                jumpsX[next] = x;
+                jumpsY[next] = y;
+            } else {
+                object.changeX(nudge);
+                object.changeY(nudge);
+            }
+            next++;
+            if (next == NUM_OBJECTS) {
+                next = 0;
+                nudge = -nudge;
+            }
+        }
+        return game.state.objectIsWithinRectangle(-2*UNIT, -2*UNIT, -UNIT, -UNIT, SpaceObject.class);
+    }
+    
+}
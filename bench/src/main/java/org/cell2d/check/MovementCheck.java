@@ -0,0 +1,181 @@
+package org.cell2d.check;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.cell2d.CellGame;
+import org.cell2d.HeadlessRunner;
+import org.cell2d.space.SpaceState.DrawMode;
+import org.cell2d.space.basic.BasicSpaceState;
+
+/**
+ * <p>MovementCheck replays each MovementScene on a headless CellGame driven by
+ * a HeadlessRunner and compares its trace of every frame with a trace that
+ * SpaceState's original, allocating movement algorithm recorded from the same
+ * scenes. The switches scene came later, and its trace was recorded moving
+ * one at a time with an algorithm that reproduces the original's trace of
+ * the other scenes. Each scene is replayed twice: once moving its
+ * MobileObjects one at a time, and once with a movement pool, moving
+ * independent groups of them in parallel. Both must match the recorded trace
+ * frame for frame.</p>
+ * 
+ * <p>Run without arguments, MovementCheck checks against the recorded trace
+ * and exits with status 1 if any frame differs, printing the first differing
+ * frame of each scene. Run with the argument {@code --record} followed by a
+ * file name, it writes the current algorithm's trace to that file instead.
+ * </p>
+ * @see MovementScene
+ * @author Alex Heyman
+ */
+public class MovementCheck {
+    
+    private static final String TRACE = "movement-trace.txt";
+    
+    private MovementCheck() {}
+    
+    /**
+     * Replays the specified MovementScene on a new headless CellGame and
+     * returns its trace.
+     * @param scene The MovementScene to replay
+     * @param movementPool The movement pool for the scene's SpaceState to
+     * use, or null if it should move its MobileObjects one at a time
+     * @return The scene's trace, one line per frame
+     */
+    public static List<String> replay(MovementScene scene, ForkJoinPool movementPool) {
+        HeadlessRunner runner = prepare(scene, movementPool);
+        return scene.run(runner::step);
+    }
+    
+    //Adds scene to a new headless CellGame and returns a HeadlessRunner for it
+    private static HeadlessRunner prepare(MovementScene scene, ForkJoinPool movementPool) {
+        CellGame game = new CellGame("MovementCheck", 0, 60) {
+            
+            @Override
+            public void initActions() {
+                enterState(0);
+            }
+            
+        };
+        BasicSpaceState state = new BasicSpaceState(game, 0, scene.getCellSize(), scene.getCellSize(),
+                DrawMode.FLAT);
+        state.setMovementPool(movementPool);
+        scene.build(state);
+        return new HeadlessRunner(game);
+    }
+    
+    /**
+     * Returns the trace that the original movement algorithm recorded, as
+     * lines of the form "scene frame crc".
+     * @return The recorded trace
+     * @throws IOException If the recorded trace could not be read
+     */
+    public static List<String> readRecordedTrace() throws IOException {
+        List<String> lines = new ArrayList<>();
+        InputStream stream = MovementCheck.class.getResourceAsStream(TRACE);
+        if (stream == null) {
+            throw new IOException("Could not find the recorded movement trace " + TRACE);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+    
+    /**
+     * Replays every MovementScene, both one MobileObject at a time and in
+     * parallel, and returns a description of each scene and mode whose trace
+     * differs from the recorded trace.
+     * @param recorded The recorded trace
+     * @return A description of each mismatch, or an empty list if there are
+     * none
+     */
+    public static List<String> check(List<String> recorded) {
+        List<String> mismatches = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (MovementScene scene : MovementScene.getScenes()) {
+                List<String> expected = new ArrayList<>();
+                String prefix = scene.getName() + " ";
+                for (String line : recorded) {
+                    if (line.startsWith(prefix)) {
+                        expected.add(line.substring(line.lastIndexOf(' ') + 1));
+                    }
+                }
+                if (expected.size() != scene.getNumFrames()) {
+                    mismatches.add(scene.getName() + ": recorded " + expected.size() + " frames, expected "
+                            + scene.getNumFrames());
+                    continue;
+                }
+                for (ForkJoinPool movementPool : new ForkJoinPool[]{null, pool}) {
+                    String mode = (movementPool == null ? "sequential" : "parallel");
+                    List<String> actual = replay(scene, movementPool);
+                    for (int frame = 0; frame < actual.size(); frame++) {
+                        if (!actual.get(frame).equals(expected.get(frame))) {
+                            mismatches.add(scene.getName() + " (" + mode + "): frame " + frame
+                                    + " differs from the recorded trace; it now reads\n" + traceFrame(scene, frame));
+                            break;
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return mismatches;
+    }
+    
+    //Replays scene sequentially up to the specified frame and returns that frame's readable trace
+    private static String traceFrame(MovementScene scene, int frame) {
+        HeadlessRunner runner = prepare(scene, null);
+        String[] text = new String[1];
+        scene.run(() -> {
+            runner.step();
+            if (runner.getFrame() == frame + 1) {
+                text[0] = scene.traceFrame();
+            }
+        });
+        return text[0];
+    }
+    
+    /**
+     * Checks the current movement algorithm against the recorded trace, or
+     * records the current algorithm's trace if the first argument is
+     * {@code --record}.
+     * @param args The command-line arguments
+     * @throws IOException If the trace could not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("--record")) {
+            try (PrintWriter writer = new PrintWriter(args[1], "UTF-8")) {
+                for (MovementScene scene : MovementScene.getScenes()) {
+                    List<String> trace = replay(scene, null);
+                    for (int frame = 0; frame < trace.size(); frame++) {
+                        writer.println(scene.getName() + " " + frame + " " + trace.get(frame));
+                    }
+                }
+            }
+            return;
+        }
+        List<String> mismatches = check(readRecordedTrace());
+        for (String mismatch : mismatches) {
+            System.out.println(mismatch);
+        }
+        if (!mismatches.isEmpty()) {
+            System.exit(1);
+        }
+        System.out.println("All " + MovementScene.getScenes().size() + " movement scenes match the recorded"
+                + " trace, one at a time and in parallel");
+    }
+    
+}
@@ -0,0 +1,504 @@
+package org.cell2d.check;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.CRC32;
+import org.cell2d.Direction;
+import org.cell2d.Frac;
+import org.cell2d.space.CollisionResponse;
+import org.cell2d.space.MobileObject;
+import org.cell2d.space.RectangleHitbox;
+import org.cell2d.space.SpaceObject;
+import org.cell2d.space.SpaceState;
+
+/**
+ * <p>A MovementScene is a scripted arrangement of SpaceObjects whose movement
+ * is traced frame by frame, so that the positions, velocities, displacements,
+ * and collisions that SpaceState's movement produces can be compared between
+ * versions of it. A scene uses only the parts of the space API that every
+ * version of SpaceState has, and steps through frames by way of a Runnable,
+ * so the same scenes can be replayed against any version.</p>
+ * 
+ * <p>Every random choice that a scene makes comes from a Random with a fixed
+ * seed. Scenes avoid relying on the order of anything that SpaceState orders
+ * by identity hash code, which differs from run to run. MobileObjects that can
+ * run into or change each other have different movement priorities, no
+ * MobileObject meets several surfaces at exactly the same distance in a way
+ * that makes their order matter, and collisions are traced as sets.</p>
+ * @see MovementCheck
+ * @author Alex Heyman
+ */
+public abstract class MovementScene {
+    
+    private static final long UNIT = Frac.UNIT;
+    
+    private final String name;
+    private final int numFrames;
+    final List<MobileObject> movers = new ArrayList<>();
+    private final Map<SpaceObject,Integer> ids = new IdentityHashMap<>();
+    
+    private MovementScene(String name, int numFrames) {
+        this.name = name;
+        this.numFrames = numFrames;
+    }
+    
+    /**
+     * Returns this MovementScene's name.
+     * @return This MovementScene's name
+     */
+    public final String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns the number of frames for which this MovementScene runs.
+     * @return This MovementScene's number of frames
+     */
+    public final int getNumFrames() {
+        return numFrames;
+    }
+    
+    /**
+     * Returns the cell size that the SpaceState running this MovementScene
+     * should have.
+     * @return This MovementScene's cell size
+     */
+    public long getCellSize() {
+        return 8*UNIT;
+    }
+    
+    /**
+     * Returns a new instance of each of the MovementScenes.
+     * @return A new instance of each of the MovementScenes
+     */
+    public static List<MovementScene> getScenes() {
+        List<MovementScene> scenes = new ArrayList<>();
+        scenes.add(new Arena());
+        scenes.add(new Pushers());
+        scenes.add(new Platforms());
+        scenes.add(new Boosters());
+        scenes.add(new Switches());
+        return scenes;
+    }
+    
+    final void addObject(SpaceState<?,?,?> state, SpaceObject object) {
+        ids.put(object, ids.size());
+        if (object instanceof MobileObject) {
+            movers.add((MobileObject)object);
+        }
+        state.addObject(object);
+    }
+    
+    /**
+     * Adds this MovementScene's SpaceObjects to the specified SpaceState.
+     * @param state The SpaceState to which to add the SpaceObjects
+     */
+    public final void build(SpaceState<?,?,?> state) {
+        movers.clear();
+        ids.clear();
+        build(state, new Random(name.hashCode()));
+    }
+    
+    abstract void build(SpaceState<?,?,?> state, Random random);
+    
+    //Actions to take before each frame's movement
+    void beforeFrame(int frame) {}
+    
+    /**
+     * Runs this MovementScene on the SpaceState to which it was added, calling
+     * step to execute each frame, and returns a trace of every frame.
+     * @param step A Runnable that executes one frame of the SpaceState
+     * @return One line for each frame, each the CRC-32 of that frame's trace
+     * in hexadecimal
+     */
+    public final List<String> run(Runnable step) {
+        List<String> trace = new ArrayList<>(numFrames);
+        for (int frame = 0; frame < numFrames; frame++) {
+            beforeFrame(frame);
+            step.run();
+            CRC32 crc = new CRC32();
+            crc.update(traceFrame().getBytes());
+            trace.add(Long.toHexString(crc.getValue()));
+        }
+        return trace;
+    }
+    
+    /**
+     * Returns a readable trace of the current state of this MovementScene's
+     * MobileObjects.
+     * @return A trace of this MovementScene's current frame
+     */
+    public final String traceFrame() {
+        StringBuilder builder = new StringBuilder();
+        for (MobileObject mover : movers) {
+            builder.append(ids.get(mover)).append(' ').append(mover.getX()).append(' ').append(mover.getY())
+                    .append(' ').append(mover.getVelocityX()).append(' ').append(mover.getVelocityY())
+                    .append(' ').append(mover.getDisplacementX()).append(' ').append(mover.getDisplacementY());
+            //Collisions are listed in order of the IDs of the SpaceObjects collided with
+            Map<SpaceObject,Set<Direction>> collisions = mover.getCollisions();
+            SpaceObject[] collided = new SpaceObject[ids.size()];
+            for (SpaceObject object : collisions.keySet()) {
+                collided[ids.get(object)] = object;
+            }
+            for (int id = 0; id < collided.length; id++) {
+                if (collided[id] != null) {
+                    builder.append(' ').append(id);
+                    for (Direction direction : collisions.get(collided[id])) {
+                        builder.append(direction.name().charAt(0));
+                    }
+                }
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+    
+    private static long randomUnits(Random random, int min, int max) {
+        return min*UNIT + (long)(random.nextDouble()*(max - min)*UNIT);
+    }
+    
+    private static class Block extends SpaceObject {
+        
+        private Block(long x, long y, long width, long height) {
+            setLocatorHitbox(new RectangleHitbox(x, y, 0, width, 0, height));
+            setSolid(true);
+        }
+        
+    }
+    
+    //A MobileObject that heads in a desired direction, turning back when it runs into something
+    private static class Mover extends MobileObject {
+        
+        long desiredX, desiredY;
+        long gravity = 0;
+        
+        private Mover(long x, long y, long width, long height) {
+            setLocatorHitbox(new RectangleHitbox(x, y, 0, width, 0, height));
+            setCollisionHitbox(getLocatorHitbox());
+            setCollision(true);
+        }
+        
+        void steer() {
+            if (collided(Direction.LEFT)) {
+                desiredX = Math.abs(desiredX);
+            } else if (collided(Direction.RIGHT)) {
+                desiredX = -Math.abs(desiredX);
+            }
+            if (gravity == 0) {
+                if (collided(Direction.UP)) {
+                    desiredY = Math.abs(desiredY);
+                } else if (collided(Direction.DOWN)) {
+                    desiredY = -Math.abs(desiredY);
+                }
+                setVelocity(desiredX, desiredY);
+            } else {
+                setVelocityX(desiredX);
+                setVelocityY(collided(Direction.DOWN) ? gravity : getVelocityY() + gravity);
+            }
+        }
+        
+        @Override
+        public CollisionResponse collide(SpaceObject object, Direction direction) {
+            return CollisionResponse.SLIDE;
+        }
+        
+    }
+    
+    private static void addWalls(MovementScene scene, SpaceState<?,?,?> state, int size) {
+        scene.addObject(state, new Block(-UNIT, -UNIT, (size + 2)*UNIT, UNIT));
+        scene.addObject(state, new Block(-UNIT, size*UNIT, (size + 2)*UNIT, UNIT));
+        scene.addObject(state, new Block(-UNIT, 0, UNIT, size*UNIT));
+        scene.addObject(state, new Block(size*UNIT, 0, UNIT, size*UNIT));
+    }
+    
+    /*
+     * Small MobileObjects wander a walled arena scattered with blocks, turning
+     * back from whatever they run into.
+     */
+    private static class Arena extends MovementScene {
+        
+        private Arena() {
+            super("arena", 240);
+        }
+        
+        @Override
+        void build(SpaceState<?,?,?> state, Random random) {
+            addWalls(this, state, 256);
+            for (int i = 0; i < 80; i++) {
+                addObject(state, new Block(randomUnits(random, 0, 248), randomUnits(random, 0, 248),
+                        randomUnits(random, 1, 8), randomUnits(random, 1, 8)));
+            }
+            for (int i = 0; i < 120; i++) {
+                Mover mover = new Mover(randomUnits(random, 0, 250), randomUnits(random, 0, 250),
+                        randomUnits(random, 1, 3), randomUnits(random, 1, 3));
+                mover.desiredX = randomUnits(random, -2, 2);
+                mover.desiredY = randomUnits(random, -2, 2);
+                mover.setVelocity(mover.desiredX, mover.desiredY);
+                mover.setMovementPriority(random.nextInt(4));
+                addObject(state, mover);
+            }
+        }
+        
+        @Override
+        void beforeFrame(int frame) {
+            for (MobileObject mover : movers) {
+                ((Mover)mover).steer();
+            }
+        }
+        
+    }
+    
+    /*
+     * Solid MobileObjects walk back and forth between the walls of separate
+     * rooms, pushing the ones with lower movement priorities ahead of them.
+     */
+    private static class Pushers extends MovementScene {
+        
+        private Pushers() {
+            super("pushers", 240);
+        }
+        
+        @Override
+        void build(SpaceState<?,?,?> state, Random random) {
+            for (int room = 0; room < 8; room++) {
+                long left = room*80*UNIT;
+                addObject(state, new Block(left - UNIT, 0, UNIT, 40*UNIT));
+                addObject(state, new Block(left + 64*UNIT, 0, UNIT, 40*UNIT));
+                for (int i = 0; i < 6; i++) {
+                    Mover mover = new Mover(left + randomUnits(random, 0, 60), randomUnits(random, 0, 36),
+                            randomUnits(random, 2, 4), randomUnits(random, 2, 4));
+                    mover.setSolid(true);
+                    mover.desiredX = randomUnits(random, -1, 1);
+                    mover.setMovementPriority(i);
+                    addObject(state, mover);
+                }
+            }
+        }
+        
+        @Override
+        void beforeFrame(int frame) {
+            for (MobileObject mover : movers) {
+                ((Mover)mover).steer();
+            }
+        }
+        
+    }
+    
+    /*
+     * Solid platforms, each with a follower riding along beside it, carry
+     * MobileObjects that press down on them back and forth.
+     */
+    private static class Platforms extends MovementScene {
+        
+        private final List<MobileObject> platforms = new ArrayList<>();
+        
+        private Platforms() {
+            super("platforms", 240);
+        }
+        
+        @Override
+        void build(SpaceState<?,?,?> state, Random random) {
+            platforms.clear();
+            for (int i = 0; i < 10; i++) {
+                long x = i*64*UNIT;
+                Mover platform = new Mover(x, 20*UNIT, 16*UNIT, 2*UNIT);
+                platform.setCollision(false);
+                platform.setSolid(true);
+                platform.setMovementPriority(10);
+                platform.desiredX = randomUnits(random, 1, 2);
+                platforms.add(platform);
+                addObject(state, platform);
+                Mover follower = new Mover(x + 17*UNIT, 20*UNIT, UNIT, UNIT);
+                follower.setCollision(false);
+                follower.setLeader(platform);
+                addObject(state, follower);
+                for (int j = 0; j < 3; j++) {
+                    Mover passenger = new Mover(x + randomUnits(random, 0, 14), randomUnits(random, 6, 16),
+                            randomUnits(random, 1, 2), randomUnits(random, 1, 2));
+                    passenger.gravity = UNIT/8;
+                    passenger.desiredX = randomUnits(random, -1, 1)/4;
+                    passenger.setRelPressingAngle(270);
+                    addObject(state, passenger);
+                }
+            }
+        }
+        
+        @Override
+        void beforeFrame(int frame) {
+            for (MobileObject object : movers) {
+                Mover mover = (Mover)object;
+                if (platforms.contains(mover)) {
+                    if (frame % 60 == 0) {
+                        mover.desiredX = -mover.desiredX;
+                    }
+                    mover.setVelocity(mover.desiredX, (frame % 40 < 20 ? UNIT/4 : -UNIT/4));
+                } else if (mover.getLeader() == null) {
+                    mover.steer();
+                }
+            }
+        }
+        
+    }
+    
+    /*
+     * In separate corridors, a MobileObject speeds itself up when the one that
+     * moves before it runs into it, so its velocity changes after the frame's
+     * movement has begun but before it moves, and it can reach the
+     * MobileObjects at the far end of the corridor in the same frame.
+     */
+    private static class Boosters extends MovementScene {
+        
+        private Boosters() {
+            super("boosters", 180);
+        }
+        
+        @Override
+        public long getCellSize() {
+            return 16*UNIT;
+        }
+        
+        @Override
+        void build(SpaceState<?,?,?> state, Random random) {
+            for (int corridor = 0; corridor < 12; corridor++) {
+                long top = corridor*96*UNIT;
+                //The floor and ceiling are split so that the corridor's two ends can move in parallel
+                for (int segment = 0; segment < 4; segment++) {
+                    addObject(state, new Block(segment*50*UNIT, top, 50*UNIT, UNIT));
+                    addObject(state, new Block(segment*50*UNIT, top + 6*UNIT, 50*UNIT, UNIT));
+                }
+                addObject(state, new Block(-UNIT, top, UNIT, 7*UNIT));
+                addObject(state, new Block(200*UNIT, top, UNIT, 7*UNIT));
+                //At the left end, a solid Mover heads toward a Booster that waits for it
+                Mover pusher = new Mover(randomUnits(random, 0, 20), top + 2*UNIT, 2*UNIT, 2*UNIT);
+                pusher.setSolid(true);
+                pusher.setMovementPriority(6);
+                pusher.desiredX = randomUnits(random, 1, 3);
+                pusher.setVelocity(pusher.desiredX, 0);
+                addObject(state, pusher);
+                Booster booster = new Booster(randomUnits(random, 25, 50), top + 2*UNIT, pusher);
+                booster.setMovementPriority(5);
+                addObject(state, booster);
+                //Four more Movers wander the right end
+                for (int i = 2; i < 6; i++) {
+                    Mover mover = new Mover(randomUnits(random, 146, 196), top + 2*UNIT, 2*UNIT, 2*UNIT);
+                    mover.setSolid(i % 2 == 0);
+                    mover.setMovementPriority(6 - i);
+                    mover.desiredX = randomUnits(random, -3, 3);
+                    mover.setVelocity(mover.desiredX, 0);
+                    addObject(state, mover);
+                }
+            }
+        }
+        
+        @Override
+        void beforeFrame(int frame) {
+            for (MobileObject mover : movers) {
+                ((Mover)mover).steer();
+            }
+        }
+        
+    }
+    
+    private static class Booster extends Mover {
+        
+        private final MobileObject pusher;
+        
+        private Booster(long x, long y, MobileObject pusher) {
+            super(x, y, 2*UNIT, 2*UNIT);
+            this.pusher = pusher;
+        }
+        
+        @Override
+        void steer() {
+            desiredX = Math.max(-3*UNIT, Math.min(desiredX, 3*UNIT));
+            super.steer();
+        }
+        
+        @Override
+        public CollisionResponse collide(SpaceObject object, Direction direction) {
+            if (object == pusher) {
+                //Flee from the pusher far enough to reach the far end of the corridor
+                desiredX = (direction == Direction.LEFT ? 120*UNIT : -120*UNIT);
+                setVelocityX(desiredX);
+                return CollisionResponse.NONE;
+            }
+            return CollisionResponse.SLIDE;
+        }
+        
+    }
+    
+    /*
+     * In separate corridors, a MobileObject that runs into a corridor's end
+     * turns back the runner in the next corridor, changing a MobileObject far
+     * from itself in the middle of the frame's movement.
+     */
+    private static class Switches extends MovementScene {
+        
+        private Switches() {
+            super("switches", 180);
+        }
+        
+        @Override
+        public long getCellSize() {
+            return 16*UNIT;
+        }
+        
+        @Override
+        void build(SpaceState<?,?,?> state, Random random) {
+            Mover[] runners = new Mover[8];
+            Presser[] pressers = new Presser[8];
+            for (int corridor = 0; corridor < 8; corridor++) {
+                long top = corridor*96*UNIT;
+                addObject(state, new Block(-UNIT, top, 62*UNIT, UNIT));
+                addObject(state, new Block(-UNIT, top + 6*UNIT, 62*UNIT, UNIT));
+                addObject(state, new Block(-UNIT, top, UNIT, 7*UNIT));
+                addObject(state, new Block(60*UNIT, top, UNIT, 7*UNIT));
+                pressers[corridor] = new Presser(randomUnits(random, 0, 20), top + UNIT);
+                pressers[corridor].setMovementPriority(1);
+                pressers[corridor].desiredX = randomUnits(random, 1, 3);
+                addObject(state, pressers[corridor]);
+                runners[corridor] = new Mover(randomUnits(random, 30, 56), top + 3*UNIT, 2*UNIT, 2*UNIT);
+                //Never tied with the presser whose collide() changes it, so their order is fixed
+                runners[corridor].setMovementPriority(random.nextBoolean() ? 0 : 2);
+                runners[corridor].desiredX = randomUnits(random, -2, 2);
+                addObject(state, runners[corridor]);
+            }
+            for (int corridor = 0; corridor < 8; corridor++) {
+                pressers[corridor].runner = runners[(corridor + 1) % 8];
+            }
+        }
+        
+        @Override
+        void beforeFrame(int frame) {
+            for (MobileObject mover : movers) {
+                ((Mover)mover).steer();
+            }
+        }
+        
+    }
+    
+    private static class Presser extends Mover {
+        
+        private Mover runner = null;
+        
+        private Presser(long x, long y) {
+            super(x, y, 2*UNIT, 2*UNIT);
+        }
+        
+        @Override
+        public CollisionResponse collide(SpaceObject object, Direction direction) {
+            if (direction == Direction.LEFT || direction == Direction.RIGHT) {
+                //The runner's velocity changes first, in case its change stops parallel movement
+                runner.setVelocityX(-runner.desiredX);
+                runner.desiredX = -runner.desiredX;
+            }
+            return CollisionResponse.SLIDE;
+        }
+        
+    }
+    
+}
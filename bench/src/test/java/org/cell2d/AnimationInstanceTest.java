@@ -0,0 +1,101 @@
+package org.cell2d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.cell2d.basic.BasicState;
+import org.junit.Test;
+
+public class AnimationInstanceTest {
+    
+    private static final long UNIT = Frac.UNIT;
+    private static final Animation WALK = new Animation(new Animatable[] {
+        Sprite.BLANK, Sprite.BLANK, Sprite.BLANK, Sprite.BLANK}, UNIT, 2*UNIT, UNIT/2, 3*UNIT);
+    private static final Animation TURNS = new Animation(WALK, WALK, new Animation(Sprite.BLANK, Sprite.BLANK));
+    
+    private static class Scene {
+        
+        private final BasicState state;
+        private final HeadlessRunner runner;
+        
+        private Scene() {
+            CellGame game = new CellGame("AnimationInstanceTest", 0, 60) {
+                
+                @Override
+                public void initActions() {
+                    enterState(0);
+                }
+                
+            };
+            state = new BasicState(game, 0) {};
+            runner = new HeadlessRunner(game);
+        }
+        
+    }
+    
+    @Test
+    public void dataSurvivesAssignment() {
+        Scene scene = new Scene();
+        AnimationInstance instance = new AnimationInstance(TURNS);
+        instance.setIndex(1, 1).setIndex(0, 2).setSpeed(0, UNIT/3).setSpeed(1, UNIT).setTimeFactor(2*UNIT);
+        AnimationInstance other = scene.state.addAnimInstance(TURNS);
+        scene.state.addAnimInstance(instance);
+        assertSame(scene.state, instance.getGameState());
+        assertEquals(2, instance.getIndex(0));
+        assertEquals(1, instance.getIndex(1));
+        assertEquals(UNIT/3, instance.getSpeed(0));
+        assertEquals(UNIT, instance.getSpeed(1));
+        assertEquals(2*UNIT, instance.getTimeFactor());
+        //Removing the first instance moves the second into its slot
+        scene.state.removeAnimInstance(other);
+        assertEquals(0, other.getIndex(1));
+        assertEquals(-1, other.getTimeFactor());
+        assertEquals(2, instance.getIndex(0));
+        scene.runner.step();
+        int index0 = instance.getIndex(0);
+        int index1 = instance.getIndex(1);
+        scene.state.removeAnimInstance(instance);
+        assertNull(instance.getGameState());
+        assertEquals(0, instance.getEffectiveTimeFactor());
+        assertEquals(index0, instance.getIndex(0));
+        assertEquals(index1, instance.getIndex(1));
+        assertEquals(UNIT/3, instance.getSpeed(0));
+        assertEquals(2*UNIT, instance.getTimeFactor());
+        //Time does not pass for an unassigned instance
+        scene.runner.step();
+        assertEquals(index0, instance.getIndex(0));
+        instance.setIndex(1, 0);
+        assertEquals(0, instance.getIndex(0));
+    }
+    
+    @Test
+    public void parallelUpdatesMatchSequentialOnes() {
+        Scene sequential = new Scene();
+        Scene parallel = new Scene();
+        parallel.state.setAnimationPool(new ForkJoinPool(4));
+        Random random = new Random(0);
+        int numInstances = 5000;
+        AnimationInstance[] expected = new AnimationInstance[numInstances];
+        AnimationInstance[] actual = new AnimationInstance[numInstances];
+        for (int i = 0; i < numInstances; i++) {
+            Animation animation = (random.nextInt(4) == 0 ? TURNS : WALK);
+            long speed = random.nextInt(4)*UNIT/2;
+            long timeFactor = (random.nextInt(3) - 1)*UNIT;
+            expected[i] = sequential.state.addAnimInstance(animation).setSpeed(speed).setTimeFactor(timeFactor);
+            actual[i] = parallel.state.addAnimInstance(animation).setSpeed(speed).setTimeFactor(timeFactor);
+        }
+        for (int frame = 0; frame < 30; frame++) {
+            sequential.runner.step();
+            parallel.runner.step();
+            for (int i = 0; i < numInstances; i++) {
+                assertEquals(expected[i].getIndex(), actual[i].getIndex());
+                assertEquals(expected[i].getIndex(0), actual[i].getIndex(0));
+            }
+        }
+        parallel.state.getAnimationPool().shutdown();
+    }
+    
+}
@@ -0,0 +1,103 @@
+package org.cell2d;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.cell2d.celick.DecodedImage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AssetLoaderTest {
+    
+    //A short OGG Vorbis file on the test classpath
+    private static final String OGG_PATH = "testVORBIS.ogg";
+    private static final int[] PIXELS = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0x80FFFFFF, 0xFF000000, 0x00000000};
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    private ExecutorService executor;
+    private String pngPath, wavPath;
+    
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(2);
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 3, 2, PIXELS, 0, 3);
+        File png = folder.newFile("sprite.png");
+        ImageIO.write(image, "png", png);
+        pngPath = png.getAbsolutePath();
+        byte[] samples = new byte[2*441];
+        for (int i = 0; i < samples.length; i += 2) {
+            short sample = (short)(Math.sin(i*Math.PI/50)*8000);
+            samples[i] = (byte)sample;
+            samples[i + 1] = (byte)(sample >> 8);
+        }
+        AudioFormat format = new AudioFormat(44100, 16, 1, true, false);
+        File wav = folder.newFile("sound.wav");
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(samples), format, samples.length/2),
+                AudioFileFormat.Type.WAVE, wav);
+        wavPath = wav.getAbsolutePath();
+    }
+    
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    public void decodesPngWavAndOggWithoutAWindow() throws Exception {
+        AssetLoader loader = new AssetLoader(executor);
+        loader.add(new Sprite(pngPath, 0, 0, false), new Sound(wavPath, false), new Music(OGG_PATH, false));
+        assertEquals(3, loader.getNumAssets());
+        loader.awaitDecoding();
+        assertEquals(3, loader.getNumDecoded());
+        assertEquals(0, loader.getNumLoaded());
+        assertFalse(loader.isFinished());
+        assertEquals(0.5, loader.getProgress(), 0);
+    }
+    
+    @Test
+    public void decodingMatchesTheFiles() throws Exception {
+        assertArrayEquals(PIXELS, new DecodedImage(pngPath, false, null).getPixels());
+        //Neither audio format's decoding needs OpenAL
+        Audio.decode(wavPath);
+        Audio.decode(OGG_PATH);
+    }
+    
+    @Test
+    public void failedAssetCountsAsDone() throws Exception {
+        AssetLoader loader = new AssetLoader(executor);
+        loader.add(new Sound(folder.getRoot().getAbsolutePath() + "/missing.wav", false));
+        try {
+            loader.awaitDecoding();
+            fail("A missing file decoded");
+        } catch (RuntimeException e) {}
+        assertEquals(1, loader.getNumDecoded());
+        try {
+            loader.update(Long.MAX_VALUE);
+            fail("A missing file uploaded");
+        } catch (RuntimeException e) {}
+        assertEquals(1, loader.getNumLoaded());
+        assertTrue(loader.isFinished());
+        assertTrue(loader.update(Long.MAX_VALUE));
+    }
+    
+}
@@ -0,0 +1,155 @@
+package org.cell2d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.cell2d.basic.BasicEvent;
+import org.cell2d.basic.BasicState;
+import org.cell2d.basic.BasicThinker;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThinkerWalkTest {
+    
+    private final List<String> log = new ArrayList<>();
+    private BasicState state;
+    private HeadlessRunner runner;
+    
+    //A Thinker that logs its name every time unit, and runs its script the first time
+    private class Probe extends BasicThinker {
+        
+        private final String name;
+        private Runnable script = null;
+        
+        private Probe(String name) {
+            this.name = name;
+            setTimerValue(new BasicEvent() {
+                
+                @Override
+                public void actions(CellGame game, BasicState state) {
+                    log.add(Probe.this.name);
+                    setTimerValue(this, 1);
+                    if (script != null) {
+                        Runnable toRun = script;
+                        script = null;
+                        toRun.run();
+                    }
+                }
+                
+            }, 1);
+        }
+        
+    }
+    
+    @Before
+    public void setUp() {
+        CellGame game = new CellGame("ThinkerWalkTest", 0, 60) {
+            
+            @Override
+            public void initActions() {
+                enterState(0);
+            }
+            
+        };
+        state = new BasicState(game, 0) {};
+        runner = new HeadlessRunner(game);
+    }
+    
+    private List<String> step() {
+        log.clear();
+        runner.step();
+        return new ArrayList<>(log);
+    }
+    
+    @Test
+    public void addsReachWalkOnlyWhereItHasNotPassed() {
+        Probe a = new Probe("A");
+        Probe a1 = new Probe("A1");
+        Probe b = new Probe("B");
+        Probe c = new Probe("C");
+        Probe c1 = new Probe("C1");
+        state.addSubThinker(a);
+        state.addSubThinker(b);
+        state.addSubThinker(c);
+        a.addSubThinker(a1);
+        c.addSubThinker(c1);
+        a.script = () -> {
+            assertTrue(state.iteratingThroughSubThinkers());
+            assertFalse(a.iteratingThroughSubThinkers());
+            assertFalse(c.iteratingThroughSubThinkers());
+            //A and C have yet to iterate through their SubThinkers, so these changes are made now
+            a.addSubThinker(new Probe("N1"));
+            c.addSubThinker(new Probe("N2"));
+            c.removeSubThinker(c1);
+            //The state is iterating through its SubThinkers, so this waits until it is done
+            state.addSubThinker(new Probe("N3"));
+            assertEquals(3, state.getNumSubThinkers());
+        };
+        a1.script = () -> {
+            assertTrue(a.iteratingThroughSubThinkers());
+            a.addSubThinker(new Probe("N5"));
+            assertEquals(2, a.getNumSubThinkers());
+        };
+        b.script = () -> {
+            //A has finished iterating through its SubThinkers, so its delayed change has been made
+            assertFalse(a.iteratingThroughSubThinkers());
+            assertEquals(3, a.getNumSubThinkers());
+            a.addSubThinker(new Probe("N4"));
+            assertEquals(4, a.getNumSubThinkers());
+        };
+        assertEquals(Arrays.asList("A", "A1", "N1", "B", "C", "N2"), step());
+        assertEquals(4, state.getNumSubThinkers());
+        assertEquals(Arrays.asList("A", "A1", "N1", "N5", "N4", "B", "C", "N2", "N3"), step());
+    }
+    
+    @Test
+    public void removalsWaitForIterationsInProgress() {
+        Probe a = new Probe("A");
+        Probe a1 = new Probe("A1");
+        Probe b = new Probe("B");
+        Probe b1 = new Probe("B1");
+        state.addSubThinker(a);
+        state.addSubThinker(b);
+        a.addSubThinker(a1);
+        b.addSubThinker(b1);
+        a1.script = () -> {
+            //The state and A are iterating through their SubThinkers, but B has yet to start
+            state.removeSubThinker(b);
+            a.removeSubThinker(a1);
+            b.removeSubThinker(b1);
+            assertEquals(2, state.getNumSubThinkers());
+            assertEquals(1, a.getNumSubThinkers());
+            assertEquals(0, b.getNumSubThinkers());
+        };
+        b.script = () -> {
+            assertEquals(0, a.getNumSubThinkers());
+        };
+        assertEquals(Arrays.asList("A", "A1", "B"), step());
+        assertEquals(1, state.getNumSubThinkers());
+        assertEquals(Arrays.asList("A"), step());
+    }
+    
+    @Test
+    public void movedSubThinkerIsReachedOnce() {
+        Probe a = new Probe("A");
+        Probe b = new Probe("B");
+        Probe c = new Probe("C");
+        Probe m = new Probe("M");
+        state.addSubThinker(a);
+        state.addSubThinker(b);
+        state.addSubThinker(c);
+        c.addSubThinker(m);
+        b.script = () -> {
+            //M moves from C, which the walk has yet to reach, to A, which it has passed
+            c.removeSubThinker(m);
+            a.addSubThinker(m);
+        };
+        assertEquals(Arrays.asList("A", "B", "C"), step());
+        assertEquals(Arrays.asList("A", "M", "B", "C"), step());
+    }
+    
+}
@@ -0,0 +1,203 @@
+package org.cell2d.celick.opengl.renderer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class BatchRendererTest {
+    
+    /*
+     * A RecordingRenderer that also logs the texture and on-screen position of
+     * each vertex it is given, applying the translations, rotations about the
+     * z axis and scales that it is given the way OpenGL would.
+     */
+    private static class VertexLog extends RecordingRenderer {
+        
+        private final List<Integer> textures = new ArrayList<>();
+        private final List<float[]> positions = new ArrayList<>();
+        private final List<double[]> stack = new ArrayList<>();
+        //The transform as x' = a*x - b*y + tx, y' = b*x + a*y + ty
+        private double a = 1, b = 0, tx = 0, ty = 0;
+        private int texture = 0;
+        private boolean textureEnabled = true;
+        
+        @Override
+        public void glBindTexture(int target, int id) {
+            super.glBindTexture(target, id);
+            texture = id;
+        }
+        
+        @Override
+        public void glEnable(int item) {
+            super.glEnable(item);
+            if (item == GL_TEXTURE_2D) {
+                textureEnabled = true;
+            }
+        }
+        
+        @Override
+        public void glDisable(int item) {
+            super.glDisable(item);
+            if (item == GL_TEXTURE_2D) {
+                textureEnabled = false;
+            }
+        }
+        
+        @Override
+        public void glVertex3f(float x, float y, float z) {
+            super.glVertex3f(x, y, z);
+            textures.add(textureEnabled ? texture : -1);
+            positions.add(new float[]{(float)(a*x - b*y + tx), (float)(b*x + a*y + ty)});
+        }
+        
+        @Override
+        public void glVertex2f(float x, float y) {
+            glVertex3f(x, y, 0);
+        }
+        
+        @Override
+        public void glTranslatef(float x, float y, float z) {
+            super.glTranslatef(x, y, z);
+            tx += a*x - b*y;
+            ty += b*x + a*y;
+        }
+        
+        @Override
+        public void glRotatef(float angle, float x, float y, float z) {
+            super.glRotatef(angle, x, y, z);
+            //Only rotations about the z axis are drawn in these tests
+            double radians = Math.toRadians(z > 0 ? angle : -angle);
+            double newA = a*Math.cos(radians) - b*Math.sin(radians);
+            b = b*Math.cos(radians) + a*Math.sin(radians);
+            a = newA;
+        }
+        
+        @Override
+        public void glScalef(float x, float y, float z) {
+            super.glScalef(x, y, z);
+            a *= x;
+            b *= x;
+        }
+        
+        @Override
+        public void glLoadIdentity() {
+            super.glLoadIdentity();
+            a = 1;
+            b = 0;
+            tx = 0;
+            ty = 0;
+        }
+        
+        @Override
+        public void glPushMatrix() {
+            stack.add(new double[]{a, b, tx, ty});
+        }
+        
+        @Override
+        public void glPopMatrix() {
+            double[] top = stack.remove(stack.size() - 1);
+            a = top[0];
+            b = top[1];
+            tx = top[2];
+            ty = top[3];
+        }
+        
+        //The texture of each quad logged, in the order they were drawn
+        private List<Integer> getQuadTextures() {
+            List<Integer> quadTextures = new ArrayList<>();
+            for (int i = 0; i < textures.size(); i += 4) {
+                quadTextures.add(textures.get(i));
+            }
+            return quadTextures;
+        }
+        
+    }
+    
+    private static void drawQuad(SGL gl, int texture, float x1, float y1, float x2, float y2) {
+        gl.glBindTexture(SGL.GL_TEXTURE_2D, texture);
+        gl.glBegin(SGL.GL_QUADS);
+        gl.glTexCoord2f(0, 0);
+        gl.glVertex3f(x1, y1, 0);
+        gl.glTexCoord2f(1, 0);
+        gl.glVertex3f(x2, y1, 0);
+        gl.glTexCoord2f(1, 1);
+        gl.glVertex3f(x2, y2, 0);
+        gl.glTexCoord2f(0, 1);
+        gl.glVertex3f(x1, y2, 0);
+        gl.glEnd();
+    }
+    
+    private static List<Integer> asList(int... values) {
+        List<Integer> list = new ArrayList<>();
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+    
+    @Test
+    public void overlappingQuadsKeepTheirOrder() {
+        VertexLog log = new VertexLog();
+        BatchRenderer batcher = new BatchRenderer(log);
+        drawQuad(batcher, 1, 0, 0, 10, 10);
+        drawQuad(batcher, 2, 5, 5, 15, 15);
+        //Overlaps the texture 2 quad, so it can't join the first texture 1 quad's batch
+        drawQuad(batcher, 1, 12, 12, 20, 20);
+        batcher.flush();
+        assertEquals(asList(1, 2, 1), log.getQuadTextures());
+        assertEquals(3, log.getDrawCalls());
+    }
+    
+    @Test
+    public void separateQuadsWithTheSameTextureMerge() {
+        VertexLog log = new VertexLog();
+        BatchRenderer batcher = new BatchRenderer(log);
+        drawQuad(batcher, 1, 0, 0, 10, 10);
+        drawQuad(batcher, 2, 20, 0, 30, 10);
+        drawQuad(batcher, 1, 40, 0, 50, 10);
+        //Shares only an edge with the texture 2 quad, which draws over none of its pixels
+        drawQuad(batcher, 1, 30, 0, 40, 10);
+        batcher.flush();
+        assertEquals(asList(1, 1, 1, 2), log.getQuadTextures());
+        assertEquals(2, log.getDrawCalls());
+        //Once for each batch, and once more to leave texture 1 bound as it was drawn last
+        assertEquals(3, log.getTextureBinds());
+        assertEquals(16, log.getVertices());
+    }
+    
+    @Test
+    public void foldedTransformsMatchUnfoldedOnes() {
+        VertexLog direct = new VertexLog();
+        VertexLog folded = new VertexLog();
+        BatchRenderer batcher = new BatchRenderer(folded);
+        for (SGL gl : new SGL[]{direct, batcher}) {
+            gl.glTranslatef(100, 50, 0);
+            drawQuad(gl, 1, 0, 0, 16, 16);
+            gl.glPushMatrix();
+            gl.glRotatef(30, 0, 0, 1);
+            gl.glScalef(2, 2, 1);
+            drawQuad(gl, 2, -8, -8, 8, 8);
+            gl.glTranslatef(5, -3, 0);
+            gl.glRotatef(-75, 0, 0, -1);
+            drawQuad(gl, 1, 0, 0, 4, 12);
+            gl.glScalef(0.5f, 0.5f, 1);
+            gl.glRotatef(-30, 0, 0, 1);
+            drawQuad(gl, 2, 3, 3, 9, 9);
+            gl.glPopMatrix();
+            drawQuad(gl, 1, 20, 20, 24, 24);
+            gl.flush();
+        }
+        assertEquals(direct.positions.size(), folded.positions.size());
+        for (int i = 0; i < direct.positions.size(); i++) {
+            assertArrayEquals(direct.positions.get(i), folded.positions.get(i), 0.001f);
+        }
+        //The batcher passes on what it has folded only when the matrix stack is used, with the
+        //scales cancelled out by then
+        assertEquals(7, direct.getTransforms());
+        assertEquals(3, folded.getTransforms());
+    }
+    
+}
@@ -0,0 +1,16 @@
+package org.cell2d.check;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Collections;
+import org.junit.Test;
+
+public class MovementCheckTest {
+    
+    @Test
+    public void movementMatchesRecordedTrace() throws IOException {
+        assertEquals(Collections.emptyList(), MovementCheck.check(MovementCheck.readRecordedTrace()));
+    }
+    
+}
@@ -0,0 +1,60 @@
+package org.cell2d.space;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.cell2d.CellVector;
+import org.cell2d.Frac;
+import org.junit.Test;
+
+public class CompositeHitboxTest {
+    
+    private static final long UNIT = Frac.UNIT;
+    
+    private static Hitbox createHitbox(Random random, long x, long y) {
+        long size = UNIT + (long)(random.nextDouble()*8*UNIT);
+        switch (random.nextInt(3)) {
+            case 0:
+                return new CircleHitbox(x, y, size);
+            case 1:
+                return new RectangleHitbox(x, y, -size, size, -size/2, size/2);
+            default:
+                CellVector[] vertices = new CellVector[5];
+                for (int i = 0; i < vertices.length; i++) {
+                    vertices[i] = new CellVector(72*i + random.nextInt(30)).scale(size);
+                }
+                return new PolygonHitbox(x, y, vertices);
+        }
+    }
+    
+    @Test
+    public void treeFindsTheSameOverlapsAsEveryComponent() {
+        Random random = new Random(0);
+        for (int trial = 0; trial < 200; trial++) {
+            //Enough components for overlap tests to use a ComponentTree, some far apart and some close
+            CompositeHitbox composite = new CompositeHitbox(0, 0);
+            int numComponents = 8 + random.nextInt(40);
+            long spread = (trial % 2 == 0 ? 64*UNIT : UNIT/1024);
+            Hitbox[] components = new Hitbox[numComponents];
+            for (int i = 0; i < numComponents; i++) {
+                components[i] = createHitbox(random,
+                        (long)(random.nextDouble()*spread), (long)(random.nextDouble()*spread));
+                composite.setComponent(i, components[i]);
+            }
+            for (int i = 0; i < 50; i++) {
+                Hitbox other = createHitbox(random,
+                        (long)(random.nextDouble()*spread*1.5), (long)(random.nextDouble()*spread*1.5));
+                boolean expected = false;
+                for (Hitbox component : components) {
+                    if (Hitbox.overlap(component, other)) {
+                        expected = true;
+                        break;
+                    }
+                }
+                assertEquals(expected, Hitbox.overlap(composite, other));
+                assertEquals(expected, Hitbox.overlap(other, composite));
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,215 @@
+package org.cell2d.space;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.cell2d.CellGame;
+import org.cell2d.CellVector;
+import org.cell2d.Frac;
+import org.cell2d.space.SpaceState.DrawMode;
+import org.cell2d.space.basic.BasicSpaceState;
+import org.junit.Test;
+
+public class SpaceQueryTest {
+    
+    private static final long UNIT = Frac.UNIT;
+    
+    private static class Block extends SpaceObject {
+        
+        private Block(long x, long y, long size) {
+            setLocatorHitbox(new RectangleHitbox(x, y, 0, size, 0, size));
+        }
+        
+    }
+    
+    private static class Mover extends MobileObject {
+        
+        private Mover(long x, long y, int movementPriority) {
+            setLocatorHitbox(new RectangleHitbox(x, y, -UNIT, UNIT, -UNIT, UNIT));
+            setMovementPriority(movementPriority);
+        }
+        
+    }
+    
+    private static BasicSpaceState createState(CellGame game, int id, long cellSize) {
+        return new BasicSpaceState(game, id, cellSize, cellSize, DrawMode.FLAT);
+    }
+    
+    private static CellGame createGame() {
+        return new CellGame("SpaceQueryTest", 0, 60) {
+            
+            @Override
+            public void initActions() {}
+            
+        };
+    }
+    
+    @Test
+    public void visitorsCannotChangeTheCellsBeingQueried() {
+        BasicSpaceState state = createState(createGame(), 0, 16*UNIT);
+        Block block = new Block(0, 0, 4*UNIT);
+        Block other = new Block(8*UNIT, 0, 4*UNIT);
+        state.addObject(block);
+        state.addObject(other);
+        try {
+            state.objectsWithinRectangle(0, 0, 32*UNIT, 32*UNIT, Block.class, object -> {
+                state.removeObject(object);
+                return true;
+            });
+            fail("Removing a SpaceObject from a visitor did not throw");
+        } catch (IllegalStateException e) {}
+        try {
+            state.objectsWithinRectangle(0, 0, 32*UNIT, 32*UNIT, Block.class, object -> {
+                state.addObject(new Block(40*UNIT, 0, 4*UNIT));
+                return true;
+            });
+            fail("Adding a SpaceObject from a visitor did not throw");
+        } catch (IllegalStateException e) {}
+        try {
+            state.objectsWithinRectangle(0, 0, 32*UNIT, 32*UNIT, Block.class, object -> {
+                object.setDrawPriority(1);
+                return true;
+            });
+            fail("Changing a draw priority from a visitor did not throw");
+        } catch (IllegalStateException e) {}
+        //Moving is allowed, and the next query sees the new position
+        state.objectsWithinRectangle(0, 0, 32*UNIT, 32*UNIT, Block.class, object -> {
+            object.changePosition(64*UNIT, 0);
+            return true;
+        });
+        assertEquals(2, state.getNumObjects());
+        assertEquals(2, state.objectsWithinRectangle(64*UNIT, 0, 96*UNIT, 32*UNIT, Block.class).size());
+    }
+    
+    @Test
+    public void objectsMovedBetweenStatesLeaveNothingBehind() {
+        CellGame game = createGame();
+        BasicSpaceState stateA = createState(game, 0, 16*UNIT);
+        BasicSpaceState stateB = createState(game, 1, 40*UNIT);
+        Block block = new Block(0, 0, 4*UNIT);
+        Block other = new Block(100*UNIT, 100*UNIT, 4*UNIT);
+        stateA.addObject(block);
+        stateA.addObject(other);
+        //Both Blocks wait for stateA to update their cells
+        block.changePosition(20*UNIT, 0);
+        other.changePosition(0, 20*UNIT);
+        stateA.removeObject(block);
+        stateB.addObject(block);
+        block.changePosition(200*UNIT, 0);
+        assertEquals(Collections.singletonList(other),
+                stateA.objectsWithinRectangle(0, 0, 300*UNIT, 300*UNIT, Block.class));
+        assertEquals(0, stateA.overlappingObjects(
+                new RectangleHitbox(220*UNIT, 0, 0, 4*UNIT, 0, 4*UNIT), Block.class).size());
+        assertEquals(1, stateA.objectsWithinRectangle(100*UNIT, 120*UNIT, 104*UNIT, 124*UNIT,
+                Block.class).size());
+        assertEquals(block, stateB.objectsWithinRectangle(
+                220*UNIT, 0, 224*UNIT, 4*UNIT, Block.class).get(0));
+        assertEquals(0, stateB.objectsWithinRectangle(0, 0, 200*UNIT, 200*UNIT, Block.class).size());
+        //Moving it back should leave stateB's cells empty of it in turn
+        block.changePosition(-220*UNIT, 0);
+        stateB.removeObject(block);
+        stateA.addObject(block);
+        assertEquals(0, stateB.objectsWithinRectangle(-300*UNIT, -300*UNIT, 300*UNIT, 300*UNIT,
+                Block.class).size());
+        assertEquals(block, stateA.objectsWithinRectangle(0, 0, 4*UNIT, 4*UNIT, Block.class).get(0));
+    }
+    
+    @Test
+    public void removeOutsideRectangleSeesObjectsThatHaveMoved() {
+        BasicSpaceState state = createState(createGame(), 0, 16*UNIT);
+        //Strictly inside one cell, which lies inside the rectangle
+        Block block = new Block(20*UNIT, 20*UNIT, 4*UNIT);
+        state.addObject(block);
+        block.changePosition(100*UNIT, 0);
+        state.removeOutsideRectangle(0, 0, 48*UNIT, 48*UNIT);
+        assertEquals(0, state.getNumObjects());
+    }
+    
+    //The nearest SpaceObject by a scan of all of them, breaking ties as nearestObject() documents
+    private static <O extends SpaceObject> O nearestByScan(
+            List<SpaceObject> objects, long pointX, long pointY, Class<O> cls) {
+        boolean mobile = MobileObject.class.isAssignableFrom(cls);
+        O nearest = null;
+        long nearestDistance = -1;
+        for (SpaceObject object : objects) {
+            if (!cls.isInstance(object)) {
+                continue;
+            }
+            long distance = CellVector.distanceBetween(pointX, pointY, object.getCenterX(), object.getCenterY());
+            boolean nearer;
+            if (nearest == null || distance != nearestDistance) {
+                nearer = (nearest == null || distance < nearestDistance);
+            } else if (mobile && ((MobileObject)object).getMovementPriority()
+                    != ((MobileObject)nearest).getMovementPriority()) {
+                nearer = ((MobileObject)object).getMovementPriority() > ((MobileObject)nearest).getMovementPriority();
+            } else {
+                nearer = System.identityHashCode(object) < System.identityHashCode(nearest);
+            }
+            if (nearer) {
+                nearest = cls.cast(object);
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+    
+    @Test
+    public void nearestObjectMatchesAScanOfEveryObject() {
+        Random random = new Random(0);
+        for (int trial = 0; trial < 40; trial++) {
+            //Some cell sizes are not whole numbers of fracunits' worth of pixels
+            long cellSize = (trial % 2 == 0 ? 16*UNIT : 7*UNIT + (long)(random.nextDouble()*UNIT));
+            BasicSpaceState state = createState(createGame(), 0, cellSize);
+            if (trial % 4 >= 2) {
+                state.addIndexedClass(Block.class);
+            }
+            //Centers on a lattice of half cells, so many lie on cell boundaries and many are tied
+            int spread = (trial % 3 == 0 ? 4 : 40);
+            List<SpaceObject> objects = new ArrayList<>();
+            int numObjects = 1 + random.nextInt(trial % 3 == 1 ? 8 : 300);
+            for (int i = 0; i < numObjects; i++) {
+                long x = (random.nextInt(2*spread) - spread)*cellSize/2;
+                long y = (random.nextInt(2*spread) - spread)*cellSize/2;
+                if (random.nextInt(4) == 0) {
+                    x += (long)(random.nextDouble()*cellSize);
+                    y += (long)(random.nextDouble()*cellSize);
+                }
+                SpaceObject object = (random.nextBoolean() ?
+                        new Block(x, y, 2*UNIT) : new Mover(x, y, random.nextInt(3)));
+                objects.add(object);
+                state.addObject(object);
+            }
+            for (int i = 0; i < 200; i++) {
+                long pointX, pointY;
+                switch (random.nextInt(3)) {
+                    case 0:
+                        //On cell boundaries and lattice points
+                        pointX = (random.nextInt(4*spread) - 2*spread)*cellSize/4;
+                        pointY = (random.nextInt(4*spread) - 2*spread)*cellSize/4;
+                        break;
+                    case 1:
+                        pointX = (long)((random.nextDouble() - 0.5)*spread*cellSize);
+                        pointY = (long)((random.nextDouble() - 0.5)*spread*cellSize);
+                        break;
+                    default:
+                        //Well outside the cells in use
+                        pointX = (long)((random.nextDouble() - 0.5)*8*spread*cellSize);
+                        pointY = (long)((random.nextDouble() - 0.5)*8*spread*cellSize);
+                        break;
+                }
+                assertSame(nearestByScan(objects, pointX, pointY, SpaceObject.class),
+                        state.nearestObject(pointX, pointY, SpaceObject.class));
+                assertSame(nearestByScan(objects, pointX, pointY, Block.class),
+                        state.nearestObject(pointX, pointY, Block.class));
+                assertSame(nearestByScan(objects, pointX, pointY, Mover.class),
+                        state.nearestObject(pointX, pointY, Mover.class));
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,125 @@
+package org.cell2d.space.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.cell2d.Drawable;
+import org.cell2d.Filter;
+import org.cell2d.Sprite;
+import org.cell2d.celick.Graphics;
+import org.cell2d.celick.geom.Rectangle;
+import org.junit.Test;
+
+public class TileGridTest {
+    
+    private final List<String> log = new ArrayList<>();
+    //A Graphics context that is never drawn to, with a world clip that only records the region set
+    private final Graphics graphics = new Graphics() {
+        
+        private Rectangle clip = new Rectangle(0, 0, 0, 0);
+        
+        @Override
+        public void setWorldClip(float x, float y, float width, float height) {
+            clip = new Rectangle(x, y, width, height);
+        }
+        
+        @Override
+        public void setWorldClip(Rectangle clip) {
+            this.clip = clip;
+        }
+        
+        @Override
+        public Rectangle getWorldClip() {
+            return clip;
+        }
+        
+    };
+    
+    //A tile that logs its name and where it is drawn
+    private class Probe implements Drawable {
+        
+        private final String name;
+        
+        private Probe(String name) {
+            this.name = name;
+        }
+        
+        private void log(int x, int y) {
+            log.add(name + "@" + x + "," + y);
+        }
+        
+        @Override
+        public void draw(Graphics g, int x, int y) {
+            log(x, y);
+        }
+        
+        @Override
+        public void draw(Graphics g, int x, int y, boolean xFlip, boolean yFlip,
+                double angle, double alpha, Filter filter) {
+            log(x, y);
+        }
+        
+        @Override
+        public void draw(Graphics g, int x, int y, double scale,
+                boolean xFlip, boolean yFlip, double alpha, Filter filter) {
+            log(x, y);
+        }
+        
+        @Override
+        public void draw(Graphics g, int x, int y, int left, int right, int top, int bottom) {
+            log(x, y);
+        }
+        
+        @Override
+        public void draw(Graphics g, int x, int y, int left, int right, int top, int bottom,
+                boolean xFlip, boolean yFlip, double angle, double alpha, Filter filter) {
+            log(x, y);
+        }
+        
+        @Override
+        public void draw(Graphics g, int x, int y, int left, int right, int top, int bottom,
+                double scale, boolean xFlip, boolean yFlip, double alpha, Filter filter) {
+            log(x, y);
+        }
+        
+    }
+    
+    private List<String> draw(TileGrid grid, int left, int right, int top, int bottom) {
+        log.clear();
+        graphics.setWorldClip(left, top, right - left, bottom - top);
+        grid.draw(graphics, 3, 5);
+        return new ArrayList<>(log);
+    }
+    
+    @Test
+    public void chunksDrawInTheSameOrder() {
+        Random random = new Random(0);
+        Probe[] probes = {new Probe("A"), new Probe("B"), new Probe("C")};
+        TileGrid grid = new ArrayTileGrid(-7, 30, -5, 25, 16, 16);
+        for (int column = grid.getLeftmostColumn(); column <= grid.getRightmostColumn(); column++) {
+            for (int row = grid.getTopmostRow(); row <= grid.getBottommostRow(); row++) {
+                int kind = random.nextInt(5);
+                grid.setTile(column, row, (kind < probes.length ? probes[kind]
+                        : (kind == probes.length ? Sprite.BLANK : null)));
+            }
+        }
+        for (int trial = 0; trial < 100; trial++) {
+            int left = random.nextInt(700) - 200;
+            int right = left + random.nextInt(400);
+            int top = random.nextInt(600) - 150;
+            int bottom = top + random.nextInt(300);
+            grid.setChunkSize(0);
+            List<String> expected = draw(grid, left, right, top, bottom);
+            grid.setChunkSize(1 + random.nextInt(12));
+            assertEquals(expected, draw(grid, left, right, top, bottom));
+            //Drawing again uses the chunks already baked
+            assertEquals(expected, draw(grid, left, right, top, bottom));
+        }
+        grid.setChunkSize(0);
+        assertFalse(draw(grid, 0, 200, 0, 200).isEmpty());
+    }
+    
+}
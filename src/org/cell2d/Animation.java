@@ -39,7 +39,10 @@ public class Animation implements Animatable {
     public static final Animation BLANK = new Animation();
     
     private final Animatable[] frames;
-    private final long[] frameDurations;
+    //Read directly by AnimationGroups, which never modify it
+    final long[] frameDurations;
+    //The frames as Sprites if this Animation is level 1, and otherwise null; shared by AnimationGroups
+    final Sprite[] spriteFrames;
     private final boolean[][] compatibilities;
     private final int level;
     
@@ -51,6 +54,8 @@ public class Animation implements Animatable {
         compatibilities = new boolean[1][1];
         compatibilities[0][0] = true;
         level = 1;
+        spriteFrames = new Sprite[1];
+        spriteFrames[0] = Sprite.BLANK;
     }
     
     private static Animatable[] arrayOf(Animatable animatable) {
@@ -122,6 +127,14 @@ public class Animation implements Animatable {
             }
         }
         level = maxLevel + 1;
+        if (level == 1) {
+            spriteFrames = new Sprite[this.frames.length];
+            for (int i = 0; i < this.frames.length; i++) {
+                spriteFrames[i] = (this.frames[i] instanceof Sprite ? (Sprite)this.frames[i] : Sprite.BLANK);
+            }
+        } else {
+            spriteFrames = null;
+        }
     }
     
     private static Animatable[] spriteSheetToFrames(
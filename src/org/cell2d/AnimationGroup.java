@@ -0,0 +1,320 @@
+package org.cell2d;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * An AnimationGroup holds the indices, index changes, speeds, and time factors
+ * of a GameState's AnimationInstances of the same Animation in packed arrays,
+ * one slot per AnimationInstance, so that the GameState can update all of its
+ * instances of the Animation in one tight loop. An AnimationInstance's data is
+ * in its GameState's group for its Animation while it is assigned to a
+ * GameState, and in arrays of its own otherwise; either way, the
+ * AnimationInstance refers directly to the arrays that hold it. Removing an
+ * AnimationInstance moves the group's last AnimationInstance into its slot.
+ * 
+ * The durations and Sprites of the Animation's top-level frames are read from
+ * the arrays that the Animation keeps of them, so instances of level 1
+ * Animations with positive speeds, by far the most common kind, are advanced
+ * without any calls to the Animation.
+ */
+ 
+/**
+ * @author Alex Heyman
+ */
+class AnimationGroup {
+    
+    /*
+     * A task that advances the AnimationInstances in a range of slots. Each
+     * AnimationGroup keeps its tasks from frame to frame, so updating in
+     * parallel allocates nothing once enough tasks have been made.
+     */
+    private class UpdateTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private int start, end;
+        
+        @Override
+        protected final void compute() {
+            update(taskTimeFactor, start, end);
+        }
+        
+    }
+    
+    final Animation animation;
+    final int level;
+    private final int numFrames;
+    private final long[] frameDurations;
+    //The top-level frames, if they are Sprites
+    private final Sprite[] sprites;
+    private final List<UpdateTask> tasks = new ArrayList<>();
+    //The GameState's effective time factor for the frame that the tasks are being run in
+    private long taskTimeFactor = 0;
+    private int size = 0;
+    private AnimationInstance[] instances;
+    //For each AnimationInstance, one entry per level, starting from level 0
+    int[] indices;
+    long[] indexChanges;
+    long[] speeds;
+    //For each AnimationInstance, one entry
+    long[] timeFactors;
+    
+    AnimationGroup(Animation animation, int capacity) {
+        this.animation = animation;
+        level = animation.getLevel();
+        numFrames = animation.getNumFrames();
+        frameDurations = animation.frameDurations;
+        sprites = animation.spriteFrames;
+        capacity = Math.max(capacity, 1);
+        instances = new AnimationInstance[capacity];
+        indices = new int[capacity*level];
+        indexChanges = new long[capacity*level];
+        speeds = new long[capacity*level];
+        timeFactors = new long[capacity];
+    }
+    
+    final int size() {
+        return size;
+    }
+    
+    private void grow() {
+        int capacity = instances.length*2;
+        AnimationInstance[] newInstances = new AnimationInstance[capacity];
+        System.arraycopy(instances, 0, newInstances, 0, size);
+        instances = newInstances;
+        int[] newIndices = new int[capacity*level];
+        System.arraycopy(indices, 0, newIndices, 0, size*level);
+        indices = newIndices;
+        long[] newIndexChanges = new long[capacity*level];
+        System.arraycopy(indexChanges, 0, newIndexChanges, 0, size*level);
+        indexChanges = newIndexChanges;
+        long[] newSpeeds = new long[capacity*level];
+        System.arraycopy(speeds, 0, newSpeeds, 0, size*level);
+        speeds = newSpeeds;
+        long[] newTimeFactors = new long[capacity];
+        System.arraycopy(timeFactors, 0, newTimeFactors, 0, size);
+        timeFactors = newTimeFactors;
+        for (int slot = 0; slot < size; slot++) {
+            attach(instances[slot], slot);
+        }
+    }
+    
+    //Points the specified AnimationInstance at its data in the specified slot of this group's arrays
+    private void attach(AnimationInstance instance, int slot) {
+        instance.group = this;
+        instance.slot = slot;
+        instance.indices = indices;
+        instance.indexChanges = indexChanges;
+        instance.speeds = speeds;
+        instance.timeFactors = timeFactors;
+    }
+    
+    /*
+     * Moves the specified AnimationInstance's data from wherever it is now
+     * into this group.
+     */
+    final void moveIn(AnimationInstance instance) {
+        AnimationGroup oldGroup = instance.group;
+        if (oldGroup == this) {
+            return;
+        }
+        int oldSlot = instance.slot;
+        if (size == instances.length) {
+            grow();
+        }
+        int slot = size;
+        instances[slot] = instance;
+        System.arraycopy(instance.indices, oldSlot*level, indices, slot*level, level);
+        System.arraycopy(instance.indexChanges, oldSlot*level, indexChanges, slot*level, level);
+        System.arraycopy(instance.speeds, oldSlot*level, speeds, slot*level, level);
+        timeFactors[slot] = instance.timeFactors[oldSlot];
+        size++;
+        if (oldGroup != null) {
+            oldGroup.remove(oldSlot);
+        }
+        attach(instance, slot);
+    }
+    
+    /*
+     * Moves the specified AnimationInstance's data out of this group and back
+     * into the AnimationInstance's own arrays.
+     */
+    final void moveOut(AnimationInstance instance) {
+        int slot = instance.slot;
+        instance.detach();
+        System.arraycopy(indices, slot*level, instance.indices, 0, level);
+        System.arraycopy(indexChanges, slot*level, instance.indexChanges, 0, level);
+        System.arraycopy(speeds, slot*level, instance.speeds, 0, level);
+        instance.timeFactors[0] = timeFactors[slot];
+        remove(slot);
+    }
+    
+    private void remove(int slot) {
+        size--;
+        if (slot != size) {
+            AnimationInstance moved = instances[size];
+            instances[slot] = moved;
+            System.arraycopy(indices, size*level, indices, slot*level, level);
+            System.arraycopy(indexChanges, size*level, indexChanges, slot*level, level);
+            System.arraycopy(speeds, size*level, speeds, slot*level, level);
+            timeFactors[slot] = timeFactors[size];
+            moved.slot = slot;
+        }
+        instances[size] = null;
+    }
+    
+    /*
+     * Returns the Sprite specified by the indices of the AnimationInstance of
+     * the specified Animation whose data is in the specified slot of the
+     * specified array.
+     */
+    static Sprite getSprite(Animation animation, int[] indices, int slot) {
+        int level = animation.getLevel();
+        int base = slot*level;
+        Animatable frame = animation;
+        for (int i = level - 1; i >= 0; i--) {
+            frame = frame.getFrame(indices[base + i]);
+            if (frame instanceof Sprite) {
+                return (Sprite)frame;
+            }
+        }
+        return Sprite.BLANK;
+    }
+    
+    /*
+     * Sets the index at the specified level of the AnimationInstance whose data
+     * is in the specified slot of the specified arrays, which have the
+     * specified number of levels per slot, and returns the new frame's
+     * duration.
+     */
+    static long setIndex(int[] indices, long[] indexChanges, int slot, int numLevels,
+            int level, Animatable frame, int index, boolean resetLowerIndices) {
+        int base = slot*numLevels;
+        int length = frame.getNumFrames();
+        index %= length;
+        if (index < 0) {
+            index += length;
+        }
+        if (level > 0 && (resetLowerIndices || !frame.framesAreCompatible(indices[base + level], index))) {
+            for (int i = level - 1; i >= 0; i--) {
+                indices[base + i] = 0;
+                indexChanges[base + i] = 0;
+            }
+        }
+        indices[base + level] = index;
+        return frame.getFrameDuration(index);
+    }
+    
+    /*
+     * Advances the AnimationInstances in the specified range of slots by the
+     * time they experience in one frame, given their GameState's effective
+     * time factor. AnimationInstances in different slots share no data, so
+     * disjoint ranges may be updated on different threads at once.
+     */
+    final void update(long stateTimeFactor, int start, int end) {
+        for (int slot = start; slot < end; slot++) {
+            long timeToRun = timeFactors[slot];
+            if (timeToRun < 0) {
+                timeToRun = stateTimeFactor;
+            }
+            if (timeToRun == 0) {
+                continue;
+            }
+            if (level == 1 && speeds[slot] > 0) {
+                int index = indices[slot];
+                long duration = frameDurations[index];
+                if (duration <= 0) {
+                    continue;
+                }
+                long change = indexChanges[slot] + Frac.mul(timeToRun, speeds[slot]);
+                if (change >= duration) {
+                    do {
+                        change -= duration;
+                        index++;
+                        if (index == numFrames) {
+                            index = 0;
+                        }
+                        duration = frameDurations[index];
+                        if (duration <= 0) {
+                            change = 0;
+                            break;
+                        }
+                    } while (change >= duration);
+                    indices[slot] = index;
+                    instances[slot].currentSprite = sprites[index];
+                }
+                indexChanges[slot] = change;
+            } else {
+                updateSlot(slot, timeToRun);
+            }
+        }
+    }
+    
+    /*
+     * Adds to the specified list tasks that together advance all of this
+     * group's AnimationInstances, each task covering at most the specified
+     * number of them. The tasks must all finish before this method is called
+     * again.
+     */
+    final void addTasks(long stateTimeFactor, int taskSize, List<ForkJoinTask<?>> list) {
+        taskTimeFactor = stateTimeFactor;
+        int numTasks = 0;
+        for (int start = 0; start < size; start += taskSize) {
+            if (numTasks == tasks.size()) {
+                tasks.add(new UpdateTask());
+            }
+            UpdateTask task = tasks.get(numTasks);
+            task.reinitialize();
+            task.start = start;
+            task.end = Math.min(start + taskSize, size);
+            list.add(task);
+            numTasks++;
+        }
+    }
+    
+    private void updateSlot(int slot, long timeToRun) {
+        int base = slot*level;
+        boolean spriteChanged = false;
+        Animatable frame = animation;
+        for (int i = level - 1; i >= 0; i--) {
+            int j = base + i;
+            if (speeds[j] != 0) {
+                long duration = frame.getFrameDuration(indices[j]);
+                if (duration > 0) {
+                    indexChanges[j] += Frac.mul(timeToRun, speeds[j]);
+                    if (speeds[j] > 0) {
+                        while (indexChanges[j] >= duration) {
+                            spriteChanged = true;
+                            indexChanges[j] -= duration;
+                            duration = setIndex(indices, indexChanges, slot, level,
+                                    i, frame, indices[j] + 1, false);
+                            if (duration <= 0) {
+                                indexChanges[j] = 0;
+                                break;
+                            }
+                        }
+                    } else {
+                        while (indexChanges[j] < 0) {
+                            spriteChanged = true;
+                            duration = setIndex(indices, indexChanges, slot, level,
+                                    i, frame, indices[j] - 1, false);
+                            if (duration <= 0) {
+                                indexChanges[j] = 0;
+                                break;
+                            }
+                            indexChanges[j] -= duration;
+                        }
+                    }
+                }
+            }
+            frame = frame.getFrame(indices[j]);
+        }
+        if (spriteChanged) {
+            instances[slot].currentSprite = getSprite(animation, indices, slot);
+        }
+    }
+    
+}
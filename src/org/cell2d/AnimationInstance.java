@@ -50,21 +50,35 @@ public class AnimationInstance implements Drawable {
     
     private final boolean blank;
     GameState state = null;
-    private long timeFactor = -1;
     private final Animation animation;
     private final int level;
-    private final int[] indices;
-    private final long[] indexChanges;
-    private final long[] speeds;
-    private Sprite currentSprite;
+    /*
+     * This AnimationInstance's indices, index changes, speeds, and time factor
+     * are kept in a slot of these arrays. While it is assigned to a GameState,
+     * they are the arrays of its GameState's AnimationGroup for its Animation,
+     * shared with that GameState's other instances of the Animation; otherwise,
+     * they are this AnimationInstance's own, and the slot is 0.
+     */
+    AnimationGroup group = null;
+    int slot = 0;
+    int[] indices;
+    long[] indexChanges;
+    long[] speeds;
+    long[] timeFactors;
+    private final int[] ownIndices;
+    private final long[] ownIndexChanges;
+    private final long[] ownSpeeds;
+    private final long[] ownTimeFactor = {-1};
+    Sprite currentSprite;
     
     private AnimationInstance() {
         blank = true;
         this.animation = Animation.BLANK;
         level = 1;
-        indices = new int[1];
-        indexChanges = new long[1];
-        speeds = new long[1];
+        ownIndices = new int[level];
+        ownIndexChanges = new long[level];
+        ownSpeeds = new long[level];
+        detach();
         currentSprite = Sprite.BLANK;
     }
     
@@ -77,22 +91,25 @@ public class AnimationInstance implements Drawable {
         blank = false;
         this.animation = animation;
         level = animation.getLevel();
-        indices = new int[level];
-        indexChanges = new long[level];
-        speeds = new long[level];
+        ownIndices = new int[level];
+        ownIndexChanges = new long[level];
+        ownSpeeds = new long[level];
+        detach();
         updateCurrentSprite();
     }
     
+    //Points this AnimationInstance at its own arrays, to which its data must then be copied
+    final void detach() {
+        group = null;
+        slot = 0;
+        indices = ownIndices;
+        indexChanges = ownIndexChanges;
+        speeds = ownSpeeds;
+        timeFactors = ownTimeFactor;
+    }
+    
     private void updateCurrentSprite() {
-        Animatable frame = animation;
-        for (int i = indices.length - 1; i >= 0; i--) {
-            frame = frame.getFrame(indices[i]);
-            if (frame instanceof Sprite) {
-                currentSprite = (Sprite)frame;
-                return;
-            }
-        }
-        currentSprite = Sprite.BLANK;
+        currentSprite = AnimationGroup.getSprite(animation, indices, slot);
     }
     
     /**
@@ -136,7 +153,7 @@ public class AnimationInstance implements Drawable {
      * @return This AnimationInstance's time factor
      */
     public final long getTimeFactor() {
-        return timeFactor;
+        return timeFactors[slot];
     }
     
     /**
@@ -146,6 +163,7 @@ public class AnimationInstance implements Drawable {
      * @return This AnimationInstance's effective time factor
      */
     public final long getEffectiveTimeFactor() {
+        long timeFactor = timeFactors[slot];
         return (state == null ? 0 : (timeFactor < 0 ? state.getEffectiveTimeFactor() : timeFactor));
     }
     
@@ -156,7 +174,7 @@ public class AnimationInstance implements Drawable {
      */
     public final AnimationInstance setTimeFactor(long timeFactor) {
         if (!blank) {
-            this.timeFactor = timeFactor;
+            timeFactors[slot] = timeFactor;
         }
         return this;
     }
@@ -177,11 +195,11 @@ public class AnimationInstance implements Drawable {
      * this AnimationInstance
      */
     public final int getIndex(int level) {
-        if (level < 0 || level >= indices.length) {
+        if (level < 0 || level >= this.level) {
             throw new IndexOutOfBoundsException("Attempted to get an AnimationInstance's index at invalid"
                     + " level " + level);
         }
-        return indices[level];
+        return indices[slot*this.level + level];
     }
     
     /**
@@ -190,23 +208,7 @@ public class AnimationInstance implements Drawable {
      * @return This AnimationInstance's current index at its highest level
      */
     public final int getIndex() {
-        return indices[indices.length - 1];
-    }
-    
-    private long setIndex(int level, Animatable frame, int index, boolean resetLowerIndices) {
-        int length = frame.getNumFrames();
-        index %= length;
-        if (index < 0) {
-            index += length;
-        }
-        if (level > 0 && (resetLowerIndices || !frame.framesAreCompatible(indices[level], index))) {
-            for (int i = level - 1; i >= 0; i--) {
-                indices[i] = 0;
-                indexChanges[i] = 0;
-            }
-        }
-        indices[level] = index;
-        return frame.getFrameDuration(index);
+        return indices[slot*level + level - 1];
     }
     
     /**
@@ -223,22 +225,24 @@ public class AnimationInstance implements Drawable {
      * specified level
      */
     public final AnimationInstance setIndex(int level, int index, boolean resetLowerIndices) {
-        if (level < 0 || level >= indices.length) {
+        if (level < 0 || level >= this.level) {
             throw new IndexOutOfBoundsException("Attempted to set an AnimationInstance's index at invalid"
                     + " level " + level);
         }
         if (!blank) {
+            int base = slot*this.level;
             Animatable frame = animation;
-            for (int i = indices.length - 1; i > level; i--) {
+            for (int i = this.level - 1; i > level; i--) {
                 try {
-                    frame = frame.getFrame(indices[i]);
+                    frame = frame.getFrame(indices[base + i]);
                 } catch (IndexOutOfBoundsException e) {
                     throw new IndexOutOfBoundsException("Attempted to set an AnimationInstance's index to a"
                             + " value (" + index + ") that is invalid at the relevant level (" + level + ")");
                 }
             }
-            setIndex(level, frame, index, resetLowerIndices);
-            indexChanges[level] = 0;
+            AnimationGroup.setIndex(indices, indexChanges, slot, this.level,
+                    level, frame, index, resetLowerIndices);
+            indexChanges[base + level] = 0;
             updateCurrentSprite();
         }
         return this;
@@ -267,7 +271,7 @@ public class AnimationInstance implements Drawable {
      * @throws IndexOutOfBoundsException if the specified index is out of range
      */
     public final AnimationInstance setIndex(int index) {
-        return setIndex(indices.length - 1, index, true);
+        return setIndex(level - 1, index, true);
     }
     
     /**
@@ -279,11 +283,11 @@ public class AnimationInstance implements Drawable {
      * this AnimationInstance
      */
     public final long getSpeed(int level) {
-        if (level < 0 || level >= speeds.length) {
+        if (level < 0 || level >= this.level) {
             throw new IndexOutOfBoundsException("Attempted to get an AnimationInstance's speed at invalid"
                     + " level " + level);
         }
-        return speeds[level];
+        return speeds[slot*this.level + level];
     }
     
     /**
@@ -292,7 +296,7 @@ public class AnimationInstance implements Drawable {
      * @return This AnimationInstance's speed at its highest level
      */
     public final long getSpeed() {
-        return speeds[speeds.length - 1];
+        return speeds[slot*level + level - 1];
     }
     
     /**
@@ -305,12 +309,12 @@ public class AnimationInstance implements Drawable {
      * this AnimationInstance
      */
     public final AnimationInstance setSpeed(int level, long speed) {
-        if (level < 0 || level >= speeds.length) {
+        if (level < 0 || level >= this.level) {
             throw new IndexOutOfBoundsException("Attempted to set an AnimationInstance's speed at invalid"
                     + " level " + level);
         }
         if (!blank) {
-            speeds[level] = speed;
+            speeds[slot*this.level + level] = speed;
         }
         return this;
     }
@@ -324,56 +328,11 @@ public class AnimationInstance implements Drawable {
      */
     public final AnimationInstance setSpeed(long speed) {
         if (!blank) {
-            speeds[indices.length - 1] = speed;
+            speeds[slot*level + level - 1] = speed;
         }
         return this;
     }
     
-    final void update() {
-        if (blank) {
-            return;
-        }
-        long timeToRun = getEffectiveTimeFactor();
-        if (timeToRun == 0) {
-            return;
-        }
-        boolean spriteChanged = false;
-        Animatable frame = animation;
-        for (int i = indices.length - 1; i >= 0; i--) {
-            if (speeds[i] != 0) {
-                long duration = frame.getFrameDuration(indices[i]);
-                if (duration > 0) {
-                    indexChanges[i] += Frac.mul(timeToRun, speeds[i]);
-                    if (speeds[i] > 0) {
-                        while (indexChanges[i] >= duration) {
-                            spriteChanged = true;
-                            indexChanges[i] -= duration;
-                            duration = setIndex(i, frame, indices[i] + 1, false);
-                            if (duration <= 0) {
-                                indexChanges[i] = 0;
-                                break;
-                            }
-                        }
-                    } else {
-                        while (indexChanges[i] < 0) {
-                            spriteChanged = true;
-                            duration = setIndex(i, frame, indices[i] - 1, false);
-                            if (duration <= 0) {
-                                indexChanges[i] = 0;
-                                break;
-                            }
-                            indexChanges[i] -= duration;
-                        }
-                    }
-                }
-            }
-            frame = frame.getFrame(indices[i]);
-        }
-        if (spriteChanged) {
-            updateCurrentSprite();
-        }
-    }
-    
     @Override
     public final void draw(Graphics g, int x, int y) {
         currentSprite.draw(g, x, y);
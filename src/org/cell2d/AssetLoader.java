@@ -0,0 +1,503 @@
+package org.cell2d;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import org.cell2d.celick.DecodedImage;
+import org.cell2d.celick.Image;
+import org.cell2d.celick.ImageBuffer;
+import org.cell2d.celick.SlickException;
+
+/**
+ * <p>An AssetLoader loads assets without making the thread that runs its
+ * CellGame wait for them. It reads and decodes the image and audio files of
+ * the Sprites, SpriteSheets, TextureAtlases, Sounds, and Music tracks added to
+ * it on the threads of an Executor, applying there any of their Filters that
+ * are PixelFilters, and leaves to the CellGame's thread only the final uploads
+ * of the decoded data to textures and audio buffers. Those uploads happen in
+ * calls to update(), each of which does only as many of them as fit in a
+ * specified amount of time, so the CellGame can keep rendering frames while
+ * the assets load. An AssetLoader can also be given to a CellGame with
+ * setInitLoader() to finish loading before the CellGame enters its first
+ * GameState, while the CellGame displays its loading visuals.</p>
+ * 
+ * <p>Some assets cannot be decoded separately from the thread that uploads
+ * them: Sprites that are part of SpriteSheets or TextureAtlases, Sprites and
+ * SpriteSheets created by applying Filters to others, and Loadables of other
+ * classes. update() loads these in the ordinary way, each as one upload, after
+ * it has uploaded all of the assets that were decoded in the background, so
+ * an asset that one of them depends on can be loaded in the background if it
+ * is also added. An asset that is already loaded by the time update() reaches
+ * it is left as it is.</p>
+ * 
+ * <p>Decoding involves no graphics or audio, so an AssetLoader's decoding of
+ * its assets, which can be waited for with awaitDecoding(), can be done
+ * without a program window, such as in automated tests. A TextureAtlas must
+ * not have Sprites or SpriteSheets added to it while an AssetLoader is
+ * decoding it.</p>
+ * @see Loadable
+ * @see PixelFilter
+ * @author Alex Heyman
+ */
+public class AssetLoader {
+    
+    private abstract class Job implements Runnable {
+        
+        private Exception failure = null;
+        
+        @Override
+        public final void run() {
+            try {
+                decode();
+            } catch (Exception e) {
+                failure = e;
+            }
+            finishDecoding(this);
+        }
+        
+        abstract void decode() throws IOException;
+        
+        private void finishUpload() {
+            if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+            upload();
+        }
+        
+        abstract void upload();
+        
+    }
+    
+    private abstract class ImageJob extends Job {
+        
+        private final Loadable asset;
+        private final String path;
+        private final Color transColor;
+        private final Set<Filter> filters;
+        private DecodedImage decodedImage = null;
+        private final Map<Filter,ImageBuffer> filteredBuffers = new HashMap<>();
+        
+        private ImageJob(Loadable asset, String path, Color transColor, Set<Filter> filters) {
+            this.asset = asset;
+            this.path = path;
+            this.transColor = transColor;
+            this.filters = filters;
+        }
+        
+        @Override
+        final void decode() throws IOException {
+            decodedImage = new DecodedImage(path, false, transColor);
+            applyPixelFilters(decodedImage, filters, filteredBuffers);
+        }
+        
+        @Override
+        final void upload() {
+            if (!asset.isLoaded()) {
+                Map<Filter,Image> filteredImages = new HashMap<>();
+                Image image = uploadDecoded(decodedImage, filteredBuffers, filteredImages);
+                load(image, filteredImages);
+            }
+            decodedImage = null;
+            filteredBuffers.clear();
+        }
+        
+        abstract void load(Image image, Map<Filter,Image> filteredImages);
+        
+    }
+    
+    /*
+     * Puts into filteredBuffers the result of applying each of the specified
+     * Filters that is a PixelFilter to the decoded pixels of the specified
+     * DecodedImage.
+     */
+    private static void applyPixelFilters(DecodedImage decodedImage, Set<Filter> filters,
+            Map<Filter,ImageBuffer> filteredBuffers) {
+        int[] pixels = null;
+        int width = decodedImage.getWidth();
+        int height = decodedImage.getHeight();
+        for (Filter filter : filters) {
+            if (filter instanceof PixelFilter) {
+                if (pixels == null) {
+                    pixels = decodedImage.getPixels();
+                }
+                ImageBuffer buffer = new ImageBuffer(width, height);
+                buffer.setPixels(((PixelFilter)filter).getFilteredPixels(pixels.clone(), width, height));
+                filteredBuffers.put(filter, buffer);
+            }
+        }
+    }
+    
+    /*
+     * Uploads the specified DecodedImage and the filtered pixels made from it,
+     * puts the Images of the filtered pixels into filteredImages, and returns
+     * the Image of the DecodedImage.
+     */
+    private static Image uploadDecoded(DecodedImage decodedImage, Map<Filter,ImageBuffer> filteredBuffers,
+            Map<Filter,Image> filteredImages) {
+        Image image;
+        try {
+            image = decodedImage.getImage(Image.FILTER_NEAREST);
+        } catch (SlickException e) {
+            throw new RuntimeException(e);
+        }
+        for (Map.Entry<Filter,ImageBuffer> entry : filteredBuffers.entrySet()) {
+            filteredImages.put(entry.getKey(), image.getCopyWithPixels(entry.getValue()));
+        }
+        return image;
+    }
+    
+    /*
+     * Loads the image file at the specified path on the calling thread, which
+     * must be the CellGame's. If any of the specified Filters are
+     * PixelFilters, the file is decoded first and they are applied to its
+     * decoded pixels, so that they don't have to read the pixels back from its
+     * texture, and the Images of their results are put into filteredImages.
+     * Returns the unfiltered Image.
+     */
+    static Image loadImage(String path, Color transColor, Set<Filter> filters, Map<Filter,Image> filteredImages) {
+        boolean hasPixelFilter = false;
+        for (Filter filter : filters) {
+            if (filter instanceof PixelFilter) {
+                hasPixelFilter = true;
+                break;
+            }
+        }
+        if (!hasPixelFilter) {
+            try {
+                return new Image(path, false, Image.FILTER_NEAREST, transColor);
+            } catch (SlickException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        DecodedImage decodedImage;
+        try {
+            decodedImage = new DecodedImage(path, false, transColor);
+        } catch (IOException e) {
+            throw new RuntimeException(new SlickException("Failed to load image from: " + path, e));
+        }
+        Map<Filter,ImageBuffer> filteredBuffers = new HashMap<>();
+        applyPixelFilters(decodedImage, filters, filteredBuffers);
+        return uploadDecoded(decodedImage, filteredBuffers, filteredImages);
+    }
+    
+    private class SpriteJob extends ImageJob {
+        
+        private final Sprite sprite;
+        
+        private SpriteJob(Sprite sprite) {
+            super(sprite, sprite.getPath(), sprite.getTransColor(), sprite.getFilters());
+            this.sprite = sprite;
+        }
+        
+        @Override
+        final void load(Image image, Map<Filter,Image> filteredImages) {
+            sprite.load(image, filteredImages);
+        }
+        
+    }
+    
+    private class SpriteSheetJob extends ImageJob {
+        
+        private final SpriteSheet spriteSheet;
+        
+        private SpriteSheetJob(SpriteSheet spriteSheet) {
+            super(spriteSheet, spriteSheet.getPath(), spriteSheet.getTransColor(), spriteSheet.getFilters());
+            this.spriteSheet = spriteSheet;
+        }
+        
+        @Override
+        final void load(Image image, Map<Filter,Image> filteredImages) {
+            spriteSheet.load(image, filteredImages);
+        }
+        
+    }
+    
+    private class AtlasJob extends Job {
+        
+        private final TextureAtlas atlas;
+        private int[][] pages = null;
+        
+        private AtlasJob(TextureAtlas atlas) {
+            this.atlas = atlas;
+        }
+        
+        @Override
+        final void decode() {
+            pages = atlas.getPagePixels();
+        }
+        
+        @Override
+        final void upload() {
+            atlas.load(pages);
+            pages = null;
+        }
+        
+    }
+    
+    private class SoundJob extends Job {
+        
+        private final Sound sound;
+        private Audio.Decoded decoded = null;
+        
+        private SoundJob(Sound sound) {
+            this.sound = sound;
+        }
+        
+        @Override
+        final void decode() throws IOException {
+            decoded = Audio.decode(sound.getPath());
+        }
+        
+        @Override
+        final void upload() {
+            sound.load(decoded);
+            decoded = null;
+        }
+        
+    }
+    
+    private class MusicJob extends Job {
+        
+        private final Music music;
+        private Audio.Decoded decoded = null;
+        
+        private MusicJob(Music music) {
+            this.music = music;
+        }
+        
+        @Override
+        final void decode() throws IOException {
+            decoded = Audio.decode(music.getPath());
+        }
+        
+        @Override
+        final void upload() {
+            music.load(decoded);
+            decoded = null;
+        }
+        
+    }
+    
+    private class LoadJob extends Job {
+        
+        private final Loadable asset;
+        
+        private LoadJob(Loadable asset) {
+            this.asset = asset;
+        }
+        
+        @Override
+        final void decode() {}
+        
+        @Override
+        final void upload() {
+            asset.load();
+        }
+        
+    }
+    
+    private final Executor executor;
+    private final Object lock = new Object();
+    //Jobs that have finished decoding, in the order they finished
+    private final Queue<Job> decodedJobs = new ConcurrentLinkedQueue<>();
+    //Jobs that update() does all at once after all of the decoded ones
+    private final Queue<Job> loadJobs = new ArrayDeque<>();
+    private int numAssets = 0;
+    private int numDecodeJobs = 0;
+    private int numDecoded = 0; //Guarded by lock
+    private Exception decodeFailure = null; //Guarded by lock
+    private int numDecodedUploaded = 0;
+    private int numUploaded = 0;
+    
+    /**
+     * Constructs an AssetLoader that decodes its assets on the threads of the
+     * specified Executor.
+     * @param executor The Executor on which to decode assets
+     */
+    public AssetLoader(Executor executor) {
+        if (executor == null) {
+            throw new RuntimeException("Attempted to construct an AssetLoader with no Executor");
+        }
+        this.executor = executor;
+    }
+    
+    /**
+     * Returns the Executor on whose threads this AssetLoader decodes its
+     * assets.
+     * @return This AssetLoader's Executor
+     */
+    public final Executor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * Adds the specified asset to this AssetLoader's assets to load, and
+     * starts decoding it in the background if possible.
+     * @param asset The asset to add
+     */
+    public final void add(Loadable asset) {
+        Job job = null;
+        if (asset instanceof Sprite) {
+            Sprite sprite = (Sprite)asset;
+            if (sprite.getAtlas() == null && sprite.getSpriteSheet() == null && sprite.getPath() != null) {
+                job = new SpriteJob(sprite);
+            }
+        } else if (asset instanceof SpriteSheet) {
+            SpriteSheet spriteSheet = (SpriteSheet)asset;
+            if (spriteSheet.getAtlas() == null && spriteSheet.getPath() != null) {
+                job = new SpriteSheetJob(spriteSheet);
+            }
+        } else if (asset instanceof TextureAtlas) {
+            job = new AtlasJob((TextureAtlas)asset);
+        } else if (asset instanceof Sound) {
+            job = new SoundJob((Sound)asset);
+        } else if (asset instanceof Music) {
+            Music music = (Music)asset;
+            if (music.getPath() != null) {
+                job = new MusicJob(music);
+            }
+        }
+        numAssets++;
+        if (job == null) {
+            loadJobs.add(new LoadJob(asset));
+            return;
+        }
+        synchronized (lock) {
+            numDecodeJobs++;
+        }
+        executor.execute(job);
+    }
+    
+    /**
+     * Adds all of the specified assets to this AssetLoader's assets to load,
+     * and starts decoding them in the background if possible.
+     * @param assets The assets to add
+     */
+    public final void add(Loadable... assets) {
+        for (Loadable asset : assets) {
+            add(asset);
+        }
+    }
+    
+    private void finishDecoding(Job job) {
+        decodedJobs.add(job);
+        synchronized (lock) {
+            numDecoded++;
+            if (job.failure != null && decodeFailure == null) {
+                decodeFailure = job.failure;
+            }
+            lock.notifyAll();
+        }
+    }
+    
+    /**
+     * Returns the number of assets that have been added to this AssetLoader.
+     * @return The number of assets that have been added to this AssetLoader
+     */
+    public final int getNumAssets() {
+        return numAssets;
+    }
+    
+    /**
+     * Returns the number of this AssetLoader's assets that have finished
+     * decoding, including those that will not be decoded in the background.
+     * @return The number of this AssetLoader's assets that have finished
+     * decoding
+     */
+    public final int getNumDecoded() {
+        synchronized (lock) {
+            return numAssets - numDecodeJobs + numDecoded;
+        }
+    }
+    
+    /**
+     * Returns the number of this AssetLoader's assets that update() has
+     * finished loading.
+     * @return The number of this AssetLoader's assets that have been loaded
+     */
+    public final int getNumLoaded() {
+        return numUploaded;
+    }
+    
+    /**
+     * Returns how much of the work of loading its assets this AssetLoader has
+     * done, as a number from 0 to 1. Decoding and uploading each count as half
+     * of the work of loading an asset. An AssetLoader with no assets counts as
+     * having done all of its work.
+     * @return How much of its work this AssetLoader has done
+     */
+    public final double getProgress() {
+        if (numAssets == 0) {
+            return 1;
+        }
+        return (getNumDecoded() + numUploaded)/(2.0*numAssets);
+    }
+    
+    /**
+     * Returns whether this AssetLoader has finished loading all of its assets.
+     * @return Whether this AssetLoader has finished loading all of its assets
+     */
+    public final boolean isFinished() {
+        return numUploaded == numAssets;
+    }
+    
+    /**
+     * Blocks the current thread until all of this AssetLoader's assets that
+     * are being decoded in the background have finished decoding. This
+     * requires no graphics or audio, so it can be used to test decoding
+     * without a program window.
+     * @throws InterruptedException If the current thread is interrupted while
+     * waiting
+     * @throws RuntimeException If any of the assets failed to decode
+     */
+    public final void awaitDecoding() throws InterruptedException {
+        synchronized (lock) {
+            while (numDecoded < numDecodeJobs) {
+                lock.wait();
+            }
+            if (decodeFailure != null) {
+                throw new RuntimeException(decodeFailure);
+            }
+        }
+    }
+    
+    /**
+     * Uploads as many of this AssetLoader's decoded assets as can be uploaded
+     * in the specified number of nanoseconds. At least one asset will be
+     * uploaded if one is ready, so each call makes progress even if the budget
+     * is smaller than a single upload. This method must be called on the
+     * thread that runs this AssetLoader's assets' CellGame.
+     * @param nanoBudget The number of nanoseconds that this method should try
+     * to finish in
+     * @return Whether this AssetLoader has finished loading all of its assets
+     * @throws RuntimeException If an asset that this method reached failed to
+     * decode or upload. That asset still counts as done, so later calls move
+     * on to the assets after it.
+     */
+    public final boolean update(long nanoBudget) {
+        long startTime = System.nanoTime();
+        do {
+            Job job = decodedJobs.poll();
+            if (job != null) {
+                numDecodedUploaded++;
+            } else if (numDecodedUploaded == numDecodeJobs) {
+                job = loadJobs.poll();
+            }
+            if (job == null) {
+                break;
+            }
+            try {
+                job.finishUpload();
+            } finally {
+                numUploaded++;
+            }
+        } while (System.nanoTime() - startTime < nanoBudget);
+        return isFinished();
+    }
+    
+}
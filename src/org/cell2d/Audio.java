@@ -2,6 +2,7 @@ package org.cell2d;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import org.cell2d.celick.openal.OggData;
 import org.cell2d.celick.openal.OggDecoder;
@@ -28,25 +29,57 @@ class Audio {
     private int timesSourcePlayed = -1;
     private final float length;
     
+    /*
+     * The decoded sample data of an audio file, not yet put in an OpenAL
+     * buffer. Decoding makes no OpenAL calls, so it can be done on any thread.
+     */
+    static final class Decoded {
+        
+        private final int format;
+        private final ByteBuffer data;
+        private final int rate;
+        
+        private Decoded(int format, ByteBuffer data, int rate) {
+            this.format = format;
+            this.data = data;
+            this.rate = rate;
+        }
+        
+    }
+    
+    static Decoded decode(String path) throws IOException {
+        String lowerPath = path.toLowerCase();
+        InputStream stream = ResourceLoader.getResourceAsStream(path);
+        try {
+            if (lowerPath.endsWith(".wav")) {
+                WaveData data = WaveData.create(stream);
+                if (data == null) {
+                    throw new IOException("Failed to decode an audio file: " + path);
+                }
+                return new Decoded(data.format, data.data, data.samplerate);
+            } else if (lowerPath.endsWith(".ogg")) {
+                OggData ogg = new OggDecoder().getData(stream);
+                return new Decoded(ogg.channels > 1 ? AL10.AL_FORMAT_STEREO16 : AL10.AL_FORMAT_MONO16,
+                        ogg.data, ogg.rate);
+            }
+            throw new IOException("Attempted to load an audio file with an unsupported format: " + path);
+        } finally {
+            stream.close();
+        }
+    }
+    
     Audio(String path) throws IOException {
+        this(decode(path));
+    }
+    
+    Audio(Decoded decoded) {
         if (!initialized) {
             init();
         }
         IntBuffer buf = BufferUtils.createIntBuffer(1);
         AL10.alGenBuffers(buf);
         buffer = buf.get(0);
-        String lowerPath = path.toLowerCase();
-        InputStream stream = ResourceLoader.getResourceAsStream(path);
-        if (lowerPath.endsWith(".wav")) {
-            WaveData data = WaveData.create(stream);
-            AL10.alBufferData(buffer, data.format, data.data, data.samplerate);
-        } else if (lowerPath.endsWith(".ogg")) {
-            OggData ogg = new OggDecoder().getData(stream);
-            AL10.alBufferData(buffer, ogg.channels > 1 ? AL10.AL_FORMAT_STEREO16 : AL10.AL_FORMAT_MONO16,
-                    ogg.data, ogg.rate);
-        } else {
-            throw new IOException("Attempted to load an audio file with an unsupported format: " + path);
-        }
+        AL10.alBufferData(buffer, decoded.format, decoded.data, decoded.rate);
         int bytes = AL10.alGetBufferi(buffer, AL10.AL_SIZE);
         int bits = AL10.alGetBufferi(buffer, AL10.AL_BITS);
         int channels = AL10.alGetBufferi(buffer, AL10.AL_CHANNELS);
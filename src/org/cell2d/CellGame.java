@@ -3,6 +3,7 @@ package org.cell2d;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -17,6 +18,7 @@ import org.cell2d.celick.Game;
 import org.cell2d.celick.GameContainer;
 import org.cell2d.celick.Graphics;
 import org.cell2d.celick.SlickException;
+import org.cell2d.celick.opengl.InternalTextureLoader;
 import org.cell2d.celick.opengl.renderer.Renderer;
 import org.cell2d.celick.opengl.renderer.SGL;
 import org.cell2d.celick.util.Log;
@@ -79,7 +81,14 @@ import org.lwjgl.opengl.DisplayMode;
  * the Music tracks assigned to the greatest priority in the stack will play at
  * any given time. If a currently playing Music track finishes, it will
  * automatically be removed from the top of the music stack.</p>
+ *
+ * <p>A CellGame may instead be constructed as <i>headless</i>, in which case
+ * it has no program window, input devices, or audio, and it cannot be started
+ * with startGame(). A headless CellGame is run by a HeadlessRunner, which
+ * executes its frames' game logic as fast as possible without rendering
+ * visuals, and presses and releases its commands according to a script.</p>
  * @see GameState
+ * @see HeadlessRunner
  * @see Control
  * @see Music
  * @author Alex Heyman
@@ -170,6 +179,9 @@ public abstract class CellGame {
      * @param game The CellGame to start
      */
     public static void startGame(CellGame game) {
+        if (game.headless) {
+            throw new RuntimeException("Attempted to start a headless CellGame with a program window");
+        }
         Log.info("Cell2D Version: " + VERSION);
         try {
             GameContainer container = new GameContainer(game.game);
@@ -185,8 +197,11 @@ public abstract class CellGame {
     
     private final Game game;
     private final String title;
+    private final boolean headless;
     private boolean closeRequested = false;
     private boolean loadingVisualsRendered = false;
+    private boolean initActionsTaken = false;
+    private AssetLoader initLoader = null;
     private boolean loaded = false;
     private final Map<Integer,GameState> states = new HashMap<>();
     private GameState currentState = null;
@@ -195,6 +210,8 @@ public abstract class CellGame {
     private int transitionStage = 0;
     private int transitionTimer = 0;
     private final CommandState[] commandStates;
+    //Which commands a HeadlessRunner's script is holding, each counting as one held Control
+    private final boolean[] scriptedCommandsHeld;
     private final Set<Control> controlsHeld = new HashSet<>();
     private final Map<Integer,Set<Direction>> controllerDirections = new HashMap<>();
     private List<Set<Control>> commandControls;
@@ -238,23 +255,48 @@ public abstract class CellGame {
      */
     public CellGame(String title, int numCommands, int fps,
             int screenWidth, int screenHeight, double scaleFactor, boolean fullscreen, String iconPath) {
+        this(title, numCommands, fps, screenWidth, screenHeight, scaleFactor, fullscreen, iconPath, false);
+    }
+    
+    /**
+     * Constructs a headless CellGame, which can only be run by a
+     * HeadlessRunner. Its screen is 1 pixel by 1 pixel, since it never
+     * renders any visuals.
+     * @param title The title of this CellGame
+     * @param numCommands The total number of input commands that this CellGame
+     * needs to keep track of
+     * @param fps The number of frames that this CellGame would execute every
+     * second if it were run in real time
+     */
+    public CellGame(String title, int numCommands, int fps) {
+        this(title, numCommands, fps, 1, 1, 1, false, null, true);
+    }
+    
+    private CellGame(String title, int numCommands, int fps, int screenWidth, int screenHeight,
+            double scaleFactor, boolean fullscreen, String iconPath, boolean headless) {
         game = new CelickGame();
         this.title = title;
+        this.headless = headless;
         if (numCommands < 0) {
             throw new RuntimeException("Attempted to construct a CellGame with negative number of commands "
                     + numCommands);
         }
         commandStates = new CommandState[numCommands];
+        scriptedCommandsHeld = new boolean[numCommands];
         commandControls = new ArrayList<>(numCommands);
         for (int i = 0; i < numCommands; i++) {
             commandStates[i] = new CommandState();
             commandControls.add(new HashSet<>());
         }
         setFPS(fps);
-        try {
-            displayModes = Display.getAvailableDisplayModes();
-        } catch (LWJGLException e) {
-            throw new RuntimeException(e);
+        if (headless) {
+            displayModes = null;
+        } else {
+            try {
+                displayModes = Display.getAvailableDisplayModes();
+            } catch (LWJGLException e) {
+                throw new RuntimeException(e);
+            }
         }
         this.screenWidth = screenWidth;
         this.screenHeight = screenHeight;
@@ -271,10 +313,24 @@ public abstract class CellGame {
         closeRequested = true;
     }
     
+    final boolean isCloseRequested() {
+        return closeRequested;
+    }
+    
+    /**
+     * Returns whether this CellGame is headless, and thus can only be run by a
+     * HeadlessRunner.
+     * @return Whether this CellGame is headless
+     */
+    public final boolean isHeadless() {
+        return headless;
+    }
+    
     private void resetCommands() {
         for (CommandState commandState : commandStates) {
             commandState.reset();
         }
+        Arrays.fill(scriptedCommandsHeld, false);
         controlsHeld.clear();
         controllerDirections.clear();
     }
@@ -336,11 +392,34 @@ public abstract class CellGame {
         }
     }
     
-    private void updateInput() {
+    final void clearCommandChanges() {
         for (CommandState commandState : commandStates) {
             commandState.pressed = false;
             commandState.released = false;
         }
+    }
+    
+    final void scriptCommand(int commandNum, boolean held) {
+        if (scriptedCommandsHeld[commandNum] == held) {
+            return;
+        }
+        scriptedCommandsHeld[commandNum] = held;
+        CommandState commandState = commandStates[commandNum];
+        if (held) {
+            if (commandState.numControlsHeld == 0) {
+                commandState.pressed = true;
+            }
+            commandState.numControlsHeld++;
+        } else {
+            commandState.numControlsHeld--;
+            if (commandState.numControlsHeld == 0) {
+                commandState.released = true;
+            }
+        }
+    }
+    
+    private void updateInput() {
+        clearCommandChanges();
         Keyboard.poll();
         Mouse.poll();
         Controllers.poll();
@@ -538,6 +617,44 @@ public abstract class CellGame {
         }
     }
     
+    /*
+     * Returns without finishing only while the init loader is still loading,
+     * so a headless CellGame, which can't have one, is always initialized
+     * after one call.
+     */
+    final void initialize() {
+        if (!initActionsTaken) {
+            initActionsTaken = true;
+            initActions();
+            if (nextTransition == null) {
+                throw new RuntimeException("A CellGame did not enter any of its GameStates during"
+                        + " initialization");
+            }
+        }
+        //Give the init loader up to half of each frame until it's done
+        if (initLoader != null && !initLoader.update((long)(msPerFrame*500000))) {
+            return;
+        }
+        initLoader = null;
+        startNextTransition();
+        loaded = true;
+    }
+    
+    final boolean isInitialized() {
+        return loaded;
+    }
+    
+    final void logicUpdate() {
+        if (transitionStage == 0) {
+            currentState.stateUpdate();
+            if (nextTransition != null) {
+                startNextTransition();
+            }
+        } else {
+            updateCurrentTransition();
+        }
+    }
+    
     private class CelickGame implements Game {
         
         private CelickGame() {}
@@ -557,33 +674,22 @@ public abstract class CellGame {
                 Display.update();
                 return;
             }
+            long frameStartTime = Profiler.start();
             boolean render = true;
             if (loaded) {
                 //Do a game logic update if it's been long enough since the last one
                 msToRun += Math.min(msElapsed, msPerFrame);
                 if (msToRun >= msPerFrame) {
                     msToRun -= msPerFrame;
+                    long startTime = Profiler.start();
                     updateInput();
-                    if (transitionStage == 0) {
-                        currentState.stateUpdate();
-                        if (nextTransition != null) {
-                            startNextTransition();
-                        }
-                    } else {
-                        updateCurrentTransition();
-                    }
+                    Profiler.stop(Profiler.INPUT, startTime);
+                    logicUpdate();
                 } else {
                     render = false;
                 }
             } else if (loadingVisualsRendered) {
-                initActions();
-                if (nextTransition == null) {
-                    throw new RuntimeException("A CellGame did not enter any of its GameStates during"
-                            + " initialization");
-                } else {
-                    startNextTransition();
-                }
-                loaded = true;
+                initialize();
             } else {
                 loadLoadingAssets();
             }
@@ -595,6 +701,7 @@ public abstract class CellGame {
                 updateScreen(container);
             }
             if (render) {
+                long startTime = Profiler.start();
                 GL.glClear(SGL.GL_COLOR_BUFFER_BIT | SGL.GL_DEPTH_BUFFER_BIT);
                 g.resetTransform();
                 float scale = (float)effectiveScaleFactor;
@@ -627,8 +734,15 @@ public abstract class CellGame {
                     }
                 }
                 g.clearWorldClip();
+                Profiler.stop(Profiler.RENDER, startTime);
+                startTime = Profiler.start();
                 GL.flush();
                 Display.update();
+                Profiler.stop(Profiler.FLUSH, startTime);
+                //Let the texture cache know which textures this frame used
+                InternalTextureLoader.get().nextFrame();
+                Profiler.stop(Profiler.FRAME, frameStartTime);
+                Profiler.endFrame();
             }
         }
         
@@ -703,6 +817,40 @@ public abstract class CellGame {
         }
     }
     
+    /**
+     * Returns the AssetLoader that this CellGame is waiting for to finish
+     * loading before it enters its first GameState, or null if there is none.
+     * This is useful for displaying the AssetLoader's progress in
+     * renderLoadingVisuals().
+     * @return This CellGame's init loader
+     */
+    public final AssetLoader getInitLoader() {
+        return initLoader;
+    }
+    
+    /**
+     * Sets the AssetLoader that this CellGame will wait for to finish loading
+     * before it enters its first GameState. This method can only be called
+     * during initActions(). After initActions() returns, this CellGame will
+     * continue to render its loading visuals each frame, and give the
+     * AssetLoader up to half of each frame to upload assets, until the
+     * AssetLoader finishes. A headless CellGame cannot have an init loader,
+     * since it has no OpenGL context for the AssetLoader to upload assets to.
+     * @param initLoader The new init loader, or null if this CellGame should
+     * not wait for one
+     */
+    public final void setInitLoader(AssetLoader initLoader) {
+        if (loaded || !initActionsTaken) {
+            throw new RuntimeException("Attempted to set a CellGame's init loader outside of its"
+                    + " initActions()");
+        }
+        if (headless && initLoader != null) {
+            throw new RuntimeException("Attempted to give a headless CellGame an init loader, which needs"
+                    + " OpenGL to upload its assets");
+        }
+        this.initLoader = initLoader;
+    }
+    
     /**
      * Loads any assets that are used in renderLoadingVisuals(). This method is
      * called automatically exactly once before renderLoadingVisuals() is.
@@ -711,10 +859,11 @@ public abstract class CellGame {
     
     /**
      * Renders the visuals that this CellGame will display while its
-     * initActions() are in progress. This method is called automatically before
-     * initActions() is, so it cannot use assets that are first loaded in
-     * initActions(). Any assets used should be loaded in loadLoadingAssets()
-     * instead.
+     * initActions() are in progress, and each frame afterward while its init
+     * loader, if it has one, finishes loading. This method is called
+     * automatically before initActions() is, so it cannot use assets that are
+     * first loaded in initActions(). Any assets used should be loaded in
+     * loadLoadingAssets() instead.
      * @param g The Graphics context to which this CellGame is rendering the
      * loading visuals
      * @param x1 The x-coordinate in pixels of the screen's left edge on the
@@ -1,12 +1,11 @@
 package org.cell2d;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import org.cell2d.celick.Graphics;
 import org.cell2d.celick.Image;
-import org.cell2d.celick.SlickException;
 
 /**
  * <p>A ColorMapFilter is a Filter that uses a Map&lt;Color,Color&gt; to replace
@@ -17,12 +16,19 @@ import org.cell2d.celick.SlickException;
  * original image's pixels are left unchanged in the filtered image, and the
  * alpha values of the Map's values are irrelevant to the ColorMapFilter's
  * behavior.</p>
+ *
+ * <p>A ColorMapFilter is a PixelFilter, so an AssetLoader can apply it on a
+ * worker thread.</p>
  * @see Color
  * @author Alex Heyman
  */
-public class ColorMapFilter implements Filter {
+public class ColorMapFilter implements PixelFilter {
     
     private final Map<Color,Color> colorMap;
+    //The packed RGB values of the keys that pixels can match, in ascending order
+    private final int[] keys;
+    //The packed RGB values of the Colors that each of those keys maps to
+    private final int[] values;
     
     /**
      * Constructs a ColorMapFilter that uses a copy of the specified Map.
@@ -30,6 +36,33 @@ public class ColorMapFilter implements Filter {
      */
     public ColorMapFilter(Map<Color,Color> colorMap) {
         this.colorMap = new HashMap<>(colorMap);
+        long[] entries = new long[this.colorMap.size()];
+        int numEntries = 0;
+        for (Map.Entry<Color,Color> entry : this.colorMap.entrySet()) {
+            Color key = entry.getKey();
+            if (key.getA() != 1f) {
+                continue;
+            }
+            int r = toExactByte(key.getR());
+            int g = toExactByte(key.getG());
+            int b = toExactByte(key.getB());
+            if (r < 0 || g < 0 || b < 0) {
+                //No pixel's Color can equal a key whose values aren't multiples of 1/255
+                continue;
+            }
+            Color value = entry.getValue();
+            int mapped = (toNearestByte(value.getR()) << 16) | (toNearestByte(value.getG()) << 8)
+                    | toNearestByte(value.getB());
+            entries[numEntries] = (((long)((r << 16) | (g << 8) | b)) << 32) | mapped;
+            numEntries++;
+        }
+        Arrays.sort(entries, 0, numEntries);
+        keys = new int[numEntries];
+        values = new int[numEntries];
+        for (int i = 0; i < numEntries; i++) {
+            keys[i] = (int)(entries[i] >> 32);
+            values[i] = (int)entries[i];
+        }
     }
     
     /**
@@ -39,8 +72,21 @@ public class ColorMapFilter implements Filter {
      * @param value The value Color
      */
     public ColorMapFilter(Color key, Color value) {
-        colorMap = new HashMap<>();
-        colorMap.put(key, value);
+        this(Collections.singletonMap(key, value));
+    }
+    
+    /*
+     * Returns the byte whose Color value is exactly the specified one, or -1
+     * if there is none.
+     */
+    private static int toExactByte(float f) {
+        int n = Math.round(f*255);
+        return (((float)n)/255 == f ? n : -1);
+    }
+    
+    //Rounds the way that OpenGL does when it stores a color in a texture
+    private static int toNearestByte(float f) {
+        return Math.round(f*255);
     }
     
     @Override
@@ -74,32 +120,27 @@ public class ColorMapFilter implements Filter {
     
     @Override
     public final Image getFilteredImage(Image image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        Image newImage;
-        Graphics newGraphics;
-        try {
-            newImage = image.getBlankCopy();
-            newGraphics = newImage.getGraphics();
-        } catch (SlickException e) {
-            throw new RuntimeException(e);
-        }
-        newGraphics.setDrawMode(Graphics.MODE_SCREEN);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                Color pixelColor = image.getColor(x, y);
-                Color mappedColor = colorMap.get(new Color(
-                        pixelColor.getR(), pixelColor.getG(), pixelColor.getB(), 1f));
-                if (mappedColor != null) {
-                    pixelColor = new Color(mappedColor.getR(), mappedColor.getG(),
-                            mappedColor.getB(), pixelColor.getA());
-                }
-                newGraphics.setColor(pixelColor);
-                newGraphics.fillRect(x, y, 1, 1);
+        return image.getCopyWithPixels(
+                getFilteredPixels(image.getPixels(), image.getWidth(), image.getHeight()));
+    }
+    
+    @Override
+    public final int[] getFilteredPixels(int[] pixels, int width, int height) {
+        //Neighboring pixels tend to share colors, so remember the last lookup
+        int lastRGB = -1;
+        int lastMapped = -1;
+        for (int i = 0; i < pixels.length; i++) {
+            int rgb = pixels[i] & 0xFFFFFF;
+            if (rgb != lastRGB) {
+                lastRGB = rgb;
+                int index = Arrays.binarySearch(keys, rgb);
+                lastMapped = (index < 0 ? -1 : values[index]);
+            }
+            if (lastMapped >= 0) {
+                pixels[i] = (pixels[i] & 0xFF000000) | lastMapped;
             }
         }
-        newGraphics.flush();
-        return newImage;
+        return pixels;
     }
     
 }
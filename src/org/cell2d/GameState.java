@@ -1,7 +1,14 @@
 package org.cell2d;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import org.cell2d.celick.Graphics;
 
 /**
@@ -50,6 +57,42 @@ public abstract class GameState<T extends CellGame,
     //If an AnimationInstance was not added with an ID, it's not in this Map
     private final Map<Integer,AnimationInstance> idsToAnimInstances = new HashMap<>();
     
+    //The AnimationGroups that hold the data of this GameState's AnimationInstances, one per Animation
+    private final Map<Animation,AnimationGroup> animGroups = new HashMap<>();
+    private ForkJoinPool animationPool = null;
+    //The number of AnimationInstances that each task updates when they are updated in parallel
+    private static final int ANIM_TASK_SIZE = 1024;
+    //The AnimationGroups' tasks for the current frame, which animUpdate runs; reused from frame to frame
+    private final List<ForkJoinTask<?>> animTasks = new ArrayList<>();
+    private final RecursiveAction animUpdate = new RecursiveAction() {
+        
+        @Override
+        protected void compute() {
+            ForkJoinTask.invokeAll(animTasks);
+        }
+        
+    };
+    
+    /*
+     * This GameState and the SubThinkers directly or indirectly assigned to
+     * it, in the order in which they experience their time units each frame
+     * (each Thinker before its SubThinkers), along with the index in the list
+     * of each one's super-Thinker and the index just past the last of its
+     * SubThinkers, direct or indirect. Each frame, the Thinkers' time units
+     * are run by walking this list rather than by iterating through each
+     * Thinker's SubThinkers, and the list is built again only after
+     * SubThinkers have been added or removed.
+     */
+    private final List<Thinker<T,U,V>> thinkers = new ArrayList<>();
+    private int[] superThinkerIndices = new int[0];
+    private int[] subtreeEnds = new int[0];
+    private long[] thinkerTimes = new long[0];
+    boolean thinkersChanged = true;
+    //The index of the Thinker experiencing its time units during the walk, or -1 if there is no walk
+    private int thinkerCursor = -1;
+    //The number of Thinkers whose SubThinker changes are waiting for the walk to leave their SubThinkers
+    int numDelayedThinkers = 0;
+    
     /**
      * Constructs a GameState of the specified CellGame with the specified ID.
      * GameStates automatically register themselves with their CellGames upon
@@ -114,6 +157,26 @@ public abstract class GameState<T extends CellGame,
         return active;
     }
     
+    private void assignAnimInstance(AnimationInstance instance) {
+        Animation animation = instance.getAnimation();
+        AnimationGroup group = animGroups.get(animation);
+        if (group == null) {
+            group = new AnimationGroup(animation, 16);
+            animGroups.put(animation, group);
+        }
+        group.moveIn(instance);
+        instance.state = this;
+    }
+    
+    private void unassignAnimInstance(AnimationInstance instance) {
+        AnimationGroup group = instance.group;
+        group.moveOut(instance);
+        if (group.size() == 0) {
+            animGroups.remove(group.animation);
+        }
+        instance.state = null;
+    }
+    
     /**
      * Returns the number of AnimationInstances that are assigned to this
      * GameState, with or without IDs.
@@ -136,7 +199,7 @@ public abstract class GameState<T extends CellGame,
         }
         if (instance.state == null) {
             animInstancesToIDs.put(instance, null);
-            instance.state = this;
+            assignAnimInstance(instance);
             return true;
         }
         return false;
@@ -154,7 +217,7 @@ public abstract class GameState<T extends CellGame,
         }
         AnimationInstance instance = new AnimationInstance(animation);
         animInstancesToIDs.put(instance, null);
-        instance.state = this;
+        assignAnimInstance(instance);
         return instance;
     }
     
@@ -170,7 +233,7 @@ public abstract class GameState<T extends CellGame,
         }
         if (animInstancesToIDs.containsKey(instance) && animInstancesToIDs.get(instance) == null) {
             animInstancesToIDs.remove(instance);
-            instance.state = null;
+            unassignAnimInstance(instance);
             return true;
         }
         return false;
@@ -201,7 +264,7 @@ public abstract class GameState<T extends CellGame,
             AnimationInstance oldInstance = idsToAnimInstances.remove(id);
             if (oldInstance != null) {
                 animInstancesToIDs.remove(oldInstance);
-                oldInstance.state = null;
+                unassignAnimInstance(oldInstance);
             }
             return true;
         }
@@ -210,9 +273,9 @@ public abstract class GameState<T extends CellGame,
             AnimationInstance oldInstance = idsToAnimInstances.put(id, instance);
             if (oldInstance != null) {
                 animInstancesToIDs.remove(oldInstance);
-                oldInstance.state = null;
+                unassignAnimInstance(oldInstance);
             }
-            instance.state = this;
+            assignAnimInstance(instance);
             return true;
         }
         return false;
@@ -251,7 +314,7 @@ public abstract class GameState<T extends CellGame,
                 AnimationInstance oldInstance = idsToAnimInstances.remove(id);
                 if (oldInstance != null) {
                     animInstancesToIDs.remove(oldInstance);
-                    oldInstance.state = null;
+                    unassignAnimInstance(oldInstance);
                 }
                 return AnimationInstance.BLANK;
             }
@@ -260,9 +323,9 @@ public abstract class GameState<T extends CellGame,
             AnimationInstance oldInstance = idsToAnimInstances.put(id, instance);
             if (oldInstance != null) {
                 animInstancesToIDs.remove(oldInstance);
-                oldInstance.state = null;
+                unassignAnimInstance(oldInstance);
             }
-            instance.state = this;
+            assignAnimInstance(instance);
         }
         return instance;
     }
@@ -273,12 +336,38 @@ public abstract class GameState<T extends CellGame,
      */
     public final void clearAnimInstances() {
         for (AnimationInstance instance : animInstancesToIDs.keySet()) {
-            instance.state = null;
+            unassignAnimInstance(instance);
         }
         animInstancesToIDs.clear();
         idsToAnimInstances.clear();
     }
     
+    /**
+     * Returns the ForkJoinPool that this GameState uses to update its
+     * AnimationInstances in parallel, or null if it updates them on the
+     * CellGame's thread.
+     * @return This GameState's animation pool
+     */
+    public final ForkJoinPool getAnimationPool() {
+        return animationPool;
+    }
+    
+    /**
+     * Sets the ForkJoinPool that this GameState uses to update its
+     * AnimationInstances in parallel. If the pool is null, as it is by default,
+     * this GameState will update its AnimationInstances on the CellGame's
+     * thread. Updating an AnimationInstance affects nothing but that
+     * AnimationInstance, so updating them in parallel produces exactly the same
+     * results as updating them one at a time. Frames in which this GameState
+     * has too few AnimationInstances for the work to be worth splitting up are
+     * updated on the CellGame's thread as usual.
+     * @param animationPool The new animation pool, or null if this GameState
+     * should update its AnimationInstances on the CellGame's thread
+     */
+    public final void setAnimationPool(ForkJoinPool animationPool) {
+        this.animationPool = animationPool;
+    }
+    
     /**
      * Actions for this GameState to take immediately after being entered.
      * @param game This GameState's CellGame
@@ -292,11 +381,202 @@ public abstract class GameState<T extends CellGame,
     public void leftActions(T game) {}
     
     final void stateUpdate() {
-        for (AnimationInstance instance : animInstancesToIDs.keySet()) {
-            instance.update();
-        }
-        update(game, thisState, Frac.UNIT);
+        long startTime = Profiler.start();
+        updateAnimInstances();
+        updateThinkers();
         frame.actions(game, thisState);
+        Profiler.stop(Profiler.THINKERS, startTime);
+    }
+    
+    private void updateAnimInstances() {
+        long timeFactor = getEffectiveTimeFactor();
+        if (animationPool == null || animInstancesToIDs.size() <= ANIM_TASK_SIZE) {
+            for (AnimationGroup group : animGroups.values()) {
+                group.update(timeFactor, 0, group.size());
+            }
+            return;
+        }
+        for (AnimationGroup group : animGroups.values()) {
+            group.addTasks(timeFactor, ANIM_TASK_SIZE, animTasks);
+        }
+        animUpdate.reinitialize();
+        try {
+            animationPool.invoke(animUpdate);
+        } finally {
+            animTasks.clear();
+        }
+    }
+    
+    private void listThinkers() {
+        for (Thinker<T,U,V> thinker : thinkers) {
+            thinker.thinkerIndex = -1;
+        }
+        thinkers.clear();
+        insertThinkers(0, this, -1);
+    }
+    
+    /*
+     * Inserts root and the SubThinkers directly or indirectly assigned to it
+     * into the list of Thinkers at the specified index, in the order in which
+     * they experience their time units, as the last SubThinkers of the Thinker
+     * at superThinkerIndex.
+     */
+    private void insertThinkers(int index, Thinker<T,U,V> root, int superThinkerIndex) {
+        List<Thinker<T,U,V>> subtree = new ArrayList<>();
+        List<Integer> subtreeSupers = new ArrayList<>();
+        List<Thinker<T,U,V>> stack = new ArrayList<>();
+        List<Integer> stackIndices = new ArrayList<>();
+        stack.add(root);
+        stackIndices.add(superThinkerIndex);
+        while (!stack.isEmpty()) {
+            Thinker<T,U,V> thinker = stack.remove(stack.size() - 1);
+            int thinkerIndex = index + subtree.size();
+            subtree.add(thinker);
+            subtreeSupers.add(stackIndices.remove(stackIndices.size() - 1));
+            //Push the SubThinkers backward so that they come off the stack in order
+            int start = stack.size();
+            stack.addAll(thinker.subThinkers);
+            Collections.reverse(stack.subList(start, stack.size()));
+            for (int i = start; i < stack.size(); i++) {
+                stackIndices.add(thinkerIndex);
+            }
+        }
+        int numInserted = subtree.size();
+        int oldSize = thinkers.size();
+        int newSize = oldSize + numInserted;
+        if (superThinkerIndices.length < newSize) {
+            int length = Math.max(2*newSize, 16);
+            superThinkerIndices = Arrays.copyOf(superThinkerIndices, length);
+            subtreeEnds = Arrays.copyOf(subtreeEnds, length);
+            thinkerTimes = Arrays.copyOf(thinkerTimes, length);
+        }
+        thinkers.addAll(index, subtree);
+        System.arraycopy(superThinkerIndices, index, superThinkerIndices, index + numInserted, oldSize - index);
+        System.arraycopy(subtreeEnds, index, subtreeEnds, index + numInserted, oldSize - index);
+        for (int i = index + numInserted; i < newSize; i++) {
+            if (superThinkerIndices[i] >= index) {
+                superThinkerIndices[i] += numInserted;
+            }
+            subtreeEnds[i] += numInserted;
+            thinkers.get(i).thinkerIndex = i;
+        }
+        for (int i = superThinkerIndex; i >= 0; i = superThinkerIndices[i]) {
+            subtreeEnds[i] += numInserted;
+        }
+        for (int i = index; i < index + numInserted; i++) {
+            thinkers.get(i).thinkerIndex = i;
+            superThinkerIndices[i] = subtreeSupers.get(i - index);
+            subtreeEnds[i] = i + 1;
+        }
+        for (int i = index + numInserted - 1; i > index; i--) {
+            int superIndex = superThinkerIndices[i];
+            subtreeEnds[superIndex] = Math.max(subtreeEnds[superIndex], subtreeEnds[i]);
+        }
+    }
+    
+    //Removes the Thinker at the specified index and its SubThinkers, direct or indirect, from the list
+    private void deleteThinkers(int index) {
+        int numDeleted = subtreeEnds[index] - index;
+        int superThinkerIndex = superThinkerIndices[index];
+        for (int i = index; i < index + numDeleted; i++) {
+            thinkers.get(i).thinkerIndex = -1;
+        }
+        thinkers.subList(index, index + numDeleted).clear();
+        int newSize = thinkers.size();
+        System.arraycopy(superThinkerIndices, index + numDeleted, superThinkerIndices, index, newSize - index);
+        System.arraycopy(subtreeEnds, index + numDeleted, subtreeEnds, index, newSize - index);
+        for (int i = index; i < newSize; i++) {
+            if (superThinkerIndices[i] >= index) {
+                superThinkerIndices[i] -= numDeleted;
+            }
+            subtreeEnds[i] -= numDeleted;
+            thinkers.get(i).thinkerIndex = i;
+        }
+        for (int i = superThinkerIndex; i >= 0; i = superThinkerIndices[i]) {
+            subtreeEnds[i] -= numDeleted;
+        }
+    }
+    
+    //Returns the index of the specified Thinker in the list, or -1 if it is not there
+    private int indexOfThinker(Thinker<T,U,V> thinker) {
+        int index = thinker.thinkerIndex;
+        return (index >= 0 && index < thinkers.size() && thinkers.get(index) == thinker ? index : -1);
+    }
+    
+    /*
+     * Returns whether the walk is among the specified Thinker's SubThinkers,
+     * which is when the Thinker would have been iterating through them if each
+     * Thinker still updated its own SubThinkers.
+     */
+    final boolean walkingThroughSubThinkers(Thinker<T,U,V> thinker) {
+        if (thinkerCursor < 0) {
+            return false;
+        }
+        int index = indexOfThinker(thinker);
+        return index >= 0 && index < thinkerCursor && subtreeEnds[index] > thinkerCursor;
+    }
+    
+    /*
+     * Informs the walk that subThinker was just assigned to superThinker. If
+     * the walk has yet to reach superThinker's SubThinkers, it will reach
+     * subThinker and its own SubThinkers after them.
+     */
+    final void subThinkerAdded(Thinker<T,U,V> superThinker, Thinker<T,U,V> subThinker) {
+        if (thinkerCursor >= 0) {
+            int index = indexOfThinker(superThinker);
+            if (index >= thinkerCursor) {
+                insertThinkers(subtreeEnds[index], subThinker, index);
+            }
+        }
+    }
+    
+    /*
+     * Informs the walk that subThinker was just removed from its
+     * super-Thinker. If the walk has yet to reach it, it will skip it and its
+     * own SubThinkers.
+     */
+    final void subThinkerRemoved(Thinker<T,U,V> subThinker) {
+        if (thinkerCursor >= 0) {
+            int index = indexOfThinker(subThinker);
+            if (index > thinkerCursor) {
+                deleteThinkers(index);
+            }
+        }
+    }
+    
+    private void updateThinkers() {
+        if (thinkersChanged) {
+            listThinkers();
+            thinkersChanged = false;
+        }
+        thinkerCursor = 0;
+        try {
+            while (thinkerCursor < thinkers.size()) {
+                int i = thinkerCursor;
+                Thinker<T,U,V> thinker = thinkers.get(i);
+                long time = thinker.getTimeFactor();
+                if (time < 0) {
+                    time = (i == 0 ? Frac.UNIT : thinkerTimes[superThinkerIndices[i]]);
+                }
+                thinkerTimes[i] = time;
+                thinker.updateTimers(game, thisState, time);
+                thinkerCursor = i + 1;
+                if (numDelayedThinkers > 0) {
+                    //Make the delayed changes of the Thinkers whose SubThinkers the walk has just left
+                    for (int j = superThinkerIndices[i]; j >= 0 && subtreeEnds[j] == i + 1;
+                            j = superThinkerIndices[j]) {
+                        thinkers.get(j).makeDelayedSubThinkerChanges();
+                    }
+                }
+            }
+        } finally {
+            thinkerCursor = -1;
+            if (numDelayedThinkers > 0) {
+                for (int i = thinkers.size() - 1; i >= 0; i--) {
+                    thinkers.get(i).makeDelayedSubThinkerChanges();
+                }
+            }
+        }
     }
     
     /**
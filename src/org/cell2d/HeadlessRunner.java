@@ -0,0 +1,289 @@
+package org.cell2d;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>A HeadlessRunner runs a headless CellGame's game logic without a program
+ * window, input devices, audio, or rendering. Rather than executing a certain
+ * number of frames per second, a HeadlessRunner executes frames one after
+ * another as fast as it can, which makes it suitable for running simulations
+ * on servers and in automated tests. Each frame, the CellGame's current
+ * GameState updates its AnimationInstances, its timers and those of its
+ * SubThinkers, and takes its frameActions(), exactly as it would while running
+ * in a program window.</p>
+ * 
+ * <p>A HeadlessRunner has a <i>script</i> that specifies the frames at which
+ * it will press and release its CellGame's commands. A command pressed by the
+ * script counts as one held Control bound to it, so the CellGame's
+ * commandPressed(), commandHeld(), and commandReleased() report it in the
+ * same way that they report real input. Frames are numbered from 0, with
+ * frame 0 being the first frame after the CellGame's initActions().</p>
+ * 
+ * <p>After each call to run(), a HeadlessRunner reports how many frames it
+ * executed, how long it took, and, if the Java virtual machine can measure
+ * it, how many bytes of memory the running thread allocated in the process.
+ * Together these give a measure of how many ticks per second the CellGame's
+ * game logic can sustain and how hard it works the garbage collector.</p>
+ * @see CellGame
+ * @author Alex Heyman
+ */
+public class HeadlessRunner {
+    
+    private static class ScriptedCommand {
+        
+        private final int commandNum;
+        private final boolean held;
+        
+        private ScriptedCommand(int commandNum, boolean held) {
+            this.commandNum = commandNum;
+            this.held = held;
+        }
+        
+    }
+    
+    private final CellGame game;
+    private long frame = 0;
+    private final SortedMap<Long,List<ScriptedCommand>> script = new TreeMap<>();
+    private long lastRunFrames = 0;
+    private long lastRunNanos = 0;
+    private long lastRunBytes = -1;
+    
+    /**
+     * Constructs a HeadlessRunner that runs the specified CellGame.
+     * @param game The headless CellGame to run
+     */
+    public HeadlessRunner(CellGame game) {
+        if (game == null) {
+            throw new RuntimeException("Attempted to construct a HeadlessRunner with no CellGame");
+        }
+        if (!game.isHeadless()) {
+            throw new RuntimeException("Attempted to construct a HeadlessRunner for a CellGame that is not"
+                    + " headless");
+        }
+        this.game = game;
+    }
+    
+    /**
+     * Returns the CellGame that this HeadlessRunner runs.
+     * @return This HeadlessRunner's CellGame
+     */
+    public final CellGame getGame() {
+        return game;
+    }
+    
+    /**
+     * Returns the number of the next frame that this HeadlessRunner will
+     * execute, which is also the number of frames that it has executed so far.
+     * @return The number of the next frame to be executed
+     */
+    public final long getFrame() {
+        return frame;
+    }
+    
+    private void addToScript(long frame, int commandNum, boolean held) {
+        if (frame < this.frame) {
+            throw new RuntimeException("Attempted to script a command for frame " + frame
+                    + ", which a HeadlessRunner has already executed");
+        }
+        if (commandNum < 0 || commandNum >= game.getNumCommands()) {
+            throw new RuntimeException("Attempted to script nonexistent command " + commandNum);
+        }
+        List<ScriptedCommand> commands = script.get(frame);
+        if (commands == null) {
+            commands = new ArrayList<>();
+            script.put(frame, commands);
+        }
+        commands.add(new ScriptedCommand(commandNum, held));
+    }
+    
+    /**
+     * Adds to this HeadlessRunner's script an instruction to press and hold
+     * the specified command at the start of the specified frame. If the script
+     * is already holding the command at that time, this instruction will do
+     * nothing.
+     * @param frame The number of the frame at which to press the command
+     * @param commandNum The number of the command to press
+     */
+    public final void pressCommand(long frame, int commandNum) {
+        addToScript(frame, commandNum, true);
+    }
+    
+    /**
+     * Adds to this HeadlessRunner's script an instruction to release the
+     * specified command at the start of the specified frame. If the script is
+     * not holding the command at that time, this instruction will do nothing.
+     * @param frame The number of the frame at which to release the command
+     * @param commandNum The number of the command to release
+     */
+    public final void releaseCommand(long frame, int commandNum) {
+        addToScript(frame, commandNum, false);
+    }
+    
+    /**
+     * Adds to this HeadlessRunner's script instructions to press the specified
+     * command at the start of the specified frame and release it at the start
+     * of the frame after the specified number of frames have passed.
+     * @param frame The number of the frame at which to press the command
+     * @param commandNum The number of the command to press
+     * @param numFrames The number of frames for which to hold the command
+     */
+    public final void holdCommand(long frame, int commandNum, long numFrames) {
+        if (numFrames <= 0) {
+            throw new RuntimeException("Attempted to script holding a command for non-positive number of"
+                    + " frames " + numFrames);
+        }
+        addToScript(frame, commandNum, true);
+        addToScript(frame + numFrames, commandNum, false);
+    }
+    
+    /**
+     * Removes all of the instructions in this HeadlessRunner's script that it
+     * has not yet carried out. Commands that the script is currently holding
+     * remain held until they are released by new instructions.
+     */
+    public final void clearScript() {
+        script.clear();
+    }
+    
+    /**
+     * Executes one frame of this HeadlessRunner's CellGame. If the CellGame
+     * has not yet been initialized, its initActions() will be called first,
+     * and it will enter the GameState that they chose. A headless CellGame
+     * cannot set an init loader during its initActions(), since there is no
+     * OpenGL context for one to upload assets to.
+     * @return False if the CellGame was instructed to close during the frame,
+     * and true otherwise
+     */
+    public final boolean step() {
+        if (!game.isInitialized()) {
+            game.initialize();
+        }
+        long startTime = Profiler.start();
+        game.clearCommandChanges();
+        //The script has no frames before this one, so only its first can be this one
+        if (!script.isEmpty() && script.firstKey() == frame) {
+            for (ScriptedCommand command : script.remove(script.firstKey())) {
+                game.scriptCommand(command.commandNum, command.held);
+            }
+        }
+        game.logicUpdate();
+        Profiler.stop(Profiler.FRAME, startTime);
+        Profiler.endFrame();
+        frame++;
+        return !game.isCloseRequested();
+    }
+    
+    /**
+     * Executes the specified number of frames of this HeadlessRunner's
+     * CellGame one after another, stopping early if the CellGame is instructed
+     * to close.
+     * @param numFrames The number of frames to execute
+     * @return The number of frames that were executed
+     */
+    public final long run(long numFrames) {
+        if (numFrames < 0) {
+            throw new RuntimeException("Attempted to run a HeadlessRunner for negative number of frames "
+                    + numFrames);
+        }
+        long startFrame = frame;
+        long startBytes = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        while (frame - startFrame < numFrames && !game.isCloseRequested()) {
+            step();
+        }
+        lastRunNanos = System.nanoTime() - startTime;
+        long endBytes = getAllocatedBytes();
+        lastRunBytes = (startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes);
+        lastRunFrames = frame - startFrame;
+        return lastRunFrames;
+    }
+    
+    /*
+     * Returns the number of bytes that the current thread has allocated so
+     * far, or -1 if the Java virtual machine doesn't keep track. Only
+     * HotSpot-derived virtual machines offer this measurement, through their
+     * extension of ThreadMXBean.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the number of frames that this HeadlessRunner executed during
+     * its last call to run().
+     * @return The number of frames executed during the last run
+     */
+    public final long getLastRunFrames() {
+        return lastRunFrames;
+    }
+    
+    /**
+     * Returns how long, in nanoseconds, this HeadlessRunner's last call to
+     * run() took.
+     * @return The duration of the last run in nanoseconds
+     */
+    public final long getLastRunNanos() {
+        return lastRunNanos;
+    }
+    
+    /**
+     * Returns the average number of frames per second that this
+     * HeadlessRunner executed during its last call to run(), or 0 if it has
+     * not executed any frames in a call to run().
+     * @return The number of ticks per second achieved during the last run
+     */
+    public final double getTicksPerSecond() {
+        return (lastRunNanos == 0 ? 0 : lastRunFrames*1000000000.0/lastRunNanos);
+    }
+    
+    /**
+     * Returns the number of bytes of memory that the thread running this
+     * HeadlessRunner allocated during its last call to run(), or -1 if the
+     * Java virtual machine cannot measure this. Allocations made by other
+     * threads, such as those of a SpaceState's movement pool, are not
+     * included.
+     * @return The number of bytes allocated during the last run
+     */
+    public final long getLastRunAllocatedBytes() {
+        return lastRunBytes;
+    }
+    
+    /**
+     * Returns the average number of bytes of memory that the thread running
+     * this HeadlessRunner allocated per second during its last call to run(),
+     * or -1 if the Java virtual machine cannot measure this.
+     * @return The allocation rate in bytes per second during the last run
+     */
+    public final double getAllocationRate() {
+        if (lastRunBytes < 0) {
+            return -1;
+        }
+        return (lastRunNanos == 0 ? 0 : lastRunBytes*1000000000.0/lastRunNanos);
+    }
+    
+    /**
+     * Returns the average number of bytes of memory that the thread running
+     * this HeadlessRunner allocated per frame during its last call to run(),
+     * or -1 if the Java virtual machine cannot measure this.
+     * @return The number of bytes allocated per frame during the last run
+     */
+    public final double getAllocatedBytesPerFrame() {
+        if (lastRunBytes < 0) {
+            return -1;
+        }
+        return (lastRunFrames == 0 ? 0 : ((double)lastRunBytes)/lastRunFrames);
+    }
+    
+}
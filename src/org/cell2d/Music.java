@@ -150,6 +150,19 @@ public class Music implements Loadable {
         return false;
     }
     
+    final String getPath() {
+        return path;
+    }
+    
+    final boolean load(Audio.Decoded decoded) {
+        if (!loaded) {
+            loaded = true;
+            audio = new Audio(decoded);
+            return true;
+        }
+        return false;
+    }
+    
     @Override
     public final boolean unload() {
         if (blank || !loaded) {
@@ -0,0 +1,32 @@
+package org.cell2d;
+
+/**
+ * <p>A PixelFilter is a Filter whose transformation can be carried out on an
+ * image's pixel data alone, without the aid of a graphics context. This allows
+ * an AssetLoader to apply it to a Sprite's or SpriteSheet's image on a worker
+ * thread, before the image is ever uploaded, rather than on the thread that
+ * renders the CellGame. A Sprite or SpriteSheet that loads its image file
+ * itself likewise applies its PixelFilters to the file's decoded pixels,
+ * rather than reading them back from the image's texture.</p>
+ * 
+ * <p>A PixelFilter's transformation of an image's pixels must be the same as
+ * the transformation that its getFilteredImage() method makes.</p>
+ * @see AssetLoader
+ * @author Alex Heyman
+ */
+public interface PixelFilter extends Filter {
+    
+    /**
+     * Returns the transformation through this PixelFilter of the specified
+     * pixel data. The pixels are given as packed ARGB values, one per pixel,
+     * going row by row from the top left corner of the image. The specified
+     * array may be modified and returned. This method may be called on any
+     * thread.
+     * @param pixels The pixel data to be transformed
+     * @param width The width in pixels of the image
+     * @param height The height in pixels of the image
+     * @return The transformation of the specified pixel data
+     */
+    int[] getFilteredPixels(int[] pixels, int width, int height);
+    
+}
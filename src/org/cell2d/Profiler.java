@@ -0,0 +1,468 @@
+package org.cell2d;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>The Profiler class measures where the time in each of a CellGame's frames
+ * goes. It keeps a set of Metrics, each of which is either a <i>timer</i> that
+ * adds up the nanoseconds spent in one part of the frame, or a <i>counter</i>
+ * that adds up how many times something happened during the frame. At the end
+ * of each frame, each Metric's total for that frame is recorded in its
+ * history, which holds the totals of a fixed number of the most recent frames,
+ * and the Metric starts again from 0. A Metric's history can be queried for
+ * its mean and percentiles, or written out in CSV or JSON form.</p>
+ * 
+ * <p>The Profiler is disabled by default. While it is disabled, it records
+ * nothing, and the measurements scattered through Cell2D cost no more than a
+ * check of whether it is enabled. Some timers measure parts of others; for
+ * instance, the COLLISIONS timer's time is part of the MOVEMENT timer's.
+ * Metrics may be added to from several threads at once, such as those of a
+ * SpaceState that moves its MobileObjects in parallel. Times measured on
+ * different threads at once are added together, so they can add up to more
+ * than the time that actually passed.</p>
+ * 
+ * <p>There is only one Profiler, and it is shared by every CellGame in the
+ * program. If several CellGames run at once, such as several headless ones
+ * run by HeadlessRunners, their measurements are added to the same Metrics,
+ * and each of their frames ends the current frame for all of the Metrics. To
+ * profile one CellGame on its own, enable the Profiler only while that
+ * CellGame is the only one running.</p>
+ * 
+ * <p>The start(), stop(), and count() methods may also be used to measure
+ * parts of a game's own code with Metrics of its own.</p>
+ * @see CellGame
+ * @author Alex Heyman
+ */
+public final class Profiler {
+    
+    /**
+     * <p>A Metric is a timer or counter whose totals the Profiler records once
+     * each frame.</p>
+     */
+    public static final class Metric {
+        
+        private final String name;
+        private final boolean isTimer;
+        private final LongAdder current = new LongAdder();
+        private long[] history;
+        private int numValues = 0;
+        private int nextIndex = 0;
+        
+        private Metric(String name, boolean isTimer) {
+            this.name = name;
+            this.isTimer = isTimer;
+            history = new long[historyLength];
+        }
+        
+        /**
+         * Constructs a Metric with the specified name and adds it to the
+         * Metrics that the Profiler records.
+         * @param name The Metric's name
+         * @param isTimer Whether the Metric is a timer, as opposed to a
+         * counter
+         * @return The new Metric
+         */
+        public static Metric create(String name, boolean isTimer) {
+            Metric metric = new Metric(name, isTimer);
+            metrics.add(metric);
+            return metric;
+        }
+        
+        /**
+         * Returns this Metric's name.
+         * @return This Metric's name
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Returns whether this Metric is a timer, as opposed to a counter.
+         * @return Whether this Metric is a timer
+         */
+        public boolean isTimer() {
+            return isTimer;
+        }
+        
+        /**
+         * Returns this Metric's total so far for the current frame.
+         * @return This Metric's current total
+         */
+        public long getCurrent() {
+            return current.sum();
+        }
+        
+        /**
+         * Returns the number of frames whose totals are in this Metric's
+         * history.
+         * @return The number of frames in this Metric's history
+         */
+        public int getNumValues() {
+            return numValues;
+        }
+        
+        /**
+         * Returns this Metric's total for the most recently recorded frame, or
+         * 0 if it has recorded no frames.
+         * @return This Metric's total for the last frame
+         */
+        public long getLast() {
+            if (numValues == 0) {
+                return 0;
+            }
+            return history[(nextIndex + history.length - 1) % history.length];
+        }
+        
+        /**
+         * Returns the mean of the totals in this Metric's history, or 0 if it
+         * has recorded no frames.
+         * @return The mean of this Metric's recorded totals
+         */
+        public double getMean() {
+            if (numValues == 0) {
+                return 0;
+            }
+            long sum = 0;
+            for (int i = 0; i < numValues; i++) {
+                sum += history[i];
+            }
+            return ((double)sum)/numValues;
+        }
+        
+        /**
+         * Returns the specified percentile of the totals in this Metric's
+         * history, or 0 if it has recorded no frames. The 50th percentile is
+         * the median, and the 100th is the maximum.
+         * @param percentile The percentile to return, from 0 to 100
+         * @return The specified percentile of this Metric's recorded totals
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new RuntimeException("Attempted to get invalid percentile " + percentile
+                        + " of a Profiler Metric");
+            }
+            if (numValues == 0) {
+                return 0;
+            }
+            long[] values = Arrays.copyOf(history, numValues);
+            Arrays.sort(values);
+            //Nearest-rank percentile
+            int rank = (int)Math.ceil(percentile/100*numValues);
+            return values[Math.max(rank - 1, 0)];
+        }
+        
+        //Returns the total of the frame with the specified index in order from oldest to newest
+        private long getValue(int index) {
+            return history[(nextIndex + history.length - numValues + index) % history.length];
+        }
+        
+        private void record() {
+            history[nextIndex] = current.sumThenReset();
+            nextIndex = (nextIndex + 1) % history.length;
+            if (numValues < history.length) {
+                numValues++;
+            }
+        }
+        
+        private void clear() {
+            history = new long[historyLength];
+            numValues = 0;
+            nextIndex = 0;
+            current.reset();
+        }
+        
+    }
+    
+    private static volatile boolean enabled = false;
+    private static volatile int historyLength = 300;
+    //Metrics are rarely created, but may be created by any thread while others read the list
+    private static final List<Metric> metrics = new CopyOnWriteArrayList<>();
+    private static final Map<Integer,Metric> viewportMetrics = new ConcurrentHashMap<>();
+    
+    /**
+     * The time taken by each whole frame, from the start of its input
+     * handling to the end of its rendering.
+     */
+    public static final Metric FRAME = Metric.create("frame", true);
+    /**
+     * The time taken to read input devices and respond to their input.
+     */
+    public static final Metric INPUT = Metric.create("input", true);
+    /**
+     * The time taken by the current GameState's update, including its
+     * AnimationInstances, its and its SubThinkers' timers, and their
+     * frameActions() and frame Events, but not the time that the MOVEMENT
+     * timer measures.
+     */
+    public static final Metric THINKERS = Metric.create("thinkers", true);
+    /**
+     * The time taken by SpaceStates to move their MobileObjects.
+     */
+    public static final Metric MOVEMENT = Metric.create("movement", true);
+    /**
+     * The time taken by MobileObjects' collide() methods.
+     */
+    public static final Metric COLLISIONS = Metric.create("collisions", true);
+    /**
+     * The time taken to render the current GameState and the CellGame's own
+     * visuals.
+     */
+    public static final Metric RENDER = Metric.create("render", true);
+    /**
+     * The time taken to flush the rendered frame to the screen.
+     */
+    public static final Metric FLUSH = Metric.create("flush", true);
+    /**
+     * The number of times SpaceStates moved MobileObjects by a non-zero
+     * amount, including extra movements such as slides after collisions.
+     */
+    public static final Metric OBJECTS_MOVED = Metric.create("objectsMoved", false);
+    /**
+     * The number of Hitboxes that SpaceStates examined while looking through
+     * their cells: for queries of the objects in an area or nearest to a
+     * point, for moving MobileObjects, and for updating the Hitboxes in a
+     * Viewport's view. Each Hitbox is counted once per cell in which it is
+     * examined.
+     */
+    public static final Metric HITBOXES_SCANNED = Metric.create("hitboxesScanned", false);
+    /**
+     * The number of occupied cells that SpaceStates visited while looking
+     * through their cells.
+     */
+    public static final Metric CELLS_VISITED = Metric.create("cellsVisited", false);
+    /**
+     * The number of pieces of geometry sent to OpenGL.
+     */
+    public static final Metric DRAW_CALLS = Metric.create("drawCalls", false);
+    /**
+     * The number of times an OpenGL texture was bound.
+     */
+    public static final Metric TEXTURE_BINDS = Metric.create("textureBinds", false);
+    
+    private Profiler() {}
+    
+    /**
+     * Returns whether the Profiler is enabled.
+     * @return Whether the Profiler is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Sets whether the Profiler is enabled.
+     * @param enabled Whether the Profiler should be enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        Profiler.enabled = enabled;
+    }
+    
+    /**
+     * Returns the number of frames whose totals each Metric's history holds.
+     * @return The length of the Metrics' histories
+     */
+    public static int getHistoryLength() {
+        return historyLength;
+    }
+    
+    /**
+     * Sets the number of frames whose totals each Metric's history holds. This
+     * clears all of the Metrics' histories.
+     * @param historyLength The new length of the Metrics' histories
+     */
+    public static void setHistoryLength(int historyLength) {
+        if (historyLength <= 0) {
+            throw new RuntimeException("Attempted to give the Profiler a non-positive history length ("
+                    + historyLength + ")");
+        }
+        Profiler.historyLength = historyLength;
+        clear();
+    }
+    
+    /**
+     * Clears all of the Metrics' histories and current totals.
+     */
+    public static void clear() {
+        for (Metric metric : metrics) {
+            metric.clear();
+        }
+    }
+    
+    /**
+     * Returns an unmodifiable List view of all of the Metrics that the
+     * Profiler records, in the order in which they were created.
+     * @return The Profiler's Metrics
+     */
+    public static List<Metric> getMetrics() {
+        return Collections.unmodifiableList(metrics);
+    }
+    
+    /**
+     * Returns the timer that measures the time taken to render a SpaceState's
+     * Viewport with the specified ID, creating it if it does not yet exist.
+     * @param id The Viewport's ID
+     * @return The timer for the Viewport with the specified ID
+     */
+    public static Metric getViewportMetric(int id) {
+        return viewportMetrics.computeIfAbsent(id, key -> Metric.create("viewport" + key, true));
+    }
+    
+    /**
+     * Returns the time at which a timed section of code is starting, to be
+     * passed to stop() once the section ends, or 0 if the Profiler is
+     * disabled.
+     * @return The time at which the section is starting
+     */
+    public static long start() {
+        return (enabled ? System.nanoTime() : 0);
+    }
+    
+    /**
+     * Adds the time since the specified start time to the specified timer's
+     * total for the current frame. If the Profiler is disabled, or the start
+     * time is 0, this method will do nothing.
+     * @param timer The timer to add to
+     * @param startTime The start time returned by start()
+     */
+    public static void stop(Metric timer, long startTime) {
+        if (enabled && startTime != 0) {
+            timer.current.add(System.nanoTime() - startTime);
+        }
+    }
+    
+    /**
+     * Moves the time since the specified start time from one timer's total for
+     * the current frame to another's. This is for ending a section of code that
+     * the outer timer is also measuring, so that the outer timer counts only
+     * the time spent outside of the section. If the Profiler is disabled, or
+     * the start time is 0, this method will do nothing.
+     * @param timer The timer to add to
+     * @param outer The timer to take away from
+     * @param startTime The start time returned by start()
+     */
+    public static void stop(Metric timer, Metric outer, long startTime) {
+        if (enabled && startTime != 0) {
+            long time = System.nanoTime() - startTime;
+            timer.current.add(time);
+            outer.current.add(-time);
+        }
+    }
+    
+    /**
+     * Adds 1 to the specified counter's total for the current frame, if the
+     * Profiler is enabled.
+     * @param counter The counter to add to
+     */
+    public static void count(Metric counter) {
+        if (enabled) {
+            counter.current.increment();
+        }
+    }
+    
+    /**
+     * Adds the specified amount to the specified counter's total for the
+     * current frame, if the Profiler is enabled.
+     * @param counter The counter to add to
+     * @param amount The amount to add
+     */
+    public static void count(Metric counter, long amount) {
+        if (enabled) {
+            counter.current.add(amount);
+        }
+    }
+    
+    static void endFrame() {
+        if (enabled) {
+            for (Metric metric : metrics) {
+                metric.record();
+            }
+        }
+    }
+    
+    /**
+     * Writes the Metrics' histories in CSV form, with a header row of the
+     * Metrics' names followed by one row for each recorded frame, oldest
+     * first. Timers' totals are written in nanoseconds.
+     * @param writer The Writer to write to
+     * @throws IOException If the Writer throws an IOException
+     */
+    public static void writeCSV(Writer writer) throws IOException {
+        //A Metric created while writing must not give the rows more columns than the header
+        Metric[] metrics = Profiler.metrics.toArray(new Metric[0]);
+        int numFrames = 0;
+        for (int i = 0; i < metrics.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(metrics[i].name);
+            numFrames = Math.max(numFrames, metrics[i].numValues);
+        }
+        writer.write('\n');
+        for (int frame = 0; frame < numFrames; frame++) {
+            for (int i = 0; i < metrics.length; i++) {
+                Metric metric = metrics[i];
+                if (i > 0) {
+                    writer.write(',');
+                }
+                //Metrics created partway through have no totals for the frames before
+                int index = frame - (numFrames - metric.numValues);
+                writer.write(Long.toString(index < 0 ? 0 : metric.getValue(index)));
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+    
+    /**
+     * Writes a summary of the Metrics' histories in JSON form: an object that
+     * maps each Metric's name to an object with its type, number of recorded
+     * frames, last total, mean, 50th, 90th, and 99th percentiles, and maximum.
+     * Timers' totals are written in nanoseconds.
+     * @param writer The Writer to write to
+     * @throws IOException If the Writer throws an IOException
+     */
+    public static void writeJSON(Writer writer) throws IOException {
+        writer.write('{');
+        boolean first = true;
+        for (Metric metric : metrics) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write("\n  \"" + escapeJSON(metric.name) + "\": {\"type\": \"" + (metric.isTimer ? "timer" : "counter")
+                    + "\", \"frames\": " + metric.numValues
+                    + ", \"last\": " + metric.getLast()
+                    + ", \"mean\": " + metric.getMean()
+                    + ", \"p50\": " + metric.getPercentile(50)
+                    + ", \"p90\": " + metric.getPercentile(90)
+                    + ", \"p99\": " + metric.getPercentile(99)
+                    + ", \"max\": " + metric.getPercentile(100) + "}");
+        }
+        writer.write("\n}\n");
+        writer.flush();
+    }
+    
+    private static String escapeJSON(String string) {
+        StringBuilder builder = new StringBuilder(string.length());
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int)c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+    
+}
@@ -72,6 +72,19 @@ public class Sound implements Loadable {
         return false;
     }
     
+    final String getPath() {
+        return path;
+    }
+    
+    final boolean load(Audio.Decoded decoded) {
+        if (!loaded) {
+            loaded = true;
+            audio = new Audio(decoded);
+            return true;
+        }
+        return false;
+    }
+    
     @Override
     public final boolean unload() {
         if (loaded) {
@@ -9,6 +9,7 @@ import java.util.Set;
 import org.cell2d.celick.Graphics;
 import org.cell2d.celick.Image;
 import org.cell2d.celick.SlickException;
+import org.cell2d.celick.opengl.InternalTextureLoader;
 
 /**
  * <p>A Sprite is a static image that can be drawn to a Graphics context. Like
@@ -41,6 +42,7 @@ public class Sprite implements Animatable, Drawable, Loadable {
     private final Filter basedFilter;
     private Map<Filter,Sprite> filteredCopies = null;
     private final SpriteSheet spriteSheet;
+    private TextureAtlas atlas = null;
     private final String path;
     private final Color transColor;
     private Image[] defaultImages;
@@ -209,8 +211,8 @@ public class Sprite implements Animatable, Drawable, Loadable {
     
     /**
      * Loads this Sprite if it is not already loaded. If this Sprite was created
-     * from another Sprite or is part of a SpriteSheet, that other Sprite or
-     * SpriteSheet will be loaded as well.
+     * from another Sprite or is part of a SpriteSheet or TextureAtlas, that
+     * other Sprite, SpriteSheet, or TextureAtlas will be loaded as well.
      * @return Whether the loading occurred
      */
     @Override
@@ -219,30 +221,49 @@ public class Sprite implements Animatable, Drawable, Loadable {
             return false;
         }
         loaded = true;
-        if (spriteSheet == null) {
+        if (atlas != null) {
+            atlas.loadSprite(this);
+        } else if (spriteSheet == null) {
             Image image;
+            Map<Filter,Image> filteredImages = null;
             if (path != null) {
-                try {
-                    image = new Image(path, false, Image.FILTER_NEAREST, transColor);
-                } catch (SlickException e) {
-                    throw new RuntimeException(e);
-                }
+                filteredImages = new HashMap<>();
+                image = AssetLoader.loadImage(path, transColor, filterImages.keySet(), filteredImages);
             } else if (basedOn != null) {
                 basedOn.load();
                 image = basedFilter.getFilteredImage(basedOn.defaultImages[0]);
             } else {
                 throw new RuntimeException("Attempted to reload a Sprite that cannot be reloaded");
             }
-            loadFilter(null, image);
-            for (Filter filter : filterImages.keySet()) {
-                loadFilter(filter, filter.getFilteredImage(image));   
-            }
+            loadImages(image, filteredImages);
         } else {
             spriteSheet.load();
         }
         return true;
     }
     
+    /*
+     * Loads this Sprite from an unfiltered Image that an AssetLoader has
+     * already created, along with the Images for any of its Filters that the
+     * AssetLoader has already applied.
+     */
+    final boolean load(Image image, Map<Filter,Image> filteredImages) {
+        if (loaded) {
+            return false;
+        }
+        loaded = true;
+        loadImages(image, filteredImages);
+        return true;
+    }
+    
+    private void loadImages(Image image, Map<Filter,Image> filteredImages) {
+        loadFilter(null, image);
+        for (Filter filter : filterImages.keySet()) {
+            Image filteredImage = (filteredImages == null ? null : filteredImages.get(filter));
+            loadFilter(filter, filteredImage == null ? filter.getFilteredImage(image) : filteredImage);
+        }
+    }
+    
     final void loadFilter(Filter filter, Image image) {
         image.getWidth(); //Prompt the image to initialize itself if it hasn't already
         Image[] imageArray;
@@ -257,6 +278,8 @@ public class Sprite implements Animatable, Drawable, Loadable {
         }
         imageArray[0] = image;
         imageArray[0].setCenterOfRotation(originX, originY);
+        //Keep the texture cache from evicting the texture while this Sprite is loaded
+        InternalTextureLoader.get().pin(image.getTexture());
         imageArray[1] = image.getFlippedCopy(true, false);
         imageArray[1].setCenterOfRotation(right, originY);
         imageArray[2] = image.getFlippedCopy(false, true);
@@ -277,6 +300,10 @@ public class Sprite implements Animatable, Drawable, Loadable {
             return false;
         } else if (spriteSheet != null) {
             spriteSheet.unloadSprite();
+        } else if (atlas != null) {
+            //The images belong to the TextureAtlas' pages, which it destroys itself
+            clear();
+            atlas.unloadMember();
         } else {
             try {
                 for (Image[] imageArray : filterImages.values()) {
@@ -292,8 +319,16 @@ public class Sprite implements Animatable, Drawable, Loadable {
     }
     
     final void clear() {
-        defaultImages = null;
+        if (defaultImages[0] != null) {
+            InternalTextureLoader.get().unpin(defaultImages[0].getTexture());
+        }
+        for (int i = 0; i < defaultImages.length; i++) {
+            defaultImages[i] = null;
+        }
         for (Image[] images : filterImages.values()) {
+            if (images[0] != null) {
+                InternalTextureLoader.get().unpin(images[0].getTexture());
+            }
             for (int i = 0; i < images.length; i++) {
                 images[i] = null;
             }
@@ -372,6 +407,29 @@ public class Sprite implements Animatable, Drawable, Loadable {
         return this;
     }
     
+    /**
+     * Returns the
+     * <a href="https://cell2d.gitbook.io/cell2d-documentation/general/celick">Celick</a>
+     * Image that this Sprite displays when it is drawn unflipped through the
+     * specified Filter, or null if this Sprite is blank or not loaded. If this
+     * Sprite does not have the specified Filter, its unfiltered Image is
+     * returned. The returned Image should not be modified.
+     * @param filter The Filter to draw this Sprite through, or null if none
+     * @return The Image that this Sprite displays through the specified Filter
+     */
+    public final Image getImage(Filter filter) {
+        if (blank || !loaded) {
+            return null;
+        }
+        if (filter != null) {
+            Image[] imageArray = filterImages.get(filter);
+            if (imageArray != null) {
+                return imageArray[0];
+            }
+        }
+        return defaultImages[0];
+    }
+    
     /**
      * Returns the SpriteSheet that this Sprite is part of, or null if it is not
      * part of one.
@@ -381,6 +439,35 @@ public class Sprite implements Animatable, Drawable, Loadable {
         return spriteSheet;
     }
     
+    /**
+     * Returns the TextureAtlas that this Sprite is part of, or null if it is
+     * not part of one.
+     * @return The TextureAtlas that this Sprite is part of
+     */
+    public final TextureAtlas getAtlas() {
+        return atlas;
+    }
+    
+    final void setAtlas(TextureAtlas atlas) {
+        this.atlas = atlas;
+    }
+    
+    final String getPath() {
+        return path;
+    }
+    
+    final Color getTransColor() {
+        return transColor;
+    }
+    
+    final Sprite getBasedOn() {
+        return basedOn;
+    }
+    
+    final Filter getBasedFilter() {
+        return basedFilter;
+    }
+    
     /**
      * Returns an unmodifiable Set view of the Filters that will have an effect
      * on this Sprite when applied to it with draw().
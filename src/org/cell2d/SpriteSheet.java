@@ -43,6 +43,7 @@ public class SpriteSheet implements Iterable<Sprite>, Loadable {
     private final int width, height, spriteWidth, spriteHeight, spacing, margin, originX, originY;
     private final Sprite[] sprites;
     private int numSpritesLoaded = 0;
+    private TextureAtlas atlas = null;
     
     /**
      * Constructs a SpriteSheet from an image file.
@@ -234,42 +235,75 @@ public class SpriteSheet implements Iterable<Sprite>, Loadable {
     
     /**
      * Loads this SpriteSheet, along with all of its Sprites, if it is not
-     * already loaded.
+     * already loaded. If this SpriteSheet is part of a TextureAtlas, that
+     * TextureAtlas will be loaded as well.
      * @return Whether the loading occurred
      */
     @Override
     public final boolean load() {
         if (!loaded) {
+            if (atlas != null) {
+                loadFromAtlas();
+                atlas.loadSpriteSheet(this);
+                return true;
+            }
             loaded = true;
             Image image;
+            Map<Filter,Image> filteredImages = null;
             if (path != null) {
-                try {
-                    image = new Image(path, false, Image.FILTER_NEAREST, transColor);
-                } catch (SlickException e) {
-                    throw new RuntimeException(e);
-                }
+                filteredImages = new HashMap<>();
+                image = AssetLoader.loadImage(path, transColor, filterImages.keySet(), filteredImages);
             } else {
                 basedOn.load();
                 image = basedFilter.getFilteredImage(basedOn.filterImages.get(null));
             }
-            for (Sprite sprite : sprites) {
-                sprite.loaded = true;
-            }
-            numSpritesLoaded = sprites.length;
-            loadFilter(null, image);
-            defaultImage = image;
-            for (Map.Entry<Filter,Image> entry : filterImages.entrySet()) {
-                Filter filter = entry.getKey();
-                Image filteredImage = filter.getFilteredImage(image);
-                loadFilter(filter, filteredImage);
-                entry.setValue(filteredImage);
-            }
+            loadImages(image, filteredImages);
             return true;
         }
         return false;
     }
     
-    private void loadFilter(Filter filter, Image image) {
+    /*
+     * Loads this SpriteSheet from an unfiltered Image that an AssetLoader has
+     * already created, along with the Images for any of its Filters that the
+     * AssetLoader has already applied.
+     */
+    final boolean load(Image image, Map<Filter,Image> filteredImages) {
+        if (loaded) {
+            return false;
+        }
+        loaded = true;
+        loadImages(image, filteredImages);
+        return true;
+    }
+    
+    private void loadImages(Image image, Map<Filter,Image> filteredImages) {
+        for (Sprite sprite : sprites) {
+            sprite.loaded = true;
+        }
+        numSpritesLoaded = sprites.length;
+        loadFilter(null, image);
+        defaultImage = image;
+        for (Map.Entry<Filter,Image> entry : filterImages.entrySet()) {
+            Filter filter = entry.getKey();
+            Image filteredImage = (filteredImages == null ? null : filteredImages.get(filter));
+            if (filteredImage == null) {
+                filteredImage = filter.getFilteredImage(image);
+            }
+            loadFilter(filter, filteredImage);
+            entry.setValue(filteredImage);
+        }
+    }
+    
+    final void loadFromAtlas() {
+        loaded = true;
+        for (Sprite sprite : sprites) {
+            sprite.loaded = true;
+        }
+        numSpritesLoaded = sprites.length;
+    }
+    
+    final void loadFilter(Filter filter, Image image) {
         org.cell2d.celick.SpriteSheet spriteSheet = new org.cell2d.celick.SpriteSheet(
                 image, spriteWidth, spriteHeight, spacing, margin);
         int i = 0;
@@ -290,12 +324,18 @@ public class SpriteSheet implements Iterable<Sprite>, Loadable {
     public final boolean unload() {
         if (loaded) {
             loaded = false;
-            destroyAndClear();
+            if (atlas == null) {
+                destroyAndClear();
+            }
             for (Sprite sprite : sprites) {
                 sprite.loaded = false;
                 sprite.clear();
             }
             numSpritesLoaded = 0;
+            if (atlas != null) {
+                //The images belong to the TextureAtlas' pages, which it destroys itself
+                atlas.unloadMember();
+            }
             return true;
         }
         return false;
@@ -305,10 +345,15 @@ public class SpriteSheet implements Iterable<Sprite>, Loadable {
         numSpritesLoaded--;
         if (numSpritesLoaded == 0) {
             loaded = false;
-            destroyAndClear();
+            if (atlas == null) {
+                destroyAndClear();
+            }
             for (Sprite sprite : sprites) {
                 sprite.clear();
             }
+            if (atlas != null) {
+                atlas.unloadMember();
+            }
         }
     }
     
@@ -335,6 +380,35 @@ public class SpriteSheet implements Iterable<Sprite>, Loadable {
         return Collections.unmodifiableSet(filterImages.keySet());
     }
     
+    /**
+     * Returns the TextureAtlas that this SpriteSheet is part of, or null if it
+     * is not part of one.
+     * @return The TextureAtlas that this SpriteSheet is part of
+     */
+    public final TextureAtlas getAtlas() {
+        return atlas;
+    }
+    
+    final void setAtlas(TextureAtlas atlas) {
+        this.atlas = atlas;
+    }
+    
+    final String getPath() {
+        return path;
+    }
+    
+    final Color getTransColor() {
+        return transColor;
+    }
+    
+    final SpriteSheet getBasedOn() {
+        return basedOn;
+    }
+    
+    final Filter getBasedFilter() {
+        return basedFilter;
+    }
+    
     /**
      * Returns the width in Sprites of this SpriteSheet.
      * @return The width in Sprites of this SpriteSheet
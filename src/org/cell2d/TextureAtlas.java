@@ -0,0 +1,712 @@
+package org.cell2d;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.cell2d.celick.Image;
+import org.cell2d.celick.ImageBuffer;
+import org.cell2d.celick.SlickException;
+import org.cell2d.celick.util.ResourceLoader;
+
+/**
+ * <p>A TextureAtlas packs the images of many Sprites and SpriteSheets into a
+ * few large <i>pages</i>, so that drawing them in succession does not require
+ * switching between textures. Sprites and SpriteSheets must be added to a
+ * TextureAtlas before they are first loaded, and from then on, loading any of
+ * them loads the TextureAtlas, which in turn loads all of them as if they were
+ * Sprites of one SpriteSheet. A TextureAtlas is unloaded when all of its
+ * Sprites and SpriteSheets are unloaded.</p>
+ * 
+ * <p>Only Sprites and SpriteSheets that were created from image files, or
+ * that were created by applying Filters to ones that were, can be added to a
+ * TextureAtlas. Each image file is packed only once, no matter how many of the
+ * TextureAtlas' Sprites and SpriteSheets are based on it. Rather than copying
+ * each Sprite's image data with each of its Filters applied, a TextureAtlas
+ * applies each Filter that any of its Sprites or SpriteSheets need to whole
+ * pages at once, so that filtered Sprites are batched together too. Thus, the
+ * amount of memory that a loaded TextureAtlas occupies is proportional to its
+ * number of pages times its number of distinct Filters plus 1.</p>
+ * 
+ * <p>A TextureAtlas may be given a cache directory, in which case it writes
+ * the results of its packing there and reads them back instead of packing
+ * again the next time it is loaded. Packing needs no graphics context, so the
+ * cache can be built ahead of time with buildCache(). A cache is only checked
+ * to contain the right image files in the right places, not to be up to date
+ * with their contents, so it should be deleted whenever they change.</p>
+ * @see Sprite
+ * @see SpriteSheet
+ * @see Filter
+ * @author Alex Heyman
+ */
+public class TextureAtlas implements Loadable {
+    
+    //Blank space left between packed images so that they don't bleed into each other
+    private static final int PADDING = 1;
+    private static final String LAYOUT_HEADER = "cell2d-atlas 1";
+    private static final String LAYOUT_FILE = "atlas.txt";
+    
+    private static class Source {
+        
+        private final String path;
+        private final Color transColor;
+        private int width, height;
+        private int page, x, y;
+        private int[] pixels = null;
+        
+        private Source(String path, Color transColor) {
+            this.path = path;
+            this.transColor = transColor;
+        }
+        
+    }
+    
+    private static class Member {
+        
+        private final Source source;
+        private final List<Filter> filters; //The Filters applied to the source, earliest first
+        
+        private Member(Source source, List<Filter> filters) {
+            this.source = source;
+            this.filters = filters;
+        }
+        
+    }
+    
+    /*
+     * A skyline packer places each image as low as it can on top of the
+     * "skyline" of images already placed, which it stores as a left-to-right
+     * list of horizontal segments.
+     */
+    private static class Skyline {
+        
+        private final int width, height;
+        private final List<int[]> segments = new ArrayList<>(); //{x, y, width}
+        
+        private Skyline(int width, int height) {
+            this.width = width;
+            this.height = height;
+            segments.add(new int[]{0, 0, width});
+        }
+        
+        private int[] insert(int w, int h) {
+            int bestIndex = -1;
+            int bestX = 0;
+            int bestY = 0;
+            int bestTop = Integer.MAX_VALUE;
+            for (int i = 0; i < segments.size(); i++) {
+                int x = segments.get(i)[0];
+                if (x + w > width) {
+                    break;
+                }
+                int y = 0;
+                int remaining = w;
+                for (int j = i; remaining > 0; j++) {
+                    int[] segment = segments.get(j);
+                    y = Math.max(y, segment[1]);
+                    remaining -= segment[2];
+                }
+                if (y + h <= height && y + h < bestTop) {
+                    bestIndex = i;
+                    bestX = x;
+                    bestY = y;
+                    bestTop = y + h;
+                }
+            }
+            if (bestIndex < 0) {
+                return null;
+            }
+            int end = bestX + w;
+            segments.add(bestIndex, new int[]{bestX, bestTop, w});
+            int i = bestIndex + 1;
+            while (i < segments.size()) {
+                int[] segment = segments.get(i);
+                if (segment[0] >= end) {
+                    break;
+                }
+                int overlap = end - segment[0];
+                if (overlap >= segment[2]) {
+                    segments.remove(i);
+                } else {
+                    segment[0] += overlap;
+                    segment[2] -= overlap;
+                    break;
+                }
+            }
+            for (i = segments.size() - 1; i > 0; i--) {
+                int[] previous = segments.get(i - 1);
+                int[] segment = segments.get(i);
+                if (previous[1] == segment[1]) {
+                    previous[2] += segment[2];
+                    segments.remove(i);
+                }
+            }
+            return new int[]{bestX, bestY};
+        }
+        
+    }
+    
+    private boolean loaded = false;
+    private final int pageWidth, pageHeight;
+    private final String cachePath;
+    private final Map<String,Source> sources = new LinkedHashMap<>();
+    private final Map<Sprite,Member> sprites = new LinkedHashMap<>();
+    private final Map<SpriteSheet,Member> spriteSheets = new LinkedHashMap<>();
+    private boolean packed = false;
+    private int numPages = 0;
+    private long[] pageAreas = null;
+    private final Map<List<Filter>,Image[]> pageImages = new HashMap<>();
+    private int numMembersLoaded = 0;
+    
+    /**
+     * Constructs a TextureAtlas with pages of the specified size and no cache
+     * directory.
+     * @param pageWidth The width in pixels of each page
+     * @param pageHeight The height in pixels of each page
+     */
+    public TextureAtlas(int pageWidth, int pageHeight) {
+        this(pageWidth, pageHeight, null);
+    }
+    
+    /**
+     * Constructs a TextureAtlas with pages of the specified size.
+     * @param pageWidth The width in pixels of each page
+     * @param pageHeight The height in pixels of each page
+     * @param cachePath The path to the directory in which this TextureAtlas
+     * should cache its pages, or null if it should not have one
+     */
+    public TextureAtlas(int pageWidth, int pageHeight, String cachePath) {
+        if (pageWidth <= 0) {
+            throw new RuntimeException("Attempted to construct a TextureAtlas with non-positive page width "
+                    + pageWidth);
+        }
+        if (pageHeight <= 0) {
+            throw new RuntimeException("Attempted to construct a TextureAtlas with non-positive page height "
+                    + pageHeight);
+        }
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.cachePath = cachePath;
+    }
+    
+    private Member addMember(String path, Color transColor, List<Filter> filters) {
+        if (loaded) {
+            throw new RuntimeException("Attempted to add to a TextureAtlas while it is loaded");
+        }
+        String key = path + "|" + (transColor == null ? "-" : colorToString(transColor));
+        Source source = sources.get(key);
+        if (source == null) {
+            source = new Source(path, transColor);
+            sources.put(key, source);
+            packed = false;
+        }
+        Collections.reverse(filters);
+        return new Member(source, Collections.unmodifiableList(filters));
+    }
+    
+    /**
+     * Adds the specified Sprite to this TextureAtlas. The Sprite must not be
+     * loaded or part of a SpriteSheet or another TextureAtlas, and it must
+     * have been created from an image file or from another Sprite that meets
+     * this requirement.
+     * @param sprite The Sprite to add
+     */
+    public final void addSprite(Sprite sprite) {
+        if (sprite.getAtlas() != null) {
+            throw new RuntimeException("Attempted to add a Sprite to a TextureAtlas when it is already part"
+                    + " of one");
+        }
+        if (sprite.getSpriteSheet() != null) {
+            throw new RuntimeException("Attempted to add a Sprite that is part of a SpriteSheet to a"
+                    + " TextureAtlas");
+        }
+        if (sprite.isLoaded()) {
+            throw new RuntimeException("Attempted to add a loaded Sprite to a TextureAtlas");
+        }
+        List<Filter> filters = new ArrayList<>();
+        Sprite root = sprite;
+        while (root.getPath() == null) {
+            if (root.getBasedOn() == null) {
+                throw new RuntimeException("Attempted to add a Sprite to a TextureAtlas that was not created"
+                        + " from an image file");
+            }
+            filters.add(root.getBasedFilter());
+            root = root.getBasedOn();
+        }
+        sprites.put(sprite, addMember(root.getPath(), root.getTransColor(), filters));
+        sprite.setAtlas(this);
+    }
+    
+    /**
+     * Adds the specified SpriteSheet to this TextureAtlas. The SpriteSheet
+     * must not be loaded or part of another TextureAtlas, and it must have
+     * been created from an image file or from another SpriteSheet that meets
+     * this requirement.
+     * @param spriteSheet The SpriteSheet to add
+     */
+    public final void addSpriteSheet(SpriteSheet spriteSheet) {
+        if (spriteSheet.getAtlas() != null) {
+            throw new RuntimeException("Attempted to add a SpriteSheet to a TextureAtlas when it is already"
+                    + " part of one");
+        }
+        if (spriteSheet.isLoaded()) {
+            throw new RuntimeException("Attempted to add a loaded SpriteSheet to a TextureAtlas");
+        }
+        List<Filter> filters = new ArrayList<>();
+        SpriteSheet root = spriteSheet;
+        while (root.getPath() == null) {
+            filters.add(root.getBasedFilter());
+            root = root.getBasedOn();
+        }
+        spriteSheets.put(spriteSheet, addMember(root.getPath(), root.getTransColor(), filters));
+        spriteSheet.setAtlas(this);
+    }
+    
+    /**
+     * Returns the width in pixels of each of this TextureAtlas' pages.
+     * @return The width of each of this TextureAtlas' pages
+     */
+    public final int getPageWidth() {
+        return pageWidth;
+    }
+    
+    /**
+     * Returns the height in pixels of each of this TextureAtlas' pages.
+     * @return The height of each of this TextureAtlas' pages
+     */
+    public final int getPageHeight() {
+        return pageHeight;
+    }
+    
+    /**
+     * Returns the path to the directory in which this TextureAtlas caches its
+     * pages, or null if it does not have one.
+     * @return This TextureAtlas' cache directory
+     */
+    public final String getCachePath() {
+        return cachePath;
+    }
+    
+    /**
+     * Returns the number of pages into which this TextureAtlas' images have
+     * been packed, or 0 if they have not been packed since the last time
+     * something was added to it.
+     * @return The number of this TextureAtlas' pages
+     */
+    public final int getNumPages() {
+        return (packed ? numPages : 0);
+    }
+    
+    /**
+     * Returns the fraction, from 0 to 1, of the area of the specified page of
+     * this TextureAtlas that is covered by images.
+     * @param page The index of the page
+     * @return The fraction of the page that is occupied
+     * @throws IndexOutOfBoundsException if this TextureAtlas has not been
+     * packed or has no page with the specified index
+     */
+    public final double getPageOccupancy(int page) {
+        if (page < 0 || page >= getNumPages()) {
+            throw new IndexOutOfBoundsException("Attempted to get the occupancy of a TextureAtlas' page at"
+                    + " invalid index " + page);
+        }
+        return ((double)pageAreas[page])/(((long)pageWidth)*pageHeight);
+    }
+    
+    /**
+     * Returns the fraction, from 0 to 1, of the total area of this
+     * TextureAtlas' pages that is covered by images, or 0 if it has not been
+     * packed.
+     * @return The fraction of all of the pages that is occupied
+     */
+    public final double getOccupancy() {
+        if (getNumPages() == 0) {
+            return 0;
+        }
+        long area = 0;
+        for (int i = 0; i < numPages; i++) {
+            area += pageAreas[i];
+        }
+        return ((double)area)/(((long)pageWidth)*pageHeight*numPages);
+    }
+    
+    private static String colorToString(Color color) {
+        return String.format("%02x%02x%02x", color.getRByte(), color.getGByte(), color.getBByte());
+    }
+    
+    private static int[] readPixels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        return image.getRGB(0, 0, width, height, null, 0, width);
+    }
+    
+    private static void readSource(Source source) {
+        BufferedImage image;
+        try (InputStream in = ResourceLoader.getResourceAsStream(source.path)) {
+            image = ImageIO.read(in);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (image == null) {
+            throw new RuntimeException("Attempted to pack an unreadable image file " + source.path
+                    + " into a TextureAtlas");
+        }
+        source.width = image.getWidth();
+        source.height = image.getHeight();
+        source.pixels = readPixels(image);
+        if (source.transColor != null) {
+            int trans = (source.transColor.getRByte() << 16) | (source.transColor.getGByte() << 8)
+                    | source.transColor.getBByte();
+            for (int i = 0; i < source.pixels.length; i++) {
+                if ((source.pixels[i] & 0xFFFFFF) == trans) {
+                    source.pixels[i] = 0;
+                }
+            }
+        }
+    }
+    
+    private int[][] pack() {
+        for (Source source : sources.values()) {
+            readSource(source);
+            if (source.width > pageWidth || source.height > pageHeight) {
+                throw new RuntimeException("Attempted to pack an image of size " + source.width + "x"
+                        + source.height + " into a TextureAtlas with " + pageWidth + "x" + pageHeight
+                        + " pages");
+            }
+        }
+        List<Source> order = new ArrayList<>(sources.values());
+        //Packing the tallest images first leaves the flattest skyline
+        order.sort(new Comparator<Source>() {
+            
+            @Override
+            public final int compare(Source source1, Source source2) {
+                if (source1.height != source2.height) {
+                    return Integer.compare(source2.height, source1.height);
+                }
+                return Integer.compare(source2.width, source1.width);
+            }
+            
+        });
+        List<Skyline> skylines = new ArrayList<>();
+        for (Source source : order) {
+            //Padding only needs to go between images, so the pages get one extra row and column of it
+            int w = source.width + PADDING;
+            int h = source.height + PADDING;
+            int[] position = null;
+            int page;
+            for (page = 0; page < skylines.size(); page++) {
+                position = skylines.get(page).insert(w, h);
+                if (position != null) {
+                    break;
+                }
+            }
+            if (position == null) {
+                Skyline skyline = new Skyline(pageWidth + PADDING, pageHeight + PADDING);
+                skylines.add(skyline);
+                position = skyline.insert(w, h);
+            }
+            source.page = page;
+            source.x = position[0];
+            source.y = position[1];
+        }
+        numPages = skylines.size();
+        int[][] pages = new int[numPages][pageWidth*pageHeight];
+        for (Source source : sources.values()) {
+            int[] pixels = pages[source.page];
+            for (int y = 0; y < source.height; y++) {
+                System.arraycopy(source.pixels, y*source.width,
+                        pixels, (source.y + y)*pageWidth + source.x, source.width);
+            }
+            source.pixels = null;
+        }
+        packed = true;
+        computePageAreas();
+        return pages;
+    }
+    
+    private void computePageAreas() {
+        pageAreas = new long[numPages];
+        for (Source source : sources.values()) {
+            pageAreas[source.page] += ((long)source.width)*source.height;
+        }
+    }
+    
+    private void writeCache(int[][] pages) {
+        File directory = new File(cachePath);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new RuntimeException("Attempted to write a TextureAtlas' cache to " + cachePath
+                    + ", which could not be created as a directory");
+        }
+        try {
+            for (int i = 0; i < numPages; i++) {
+                BufferedImage image = new BufferedImage(pageWidth, pageHeight, BufferedImage.TYPE_INT_ARGB);
+                image.setRGB(0, 0, pageWidth, pageHeight, pages[i], 0, pageWidth);
+                ImageIO.write(image, "png", new File(directory, "page" + i + ".png"));
+            }
+            try (PrintWriter writer = new PrintWriter(new File(directory, LAYOUT_FILE), "UTF-8")) {
+                writer.println(LAYOUT_HEADER);
+                writer.println(pageWidth + " " + pageHeight + " " + numPages);
+                for (Source source : sources.values()) {
+                    writer.println(source.page + " " + source.x + " " + source.y + " " + source.width + " "
+                            + source.height + " "
+                            + (source.transColor == null ? "-" : colorToString(source.transColor)) + " "
+                            + source.path);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    /*
+     * Reads this TextureAtlas' layout from its cache and returns its pages, or
+     * returns null if the cache is missing or doesn't hold exactly this
+     * TextureAtlas' image files with the same page size.
+     */
+    private int[][] readCache() {
+        File directory = new File(cachePath);
+        File layoutFile = new File(directory, LAYOUT_FILE);
+        if (!layoutFile.isFile()) {
+            return null;
+        }
+        Map<String,int[]> layout = new HashMap<>();
+        int cachedPages;
+        try (BufferedReader reader = new BufferedReader(new FileReader(layoutFile))) {
+            if (!LAYOUT_HEADER.equals(reader.readLine())) {
+                return null;
+            }
+            String[] size = reader.readLine().split(" ");
+            if (Integer.parseInt(size[0]) != pageWidth || Integer.parseInt(size[1]) != pageHeight) {
+                return null;
+            }
+            cachedPages = Integer.parseInt(size[2]);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ", 7);
+                int[] rect = new int[5];
+                for (int i = 0; i < rect.length; i++) {
+                    rect[i] = Integer.parseInt(fields[i]);
+                }
+                layout.put(fields[6] + "|" + fields[5], rect);
+            }
+        } catch (IOException | RuntimeException e) {
+            //A malformed cache is treated as a missing one
+            return null;
+        }
+        if (!layout.keySet().equals(sources.keySet())) {
+            return null;
+        }
+        int[][] pages = new int[cachedPages][];
+        try {
+            for (int i = 0; i < cachedPages; i++) {
+                BufferedImage image = ImageIO.read(new File(directory, "page" + i + ".png"));
+                if (image == null || image.getWidth() != pageWidth || image.getHeight() != pageHeight) {
+                    return null;
+                }
+                pages[i] = readPixels(image);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        for (Map.Entry<String,Source> entry : sources.entrySet()) {
+            int[] rect = layout.get(entry.getKey());
+            Source source = entry.getValue();
+            source.page = rect[0];
+            source.x = rect[1];
+            source.y = rect[2];
+            source.width = rect[3];
+            source.height = rect[4];
+        }
+        numPages = cachedPages;
+        packed = true;
+        computePageAreas();
+        return pages;
+    }
+    
+    /*
+     * Obtains the pixel data of this TextureAtlas' pages without any graphics
+     * context, so an AssetLoader can call this on a worker thread.
+     */
+    final int[][] getPagePixels() {
+        int[][] pages = null;
+        if (cachePath != null) {
+            pages = readCache();
+        }
+        if (pages == null) {
+            pages = pack();
+            if (cachePath != null) {
+                writeCache(pages);
+            }
+        }
+        return pages;
+    }
+    
+    /**
+     * Packs this TextureAtlas' images into pages and writes them to its cache
+     * directory, without loading anything. Since this requires no graphics
+     * context, it can be done ahead of time, such as by a build tool.
+     */
+    public final void buildCache() {
+        if (cachePath == null) {
+            throw new RuntimeException("Attempted to build the cache of a TextureAtlas with no cache"
+                    + " directory");
+        }
+        writeCache(pack());
+    }
+    
+    private Image[] getPageImages(List<Filter> filters) {
+        Image[] images = pageImages.get(filters);
+        if (images == null) {
+            Image[] unfiltered = getPageImages(filters.subList(0, filters.size() - 1));
+            Filter filter = filters.get(filters.size() - 1);
+            images = new Image[numPages];
+            for (int i = 0; i < numPages; i++) {
+                images[i] = filter.getFilteredImage(unfiltered[i]);
+            }
+            pageImages.put(new ArrayList<>(filters), images);
+        }
+        return images;
+    }
+    
+    private Image getImage(Member member, Filter filter) {
+        List<Filter> filters = member.filters;
+        if (filter != null) {
+            filters = new ArrayList<>(filters);
+            filters.add(filter);
+        }
+        Source source = member.source;
+        return getPageImages(filters)[source.page].getSubImage(
+                source.x, source.y, source.width, source.height);
+    }
+    
+    private void loadSpriteImages(Sprite sprite, Member member) {
+        sprite.loadFilter(null, getImage(member, null));
+        for (Filter filter : sprite.getFilters()) {
+            sprite.loadFilter(filter, getImage(member, filter));
+        }
+    }
+    
+    private void loadSpriteSheetImages(SpriteSheet spriteSheet, Member member) {
+        spriteSheet.loadFilter(null, getImage(member, null));
+        for (Filter filter : spriteSheet.getFilters()) {
+            spriteSheet.loadFilter(filter, getImage(member, filter));
+        }
+    }
+    
+    @Override
+    public final boolean isLoaded() {
+        return loaded;
+    }
+    
+    /**
+     * Loads this TextureAtlas, along with all of its Sprites and SpriteSheets,
+     * if it is not already loaded. If its images have not been packed yet and
+     * it has a cache directory holding a valid cache, the cache will be used;
+     * otherwise, they will be packed, and the cache will be written if there
+     * is a cache directory.
+     * @return Whether the loading occurred
+     */
+    @Override
+    public final boolean load() {
+        if (loaded) {
+            return false;
+        }
+        return load(getPagePixels());
+    }
+    
+    //Loads this TextureAtlas from pixel data that getPagePixels() has returned
+    final boolean load(int[][] pages) {
+        if (loaded) {
+            return false;
+        }
+        loaded = true;
+        Image[] images = new Image[numPages];
+        for (int i = 0; i < numPages; i++) {
+            ImageBuffer buffer = new ImageBuffer(pageWidth, pageHeight);
+            buffer.setPixels(pages[i]);
+            images[i] = buffer.getImage(Image.FILTER_NEAREST);
+        }
+        pageImages.put(Collections.<Filter>emptyList(), images);
+        for (Map.Entry<Sprite,Member> entry : sprites.entrySet()) {
+            entry.getKey().loaded = true;
+            loadSpriteImages(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<SpriteSheet,Member> entry : spriteSheets.entrySet()) {
+            entry.getKey().loadFromAtlas();
+            loadSpriteSheetImages(entry.getKey(), entry.getValue());
+        }
+        numMembersLoaded = sprites.size() + spriteSheets.size();
+        return true;
+    }
+    
+    final void loadSprite(Sprite sprite) {
+        if (!load()) {
+            loadSpriteImages(sprite, sprites.get(sprite));
+            numMembersLoaded++;
+        }
+    }
+    
+    final void loadSpriteSheet(SpriteSheet spriteSheet) {
+        if (!load()) {
+            loadSpriteSheetImages(spriteSheet, spriteSheets.get(spriteSheet));
+            numMembersLoaded++;
+        }
+    }
+    
+    final void unloadMember() {
+        numMembersLoaded--;
+        if (numMembersLoaded == 0) {
+            loaded = false;
+            destroyAndClear();
+        }
+    }
+    
+    private void destroyAndClear() {
+        try {
+            for (Image[] images : pageImages.values()) {
+                for (Image image : images) {
+                    image.destroy();
+                }
+            }
+        } catch (SlickException e) {
+            throw new RuntimeException(e);
+        }
+        pageImages.clear();
+    }
+    
+    /**
+     * Unloads this TextureAtlas, along with all of its Sprites and
+     * SpriteSheets, if it is currently loaded.
+     * @return Whether the unloading occurred
+     */
+    @Override
+    public final boolean unload() {
+        if (!loaded) {
+            return false;
+        }
+        for (Sprite sprite : sprites.keySet()) {
+            sprite.unload();
+        }
+        for (SpriteSheet spriteSheet : spriteSheets.keySet()) {
+            spriteSheet.unload();
+        }
+        //Unloading the last Sprite or SpriteSheet unloads this TextureAtlas, unless it has none
+        if (loaded) {
+            loaded = false;
+            destroyAndClear();
+        }
+        return true;
+    }
+    
+}
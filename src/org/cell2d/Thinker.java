@@ -1,12 +1,11 @@
 package org.cell2d;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
@@ -36,7 +35,9 @@ import java.util.Set;
  * indicating that either the Event was performed, or the value was deliberately
  * set to 0, this time unit. Each time unit, a Thinker decreases its
  * non-negative timers' values by 1 and performs the Events whose timers have
- * reached 0. Each frame, each Thinker experiences all of its time units
+ * reached 0, in the order in which those timers' values were last set. The
+ * time this takes depends only on how many timers reach 0, not on how many are
+ * running. Each frame, each Thinker experiences all of its time units
  * immediately before its assigned SubThinkers experience any of theirs.</p>
  * 
  * <p>A Thinker has frameActions() that it takes exactly once each frame, after
@@ -51,9 +52,13 @@ import java.util.Set;
  * over, the actual addition or removal of a SubThinker to or from a Thinker is
  * delayed until any and all iterations over its SubThinkers, such as the
  * periods during which its SubThinkers perform their timer Events, have been
- * completed. Multiple delayed instructions may be successfully given to
- * Thinkers regarding the same SubThinker without having to wait until all
- * iterations have finished.</p>
+ * completed. While the Thinkers assigned to a GameState are experiencing their
+ * time units, a Thinker's list of SubThinkers counts as being iterated over
+ * from the time its first SubThinker starts experiencing its time units until
+ * the time its last SubThinker's own SubThinkers have finished. Multiple
+ * delayed instructions may be successfully given to Thinkers regarding the
+ * same SubThinker without having to wait until all iterations have finished.
+ * </p>
  * @param <T> The type of CellGame that uses this Thinker's GameStates
  * @param <U> The type of GameState that uses this Thinker
  * @param <V> The type of SubThinker that can be assigned to this Thinker
@@ -66,12 +71,15 @@ public abstract class Thinker<T extends CellGame, U extends GameState<T,U,V>, V
     private final Class<V> subThinkerClass;
     private long timeFactor = -1;
     private long timeToRun = 0;
-    private final Map<Event<T,U>,Integer> timers = new HashMap<>();
+    private final TimerWheel<T,U> timers = new TimerWheel<>();
     private final EventGroup<T,U> frameEvents = new EventGroup<>();
-    private final Set<V> subThinkers = new HashSet<>();
+    final Set<V> subThinkers = new LinkedHashSet<>();
     private int subThinkerIterators = 0;
     private final Queue<SubThinkerChange<T,U,V>> subThinkerChanges = new LinkedList<>();
     private boolean updatingSubThinkers = false;
+    private boolean subThinkerChangesDelayed = false;
+    //This Thinker's index in its GameState's list of Thinkers when it was last listed there
+    int thinkerIndex = -1;
     
     final Event<T,U> frame = (game, state) -> {
         frameActions(game, state);
@@ -170,7 +178,7 @@ public abstract class Thinker<T extends CellGame, U extends GameState<T,U,V>, V
      * @return The current value of the timer for the specified Event
      */
     public final int getTimerValue(Event<T,U> event) {
-        return timers.getOrDefault(event, -1);
+        return timers.get(event);
     }
     
     /**
@@ -180,45 +188,16 @@ public abstract class Thinker<T extends CellGame, U extends GameState<T,U,V>, V
      * @param value The new value of the specified Event's timer
      */
     public final void setTimerValue(Event<T,U> event, int value) {
-        if (value < 0) {
-            timers.remove(event);
-        } else {
-            timers.put(event, value);
-        }
+        timers.set(event, value);
     }
     
-    final void update(T game, U state, long time) {
-        if (timeFactor >= 0) {
-            time = timeFactor;
-        }
+    //Experiences the specified amount of time, which already takes this Thinker's time factor into account
+    final void updateTimers(T game, U state, long time) {
         timeToRun += time;
-        while (timeToRun >= Frac.UNIT) {
-            if (!timers.isEmpty()) {
-                List<Event<T,U>> eventsToPerform = new ArrayList<>();
-                Iterator<Map.Entry<Event<T,U>,Integer>> iterator = timers.entrySet().iterator();
-                while (iterator.hasNext()) {
-                    Map.Entry<Event<T,U>,Integer> entry = iterator.next();
-                    int value = entry.getValue();
-                    if (value == 0) {
-                        iterator.remove();
-                    } else {
-                        if (value == 1) {
-                            eventsToPerform.add(entry.getKey());
-                        }
-                        entry.setValue(value - 1);
-                    }
-                }
-                for (Event<T,U> event : eventsToPerform) {
-                    event.actions(game, state);
-                }
-            }
-            timeToRun -= Frac.UNIT;
-        }
-        if (getNumSubThinkers() > 0) {
-            Iterator<V> iterator = subThinkerIterator();
-            while (iterator.hasNext()) {
-                iterator.next().update(game, state, time);
-            }
+        if (timeToRun >= Frac.UNIT) {
+            long units = timeToRun/Frac.UNIT;
+            timeToRun -= units*Frac.UNIT;
+            timers.advance(units, game, state);
         }
     }
     
@@ -302,7 +281,11 @@ public abstract class Thinker<T extends CellGame, U extends GameState<T,U,V>, V
      * in progress
      */
     public final boolean iteratingThroughSubThinkers() {
-        return subThinkerIterators > 0;
+        if (subThinkerIterators > 0) {
+            return true;
+        }
+        U state = getGameState();
+        return state != null && state.walkingThroughSubThinkers(this);
     }
     
     /**
@@ -475,10 +458,22 @@ public abstract class Thinker<T extends CellGame, U extends GameState<T,U,V>, V
         }
     }
     
+    //Lets this Thinker's GameState know that its tree of Thinkers has changed shape
+    private void markThinkersChanged() {
+        U thinkerState = getGameState();
+        if (thinkerState != null) {
+            thinkerState.thinkersChanged = true;
+        }
+    }
+    
     private void add(T game, U state, V subThinker) {
+        markThinkersChanged();
         subThinkers.add(subThinker);
         subThinker.superThinker = this;
         subThinker.setGameAndState(game, state);
+        if (state != null) {
+            state.subThinkerAdded(this, subThinker);
+        }
         frameEvents.add(subThinker.frame, subThinker.getFramePriority());
         addSubThinkerActions(game, state, subThinker);
         subThinker.addedActions(game, state);
@@ -499,8 +494,12 @@ public abstract class Thinker<T extends CellGame, U extends GameState<T,U,V>, V
         removeSubThinkerActions(game, state, subThinker);
         frameEvents.remove(subThinker.frame, subThinker.getFramePriority());
         subThinkers.remove(subThinker);
+        if (state != null) {
+            state.subThinkerRemoved(subThinker);
+        }
         subThinker.superThinker = null;
         subThinker.setGameAndState(null, null);
+        markThinkersChanged();
     }
     
     /**
@@ -514,11 +513,31 @@ public abstract class Thinker<T extends CellGame, U extends GameState<T,U,V>, V
      */
     public void removeSubThinkerActions(T game, U state, V subThinker) {}
     
-    private void updateSubThinkers() {
+    //Makes the changes to this Thinker's SubThinkers that waited for its GameState's walk to leave them
+    final void makeDelayedSubThinkerChanges() {
+        if (subThinkerChangesDelayed) {
+            subThinkerChangesDelayed = false;
+            U state = getGameState();
+            if (state != null) {
+                state.numDelayedThinkers--;
+            }
+            updateSubThinkers();
+        }
+    }
+    
+    final void updateSubThinkers() {
         if (subThinkerIterators == 0 && !updatingSubThinkers) {
+            U state = getGameState();
+            if (state != null && state.walkingThroughSubThinkers(this)) {
+                //The GameState will make the changes once its walk has left this Thinker's SubThinkers
+                if (!subThinkerChangesDelayed) {
+                    subThinkerChangesDelayed = true;
+                    state.numDelayedThinkers++;
+                }
+                return;
+            }
             updatingSubThinkers = true;
             T game = getGame();
-            U state = getGameState();
             while (!subThinkerChanges.isEmpty()) {
                 SubThinkerChange<T,U,V> change = subThinkerChanges.remove();
                 if (!change.made) {
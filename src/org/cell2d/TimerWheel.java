@@ -0,0 +1,194 @@
+package org.cell2d;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A TimerWheel holds a Thinker's timers. Rather than counting each timer's
+ * value down every time unit, it files each timer under the absolute time unit
+ * at which its value will reach 0, in a hierarchical timing wheel: level 0 has
+ * a slot for each of the next 64 time units, level 1 has a slot for each of
+ * the next 64 spans of 64 time units, and so on. Each time a span of a level
+ * begins, the timers in that span's slot are filed again into the levels
+ * below. A time unit thus costs time proportional to the number of timers that
+ * reach 0 during it, plus a rare and small share of the refiling. Timers that
+ * reach 0 during the same time unit have their Events performed in the order
+ * in which their values were last set.
+ */
+
+/**
+ * @author Alex Heyman
+ */
+class TimerWheel<T extends CellGame, U extends GameState<T,U,?>> {
+    
+    private static final int SLOT_BITS = 6;
+    private static final int NUM_SLOTS = 1 << SLOT_BITS;
+    private static final long SLOT_MASK = NUM_SLOTS - 1;
+    //Enough levels to hold a timer with any positive int value
+    private static final int NUM_LEVELS = 6;
+    
+    private static class Timer<T extends CellGame, U extends GameState<T,U,?>> {
+        
+        private final Event<T,U> event;
+        private long expiry = 0;
+        private long order = 0;
+        private boolean scheduled = false;
+        private Timer<T,U> prev = this;
+        private Timer<T,U> next = this;
+        
+        private Timer(Event<T,U> event) {
+            this.event = event;
+        }
+        
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+        
+    }
+    
+    private final Map<Event<T,U>,Timer<T,U>> timers = new HashMap<>();
+    //Each slot's timers are in a circular list that starts and ends with a sentinel Timer
+    private final List<Timer<T,U>> slots = new ArrayList<>(NUM_LEVELS*NUM_SLOTS);
+    private int numScheduled = 0;
+    private long now = 0;
+    private long nextOrder = 0;
+    //Timers whose values have reached or been set to 0 during the current time unit
+    private final List<Timer<T,U>> zeroTimers = new ArrayList<>();
+    private final List<Timer<T,U>> dueTimers = new ArrayList<>();
+    
+    TimerWheel() {
+        for (int i = 0; i < NUM_LEVELS*NUM_SLOTS; i++) {
+            slots.add(new Timer<>(null));
+        }
+    }
+    
+    final int get(Event<T,U> event) {
+        Timer<T,U> timer = timers.get(event);
+        return (timer == null ? -1 : (int)(timer.expiry - now));
+    }
+    
+    final void set(Event<T,U> event, int value) {
+        Timer<T,U> timer = timers.get(event);
+        if (value < 0) {
+            if (timer != null) {
+                unschedule(timer);
+                timers.remove(event);
+            }
+            return;
+        }
+        if (timer == null) {
+            timer = new Timer<>(event);
+            timers.put(event, timer);
+        } else {
+            unschedule(timer);
+        }
+        timer.expiry = now + value;
+        timer.order = nextOrder++;
+        if (value == 0) {
+            zeroTimers.add(timer);
+        } else {
+            schedule(timer);
+        }
+    }
+    
+    private void schedule(Timer<T,U> timer) {
+        long delta = timer.expiry - now;
+        int level = 0;
+        while (level < NUM_LEVELS - 1 && delta >= 1L << (SLOT_BITS*(level + 1))) {
+            level++;
+        }
+        int index = (int)((timer.expiry >> (SLOT_BITS*level)) & SLOT_MASK);
+        Timer<T,U> sentinel = slots.get(level*NUM_SLOTS + index);
+        timer.prev = sentinel.prev;
+        timer.next = sentinel;
+        sentinel.prev.next = timer;
+        sentinel.prev = timer;
+        timer.scheduled = true;
+        numScheduled++;
+    }
+    
+    private void unschedule(Timer<T,U> timer) {
+        if (timer.scheduled) {
+            timer.unlink();
+            timer.scheduled = false;
+            numScheduled--;
+        }
+    }
+    
+    private void cascade(int level, int index) {
+        Timer<T,U> sentinel = slots.get(level*NUM_SLOTS + index);
+        while (sentinel.next != sentinel) {
+            Timer<T,U> timer = sentinel.next;
+            unschedule(timer);
+            schedule(timer);
+        }
+    }
+    
+    /*
+     * Moves on to the next time unit and gathers the timers that reach 0
+     * during it into dueTimers.
+     */
+    private void step() {
+        now++;
+        if (!zeroTimers.isEmpty()) {
+            //Timers that were at 0 during the last time unit stop running, unless they have been set since
+            for (Timer<T,U> timer : zeroTimers) {
+                if (timer.expiry < now && timers.get(timer.event) == timer) {
+                    timers.remove(timer.event);
+                }
+            }
+            zeroTimers.clear();
+        }
+        int index = (int)(now & SLOT_MASK);
+        if (index == 0) {
+            for (int level = 1; level < NUM_LEVELS; level++) {
+                int levelIndex = (int)((now >> (SLOT_BITS*level)) & SLOT_MASK);
+                cascade(level, levelIndex);
+                if (levelIndex != 0) {
+                    break;
+                }
+            }
+        }
+        Timer<T,U> sentinel = slots.get(index);
+        while (sentinel.next != sentinel) {
+            Timer<T,U> timer = sentinel.next;
+            unschedule(timer);
+            dueTimers.add(timer);
+            zeroTimers.add(timer);
+        }
+        if (dueTimers.size() > 1) {
+            dueTimers.sort((timer1, timer2) -> Long.compare(timer1.order, timer2.order));
+        }
+    }
+    
+    /*
+     * Experiences the specified number of time units, performing the Events
+     * of the timers that reach 0 during each one.
+     */
+    final void advance(long units, T game, U state) {
+        while (units > 0) {
+            if (numScheduled == 0 && zeroTimers.isEmpty()) {
+                //Nothing can happen during the remaining time units
+                now += units;
+                return;
+            }
+            step();
+            units--;
+            if (!dueTimers.isEmpty()) {
+                try {
+                    for (int i = 0; i < dueTimers.size(); i++) {
+                        dueTimers.get(i).event.actions(game, state);
+                    }
+                } finally {
+                    dueTimers.clear();
+                }
+            }
+        }
+    }
+    
+}
@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.StringTokenizer;
 import org.cell2d.Color;
+import org.cell2d.celick.opengl.renderer.BatchRenderer;
 import org.cell2d.celick.opengl.renderer.Renderer;
 import org.cell2d.celick.opengl.renderer.SGL;
 import org.cell2d.celick.util.Log;
@@ -202,6 +203,8 @@ public class AngelCodeFont implements Font {
 	 * @throws SlickException
 	 */
 	private void parseFnt(InputStream fntFile) throws SlickException {
+		// Glyphs drawn through a batch renderer can share its batches, which a display list can't
+		if (GL instanceof BatchRenderer) displayListCaching = false;
 		if (displayListCaching) {
 			baseDisplayListID = GL.glGenLists(DISPLAY_LIST_CACHE_SIZE);
 			if (baseDisplayListID == 0) displayListCaching = false;
@@ -0,0 +1,175 @@
+package org.cell2d.celick;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.cell2d.Color;
+import org.cell2d.celick.opengl.ImageData;
+import org.cell2d.celick.opengl.ImageDataFactory;
+import org.cell2d.celick.opengl.LoadableImageData;
+import org.cell2d.celick.opengl.TextureImpl;
+import org.cell2d.celick.util.ResourceLoader;
+
+/**
+ * An image file that has been read and decoded into texture data, but not yet
+ * uploaded to a texture. Decoding makes no OpenGL calls, so it may be done on
+ * any thread, or without a display at all; only getImage() must be called on
+ * the thread that owns the OpenGL context. The texture data produced is
+ * exactly that which new Image(ref, flipped, filter, transparent) would have
+ * uploaded, and getImage() caches the texture under the same name as that
+ * constructor would, so the two share a texture and its memory is counted
+ * against the texture cache's budget.
+ * 
+ * @author Alex Heyman
+ */
+public class DecodedImage implements ImageData {
+	/** The reference to the resource the image was decoded from */
+	private final String ref;
+	/** True if the image was flipped vertically */
+	private final boolean flipped;
+	/** The colour treated as transparent, or null if none was */
+	private final Color transparent;
+	/** The width of the image */
+	private final int width;
+	/** The height of the image */
+	private final int height;
+	/** The width of the texture */
+	private final int texWidth;
+	/** The height of the texture */
+	private final int texHeight;
+	/** The bit depth of the texture data - 24 or 32 */
+	private final int depth;
+	/** The decoded texture data */
+	private final ByteBuffer data;
+
+	/**
+	 * Read and decode an image
+	 *
+	 * @param ref The reference to the resource to decode
+	 * @param flipped True if the image should be flipped vertically
+	 * @param transparent The colour to treat as transparent, or null if none should be
+	 * @throws IOException Indicates a failure to read or decode the resource
+	 */
+	public DecodedImage(String ref, boolean flipped, Color transparent) throws IOException {
+		this.ref = ref;
+		this.flipped = flipped;
+		this.transparent = transparent;
+		int[] trans = null;
+		if (transparent != null) {
+			trans = new int[3];
+			trans[0] = transparent.getRByte();
+			trans[1] = transparent.getGByte();
+			trans[2] = transparent.getBByte();
+		}
+		LoadableImageData imageData = ImageDataFactory.getImageDataFor(ref);
+		InputStream in = ResourceLoader.getResourceAsStream(ref);
+		try {
+			data = imageData.loadImage(in, flipped, trans);
+		} finally {
+			in.close();
+		}
+		width = imageData.getWidth();
+		height = imageData.getHeight();
+		texWidth = imageData.getTexWidth();
+		texHeight = imageData.getTexHeight();
+		depth = imageData.getDepth();
+	}
+
+	/**
+	 * Get the reference to the resource this image was decoded from
+	 *
+	 * @return The reference to the resource this image was decoded from
+	 */
+	public String getResourceReference() {
+		return ref;
+	}
+
+	/**
+	 * Check if the image was flipped vertically while decoding
+	 *
+	 * @return True if the image was flipped vertically
+	 */
+	public boolean isFlipped() {
+		return flipped;
+	}
+
+	/**
+	 * Get the colour treated as transparent while decoding
+	 *
+	 * @return The colour treated as transparent, or null if none was
+	 */
+	public Color getTransparentColor() {
+		return transparent;
+	}
+
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getTexWidth() {
+		return texWidth;
+	}
+
+	@Override
+	public int getTexHeight() {
+		return texHeight;
+	}
+
+	@Override
+	public ByteBuffer getImageBufferData() {
+		return data;
+	}
+
+	/**
+	 * Get the decoded pixels as packed ARGB values, one per pixel, going row
+	 * by row from the top left corner - the same form as Image.getPixels()
+	 * returns them in
+	 *
+	 * @return The decoded pixels
+	 */
+	public int[] getPixels() {
+		int bytesPerPixel = (depth == 32 ? 4 : 3);
+		int[] pixels = new int[width*height];
+		int i = 0;
+		for (int y = 0; y < height; y++) {
+			int offset = y*texWidth*bytesPerPixel;
+			for (int x = 0; x < width; x++) {
+				int alpha = (bytesPerPixel == 4 ? data.get(offset + 3) & 0xFF : 0xFF);
+				pixels[i] = (alpha << 24) | ((data.get(offset) & 0xFF) << 16)
+						| ((data.get(offset + 1) & 0xFF) << 8) | (data.get(offset + 2) & 0xFF);
+				offset += bytesPerPixel;
+				i++;
+			}
+		}
+		return pixels;
+	}
+
+	/**
+	 * Upload the decoded data to a texture and get an image of it. If the
+	 * texture cache already holds a texture loaded from the same resource in
+	 * the same way, that texture is used instead. This must be called on the
+	 * thread that owns the OpenGL context.
+	 *
+	 * @param filter The filtering method to use when scaling the image
+	 * @return The image generated from the decoded data
+	 * @throws SlickException Indicates a failure to upload the data
+	 */
+	public Image getImage(int filter) throws SlickException {
+		Image image = new Image(this, filter);
+		TextureImpl.bindNone();
+		return image;
+	}
+    
+}
@@ -1506,6 +1506,34 @@ public class Graphics {
 		postdraw();
 	}
 
+	/**
+	 * Start drawing pieces of an image's texture to this graphics context with
+	 * the image's drawEmbedded() methods. Nothing else may be drawn until
+	 * endUse() is called with the same image.
+	 *
+	 * @param image
+	 *            The image whose texture to draw pieces of
+	 * @param alpha
+	 *            The alpha value to draw the pieces with
+	 */
+	public void startUse(Image image, float alpha) {
+		predraw();
+		image.startUse(alpha == 1 ? Color.WHITE : new Color(1f, 1f, 1f, alpha));
+	}
+
+	/**
+	 * Finish drawing pieces of an image's texture that began with a call to
+	 * startUse()
+	 *
+	 * @param image
+	 *            The image passed to startUse()
+	 */
+	public void endUse(Image image) {
+		image.endUse();
+		Renderer.bindColor(currentColor);
+		postdraw();
+	}
+
 	/**
 	 * Draw a section of an image at a particular location and scale on the
 	 * screen
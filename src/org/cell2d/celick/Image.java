@@ -201,6 +201,35 @@ public class Image implements Renderable {
 		}
 	}
 	
+	/**
+	 * Create an image from a file that has already been decoded, through the
+	 * texture cache as if it had been loaded from the file
+	 * 
+	 * @param decoded The decoded image file
+	 * @param f The filtering method to use when scaling this image
+	 * @throws SlickException Indicates a failure to create the texture
+	 */
+	Image(DecodedImage decoded, int f) throws SlickException {
+		this.filter = f == FILTER_LINEAR ? SGL.GL_LINEAR : SGL.GL_NEAREST;
+		this.transparent = decoded.getTransparentColor();
+		this.flipped = decoded.isFlipped();
+		
+		try {
+			this.ref = decoded.getResourceReference();
+			int[] trans = null;
+			if (transparent != null) {
+				trans = new int[3];
+				trans[0] = transparent.getRByte();
+				trans[1] = transparent.getGByte();
+				trans[2] = transparent.getBByte();
+			}
+			texture = InternalTextureLoader.get().getTexture(decoded, ref, flipped, filter, trans);
+		} catch (IOException e) {
+			Log.error(e);
+			throw new SlickException("Failed to load image from: "+ref, e);
+		}
+	}
+	
 	/**
 	 * Set the image filtering to be used. Note that this will also affect any
 	 * image that was derived from this one (i.e. sub-images etc)
@@ -337,6 +366,81 @@ public class Image implements Renderable {
             return image;
         }
         
+        /**
+         * Returns this Image's pixel data as an array of packed ARGB values,
+         * one per pixel, going row by row from the top left corner. The data
+         * is read back from the Image's texture all at once.
+         * @return This Image's pixel data
+         */
+        public final int[] getPixels() {
+            init();
+            //Don't keep the whole texture's data around like getColor() does
+            byte[] data = (pixelData == null ? texture.getTextureData() : pixelData);
+            int texWidth = texture.getTextureWidth();
+            int bytesPerPixel = (texture.hasAlpha() ? 4 : 3);
+            int xo = (int) (textureOffsetX * texWidth);
+            int yo = (int) (textureOffsetY * texture.getTextureHeight());
+            int[] pixels = new int[width*height];
+            int i = 0;
+            for (int y = 0; y < height; y++) {
+                int textureY = (textureHeight < 0 ? yo - y : yo + y);
+                for (int x = 0; x < width; x++) {
+                    int textureX = (textureWidth < 0 ? xo - x : xo + x);
+                    int offset = (textureX + textureY*texWidth)*bytesPerPixel;
+                    int alpha = (bytesPerPixel == 4 ? data[offset + 3] & 0xFF : 0xFF);
+                    pixels[i] = (alpha << 24) | ((data[offset] & 0xFF) << 16)
+                            | ((data[offset + 1] & 0xFF) << 8) | (data[offset + 2] & 0xFF);
+                    i++;
+                }
+            }
+            return pixels;
+        }
+        
+        /**
+         * Constructs and returns a new Image that is identical to this one in
+         * every way, including width and height, except that its actual pixel
+         * data is the specified data, given in the same form as getPixels()
+         * returns it. The data is uploaded to the new Image's texture all at
+         * once.
+         * @param pixels The new Image's pixel data
+         * @return A copy of this Image with the specified pixel data
+         */
+        public final Image getCopyWithPixels(int[] pixels) {
+            init();
+            if (pixels.length != width*height) {
+                throw new RuntimeException("Attempted to create a copy of a " + width + "x" + height
+                        + " Image from " + pixels.length + " pixels");
+            }
+            ImageBuffer buffer = new ImageBuffer(width, height);
+            buffer.setPixels(pixels);
+            return getCopyWithPixels(buffer);
+        }
+        
+        /**
+         * Constructs and returns a new Image that is identical to this one in
+         * every way, including width and height, except that its actual pixel
+         * data is that of the specified ImageBuffer. The ImageBuffer must have
+         * the same width and height as this Image.
+         * @param buffer The ImageBuffer containing the new Image's pixel data
+         * @return A copy of this Image with the specified pixel data
+         */
+        public final Image getCopyWithPixels(ImageBuffer buffer) {
+            init();
+            if (buffer.getWidth() != width || buffer.getHeight() != height) {
+                throw new RuntimeException("Attempted to create a copy of a " + width + "x" + height
+                        + " Image from a " + buffer.getWidth() + "x" + buffer.getHeight() + " ImageBuffer");
+            }
+            //getBlankCopy()'s textures always use nearest-neighbor filtering, so match them
+            Image image = new Image(buffer, FILTER_NEAREST);
+            image.filter = filter;
+            image.centerX = centerX;
+            image.centerY = centerY;
+            image.angle = angle;
+            image.alpha = alpha;
+            image.corners = (corners == null ? null : Arrays.copyOf(corners, corners.length));
+            return image;
+        }
+        
 	/** 
 	 * Get the OpenGL image filter in use
 	 * 
@@ -1133,6 +1237,43 @@ public class Image implements Renderable {
 		GL.glVertex3f((x + mywidth),y, 0.0f);
 	}
 	
+	/**
+	 * Draw a quad from this image's texture while an image with the same texture is
+	 * "in use", i.e. between calls to startUse and endUse. Unlike the other forms of
+	 * drawEmbedded(), this takes the position and texture coordinates of each corner
+	 * as they are, so the quad may show its part of the texture flipped or turned.
+	 *
+	 * @param x The x position to add to the positions of the quad's corners
+	 * @param y The y position to add to the positions of the quad's corners
+	 * @param quad The quad's four corners in drawing order, each as four values: its x
+	 * and y positions and its x and y texture coordinates
+	 */
+	public void drawEmbedded(float x, float y, float[] quad) {
+		for (int i = 0; i < 16; i += 4) {
+			GL.glTexCoord2f(quad[i + 2], quad[i + 3]);
+			GL.glVertex3f(x + quad[i], y + quad[i + 1], 0.0f);
+		}
+	}
+
+	/**
+	 * Draw several quads from this image's texture while an image with the same
+	 * texture is "in use", i.e. between calls to startUse and endUse. The quads are
+	 * laid out one after another in the same form that drawEmbedded(x, y, quad)
+	 * takes a single quad in.
+	 *
+	 * @param x The x position to add to the positions of the quads' corners
+	 * @param y The y position to add to the positions of the quads' corners
+	 * @param quads The quads' corners, 16 values per quad
+	 * @param numQuads The number of quads, from the start of the array, to draw
+	 */
+	public void drawEmbedded(float x, float y, float[] quads, int numQuads) {
+		int end = numQuads*16;
+		for (int i = 0; i < end; i += 4) {
+			GL.glTexCoord2f(quads[i + 2], quads[i + 3]);
+			GL.glVertex3f(x + quads[i], y + quads[i + 1], 0.0f);
+		}
+	}
+
 	/**
 	 * Draw the image in a warper rectangle. The effects this can 
 	 * have are many and varied, might be interesting though.
@@ -1291,13 +1432,24 @@ public class Image implements Renderable {
 	 * of other sprites since the rendering is locked for this sprite sheet.
 	 */
 	public void startUse() {
+		startUse(Color.WHITE);
+	}
+
+	/**
+	 * Start using this sheet, applying a colour filter to everything rendered until
+	 * endUse() is called.
+	 *
+	 * @param filter The colour filter to apply when drawing
+	 * @see #startUse()
+	 */
+	public void startUse(Color filter) {
 		if (inUse != null) {
 			throw new RuntimeException("Attempt to start use of a sprite sheet before ending use with another - see endUse()");
 		}
 		inUse = this;
 		init();
 
-		Renderer.bindColor(Color.WHITE);
+		Renderer.bindColor(filter);
 		texture.bind();
 		GL.glBegin(SGL.GL_QUADS);
 	}
@@ -118,6 +118,26 @@ public class ImageBuffer implements ImageData {
 		}
 	}
 	
+	/**
+	 * Set every pixel in the image buffer
+	 *
+	 * @param pixels The pixels to set, as packed ARGB values going row by row from
+	 * the top left corner
+	 */
+	public void setPixels(int[] pixels) {
+		if (pixels.length != width*height) {
+			throw new RuntimeException("Specified "+pixels.length+" pixels for a "+width+"x"+height+" image");
+		}
+		int i = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int pixel = pixels[i];
+				setRGBA(x, y, (pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF, pixel >>> 24);
+				i++;
+			}
+		}
+	}
+
 	/**
 	 * Get an image generated based on this buffer
 	 * 
@@ -5,12 +5,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import org.cell2d.celick.opengl.renderer.Renderer;
 import org.cell2d.celick.opengl.renderer.SGL;
 import org.cell2d.celick.util.ResourceLoader;
@@ -19,6 +22,15 @@ import org.lwjgl.BufferUtils;
 /**
  * A texture loaded based on many old versions that will load image data from a file
  * and produce OpenGL textures.
+ *
+ * Textures loaded from files are kept in a cache so that loading the same file
+ * again reuses its texture. The cache can be given a budget of texture memory
+ * in bytes. Whenever the textures it holds exceed the budget, the ones that
+ * were least recently bound are evicted: their texture memory is freed, and
+ * they are transparently loaded again the next time they are bound. Textures
+ * that are pinned, that have been bound during the current frame, or that
+ * could not be loaded again (those read from a stream that was not a resource
+ * location, unless texture data is being held) are never evicted.
  * 
  * @see ImageData
  * 
@@ -39,10 +51,68 @@ public class InternalTextureLoader {
 		return loader;
 	}
 	
+	/**
+	 * The record the cache keeps of a texture it holds
+	 */
+	static class CacheEntry {
+		/** The texture cached */
+		private final TextureImpl texture;
+		/** The resource location the texture was loaded from, or null if it can't be reopened */
+		private final String resourceName;
+		/** True if the texture was flipped on the y axis while loading */
+		private final boolean flipped;
+		/** The filter used when scaling the texture */
+		private final int filter;
+		/** The colour interpreted as transparent or null if none */
+		private final int[] transparent;
+		/** The number of bytes of texture memory the texture occupies when resident */
+		private final long bytes;
+		/** True if the texture currently occupies texture memory */
+		private boolean resident = true;
+		/** The number of the last frame the texture was bound in */
+		private long lastUsedFrame;
+		/** The number of times the texture has been pinned and not yet unpinned */
+		private int pinCount = 0;
+
+		/**
+		 * Create a new cache entry
+		 *
+		 * @param texture The texture cached
+		 * @param resourceName The resource location the texture was loaded from, or null
+		 * @param flipped True if the texture was flipped on the y axis while loading
+		 * @param filter The filter used when scaling the texture
+		 * @param transparent The colour interpreted as transparent or null if none
+		 * @param bytes The number of bytes of texture memory the texture occupies
+		 * @param frame The number of the frame the texture was loaded in
+		 */
+		private CacheEntry(TextureImpl texture, String resourceName, boolean flipped, int filter,
+				int[] transparent, long bytes, long frame) {
+			this.texture = texture;
+			this.resourceName = resourceName;
+			this.flipped = flipped;
+			this.filter = filter;
+			this.transparent = transparent;
+			this.bytes = bytes;
+			this.lastUsedFrame = frame;
+		}
+	}
+    
     /** The table of textures that have been loaded in this loader */
-    private HashMap texturesLinear = new HashMap();
+    private final Map<String,CacheEntry> texturesLinear = new HashMap<String,CacheEntry>();
     /** The table of textures that have been loaded in this loader */
-    private HashMap texturesNearest = new HashMap();
+    private final Map<String,CacheEntry> texturesNearest = new HashMap<String,CacheEntry>();
+    /** The number of the current frame */
+    private long frame = 0;
+    /** The most bytes of texture memory the cached textures should occupy */
+    private long budget = Long.MAX_VALUE;
+    /** The number of bytes of texture memory the cached textures occupy */
+    private long residentBytes = 0;
+    /** The number of times a requested texture was resident in the cache */
+    private long hits = 0;
+    /** The number of times a texture had to be loaded into the cache */
+    private long misses = 0;
+    /** The number of times a texture was evicted from texture memory */
+    private long evictions = 0;
     /** The destination pixel format */
     private int dstPixelFormat = SGL.GL_RGBA8;
     /** True if we should hold texture data */
@@ -70,18 +140,270 @@ public class InternalTextureLoader {
      * @param name The name of the image to be cleared
      */
     public void clear(String name) {
-    	texturesLinear.remove(name);
-    	texturesNearest.remove(name);
+    	forget(texturesLinear.remove(name));
+    	forget(texturesNearest.remove(name));
     }
     
     /**
      * Clear out the cached textures
      */
     public void clear() {
+    	for (CacheEntry entry : texturesLinear.values()) {
+    		forget(entry);
+    	}
+    	for (CacheEntry entry : texturesNearest.values()) {
+    		forget(entry);
+    	}
     	texturesLinear.clear();
     	texturesNearest.clear();
     }
     
+    /**
+     * Stop keeping track of a texture that has been removed from the cache
+     *
+     * @param entry The removed texture's cache entry, or null if there was none
+     */
+    private void forget(CacheEntry entry) {
+    	if (entry == null) {
+    		return;
+    	}
+    	if (entry.resident) {
+    		residentBytes -= entry.bytes;
+    	}
+    	entry.texture.cacheEntry = null;
+    }
+    
+    /**
+     * Get the number of the current frame, which is the number of times
+     * nextFrame() has been called
+     *
+     * @return The number of the current frame
+     */
+    public long getFrame() {
+    	return frame;
+    }
+    
+    /**
+     * Indicate that a frame has finished rendering. Textures bound during the
+     * frame that is finishing are the most recently used ones, and textures
+     * are evicted as needed to bring the cache back within its budget.
+     */
+    public void nextFrame() {
+    	frame++;
+    	enforceBudget();
+    }
+    
+    /**
+     * Get the most bytes of texture memory that the cached textures should
+     * occupy
+     *
+     * @return The cache's budget in bytes
+     */
+    public long getTextureBudget() {
+    	return budget;
+    }
+    
+    /**
+     * Set the most bytes of texture memory that the cached textures should
+     * occupy. The cache may exceed its budget if every texture it holds is
+     * pinned or in use. Textures are evicted immediately if the cache is over
+     * its new budget.
+     *
+     * @param budget The cache's new budget in bytes
+     */
+    public void setTextureBudget(long budget) {
+    	if (budget < 0) {
+    		throw new RuntimeException("Attempted to give the texture cache a negative budget of " + budget + " bytes");
+    	}
+    	this.budget = budget;
+    	enforceBudget();
+    }
+    
+    /**
+     * Get the number of bytes of texture memory that the cached textures
+     * currently occupy
+     *
+     * @return The number of bytes the cached textures occupy
+     */
+    public long getResidentBytes() {
+    	return residentBytes;
+    }
+    
+    /**
+     * Get the number of times a texture was requested from the cache and was
+     * resident in it
+     *
+     * @return The number of cache hits
+     */
+    public long getCacheHits() {
+    	return hits;
+    }
+    
+    /**
+     * Get the number of times a texture had to be loaded into the cache,
+     * either for the first time or again after being evicted
+     *
+     * @return The number of cache misses
+     */
+    public long getCacheMisses() {
+    	return misses;
+    }
+    
+    /**
+     * Get the number of times a texture was evicted from texture memory
+     *
+     * @return The number of evictions
+     */
+    public long getCacheEvictions() {
+    	return evictions;
+    }
+    
+    /**
+     * Set the cache's hit, miss and eviction counts back to zero
+     */
+    public void resetCacheCounts() {
+    	hits = 0;
+    	misses = 0;
+    	evictions = 0;
+    }
+    
+    /**
+     * Prevent a texture from being evicted until it is unpinned. A texture
+     * pinned more than once must be unpinned as many times. Textures that are
+     * not in the cache are unaffected.
+     *
+     * @param texture The texture to pin
+     */
+    public void pin(Texture texture) {
+    	CacheEntry entry = getCacheEntry(texture);
+    	if (entry != null) {
+    		entry.pinCount++;
+    	}
+    }
+    
+    /**
+     * Undo one pinning of a texture
+     *
+     * @param texture The texture to unpin
+     */
+    public void unpin(Texture texture) {
+    	CacheEntry entry = getCacheEntry(texture);
+    	if (entry != null && entry.pinCount > 0) {
+    		entry.pinCount--;
+    	}
+    }
+    
+    /**
+     * Get the cache entry of a texture
+     *
+     * @param texture The texture whose cache entry should be returned
+     * @return The texture's cache entry, or null if it is not cached
+     */
+    private CacheEntry getCacheEntry(Texture texture) {
+    	if (texture instanceof TextureImpl) {
+    		return ((TextureImpl) texture).cacheEntry;
+    	}
+    	return null;
+    }
+    
+    /**
+     * Note that a cached texture is being bound, loading it again first if it
+     * has been evicted
+     *
+     * @param entry The texture's cache entry
+     */
+    void use(CacheEntry entry) {
+    	entry.lastUsedFrame = frame;
+    	if (entry.resident) {
+    		return;
+    	}
+    	TextureImpl texture = entry.texture;
+    	if (entry.resourceName == null) {
+    		texture.reload();
+    	} else {
+    		try {
+    			InputStream in = ResourceLoader.getResourceAsStream(entry.resourceName);
+    			try {
+    				TextureImpl loaded = getTexture(in, entry.resourceName, SGL.GL_TEXTURE_2D,
+    						entry.filter, entry.filter, entry.flipped, entry.transparent);
+    				texture.setTextureID(loaded.getTextureID());
+    			} finally {
+    				in.close();
+    			}
+    		} catch (IOException e) {
+    			throw new RuntimeException("Failed to load evicted texture again from: "+entry.resourceName, e);
+    		}
+    	}
+    	// whatever was bound while loading, the texture itself must be bound next
+    	TextureImpl.unbind();
+    	entry.resident = true;
+    	residentBytes += entry.bytes;
+    	misses++;
+    	enforceBudget();
+    }
+    
+    /**
+     * Evict the least recently bound textures that can be evicted until the
+     * cache is within its budget or no more can be evicted
+     */
+    private void enforceBudget() {
+    	if (residentBytes <= budget) {
+    		return;
+    	}
+    	List<CacheEntry> candidates = new ArrayList<CacheEntry>();
+    	addCandidates(texturesLinear, candidates);
+    	addCandidates(texturesNearest, candidates);
+    	Collections.sort(candidates, new Comparator<CacheEntry>() {
+    		@Override
+    		public int compare(CacheEntry entry1, CacheEntry entry2) {
+    			return Long.compare(entry1.lastUsedFrame, entry2.lastUsedFrame);
+    		}
+    	});
+    	for (CacheEntry entry : candidates) {
+    		if (residentBytes <= budget) {
+    			break;
+    		}
+    		evict(entry);
+    	}
+    }
+    
+    /**
+     * Add the textures in a table that can currently be evicted to a list
+     *
+     * @param table The table to search
+     * @param candidates The list to add the textures' cache entries to
+     */
+    private void addCandidates(Map<String,CacheEntry> table, List<CacheEntry> candidates) {
+    	for (CacheEntry entry : table.values()) {
+    		if (entry.resident && entry.pinCount == 0 && entry.lastUsedFrame < frame
+    				&& (entry.resourceName != null || entry.texture.hasReloadData())) {
+    			candidates.add(entry);
+    		}
+    	}
+    }
+    
+    /**
+     * Free the texture memory of a cached texture. It remains in the cache, and
+     * will be loaded again the next time it is bound.
+     *
+     * @param entry The texture's cache entry
+     */
+    private void evict(CacheEntry entry) {
+    	TextureImpl texture = entry.texture;
+    	IntBuffer texBuf = createIntBuffer(1);
+    	texBuf.put(texture.getTextureID());
+    	texBuf.flip();
+    	GL.glDeleteTextures(texBuf);
+    	// the ID may be reused, so make sure releasing this texture won't delete it again
+    	texture.setTextureID(0);
+    	if (TextureImpl.getLastBind() == texture) {
+    		TextureImpl.bindNone();
+    	}
+    	entry.resident = false;
+    	residentBytes -= entry.bytes;
+    	evictions++;
+    }
+    
     /**
      * Tell the loader to produce 16 bit textures
      */
@@ -146,7 +468,7 @@ public class InternalTextureLoader {
     public Texture getTexture(String resourceName, boolean flipped, int filter) throws IOException {
     	InputStream in = ResourceLoader.getResourceAsStream(resourceName);
     	
-    	return getTexture(in, resourceName, flipped, filter, null);
+    	return getTexture(in, resourceName, flipped, filter, null, true);
     }
     
     /**
@@ -162,7 +484,7 @@ public class InternalTextureLoader {
     public Texture getTexture(String resourceName, boolean flipped, int filter, int[] transparent) throws IOException {
     	InputStream in = ResourceLoader.getResourceAsStream(resourceName);
     	
-    	return getTexture(in, resourceName, flipped, filter, transparent);
+    	return getTexture(in, resourceName, flipped, filter, transparent, true);
     }
     /**
      * Get a texture from a image file
@@ -190,33 +512,29 @@ public class InternalTextureLoader {
      * @throws IOException Indicates a failure to load the image
      */
     public TextureImpl getTexture(InputStream in, String resourceName, boolean flipped, int filter, int[] transparent) throws IOException {
+    	return getTexture(in, resourceName, flipped, filter, transparent, false);
+    }
     	
-    	HashMap hash = texturesLinear;
-        if (filter == SGL.GL_NEAREST) {
-        	hash = texturesNearest;
-        }
-        
-        String resName = resourceName;
-        if (transparent != null) {
-        	resName += ":"+transparent[0]+":"+transparent[1]+":"+transparent[2];
-        }
-        resName += ":"+flipped;
-        
-        if (holdTextureData) {
-        	TextureImpl tex = (TextureImpl)  hash.get(resName);
-        	if (tex != null) {
-        		return tex;
-        	}
-        } else {
-	    	SoftReference ref = (SoftReference) hash.get(resName);
-	    	if (ref != null) {
-		    	TextureImpl tex = (TextureImpl) ref.get();
-		        if (tex != null) {
-		        	return tex;
-		        } else {
-		        	hash.remove(resName);
-		        }
-	    	}
+    /**
+     * Get a texture from a image file
+     *
+     * @param in The stream from which we can load the image
+     * @param resourceName The name to give this image in the internal cache
+     * @param flipped True if we should flip the image on the y-axis while loading
+     * @param filter The filter to use when scaling the texture
+	 * @param transparent The colour to interpret as transparent or null if none
+	 * @param fromResource True if the stream can be opened again from the resource location resourceName
+     * @return The texture loaded
+     * @throws IOException Indicates a failure to load the image
+     */
+    private TextureImpl getTexture(InputStream in, String resourceName, boolean flipped, int filter, int[] transparent,
+    		boolean fromResource) throws IOException {
+    
+    	Map<String,CacheEntry> hash = getTable(filter);
+        String resName = getCacheName(resourceName, flipped, transparent);
+        TextureImpl cached = getCached(hash, resName);
+        if (cached != null) {
+        	return cached;
         }
         
         // horrible test until I can find something more suitable
@@ -231,15 +549,108 @@ public class InternalTextureLoader {
                          filter, 
                          filter, flipped, transparent);
         
-        tex.setCacheName(resName);
-        if (holdTextureData) {
-        	hash.put(resName, tex);
-        } else {
-        	hash.put(resName, new SoftReference(tex));
+        cache(hash, resName, tex, fromResource ? resourceName : null, flipped, filter, transparent);
+        
+        return tex;
+    }
+    
+    /**
+     * Get a texture from image data that has already been decoded from an
+     * image file. The texture is cached exactly as if it had been loaded from
+     * the file with getTexture(resourceName, flipped, filter, transparent), so
+     * if that file has already been loaded the same way, its texture is
+     * reused and the data is not uploaded again.
+     * 
+     * @param dataSource The image data decoded from the file
+     * @param resourceName The resource location of the file
+     * @param flipped True if the data was flipped on the y-axis while decoding
+     * @param filter The filter to use when scaling the texture
+	 * @param transparent The colour interpreted as transparent while decoding or null if none
+     * @return The texture loaded
+     * @throws IOException Indicates the texture is too big for the hardware
+     */
+    public Texture getTexture(ImageData dataSource, String resourceName, boolean flipped, int filter,
+    		int[] transparent) throws IOException {
+    	Map<String,CacheEntry> hash = getTable(filter);
+        String resName = getCacheName(resourceName, flipped, transparent);
+        TextureImpl cached = getCached(hash, resName);
+        if (cached != null) {
+        	return cached;
         }
         
+        TextureImpl tex = (TextureImpl) getTexture(dataSource, filter);
+        cache(hash, resName, tex, resourceName, flipped, filter, transparent);
+        
         return tex;
     }
+    
+    /**
+     * Get the table of cached textures that use a filter
+     *
+     * @param filter The filter used when scaling the textures
+     * @return The table of cached textures that use the filter
+     */
+    private Map<String,CacheEntry> getTable(int filter) {
+    	return (filter == SGL.GL_NEAREST ? texturesNearest : texturesLinear);
+    }
+    
+    /**
+     * Get the name a texture loaded from an image file is cached under
+     *
+     * @param resourceName The resource location of the file
+     * @param flipped True if the texture is flipped on the y-axis
+	 * @param transparent The colour interpreted as transparent or null if none
+     * @return The name the texture is cached under
+     */
+    private static String getCacheName(String resourceName, boolean flipped, int[] transparent) {
+        String resName = resourceName;
+        if (transparent != null) {
+        	resName += ":"+transparent[0]+":"+transparent[1]+":"+transparent[2];
+        }
+        return resName + ":"+flipped;
+    }
+    
+    /**
+     * Get a texture from the cache, counting a hit if it is resident
+     *
+     * @param hash The table to look in
+     * @param resName The name the texture is cached under
+     * @return The cached texture, or null if there is none
+     */
+    private TextureImpl getCached(Map<String,CacheEntry> hash, String resName) {
+        CacheEntry entry = hash.get(resName);
+        if (entry == null) {
+        	return null;
+        }
+        if (entry.resident) {
+        	hits++;
+        }
+        return entry.texture;
+    }
+    
+    /**
+     * Add a newly loaded texture to the cache and count it against the budget
+     *
+     * @param hash The table to add the texture to
+     * @param resName The name to cache the texture under
+     * @param tex The texture loaded
+     * @param resourceName The resource location the texture can be loaded again from, or null
+     * @param flipped True if the texture was flipped on the y axis while loading
+     * @param filter The filter used when scaling the texture
+	 * @param transparent The colour interpreted as transparent or null if none
+     */
+    private void cache(Map<String,CacheEntry> hash, String resName, TextureImpl tex, String resourceName,
+    		boolean flipped, int filter, int[] transparent) {
+        tex.setCacheName(resName);
+        long bytes = ((long) tex.getTextureWidth())*tex.getTextureHeight()
+        		*(dstPixelFormat == SGL.GL_RGBA16 ? 8 : 4);
+        CacheEntry entry = new CacheEntry(tex, resourceName, flipped, filter, transparent, bytes, frame);
+        tex.cacheEntry = entry;
+        hash.put(resName, entry);
+        residentBytes += bytes;
+        misses++;
+        enforceBudget();
+    }
 
     /**
      * Get a texture from a image file
@@ -459,13 +870,15 @@ public class InternalTextureLoader {
      * Reload all the textures loaded in this loader
      */
     public void reload() {
-    	Iterator texs = texturesLinear.values().iterator();
-    	while (texs.hasNext()) {
-    		((TextureImpl) texs.next()).reload();
+    	for (CacheEntry entry : texturesLinear.values()) {
+    		if (entry.resident) {
+    			entry.texture.reload();
+    		}
     	}
-    	texs = texturesNearest.values().iterator();
-    	while (texs.hasNext()) {
-    		((TextureImpl) texs.next()).reload();
+    	for (CacheEntry entry : texturesNearest.values()) {
+    		if (entry.resident) {
+    			entry.texture.reload();
+    		}
     	}
     }
 
@@ -502,4 +915,4 @@ public class InternalTextureLoader {
         
         return textureID; 
 	}
-}
\ No newline at end of file
+}
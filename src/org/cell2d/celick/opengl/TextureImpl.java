@@ -62,6 +62,8 @@ public class TextureImpl implements Texture {
     
     /** Data used to reload this texture */
     private ReloadData reloadData;
+    /** The entry the texture loader's cache keeps for this texture, or null if it isn't cached */
+    InternalTextureLoader.CacheEntry cacheEntry;
     
     /**
      * For subclasses to utilise
@@ -130,6 +132,9 @@ public class TextureImpl implements Texture {
     
     @Override
     public void bind() {
+    	if (cacheEntry != null) {
+    		InternalTextureLoader.get().use(cacheEntry);
+    	}
     	if (lastBind != this) {
     		lastBind = this;
     		GL.glEnable(SGL.GL_TEXTURE_2D);
@@ -313,6 +318,15 @@ public class TextureImpl implements Texture {
 		reloadData.textureBuffer = textureBuffer;
 	}
 	
+	/**
+	 * Check if this texture has data that it can be reloaded from
+	 *
+	 * @return True if this texture can be reloaded
+	 */
+	boolean hasReloadData() {
+		return reloadData != null;
+	}
+
 	/**
 	 * Reload this texture
 	 */
@@ -348,4 +362,4 @@ public class TextureImpl implements Texture {
 		}
 	}
         
-}
\ No newline at end of file
+}
@@ -0,0 +1,776 @@
+package org.cell2d.celick.opengl.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A renderer that sits in front of another renderer and collects the quads
+ * drawn through it into batches, one per texture, so that the renderer behind
+ * it sees as few texture binds and separate pieces of geometry as possible.
+ *
+ * Translations, rotations about the z axis and uniform scales are applied to
+ * the collected vertices rather than passed on, so drawing many images at
+ * different positions and angles doesn't break a batch up. A quad may join an
+ * earlier batch with the same texture if it doesn't overlap anything drawn
+ * after that batch, so the result looks the same as drawing everything in
+ * order. Any other operation, such as changing the blend function, a texture
+ * parameter or the matrix stack, first flushes everything collected so far
+ * to the renderer behind.
+ *
+ * @author Alex Heyman
+ */
+public class BatchRenderer implements SGL {
+	/** The number of collected vertices at which the batches are flushed */
+	public static final int MAX_VERTS = 20000;
+	/** The maximum number of batches searched back through for one that a quad can join */
+	private static final int MAX_LOOKBACK = 32;
+	/** The number of floats stored per vertex - position (3), texture coordinate (2) and colour (4) */
+	private static final int VERTEX_SIZE = 9;
+	/** The batch key of quads drawn with texturing disabled */
+	private static final int NO_TEXTURE = -1;
+	/** Indicates that the renderer behind's value of some state is not known */
+	private static final int UNKNOWN = Integer.MIN_VALUE;
+	/** The difference from the identity below which a rotation or scale is ignored */
+	private static final double EPSILON = 0.000000001;
+
+	/**
+	 * The quads collected for one texture, in the order they were drawn
+	 */
+	private static class Batch {
+		/** The texture the quads are drawn with, or NO_TEXTURE */
+		private int texture;
+		/** The vertex data of the quads */
+		private float[] data = new float[VERTEX_SIZE*64];
+		/** The number of vertices collected */
+		private int vertCount;
+		/** The bounds of every quad in this batch */
+		private float left, top, right, bottom;
+
+		/**
+		 * Empty this batch out to collect quads for the given texture
+		 *
+		 * @param texture The texture the quads will be drawn with
+		 */
+		private void reset(int texture) {
+			this.texture = texture;
+			vertCount = 0;
+			left = Float.POSITIVE_INFINITY;
+			top = Float.POSITIVE_INFINITY;
+			right = Float.NEGATIVE_INFINITY;
+			bottom = Float.NEGATIVE_INFINITY;
+		}
+
+		/**
+		 * Check if a rectangle overlaps the area covered by this batch. Quads
+		 * that only share an edge don't draw over each other's pixels, so they
+		 * don't count as overlapping.
+		 *
+		 * @return True if the rectangle overlaps this batch
+		 */
+		private boolean overlaps(float left, float top, float right, float bottom) {
+			return left < this.right && this.left < right && top < this.bottom && this.top < bottom;
+		}
+
+		/**
+		 * Add a quad to the end of this batch
+		 *
+		 * @param quad The vertex data of the quad
+		 */
+		private void add(float[] quad, float left, float top, float right, float bottom) {
+			int length = vertCount*VERTEX_SIZE;
+			if (length + quad.length > data.length) {
+				float[] newData = new float[data.length*2];
+				System.arraycopy(data, 0, newData, 0, length);
+				data = newData;
+			}
+			System.arraycopy(quad, 0, data, length, quad.length);
+			vertCount += 4;
+			this.left = Math.min(this.left, left);
+			this.top = Math.min(this.top, top);
+			this.right = Math.max(this.right, right);
+			this.bottom = Math.max(this.bottom, bottom);
+		}
+	}
+
+	/** The renderer the batches are flushed to */
+	private final SGL target;
+	/** Every batch that has been used, including those not currently in use */
+	private final List<Batch> batches = new ArrayList<Batch>();
+	/** The number of batches at the start of the list that are in use */
+	private int batchCount = 0;
+	/** The number of vertices in all of the batches in use */
+	private int vertCount = 0;
+	/** The stack for entering list creation mode - calls made while creating a list pass straight through */
+	private int listMode = 0;
+	/** True if quads are currently being collected between glBegin() and glEnd() */
+	private boolean collecting = false;
+	/** True if geometry that isn't batched is currently being passed on between glBegin() and glEnd() */
+	private boolean passing = false;
+	/** The vertex data of the quad being collected */
+	private final float[] quad = new float[VERTEX_SIZE*4];
+	/** The number of vertices of the current quad collected */
+	private int quadVerts = 0;
+
+	/** True if texturing is enabled */
+	private boolean textureEnabled = true;
+	/** The texture bound */
+	private int boundTexture = 0;
+	/** The current colour, before the global alpha scale */
+	private final float[] color = new float[] {1,1,1,1};
+	/** The current colour, after the global alpha scale */
+	private final float[] current = new float[] {1,1,1,1};
+	/** The global alpha scale */
+	private float alphaScale = 1;
+	/** The current texture coordinate */
+	private float texU, texV;
+
+	/** The transform not yet passed on, as x' = a*x - b*y + tx, y' = b*x + a*y + ty */
+	private double a = 1, b = 0, tx = 0, ty = 0;
+
+	/** Whether texturing is enabled in the renderer behind, as 1, 0 or UNKNOWN */
+	private int targetTextureEnabled = UNKNOWN;
+	/** The texture bound in the renderer behind, or UNKNOWN */
+	private int targetTexture = UNKNOWN;
+	/** The colour last passed to the renderer behind */
+	private final float[] targetColor = new float[4];
+	/** True if the colour last passed to the renderer behind is known */
+	private boolean targetColorKnown = false;
+
+	/**
+	 * Create a new renderer that batches quads in front of another
+	 *
+	 * @param target The renderer to flush batches to
+	 */
+	public BatchRenderer(SGL target) {
+		if (target == null) {
+			throw new RuntimeException("Attempted to create a BatchRenderer with no target renderer");
+		}
+		this.target = target;
+	}
+
+	/**
+	 * Get the renderer that this renderer flushes its batches to
+	 *
+	 * @return The renderer that this renderer flushes its batches to
+	 */
+	public SGL getTarget() {
+		return target;
+	}
+
+	/**
+	 * Get the number of vertices currently collected and waiting to be flushed
+	 *
+	 * @return The number of vertices waiting to be flushed
+	 */
+	public int getPendingVertices() {
+		return vertCount;
+	}
+
+	/**
+	 * Get the number of batches currently collected and waiting to be flushed
+	 *
+	 * @return The number of batches waiting to be flushed
+	 */
+	public int getPendingBatches() {
+		return batchCount;
+	}
+
+	/**
+	 * Forget what is known about the state of the renderer behind, as after
+	 * it may have been changed by something other than this renderer
+	 */
+	private void forgetTargetState() {
+		targetTextureEnabled = UNKNOWN;
+		targetTexture = UNKNOWN;
+		targetColorKnown = false;
+	}
+
+	/**
+	 * Pass the given colour on to the renderer behind if it isn't already current there
+	 */
+	private void applyColor(float r, float g, float b, float a) {
+		if (targetColorKnown && targetColor[0] == r && targetColor[1] == g
+				&& targetColor[2] == b && targetColor[3] == a) {
+			return;
+		}
+		target.glColor4f(r, g, b, a);
+		targetColor[0] = r;
+		targetColor[1] = g;
+		targetColor[2] = b;
+		targetColor[3] = a;
+		targetColorKnown = true;
+	}
+
+	/**
+	 * Make the renderer behind draw with the given batch key's texture
+	 *
+	 * @param texture The texture to draw with, or NO_TEXTURE
+	 */
+	private void applyTexture(int texture) {
+		if (texture == NO_TEXTURE) {
+			if (targetTextureEnabled != 0) {
+				target.glDisable(GL_TEXTURE_2D);
+				targetTextureEnabled = 0;
+			}
+			return;
+		}
+		if (targetTextureEnabled != 1) {
+			target.glEnable(GL_TEXTURE_2D);
+			targetTextureEnabled = 1;
+		}
+		if (targetTexture != texture) {
+			target.glBindTexture(GL_TEXTURE_2D, texture);
+			targetTexture = texture;
+		}
+	}
+
+	/**
+	 * Pass the transform that has been applied to collected vertices on to
+	 * the renderer behind
+	 */
+	private void applyTransform() {
+		if (tx != 0 || ty != 0) {
+			target.glTranslatef((float) tx, (float) ty, 0);
+		}
+		if (a != 1 || b != 0) {
+			double angle = Math.toDegrees(Math.atan2(b, a));
+			if (angle != 0) {
+				target.glRotatef((float) angle, 0, 0, 1);
+			}
+			double scale = Math.hypot(a, b);
+			if (scale != 1) {
+				target.glScalef((float) scale, (float) scale, 1);
+			}
+		}
+		a = 1;
+		b = 0;
+		tx = 0;
+		ty = 0;
+	}
+
+	/**
+	 * Snap the transform not yet passed on back to the identity rotation and
+	 * scale if rounding is all that separates them
+	 */
+	private void snapTransform() {
+		if (Math.abs(a - 1) < EPSILON && Math.abs(b) < EPSILON) {
+			a = 1;
+			b = 0;
+			if (Math.abs(tx) < EPSILON) {
+				tx = 0;
+			}
+			if (Math.abs(ty) < EPSILON) {
+				ty = 0;
+			}
+		}
+	}
+
+	/**
+	 * Flush every collected batch to the renderer behind
+	 */
+	private void flushBatches() {
+		for (int i = 0; i < batchCount; i++) {
+			Batch batch = batches.get(i);
+			applyTexture(batch.texture);
+			target.glBegin(GL_QUADS);
+			float[] data = batch.data;
+			int length = batch.vertCount*VERTEX_SIZE;
+			for (int j = 0; j < length; j += VERTEX_SIZE) {
+				applyColor(data[j+5], data[j+6], data[j+7], data[j+8]);
+				target.glTexCoord2f(data[j+3], data[j+4]);
+				target.glVertex3f(data[j], data[j+1], data[j+2]);
+			}
+			target.glEnd();
+		}
+		batchCount = 0;
+		vertCount = 0;
+	}
+
+	/**
+	 * Bring the renderer behind fully up to date, flushing every collected
+	 * batch and passing on the transform, texture and colour state. Must be
+	 * called before passing on any call that isn't batched.
+	 */
+	private void sync() {
+		if (listMode > 0) {
+			return;
+		}
+		flushBatches();
+		applyTransform();
+		if (targetTexture != boundTexture) {
+			target.glBindTexture(GL_TEXTURE_2D, boundTexture);
+			targetTexture = boundTexture;
+		}
+		applyTexture(textureEnabled ? boundTexture : NO_TEXTURE);
+		applyColor(color[0], color[1], color[2], color[3]);
+	}
+
+	/**
+	 * Add a vertex to the quad being collected, adding the quad to a batch
+	 * once it is complete
+	 */
+	private void addVertex(float x, float y, float z) {
+		float[] quad = this.quad;
+		int i = quadVerts*VERTEX_SIZE;
+		quad[i] = (float) (a*x - b*y + tx);
+		quad[i+1] = (float) (b*x + a*y + ty);
+		quad[i+2] = z;
+		quad[i+3] = texU;
+		quad[i+4] = texV;
+		quad[i+5] = color[0];
+		quad[i+6] = color[1];
+		quad[i+7] = color[2];
+		quad[i+8] = color[3];
+		quadVerts++;
+		if (quadVerts == 4) {
+			quadVerts = 0;
+			addQuad();
+		}
+	}
+
+	/**
+	 * Add the completed quad to the latest batch with the same texture that it
+	 * can join without being drawn out of order over anything it overlaps,
+	 * or to a new batch if there is none
+	 */
+	private void addQuad() {
+		float left = Math.min(Math.min(quad[0], quad[VERTEX_SIZE]), Math.min(quad[2*VERTEX_SIZE], quad[3*VERTEX_SIZE]));
+		float right = Math.max(Math.max(quad[0], quad[VERTEX_SIZE]), Math.max(quad[2*VERTEX_SIZE], quad[3*VERTEX_SIZE]));
+		float top = Math.min(Math.min(quad[1], quad[VERTEX_SIZE+1]), Math.min(quad[2*VERTEX_SIZE+1], quad[3*VERTEX_SIZE+1]));
+		float bottom = Math.max(Math.max(quad[1], quad[VERTEX_SIZE+1]), Math.max(quad[2*VERTEX_SIZE+1], quad[3*VERTEX_SIZE+1]));
+		int texture = (textureEnabled ? boundTexture : NO_TEXTURE);
+
+		Batch batch = null;
+		int stop = Math.max(0, batchCount - MAX_LOOKBACK);
+		for (int i = batchCount - 1; i >= stop; i--) {
+			Batch other = batches.get(i);
+			if (other.texture == texture) {
+				batch = other;
+				break;
+			}
+			if (other.overlaps(left, top, right, bottom)) {
+				break;
+			}
+		}
+		if (batch == null) {
+			if (batchCount == batches.size()) {
+				batches.add(new Batch());
+			}
+			batch = batches.get(batchCount);
+			batch.reset(texture);
+			batchCount++;
+		}
+
+		batch.add(quad, left, top, right, bottom);
+		vertCount += 4;
+		if (vertCount >= MAX_VERTS) {
+			flushBatches();
+		}
+	}
+
+	@Override
+	public void flush() {
+		sync();
+		target.flush();
+		// Whoever asked for the flush may be about to change GL state directly
+		forgetTargetState();
+	}
+
+	@Override
+	public void initDisplay(int width, int height) {
+		sync();
+		target.initDisplay(width, height);
+		forgetTargetState();
+	}
+
+	@Override
+	public void enterOrtho(int xsize, int ysize) {
+		sync();
+		target.enterOrtho(xsize, ysize);
+	}
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		sync();
+		target.glClearColor(red, green, blue, alpha);
+	}
+
+	@Override
+	public void glClipPlane(int plane, DoubleBuffer buffer) {
+		sync();
+		target.glClipPlane(plane, buffer);
+	}
+
+	@Override
+	public void glScissor(int x, int y, int width, int height) {
+		sync();
+		target.glScissor(x, y, width, height);
+	}
+
+	@Override
+	public void glLineWidth(float width) {
+		sync();
+		target.glLineWidth(width);
+	}
+
+	@Override
+	public void glClear(int value) {
+		sync();
+		target.glClear(value);
+	}
+
+	@Override
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		sync();
+		target.glColorMask(red, green, blue, alpha);
+	}
+
+	@Override
+	public void glLoadIdentity() {
+		sync();
+		target.glLoadIdentity();
+	}
+
+	@Override
+	public void glGetInteger(int id, IntBuffer ret) {
+		sync();
+		target.glGetInteger(id, ret);
+	}
+
+	@Override
+	public void glGetFloat(int id, FloatBuffer ret) {
+		sync();
+		target.glGetFloat(id, ret);
+	}
+
+	@Override
+	public void glEnable(int item) {
+		if (item == GL_TEXTURE_2D && listMode == 0) {
+			textureEnabled = true;
+			return;
+		}
+		sync();
+		target.glEnable(item);
+	}
+
+	@Override
+	public void glDisable(int item) {
+		if (item == GL_TEXTURE_2D && listMode == 0) {
+			textureEnabled = false;
+			return;
+		}
+		sync();
+		target.glDisable(item);
+	}
+
+	@Override
+	public void glBindTexture(int target, int id) {
+		if (target == GL_TEXTURE_2D && listMode == 0) {
+			boundTexture = id;
+			return;
+		}
+		sync();
+		this.target.glBindTexture(target, id);
+	}
+
+	@Override
+	public void glGetTexImage(int target, int level, int format, int type, ByteBuffer pixels) {
+		sync();
+		this.target.glGetTexImage(target, level, format, type, pixels);
+	}
+
+	@Override
+	public void glDeleteTextures(IntBuffer buffer) {
+		sync();
+		for (int i = buffer.position(); i < buffer.limit(); i++) {
+			if (buffer.get(i) == boundTexture) {
+				// Deleting the bound texture reverts the binding to the default texture
+				boundTexture = 0;
+				targetTexture = 0;
+			}
+		}
+		target.glDeleteTextures(buffer);
+	}
+
+	@Override
+	public void glColor4f(float r, float g, float b, float a) {
+		color[0] = r;
+		color[1] = g;
+		color[2] = b;
+		color[3] = a;
+		current[0] = r;
+		current[1] = g;
+		current[2] = b;
+		current[3] = a*alphaScale;
+		// Otherwise the colour is passed on when it is next needed
+		if (passing || listMode > 0) {
+			applyColor(r, g, b, a);
+		}
+	}
+
+	@Override
+	public void glTexCoord2f(float u, float v) {
+		texU = u;
+		texV = v;
+		if (!collecting) {
+			target.glTexCoord2f(u, v);
+		}
+	}
+
+	@Override
+	public void glVertex3f(float x, float y, float z) {
+		if (collecting) {
+			addVertex(x, y, z);
+		} else {
+			target.glVertex3f(x, y, z);
+		}
+	}
+
+	@Override
+	public void glVertex2f(float x, float y) {
+		if (collecting) {
+			addVertex(x, y, 0);
+		} else {
+			target.glVertex2f(x, y);
+		}
+	}
+
+	@Override
+	public void glRotatef(float angle, float x, float y, float z) {
+		if (listMode > 0 || x != 0 || y != 0 || z == 0) {
+			sync();
+			target.glRotatef(angle, x, y, z);
+			return;
+		}
+		double radians = Math.toRadians(z > 0 ? angle : -angle);
+		double cos = Math.cos(radians);
+		double sin = Math.sin(radians);
+		double newA = a*cos - b*sin;
+		b = b*cos + a*sin;
+		a = newA;
+		snapTransform();
+	}
+
+	@Override
+	public void glTranslatef(float x, float y, float z) {
+		if (listMode > 0 || z != 0) {
+			sync();
+			target.glTranslatef(x, y, z);
+			return;
+		}
+		tx += a*x - b*y;
+		ty += b*x + a*y;
+		snapTransform();
+	}
+
+	@Override
+	public void glBegin(int geomType) {
+		if (geomType == GL_QUADS && listMode == 0) {
+			collecting = true;
+			quadVerts = 0;
+			return;
+		}
+		sync();
+		passing = true;
+		target.glBegin(geomType);
+	}
+
+	@Override
+	public void glEnd() {
+		if (collecting) {
+			// Like GL, drop the vertices of any incomplete quad
+			collecting = false;
+			quadVerts = 0;
+			return;
+		}
+		passing = false;
+		target.glEnd();
+	}
+
+	@Override
+	public void glTexEnvi(int target, int mode, int value) {
+		sync();
+		this.target.glTexEnvi(target, mode, value);
+	}
+
+	@Override
+	public void glPointSize(float size) {
+		sync();
+		target.glPointSize(size);
+	}
+
+	@Override
+	public void glScalef(float x, float y, float z) {
+		if (listMode > 0 || x != y || z != 1 || x == 0) {
+			sync();
+			target.glScalef(x, y, z);
+			return;
+		}
+		a *= x;
+		b *= x;
+		snapTransform();
+	}
+
+	@Override
+	public void glPushMatrix() {
+		sync();
+		target.glPushMatrix();
+	}
+
+	@Override
+	public void glPopMatrix() {
+		sync();
+		target.glPopMatrix();
+	}
+
+	@Override
+	public void glBlendFunc(int src, int dest) {
+		sync();
+		target.glBlendFunc(src, dest);
+	}
+
+	@Override
+	public int glGenLists(int count) {
+		sync();
+		return target.glGenLists(count);
+	}
+
+	@Override
+	public void glNewList(int id, int option) {
+		sync();
+		listMode++;
+		target.glNewList(id, option);
+	}
+
+	@Override
+	public void glEndList() {
+		listMode--;
+		target.glEndList();
+		// The list may have changed state that this renderer didn't track
+		forgetTargetState();
+	}
+
+	@Override
+	public void glCallList(int id) {
+		sync();
+		target.glCallList(id);
+		forgetTargetState();
+	}
+
+	@Override
+	public void glCopyTexImage2D(int target, int level, int internalFormat,
+			int x, int y, int width, int height, int border) {
+		sync();
+		this.target.glCopyTexImage2D(target, level, internalFormat, x, y, width, height, border);
+	}
+
+	@Override
+	public void glReadPixels(int x, int y, int width, int height, int format, int type,
+			ByteBuffer pixels) {
+		sync();
+		target.glReadPixels(x, y, width, height, format, type, pixels);
+	}
+
+	@Override
+	public void glTexParameteri(int target, int param, int value) {
+		sync();
+		this.target.glTexParameteri(target, param, value);
+	}
+
+	@Override
+	public float[] getCurrentColor() {
+		return current;
+	}
+
+	@Override
+	public void glDeleteLists(int list, int count) {
+		sync();
+		target.glDeleteLists(list, count);
+	}
+
+	@Override
+	public void glDepthMask(boolean mask) {
+		sync();
+		target.glDepthMask(mask);
+	}
+
+	@Override
+	public void glClearDepth(float value) {
+		sync();
+		target.glClearDepth(value);
+	}
+
+	@Override
+	public void glDepthFunc(int func) {
+		sync();
+		target.glDepthFunc(func);
+	}
+
+	@Override
+	public void setGlobalAlphaScale(float alphaScale) {
+		sync();
+		this.alphaScale = alphaScale;
+		current[3] = color[3]*alphaScale;
+		target.setGlobalAlphaScale(alphaScale);
+		// The renderer behind scales colours as they're passed in, so pass the current one again
+		targetColorKnown = false;
+		applyColor(color[0], color[1], color[2], color[3]);
+	}
+
+	@Override
+	public void glLoadMatrix(FloatBuffer buffer) {
+		sync();
+		target.glLoadMatrix(buffer);
+	}
+
+	@Override
+	public void glGenTextures(IntBuffer ids) {
+		sync();
+		target.glGenTextures(ids);
+	}
+
+	@Override
+	public void glGetError() {
+		sync();
+		target.glGetError();
+	}
+
+	@Override
+	public void glTexImage2D(int target, int i, int dstPixelFormat,
+			int width, int height, int j, int srcPixelFormat,
+			int glUnsignedByte, ByteBuffer textureBuffer) {
+		sync();
+		this.target.glTexImage2D(target, i, dstPixelFormat, width, height, j,
+				srcPixelFormat, glUnsignedByte, textureBuffer);
+	}
+
+	@Override
+	public void glTexSubImage2D(int glTexture2d, int i, int pageX, int pageY,
+			int width, int height, int glBgra, int glUnsignedByte,
+			ByteBuffer scratchByteBuffer) {
+		sync();
+		target.glTexSubImage2D(glTexture2d, i, pageX, pageY, width, height, glBgra,
+				glUnsignedByte, scratchByteBuffer);
+	}
+
+	@Override
+	public boolean canTextureMirrorClamp() {
+		return target.canTextureMirrorClamp();
+	}
+
+	@Override
+	public boolean canSecondaryColor() {
+		return target.canSecondaryColor();
+	}
+
+	@Override
+	public void glSecondaryColor3ubEXT(byte b, byte c, byte d) {
+		sync();
+		target.glSecondaryColor3ubEXT(b, c, d);
+	}
+    
+}
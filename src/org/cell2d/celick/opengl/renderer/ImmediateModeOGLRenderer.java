@@ -4,6 +4,7 @@ import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import org.cell2d.Profiler;
 import org.lwjgl.opengl.EXTSecondaryColor;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GLContext;
@@ -58,11 +59,13 @@ public class ImmediateModeOGLRenderer implements SGL {
 
         @Override
 	public void glBegin(int geomType) {
+		Profiler.count(Profiler.DRAW_CALLS);
 		GL11.glBegin(geomType);
 	}
 
 	@Override
 	public void glBindTexture(int target, int id) {
+		Profiler.count(Profiler.TEXTURE_BINDS);
 		GL11.glBindTexture(target, id);
 	}
 
@@ -73,6 +76,7 @@ public class ImmediateModeOGLRenderer implements SGL {
 
 	@Override
 	public void glCallList(int id) {
+		Profiler.count(Profiler.DRAW_CALLS);
 		GL11.glCallList(id);
 	}
 
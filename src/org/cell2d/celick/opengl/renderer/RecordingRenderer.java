@@ -0,0 +1,339 @@
+package org.cell2d.celick.opengl.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A renderer that makes no OpenGL calls at all, but instead counts the
+ * geometry and state changes passed to it. It needs no display, so it can
+ * stand behind a BatchRenderer to measure how many batches and vertices a
+ * scene is drawn with, or how many texture binds it causes, without a window.
+ *
+ * @author Alex Heyman
+ */
+public class RecordingRenderer implements SGL {
+	/** The current colour */
+	private float[] current = new float[] {1,1,1,1};
+	/** The global colour scale */
+	private float alphaScale = 1;
+	/** The texture bound */
+	private int boundTexture = 0;
+	/** The next display list ID to hand out */
+	private int nextListID = 1;
+	/** The next texture ID to hand out */
+	private int nextTextureID = 1;
+
+	/** The number of glBegin() calls made */
+	private long drawCalls = 0;
+	/** The number of vertices submitted */
+	private long vertices = 0;
+	/** The number of glBindTexture() calls that changed the bound texture */
+	private long textureBinds = 0;
+	/** The number of transform calls made */
+	private long transforms = 0;
+	/** The number of calls to flush() */
+	private long flushes = 0;
+
+	/**
+	 * Set all of the counts kept by this renderer back to zero
+	 */
+	public void resetCounts() {
+		drawCalls = 0;
+		vertices = 0;
+		textureBinds = 0;
+		transforms = 0;
+		flushes = 0;
+	}
+
+	/**
+	 * Get the number of separate pieces of geometry - glBegin() calls - that
+	 * have been passed to this renderer
+	 *
+	 * @return The number of pieces of geometry drawn
+	 */
+	public long getDrawCalls() {
+		return drawCalls;
+	}
+
+	/**
+	 * Get the number of vertices that have been passed to this renderer
+	 *
+	 * @return The number of vertices drawn
+	 */
+	public long getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Get the number of times the bound texture has been changed
+	 *
+	 * @return The number of texture binds
+	 */
+	public long getTextureBinds() {
+		return textureBinds;
+	}
+
+	/**
+	 * Get the number of translations, rotations and scales that have been
+	 * passed to this renderer
+	 *
+	 * @return The number of transform calls
+	 */
+	public long getTransforms() {
+		return transforms;
+	}
+
+	/**
+	 * Get the number of times this renderer has been flushed
+	 *
+	 * @return The number of flushes
+	 */
+	public long getFlushes() {
+		return flushes;
+	}
+
+	@Override
+	public void flush() {
+		flushes++;
+	}
+
+	@Override
+	public void initDisplay(int width, int height) {
+	}
+
+	@Override
+	public void enterOrtho(int xsize, int ysize) {
+	}
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+	}
+
+	@Override
+	public void glClipPlane(int plane, DoubleBuffer buffer) {
+	}
+
+	@Override
+	public void glScissor(int x, int y, int width, int height) {
+	}
+
+	@Override
+	public void glLineWidth(float width) {
+	}
+
+	@Override
+	public void glClear(int value) {
+	}
+
+	@Override
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+	}
+
+	@Override
+	public void glLoadIdentity() {
+		transforms++;
+	}
+
+	@Override
+	public void glGetInteger(int id, IntBuffer ret) {
+	}
+
+	@Override
+	public void glGetFloat(int id, FloatBuffer ret) {
+	}
+
+	@Override
+	public void glEnable(int item) {
+	}
+
+	@Override
+	public void glDisable(int item) {
+	}
+
+	@Override
+	public void glBindTexture(int target, int id) {
+		if (id != boundTexture) {
+			boundTexture = id;
+			textureBinds++;
+		}
+	}
+
+	@Override
+	public void glGetTexImage(int target, int level, int format, int type, ByteBuffer pixels) {
+	}
+
+	@Override
+	public void glDeleteTextures(IntBuffer buffer) {
+	}
+
+	@Override
+	public void glColor4f(float r, float g, float b, float a) {
+		current[0] = r;
+		current[1] = g;
+		current[2] = b;
+		current[3] = a*alphaScale;
+	}
+
+	@Override
+	public void glTexCoord2f(float u, float v) {
+	}
+
+	@Override
+	public void glVertex3f(float x, float y, float z) {
+		vertices++;
+	}
+
+	@Override
+	public void glVertex2f(float x, float y) {
+		vertices++;
+	}
+
+	@Override
+	public void glRotatef(float angle, float x, float y, float z) {
+		transforms++;
+	}
+
+	@Override
+	public void glTranslatef(float x, float y, float z) {
+		transforms++;
+	}
+
+	@Override
+	public void glBegin(int geomType) {
+		drawCalls++;
+	}
+
+	@Override
+	public void glEnd() {
+	}
+
+	@Override
+	public void glTexEnvi(int target, int mode, int value) {
+	}
+
+	@Override
+	public void glPointSize(float size) {
+	}
+
+	@Override
+	public void glScalef(float x, float y, float z) {
+		transforms++;
+	}
+
+	@Override
+	public void glPushMatrix() {
+	}
+
+	@Override
+	public void glPopMatrix() {
+	}
+
+	@Override
+	public void glBlendFunc(int src, int dest) {
+	}
+
+	@Override
+	public int glGenLists(int count) {
+		int id = nextListID;
+		nextListID += count;
+		return id;
+	}
+
+	@Override
+	public void glNewList(int id, int option) {
+	}
+
+	@Override
+	public void glEndList() {
+	}
+
+	@Override
+	public void glCallList(int id) {
+		drawCalls++;
+	}
+
+	@Override
+	public void glCopyTexImage2D(int target, int level, int internalFormat,
+			int x, int y, int width, int height, int border) {
+	}
+
+	@Override
+	public void glReadPixels(int x, int y, int width, int height, int format, int type,
+			ByteBuffer pixels) {
+	}
+
+	@Override
+	public void glTexParameteri(int target, int param, int value) {
+	}
+
+	@Override
+	public float[] getCurrentColor() {
+		return current;
+	}
+
+	@Override
+	public void glDeleteLists(int list, int count) {
+	}
+
+	@Override
+	public void glDepthMask(boolean mask) {
+	}
+
+	@Override
+	public void glClearDepth(float value) {
+	}
+
+	@Override
+	public void glDepthFunc(int func) {
+	}
+
+	@Override
+	public void setGlobalAlphaScale(float alphaScale) {
+		this.alphaScale = alphaScale;
+	}
+
+	@Override
+	public void glLoadMatrix(FloatBuffer buffer) {
+		transforms++;
+	}
+
+	@Override
+	public void glGenTextures(IntBuffer ids) {
+		for (int i = ids.position(); i < ids.limit(); i++) {
+			ids.put(i, nextTextureID++);
+		}
+	}
+
+	@Override
+	public void glGetError() {
+	}
+
+	@Override
+	public void glTexImage2D(int target, int i, int dstPixelFormat,
+			int width, int height, int j, int srcPixelFormat,
+			int glUnsignedByte, ByteBuffer textureBuffer) {
+	}
+
+	@Override
+	public void glTexSubImage2D(int glTexture2d, int i, int pageX, int pageY,
+			int width, int height, int glBgra, int glUnsignedByte,
+			ByteBuffer scratchByteBuffer) {
+	}
+
+	@Override
+	public boolean canTextureMirrorClamp() {
+		return false;
+	}
+
+	@Override
+	public boolean canSecondaryColor() {
+		return false;
+	}
+
+	@Override
+	public void glSecondaryColor3ubEXT(byte b, byte c, byte d) {
+	}
+    
+}
@@ -14,6 +14,8 @@ public class Renderer {
 	public static final int IMMEDIATE_RENDERER = 1;
 	/** The indicator for vertex array based rendering */
 	public static final int VERTEX_ARRAY_RENDERER = 2;
+	/** The indicator for vertex array based rendering with quads batched by texture in front */
+	public static final int BATCH_RENDERER = 5;
 	
 	/** The indicator for direct GL line renderer (the default) */
 	public static final int DEFAULT_LINE_STRIP_RENDERER = 3;
@@ -39,6 +41,9 @@ public class Renderer {
 			case VERTEX_ARRAY_RENDERER:
 				setRenderer(new VAOGLRenderer());
 				return;
+			case BATCH_RENDERER:
+				setRenderer(new BatchRenderer(new VAOGLRenderer()));
+				return;
 		}
 		
 		throw new RuntimeException("Unknown renderer type: "+type);
@@ -2,6 +2,7 @@ package org.cell2d.celick.opengl.renderer;
 
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
+import org.cell2d.Profiler;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 
@@ -73,6 +74,7 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 			return;
 		}
 		
+		Profiler.count(Profiler.DRAW_CALLS);
 		if (vertIndex < TOLERANCE) {
 			GL11.glBegin(currentType);
 			for (int i=0;i<vertIndex;i++) {
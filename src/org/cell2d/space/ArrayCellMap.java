@@ -0,0 +1,122 @@
+package org.cell2d.space;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @param <C> The type of cells stored in this ArrayCellMap
+ * @author Alex Heyman
+ */
+class ArrayCellMap<C> extends CellMap<C> {
+    
+    private final int left, top, width, height;
+    private final Object[] cells;
+    private int arraySize = 0;
+    //Cells that lie outside the bounds of the array go here instead
+    private final HashCellMap<C> overflow = new HashCellMap<>();
+    
+    ArrayCellMap(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        width = right - left + 1;
+        height = bottom - top + 1;
+        cells = new Object[width*height];
+    }
+    
+    private int indexOf(int x, int y) {
+        x -= left;
+        y -= top;
+        return (x >= 0 && x < width && y >= 0 && y < height ? y*width + x : -1);
+    }
+    
+    @Override
+    final C get(int x, int y) {
+        int i = indexOf(x, y);
+        return (i < 0 ? overflow.get(x, y) : asCell(cells[i]));
+    }
+    
+    @Override
+    final void put(int x, int y, C cell) {
+        int i = indexOf(x, y);
+        if (i < 0) {
+            overflow.put(x, y, cell);
+        } else {
+            if (cells[i] == null) {
+                arraySize++;
+            }
+            cells[i] = cell;
+        }
+    }
+    
+    @Override
+    final int size() {
+        return arraySize + overflow.size();
+    }
+    
+    @Override
+    final void clear() {
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = null;
+        }
+        arraySize = 0;
+        overflow.clear();
+    }
+    
+    private class CellIterator implements Iterator<C> {
+        
+        private int nextIndex = -1;
+        private int lastIndex = -1;
+        private final Iterator<C> overflowIterator = overflow.iterator();
+        private boolean inOverflow = false;
+        
+        private CellIterator() {
+            advance();
+        }
+        
+        private void advance() {
+            do {
+                nextIndex++;
+            } while (nextIndex < cells.length && cells[nextIndex] == null);
+        }
+        
+        @Override
+        public final boolean hasNext() {
+            return nextIndex < cells.length || overflowIterator.hasNext();
+        }
+        
+        @Override
+        public final C next() {
+            if (nextIndex < cells.length) {
+                lastIndex = nextIndex;
+                advance();
+                return asCell(cells[lastIndex]);
+            } else if (overflowIterator.hasNext()) {
+                inOverflow = true;
+                lastIndex = -1;
+                return overflowIterator.next();
+            }
+            throw new NoSuchElementException();
+        }
+        
+        @Override
+        public final void remove() {
+            if (inOverflow) {
+                overflowIterator.remove();
+            } else {
+                if (lastIndex < 0) {
+                    throw new IllegalStateException();
+                }
+                cells[lastIndex] = null;
+                arraySize--;
+                lastIndex = -1;
+            }
+        }
+        
+    }
+    
+    @Override
+    public final Iterator<C> iterator() {
+        return new CellIterator();
+    }
+    
+}
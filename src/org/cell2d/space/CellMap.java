@@ -0,0 +1,40 @@
+package org.cell2d.space;
+
+import java.util.Iterator;
+
+/**
+ * @param <C> The type of cells stored in this CellMap
+ * @author Alex Heyman
+ */
+abstract class CellMap<C> implements Iterable<C> {
+    
+    /*
+     * Subclasses store their cells in Object arrays, since arrays of a type
+     * parameter can't be created, and read them back through this method.
+     */
+    @SuppressWarnings("unchecked")
+    static <C> C asCell(Object cell) {
+        return (C)cell;
+    }
+    
+    abstract C get(int x, int y);
+    
+    abstract void put(int x, int y, C cell);
+    
+    abstract int size();
+    
+    final boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    abstract void clear();
+    
+    /**
+     * Returns an Iterator over this CellMap's cells whose remove() method
+     * removes the last cell returned from this CellMap.
+     * @return An Iterator over this CellMap's cells
+     */
+    @Override
+    public abstract Iterator<C> iterator();
+    
+}
@@ -1,5 +1,7 @@
 package org.cell2d.space;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -17,11 +19,170 @@ import org.cell2d.CellVector;
  */
 public class CompositeHitbox extends Hitbox {
     
-    final Map<Integer,Hitbox> components = new HashMap<>();
+    //The fewest components a CompositeHitbox can have for overlap tests to use a ComponentTree
+    private static final int MIN_TREE_COMPONENTS = 8;
+    //The most components a leaf node of a ComponentTree can have
+    private static final int LEAF_COMPONENTS = 4;
+    
+    /*
+     * A ComponentTree is a bounding volume hierarchy over a CompositeHitbox's
+     * components. Each node has a bounding box that contains those of all of
+     * the components below it, so an overlap test only needs to examine the
+     * components in the nodes whose boxes overlap the other Hitbox's bounding
+     * box. The nodes are in pre-order, so each internal node's first child
+     * directly follows it and each node comes before all of the nodes below
+     * it. The tree's layout stays the same until the CompositeHitbox's set of
+     * components changes; if only the components' boundaries change, the
+     * nodes' boxes are found again from the bottom up.
+     */
+    private static class ComponentTree {
+        
+        private final Hitbox[] components;
+        private int numNodes = 0;
+        //For each node, its left, top, right, and bottom boundaries
+        private final long[] boxes;
+        //For each leaf node, the range of indices in components of its components
+        private final int[] starts;
+        private final int[] ends;
+        //For each internal node, the index of its second child; -1 for each leaf node
+        private final int[] secondChildren;
+        
+        private ComponentTree(Collection<Hitbox> hitboxes) {
+            int numComponents = hitboxes.size();
+            Hitbox[] unsorted = hitboxes.toArray(new Hitbox[numComponents]);
+            long[] centers = new long[2*numComponents];
+            int[] order = new int[numComponents];
+            for (int i = 0; i < numComponents; i++) {
+                Hitbox hitbox = unsorted[i];
+                centers[2*i] = hitbox.getLeftEdge()/2 + hitbox.getRightEdge()/2;
+                centers[2*i + 1] = hitbox.getTopEdge()/2 + hitbox.getBottomEdge()/2;
+                order[i] = i;
+            }
+            int maxNodes = 2*numComponents;
+            boxes = new long[4*maxNodes];
+            starts = new int[maxNodes];
+            ends = new int[maxNodes];
+            secondChildren = new int[maxNodes];
+            build(order, centers, new long[numComponents], 0, numComponents);
+            components = new Hitbox[numComponents];
+            for (int i = 0; i < numComponents; i++) {
+                components[i] = unsorted[order[i]];
+            }
+            updateBoxes();
+        }
+        
+        /*
+         * Adds a node for the components at the specified range of indices in
+         * order, and the nodes below it, splitting the range in half along the
+         * axis on which the components' centers are most spread out. The range
+         * is sorted by keys that pack each component's center on that axis,
+         * relative to the lowest one, above its index, so that it can be
+         * sorted as primitives. If the centers are too spread out for their
+         * offsets to fit in 31 bits, the offsets lose their lowest bits, and
+         * components whose centers then match stay in their current order;
+         * this only affects how the tree is balanced, not the overlap tests.
+         */
+        private int build(int[] order, long[] centers, long[] keys, int start, int end) {
+            int node = numNodes++;
+            starts[node] = start;
+            ends[node] = end;
+            if (end - start <= LEAF_COMPONENTS) {
+                secondChildren[node] = -1;
+                return node;
+            }
+            long minX = Long.MAX_VALUE;
+            long maxX = Long.MIN_VALUE;
+            long minY = Long.MAX_VALUE;
+            long maxY = Long.MIN_VALUE;
+            for (int i = start; i < end; i++) {
+                int j = 2*order[i];
+                minX = Math.min(minX, centers[j]);
+                maxX = Math.max(maxX, centers[j]);
+                minY = Math.min(minY, centers[j + 1]);
+                maxY = Math.max(maxY, centers[j + 1]);
+            }
+            int axis = (maxX - minX >= maxY - minY ? 0 : 1);
+            long min = (axis == 0 ? minX : minY);
+            long spread = (axis == 0 ? maxX - minX : maxY - minY);
+            int shift = Math.max(0, 33 - Long.numberOfLeadingZeros(spread));
+            for (int i = start; i < end; i++) {
+                keys[i] = (((centers[2*order[i] + axis] - min) >>> shift) << 32) | (i - start);
+            }
+            Arrays.sort(keys, start, end);
+            for (int i = start; i < end; i++) {
+                keys[i] = order[start + (int)keys[i]];
+            }
+            for (int i = start; i < end; i++) {
+                order[i] = (int)keys[i];
+            }
+            int middle = (start + end)/2;
+            build(order, centers, keys, start, middle);
+            secondChildren[node] = build(order, centers, keys, middle, end);
+            return node;
+        }
+        
+        private void updateBoxes() {
+            for (int node = numNodes - 1; node >= 0; node--) {
+                int i = 4*node;
+                if (secondChildren[node] < 0) {
+                    Hitbox component = components[starts[node]];
+                    long left = component.getLeftEdge();
+                    long top = component.getTopEdge();
+                    long right = component.getRightEdge();
+                    long bottom = component.getBottomEdge();
+                    for (int j = starts[node] + 1; j < ends[node]; j++) {
+                        component = components[j];
+                        left = Math.min(left, component.getLeftEdge());
+                        top = Math.min(top, component.getTopEdge());
+                        right = Math.max(right, component.getRightEdge());
+                        bottom = Math.max(bottom, component.getBottomEdge());
+                    }
+                    boxes[i] = left;
+                    boxes[i + 1] = top;
+                    boxes[i + 2] = right;
+                    boxes[i + 3] = bottom;
+                } else {
+                    int first = i + 4;
+                    int second = 4*secondChildren[node];
+                    boxes[i] = Math.min(boxes[first], boxes[second]);
+                    boxes[i + 1] = Math.min(boxes[first + 1], boxes[second + 1]);
+                    boxes[i + 2] = Math.max(boxes[first + 2], boxes[second + 2]);
+                    boxes[i + 3] = Math.max(boxes[first + 3], boxes[second + 3]);
+                }
+            }
+        }
+        
+        private boolean overlaps(int node, Hitbox hitbox, boolean componentsFirst,
+                long left, long top, long right, long bottom) {
+            int i = 4*node;
+            //A component can only overlap the Hitbox if its bounding box does, not counting boundaries
+            if (boxes[i] >= right || boxes[i + 1] >= bottom || boxes[i + 2] <= left || boxes[i + 3] <= top) {
+                return false;
+            }
+            if (secondChildren[node] < 0) {
+                for (int j = starts[node]; j < ends[node]; j++) {
+                    if (componentsFirst ? overlap(components[j], hitbox) : overlap(hitbox, components[j])) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return overlaps(node + 1, hitbox, componentsFirst, left, top, right, bottom)
+                    || overlaps(secondChildren[node], hitbox, componentsFirst, left, top, right, bottom);
+        }
+        
+    }
+    
+    private final Map<Integer,Hitbox> components = new HashMap<>();
     private long left = 0;
     private long right = 0;
     private long top = 0;
     private long bottom = 0;
+    //Whether the boundaries above are out of date and will be found again the next time they are read
+    private boolean shapeChanged = false;
+    //Null if this CompositeHitbox's set of components has changed since its ComponentTree was built
+    private ComponentTree tree = null;
+    private boolean treeBoxesChanged = false;
     
     /**
      * Constructs a CompositeHitbox with the specified relative position.
@@ -55,7 +216,22 @@ public class CompositeHitbox extends Hitbox {
         return copy;
     }
     
-    final void updateShape() {
+    final void componentChanged() {
+        treeBoxesChanged = true;
+        if (!shapeChanged) {
+            shapeChanged = true;
+            updateBoundaries();
+        }
+    }
+    
+    private void updateShapeIfChanged() {
+        updateAbsData();
+        if (shapeChanged) {
+            updateShape();
+        }
+    }
+    
+    private void updateShape() {
         if (components.isEmpty()) {
             left = 0;
             right = 0;
@@ -88,7 +264,7 @@ public class CompositeHitbox extends Hitbox {
             top = newTop - y;
             bottom = newBottom - y;
         }
-        updateBoundaries();
+        shapeChanged = false;
     }
     
     /**
@@ -128,14 +304,19 @@ public class CompositeHitbox extends Hitbox {
         if (hitbox == null) {
             Hitbox oldHitbox = components.remove(id);
             if (oldHitbox != null) {
+                tree = null;
                 removeChild(oldHitbox);
                 oldHitbox.componentOf = null;
-                updateShape();
+                componentChanged();
                 return true;
             }
         } else if (addChild(hitbox)) {
+            //The new component's data is brought up to date before it counts as one
+            hitbox.updateAbsData();
+            updateShapeIfChanged();
             hitbox.componentOf = this;
             Hitbox oldHitbox = components.put(id, hitbox);
+            tree = null;
             if (oldHitbox == null) {
                 long x = getAbsX();
                 long y = getAbsY();
@@ -147,7 +328,7 @@ public class CompositeHitbox extends Hitbox {
             } else {
                 removeChild(oldHitbox);
                 oldHitbox.componentOf = null;
-                updateShape();
+                componentChanged();
             }
             return true;
         }
@@ -162,42 +343,90 @@ public class CompositeHitbox extends Hitbox {
             removeChild(hitbox);
         }
         components.clear();
-        updateShape();
+        tree = null;
+        componentChanged();
+    }
+    
+    /*
+     * Returns whether any of this CompositeHitbox's components overlap the
+     * specified Hitbox, with the components as either the first or the second
+     * Hitboxes given to overlap().
+     */
+    final boolean componentsOverlap(Hitbox hitbox, boolean componentsFirst) {
+        if (components.size() < MIN_TREE_COMPONENTS) {
+            for (Hitbox component : components.values()) {
+                if (componentsFirst ? overlap(component, hitbox) : overlap(hitbox, component)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        updateTree();
+        return tree.overlaps(0, hitbox, componentsFirst, hitbox.getLeftEdge(),
+                hitbox.getTopEdge(), hitbox.getRightEdge(), hitbox.getBottomEdge());
+    }
+    
+    private void updateTree() {
+        if (tree == null) {
+            tree = new ComponentTree(components.values());
+            treeBoxesChanged = false;
+        } else if (treeBoxesChanged) {
+            tree.updateBoxes();
+            treeBoxesChanged = false;
+        }
     }
     
     @Override
     public final long getLeftEdge() {
+        updateShapeIfChanged();
         return getAbsX() + left;
     }
     
     @Override
     public final long getRightEdge() {
+        updateShapeIfChanged();
         return getAbsX() + right;
     }
     
     @Override
     public final long getTopEdge() {
+        updateShapeIfChanged();
         return getAbsY() + top;
     }
     
     @Override
     public final long getBottomEdge() {
+        updateShapeIfChanged();
         return getAbsY() + bottom;
     }
     
+    @Override
+    final int getShapeDependencies() {
+        return ABS_ALL;
+    }
+    
+    @Override
+    final void updateLazyData() {
+        super.updateLazyData();
+        updateShapeIfChanged();
+        if (components.size() >= MIN_TREE_COMPONENTS) {
+            updateTree();
+        }
+    }
+    
     @Override
     final void updateAbsXFlipActions() {
-        updateShape();
+        shapeChanged = true;
     }
     
     @Override
     final void updateAbsYFlipActions() {
-        updateShape();
+        shapeChanged = true;
     }
     
     @Override
     final void updateAbsAngleActions() {
-        updateShape();
+        shapeChanged = true;
     }
     
 }
@@ -0,0 +1,164 @@
+package org.cell2d.space;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @param <C> The type of cells stored in this HashCellMap
+ * @author Alex Heyman
+ */
+class HashCellMap<C> extends CellMap<C> {
+    
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Object REMOVED = new Object();
+    
+    //Slots are keyed by both cell coordinates packed into one long
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+    private int occupied = 0; //Number of slots that are either in use or REMOVED
+    private int mask;
+    
+    HashCellMap() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+    }
+    
+    private static long toKey(int x, int y) {
+        return ((long)x << 32) | (y & 0xFFFFFFFFL);
+    }
+    
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int)(key ^ (key >>> 32));
+    }
+    
+    private int indexOf(long key) {
+        int i = hash(key) & mask;
+        while (true) {
+            Object value = values[i];
+            if (value == null) {
+                return -1;
+            } else if (value != REMOVED && keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+    
+    @Override
+    final C get(int x, int y) {
+        int i = indexOf(toKey(x, y));
+        return (i < 0 ? null : asCell(values[i]));
+    }
+    
+    @Override
+    final void put(int x, int y, C cell) {
+        long key = toKey(x, y);
+        int i = indexOf(key);
+        if (i >= 0) {
+            values[i] = cell;
+            return;
+        }
+        if (2*(occupied + 1) > values.length) {
+            //Grow if mostly full of cells, or just clean out REMOVED slots otherwise
+            rehash(2*size + 2 > values.length/2 ? 2*values.length : values.length);
+        }
+        i = hash(key) & mask;
+        while (values[i] != null && values[i] != REMOVED) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == null) {
+            occupied++;
+        }
+        keys[i] = key;
+        values[i] = cell;
+        size++;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        occupied = size;
+        for (int j = 0; j < oldValues.length; j++) {
+            Object value = oldValues[j];
+            if (value != null && value != REMOVED) {
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = value;
+            }
+        }
+    }
+    
+    @Override
+    final int size() {
+        return size;
+    }
+    
+    @Override
+    final void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        size = 0;
+        occupied = 0;
+    }
+    
+    private class CellIterator implements Iterator<C> {
+        
+        //Hold onto the arrays in use at construction, since removals never rehash
+        private final Object[] iterValues = values;
+        private int nextIndex = -1;
+        private int lastIndex = -1;
+        
+        private CellIterator() {
+            advance();
+        }
+        
+        private void advance() {
+            do {
+                nextIndex++;
+            } while (nextIndex < iterValues.length
+                    && (iterValues[nextIndex] == null || iterValues[nextIndex] == REMOVED));
+        }
+        
+        @Override
+        public final boolean hasNext() {
+            return nextIndex < iterValues.length;
+        }
+        
+        @Override
+        public final C next() {
+            if (nextIndex >= iterValues.length) {
+                throw new NoSuchElementException();
+            }
+            lastIndex = nextIndex;
+            advance();
+            return asCell(iterValues[lastIndex]);
+        }
+        
+        @Override
+        public final void remove() {
+            if (lastIndex < 0) {
+                throw new IllegalStateException();
+            }
+            iterValues[lastIndex] = REMOVED;
+            size--;
+            lastIndex = -1;
+        }
+        
+    }
+    
+    @Override
+    public final Iterator<C> iterator() {
+        return new CellIterator();
+    }
+    
+}
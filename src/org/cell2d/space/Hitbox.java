@@ -35,6 +35,50 @@ import org.cell2d.Frac;
  */
 public abstract class Hitbox {
     
+    /*
+     * A RectangleEdges describes an axis-aligned rectangle as a polygon, in
+     * the form that polygon tests take, with its vertices going clockwise from
+     * its top left corner. Each thread reuses its own, so tests against
+     * rectangles allocate nothing and can still run in parallel.
+     */
+    private static class RectangleEdges {
+        
+        private final CellVector[] vertices = {new CellVector(), new CellVector(),
+            new CellVector(), new CellVector()};
+        private final CellVector[] diffs = {new CellVector(), new CellVector(),
+            new CellVector(), new CellVector()};
+        //For each edge, its left, top, right, and bottom boundaries
+        private final long[] boxes = new long[16];
+        
+        private RectangleEdges set(long x1, long y1, long x2, long y2) {
+            vertices[0].setCoordinates(x1, y1);
+            vertices[1].setCoordinates(x2, y1);
+            vertices[2].setCoordinates(x2, y2);
+            vertices[3].setCoordinates(x1, y2);
+            diffs[0].setCoordinates(x2 - x1, 0);
+            diffs[1].setCoordinates(0, y2 - y1);
+            diffs[2].setCoordinates(x1 - x2, 0);
+            diffs[3].setCoordinates(0, y1 - y2);
+            setBox(0, x1, y1, x2, y1);
+            setBox(1, x2, y1, x2, y2);
+            setBox(2, x1, y2, x2, y2);
+            setBox(3, x1, y1, x1, y2);
+            return this;
+        }
+        
+        private void setBox(int edge, long left, long top, long right, long bottom) {
+            int i = 4*edge;
+            boxes[i] = left;
+            boxes[i + 1] = top;
+            boxes[i + 2] = right;
+            boxes[i + 3] = bottom;
+        }
+        
+    }
+    
+    private static final ThreadLocal<RectangleEdges> RECTANGLE_EDGES
+            = ThreadLocal.withInitial(RectangleEdges::new);
+            
     private Hitbox parent = null;
     private final Set<Hitbox> children = new HashSet<>();
     CompositeHitbox componentOf = null;
@@ -43,9 +87,10 @@ public abstract class Hitbox {
     final Set<HitboxRole> roles = EnumSet.noneOf(HitboxRole.class);
     SpaceState state = null;
     int[] cellRange = null;
-    boolean scanned = false;
+    long scanStamp = 0; //The stamp of the last SpaceState query or parallel grouping to examine this Hitbox
     int drawPriority = 0;
     int numCellRoles = 0;
+    int changedIndex = -1; //Index in its SpaceState's changedHitboxes, or -1 if its cells are up to date
     private final CellVector relPosition, absPosition;
     private boolean relXFlip = false;
     private boolean absXFlip = false;
@@ -57,6 +102,23 @@ public abstract class Hitbox {
     private double absAngle = 0;
     private long absAngleX = Frac.UNIT;
     private long absAngleY = 0;
+    /*
+     * A change to a Hitbox's relative position, flipped status, or angle only
+     * records which parts of its absolute data and its descendants' are out of
+     * date. The absolute data is brought up to date, with the ancestors' data
+     * first, the next time it is read, including as part of reading an edge.
+     * Since a Hitbox's descendants always have at least the out-of-date parts
+     * that it has, repeated changes to a Hitbox stop at the Hitbox itself.
+     * Reading a Hitbox therefore can write to it, so before groups of
+     * MobileObjects move in parallel, their SpaceState brings every Hitbox
+     * that more than one thread could read up to date with updateLazyData().
+     */
+    static final int ABS_POSITION = 1;
+    static final int ABS_X_FLIP = 2;
+    static final int ABS_Y_FLIP = 4;
+    static final int ABS_ANGLE = 8;
+    static final int ABS_ALL = ABS_POSITION | ABS_X_FLIP | ABS_Y_FLIP | ABS_ANGLE;
+    private int absChanges = 0;
     
     /**
      * Constructs a Hitbox with the specified relative position.
@@ -116,27 +178,92 @@ public abstract class Hitbox {
     }
     
     private void recursivelyUpdateData() {
+        recursivelyUpdateParentData();
+        absDataChanged(ABS_ALL);
+    }
+    
+    private void recursivelyUpdateParentData() {
         if (parent == null) {
             object = null;
             state = null;
-            absXFlip = relXFlip;
-            absYFlip = relYFlip;
         } else {
             object = parent.object;
             state = parent.state;
-            absXFlip = parent.absXFlip ^ relXFlip;
-            absYFlip = parent.absYFlip ^ relYFlip;
         }
-        updateAbsAngle();
-        updateAbsPosition();
         if (!children.isEmpty()) {
             for (Hitbox child : children) {
-                child.recursivelyUpdateData();
+                child.recursivelyUpdateParentData();
+            }
+        }
+    }
+    
+    /*
+     * Records that the specified parts of this Hitbox's absolute data are out
+     * of date, along with its descendants' absolute positions and the same
+     * parts of their data. A descendant's absolute angle also depends on its
+     * parent's absolute flips.
+     */
+    private void absDataChanged(int changes) {
+        if ((absChanges | changes) == absChanges) {
+            return;
+        }
+        absChanges |= changes;
+        if (!children.isEmpty()) {
+            int childChanges = changes | ABS_POSITION;
+            if ((changes & (ABS_X_FLIP | ABS_Y_FLIP)) != 0) {
+                childChanges |= ABS_ANGLE;
+            }
+            for (Hitbox child : children) {
+                child.absDataChanged(childChanges);
+            }
+        }
+        if ((changes & (ABS_POSITION | getShapeDependencies())) != 0) {
+            updateBoundaries();
+        }
+    }
+    
+    /*
+     * Returns the parts of this Hitbox's absolute data other than its position
+     * that its boundaries depend on. Changes to only the other parts leave its
+     * boundaries, and thus its cells and CompositeHitbox's shape, alone.
+     */
+    int getShapeDependencies() {
+        return 0;
+    }
+    
+    /*
+     * Brings this Hitbox's absolute data, and whatever data its subclass
+     * derives from it, up to date.
+     */
+    final void updateAbsData() {
+        if (absChanges != 0) {
+            if (parent != null) {
+                parent.updateAbsData();
+            }
+            int changes = absChanges;
+            absChanges = 0;
+            if ((changes & ABS_X_FLIP) != 0) {
+                absXFlip = (parent == null ? relXFlip : parent.absXFlip ^ relXFlip);
+            }
+            if ((changes & ABS_Y_FLIP) != 0) {
+                absYFlip = (parent == null ? relYFlip : parent.absYFlip ^ relYFlip);
+            }
+            if ((changes & ABS_ANGLE) != 0) {
+                updateAbsAngle();
+            }
+            if ((changes & ABS_POSITION) != 0) {
+                updateAbsPosition();
+            }
+            if ((changes & ABS_X_FLIP) != 0) {
+                updateAbsXFlipActions();
+            }
+            if ((changes & ABS_Y_FLIP) != 0) {
+                updateAbsYFlipActions();
+            }
+            if ((changes & ABS_ANGLE) != 0) {
+                updateAbsAngleActions();
             }
         }
-        updateAbsXFlipActions();
-        updateAbsYFlipActions();
-        updateAbsAngleActions();
     }
     
     /**
@@ -221,6 +348,22 @@ public abstract class Hitbox {
         }
     }
     
+    /*
+     * Brings everything that this Hitbox and its descendants compute lazily up
+     * to date, so that reading them won't write to them until they change
+     * again. Groups of MobileObjects moving in parallel can read the same
+     * Hitboxes at once, so their SpaceState calls this on those Hitboxes
+     * before the groups start.
+     */
+    void updateLazyData() {
+        updateAbsData();
+        if (!children.isEmpty()) {
+            for (Hitbox child : children) {
+                child.updateLazyData();
+            }
+        }
+    }
+    
     private void recursivelySetObject(SpaceObject object) {
         this.object = object;
         state = (object == null ? null : object.state);
@@ -233,10 +376,10 @@ public abstract class Hitbox {
     
     final void updateBoundaries() {
         if (componentOf != null) {
-            componentOf.updateShape();
+            componentOf.componentChanged();
         }
         if (state != null && cellRange != null) {
-            state.updateCells(this);
+            state.boundariesChanged(this);
         }
     }
     
@@ -337,7 +480,7 @@ public abstract class Hitbox {
      */
     public final void setRelPosition(CellVector relPosition) {
         this.relPosition.setCoordinates(relPosition);
-        recursivelyUpdateAbsPosition();
+        absDataChanged(ABS_POSITION);
     }
     
     /**
@@ -347,7 +490,7 @@ public abstract class Hitbox {
      */
     public final void setRelPosition(long relX, long relY) {
         relPosition.setCoordinates(relX, relY);
-        recursivelyUpdateAbsPosition();
+        absDataChanged(ABS_POSITION);
     }
     
     /**
@@ -357,7 +500,7 @@ public abstract class Hitbox {
      */
     public final void setRelX(long relX) {
         relPosition.setX(relX);
-        recursivelyUpdateAbsPosition();
+        absDataChanged(ABS_POSITION);
     }
     
     /**
@@ -367,7 +510,7 @@ public abstract class Hitbox {
      */
     public final void setRelY(long relY) {
         relPosition.setY(relY);
-        recursivelyUpdateAbsPosition();
+        absDataChanged(ABS_POSITION);
     }
     
     /**
@@ -376,7 +519,7 @@ public abstract class Hitbox {
      */
     public final void changeRelPosition(CellVector change) {
         relPosition.add(change);
-        recursivelyUpdateAbsPosition();
+        absDataChanged(ABS_POSITION);
     }
     
     /**
@@ -389,7 +532,7 @@ public abstract class Hitbox {
      */
     public final void changeRelPosition(long changeX, long changeY) {
         relPosition.add(changeX, changeY);
-        recursivelyUpdateAbsPosition();
+        absDataChanged(ABS_POSITION);
     }
     
     /**
@@ -400,7 +543,7 @@ public abstract class Hitbox {
      */
     public final void changeRelX(long changeX) {
         relPosition.setX(relPosition.getX() + changeX);
-        recursivelyUpdateAbsPosition();
+        absDataChanged(ABS_POSITION);
     }
     
     /**
@@ -411,7 +554,7 @@ public abstract class Hitbox {
      */
     public final void changeRelY(long changeY) {
         relPosition.setY(relPosition.getY() + changeY);
-        recursivelyUpdateAbsPosition();
+        absDataChanged(ABS_POSITION);
     }
     
     /**
@@ -419,6 +562,7 @@ public abstract class Hitbox {
      * @return This Hitbox's absolute position
      */
     public final CellVector getAbsPosition() {
+        updateAbsData();
         return new CellVector(absPosition);
     }
     
@@ -427,6 +571,7 @@ public abstract class Hitbox {
      * @return The x-coordinate of this Hitbox's absolute position
      */
     public final long getAbsX() {
+        updateAbsData();
         return absPosition.getX();
     }
     
@@ -435,6 +580,7 @@ public abstract class Hitbox {
      * @return The y-coordinate of this Hitbox's absolute position
      */
     public final long getAbsY() {
+        updateAbsData();
         return absPosition.getY();
     }
     
@@ -444,16 +590,6 @@ public abstract class Hitbox {
         } else {
             absPosition.setCoordinates(parent.absPosition).add(new CellVector(relPosition).relativeTo(parent));
         }
-        updateBoundaries();
-    }
-    
-    private void recursivelyUpdateAbsPosition() {
-        updateAbsPosition();
-        if (!children.isEmpty()) {
-            for (Hitbox child : children) {
-                child.recursivelyUpdateAbsPosition();
-            }
-        }
     }
     
     /**
@@ -481,13 +617,7 @@ public abstract class Hitbox {
      */
     public final void setRelXFlip(boolean relXFlip) {
         this.relXFlip = relXFlip;
-        absXFlip = (parent == null ? false : parent.absXFlip) ^ relXFlip;
-        if (!children.isEmpty()) {
-            for (Hitbox child : children) {
-                child.recursivelyUpdateAbsXFlip();
-            }
-        }
-        updateAbsXFlipActions();
+        absDataChanged(ABS_X_FLIP);
     }
     
     /**
@@ -496,13 +626,7 @@ public abstract class Hitbox {
      */
     public final void relFlipX() {
         relXFlip = !relXFlip;
-        absXFlip = !absXFlip;
-        if (!children.isEmpty()) {
-            for (Hitbox child : children) {
-                child.recursivelyUpdateAbsXFlip();
-            }
-        }
-        updateAbsXFlipActions();
+        absDataChanged(ABS_X_FLIP);
     }
     
     /**
@@ -510,6 +634,7 @@ public abstract class Hitbox {
      * @return Whether this Hitbox is absolutely horizontally flipped
      */
     public final boolean getAbsXFlip() {
+        updateAbsData();
         return absXFlip;
     }
     
@@ -520,22 +645,12 @@ public abstract class Hitbox {
      * is not
      */
     public final int getAbsXSign() {
+        updateAbsData();
         return (absXFlip ? -1 : 1);
     }
     
     void updateAbsXFlipActions() {}
     
-    private void recursivelyUpdateAbsXFlip() {
-        absXFlip = parent.absXFlip ^ relXFlip;
-        updateAbsPosition();
-        if (!children.isEmpty()) {
-            for (Hitbox child : children) {
-                child.recursivelyUpdateAbsXFlip();
-            }
-        }
-        updateAbsXFlipActions();
-    }
-    
     /**
      * Returns whether this Hitbox is relatively vertically flipped.
      * @return Whether this Hitbox is relatively vertically flipped
@@ -561,13 +676,7 @@ public abstract class Hitbox {
      */
     public final void setRelYFlip(boolean relYFlip) {
         this.relYFlip = relYFlip;
-        absYFlip = (parent == null ? false : parent.absYFlip) ^ relYFlip;
-        if (!children.isEmpty()) {
-            for (Hitbox child : children) {
-                child.recursivelyUpdateAbsYFlip();
-            }
-        }
-        updateAbsYFlipActions();
+        absDataChanged(ABS_Y_FLIP);
     }
     
     /**
@@ -576,13 +685,7 @@ public abstract class Hitbox {
      */
     public final void relFlipY() {
         relYFlip = !relYFlip;
-        absYFlip = !absYFlip;
-        if (!children.isEmpty()) {
-            for (Hitbox child : children) {
-                child.recursivelyUpdateAbsYFlip();
-            }
-        }
-        updateAbsYFlipActions();
+        absDataChanged(ABS_Y_FLIP);
     }
     
     /**
@@ -590,6 +693,7 @@ public abstract class Hitbox {
      * @return Whether this Hitbox is absolutely vertically flipped
      */
     public final boolean getAbsYFlip() {
+        updateAbsData();
         return absYFlip;
     }
     
@@ -600,22 +704,12 @@ public abstract class Hitbox {
      * not
      */
     public final int getAbsYSign() {
+        updateAbsData();
         return (absYFlip ? -1 : 1);
     }
     
     void updateAbsYFlipActions() {}
     
-    private void recursivelyUpdateAbsYFlip() {
-        absYFlip = parent.absYFlip ^ relYFlip;
-        updateAbsPosition();
-        if (!children.isEmpty()) {
-            for (Hitbox child : children) {
-                child.recursivelyUpdateAbsYFlip();
-            }
-        }
-        updateAbsYFlipActions();
-    }
-    
     /**
      * Returns this Hitbox's relative angle of rotation.
      * @return This Hitbox's relative angle of rotation
@@ -656,13 +750,7 @@ public abstract class Hitbox {
         double radians = Math.toRadians(relAngle);
         relAngleX = Frac.units(Math.cos(radians));
         relAngleY = Frac.units(-Math.sin(radians));
-        updateAbsAngle();
-        if (!children.isEmpty()) {
-            for (Hitbox child : children) {
-                child.recursivelyUpdateAbsAngle();
-            }
-        }
-        updateAbsAngleActions();
+        absDataChanged(ABS_ANGLE);
     }
     
     /**
@@ -678,6 +766,7 @@ public abstract class Hitbox {
      * @return This Hitbox's absolute angle of rotation
      */
     public final double getAbsAngle() {
+        updateAbsData();
         return absAngle;
     }
     
@@ -688,6 +777,7 @@ public abstract class Hitbox {
      * @return The x-coordinate of this Hitbox's absolute angle of rotation
      */
     public final long getAbsAngleX() {
+        updateAbsData();
         return absAngleX;
     }
     
@@ -698,6 +788,7 @@ public abstract class Hitbox {
      * @return The y-coordinate of this Hitbox's absolute angle of rotation
      */
     public final long getAbsAngleY() {
+        updateAbsData();
         return absAngleY;
     }
     
@@ -724,17 +815,6 @@ public abstract class Hitbox {
     
     void updateAbsAngleActions() {}
     
-    private void recursivelyUpdateAbsAngle() {
-        updateAbsAngle();
-        updateAbsPosition();
-        if (!children.isEmpty()) {
-            for (Hitbox child : children) {
-                child.recursivelyUpdateAbsAngle();
-            }
-        }
-        updateAbsAngleActions();
-    }
-    
     /**
      * Returns the x-coordinate of this Hitbox's absolute left boundary.
      * @return The x-coordinate of this Hitbox's absolute left boundary
@@ -849,39 +929,28 @@ public abstract class Hitbox {
         int numVertices = polygon.getNumVertices();
         if (numVertices == 0) { //Polygon can't overlap
             return false;
-        } else if (numVertices == 1) { //Polygon is a point at its first vertex
-            return center.distanceTo(polygon.getAbsVertex(0)) < radius; //Point is in circle
         }
-        CellVector firstVertex = polygon.getAbsVertex(0);
-        if (numVertices == 2) { //Polygon is a line segment
+        polygon.updateEdges();
+        CellVector[] vertices = polygon.edgeStarts;
+        CellVector[] diffs = polygon.edgeDiffs;
+        if (numVertices == 1) { //Polygon is a point at its first vertex
+            return center.distanceTo(vertices[0]) < radius; //Point is in circle
+        } else if (numVertices == 2) { //Polygon is a line segment
             //Circle intersects line segment
-            return circleIntersectsLineSegment(center, radius,
-                    firstVertex, polygon.getAbsVertex(1).sub(firstVertex));
+            return circleIntersectsLineSegment(center, radius, vertices[0], diffs[0]);
         }
         //Any of polygon's vertices are in circle
-        if (center.distanceTo(firstVertex) < radius) {
-            return true;
-        }
-        CellVector[] vertices = new CellVector[numVertices];
-        vertices[0] = firstVertex;
-        for (int i = 1; i < numVertices; i++) {
-            vertices[i] = polygon.getAbsVertex(i);
+        for (int i = 0; i < numVertices; i++) {
             if (center.distanceTo(vertices[i]) < radius) {
                 return true;
             }
         }
-        CellVector[] diffs = new CellVector[numVertices];
         //Any of polygon's edges intersect circle
-        for (int i = 0; i < numVertices - 1; i++) {
-            diffs[i] = CellVector.sub(vertices[i + 1], vertices[i]);
+        for (int i = 0; i < numVertices; i++) {
             if (circleEdgeIntersectsSeg(center, radius, vertices[i], diffs[i])) {
                 return true;
             }
         }
-        diffs[numVertices - 1] = CellVector.sub(firstVertex, vertices[numVertices - 1]);
-        if (circleEdgeIntersectsSeg(center, radius, vertices[numVertices - 1], diffs[numVertices - 1])) {
-            return true;
-        }
         //Circle impales any of polygon's vertices
         if (circleImpalesVertex(center, radius, diffs[numVertices - 1], vertices[0], diffs[0])) {
             return true;
@@ -892,7 +961,7 @@ public abstract class Hitbox {
             }
         }
         //Circle's center is in polygon
-        return pointIntersectsPolygon(center, polygon.getLeftEdge() - 1, vertices, diffs);
+        return pointIntersectsPolygon(center.getX(), center.getY(), polygon.getLeftEdge() - 1, vertices, diffs);
     }
     
     private static boolean circleIntersectsOrthogonalSeg(
@@ -953,68 +1022,59 @@ public abstract class Hitbox {
         int numVertices = polygon.getNumVertices();
         if (numVertices == 0) { //Polygon can't overlap
             return false;
-        } else if (numVertices == 1) { //Polygon is a point at its first vertex
-            return lineSegmentIntersectsPoint(start, diff, polygon.getAbsVertex(0)); //Point is on segment
         }
-        CellVector firstVertex = polygon.getAbsVertex(0);
-        if (numVertices == 2) { //Polygon is a line segment
+        polygon.updateEdges();
+        CellVector[] vertices = polygon.edgeStarts;
+        CellVector[] diffs = polygon.edgeDiffs;
+        if (numVertices == 1) { //Polygon is a point at its first vertex
+            return lineSegmentIntersectsPoint(start, diff, vertices[0]); //Point is on segment
+        } else if (numVertices == 2) { //Polygon is a line segment
             //Segments intersect
-            return CellVector.lineSegmentsIntersect(start, diff,
-                    firstVertex, polygon.getAbsVertex(1).sub(firstVertex));
+            return CellVector.lineSegmentsIntersect(start, diff, vertices[0], diffs[0]);
         }
-        CellVector[] vertices = new CellVector[numVertices];
-        vertices[0] = firstVertex;
-        CellVector[] diffs = new CellVector[numVertices];
+        long x1 = Math.min(start.getX(), start.getX() + diff.getX());
+        long y1 = Math.min(start.getY(), start.getY() + diff.getY());
+        long x2 = Math.max(start.getX(), start.getX() + diff.getX());
+        long y2 = Math.max(start.getY(), start.getY() + diff.getY());
         //Any of polygon's edges intersect segment
-        for (int i = 0; i < numVertices - 1; i++) {
-            vertices[i + 1] = polygon.getAbsVertex(i + 1);
-            diffs[i] = CellVector.sub(vertices[i + 1], vertices[i]);
-            if (CellVector.lineSegmentsIntersect(start, diff, vertices[i], diffs[i])) {
+        for (int i = 0; i < numVertices; i++) {
+            if (edgeBoxOverlaps(polygon.edgeBoxes, i, x1, y1, x2, y2)
+                    && CellVector.lineSegmentsIntersect(start, diff, vertices[i], diffs[i])) {
                 return true;
             }
         }
-        diffs[numVertices - 1] = CellVector.sub(firstVertex, vertices[numVertices - 1]);
-        if (CellVector.lineSegmentsIntersect(start, diff, vertices[numVertices - 1], diffs[numVertices - 1])) {
-            return true;
-        }
         //Segment impales any of polygon's vertices
         if (lineSegmentImpalesPolygonVertices(start, diff, vertices, diffs)) {
             return true;
         }
         //Segment's midpoint is in polygon
-        return pointIntersectsPolygon(
-                new CellVector(start.getX() + diff.getX()/2, start.getY() + diff.getY()/2),
+        return pointIntersectsPolygon(start.getX() + diff.getX()/2, start.getY() + diff.getY()/2,
                 polygon.getLeftEdge() - 1, vertices, diffs);
     }
     
     private static boolean lineSegmentIntersectsRectangle(
             CellVector start, CellVector diff, long x1, long y1, long x2, long y2) {
         //Segment's midpoint is in rectangle
-        CellVector midpoint = new CellVector(start.getX() + diff.getX()/2, start.getY() + diff.getY()/2);
-        if (midpoint.getX() > x1 && midpoint.getX() < x2 && midpoint.getY() > y1 && midpoint.getY() < y2) {
+        long midX = start.getX() + diff.getX()/2;
+        long midY = start.getY() + diff.getY()/2;
+        if (midX > x1 && midX < x2 && midY > y1 && midY < y2) {
             return true;
         }
-        CellVector topLeft = new CellVector(x1, y1);
-        CellVector horizontalDiff = new CellVector(x2 - x1, 0);
-        CellVector verticalDiff = new CellVector(0, y2 - y1);
-        //Any of rectangle's edges intersect segment
-        if (CellVector.lineSegmentsIntersect(start, diff, topLeft, horizontalDiff)
-                || CellVector.lineSegmentsIntersect(start, diff, new CellVector(x1, y2), horizontalDiff)
-                || CellVector.lineSegmentsIntersect(start, diff, topLeft, verticalDiff)
-                || CellVector.lineSegmentsIntersect(start, diff, new CellVector(x2, y1), verticalDiff)) {
+        RectangleEdges rectangle = RECTANGLE_EDGES.get().set(x1, y1, x2, y2);
+        CellVector[] vertices = rectangle.vertices;
+        CellVector[] diffs = rectangle.diffs;
+        //Any of rectangle's edges intersect segment, with its bottom edge going right and left edge down
+        if (CellVector.lineSegmentsIntersect(start, diff, vertices[0], diffs[0])
+                || CellVector.lineSegmentsIntersect(start, diff, vertices[3], diffs[0])
+                || CellVector.lineSegmentsIntersect(start, diff, vertices[0], diffs[1])
+                || CellVector.lineSegmentsIntersect(start, diff, vertices[1], diffs[1])) {
             return true;
         }
         //Segment impales any of rectangle's vertices
-        if (lineSegmentImpalesVertex(start, diff, horizontalDiff, new CellVector(x2, y1), verticalDiff)) {
-            return true;
-        }
-        CellVector leftEdge = new CellVector(0, y1 - y2);
-        if (lineSegmentImpalesVertex(start, diff, leftEdge, topLeft, horizontalDiff)) {
-            return true;
-        }
-        CellVector bottomEdge = new CellVector(x1 - x2, 0);
-        return lineSegmentImpalesVertex(start, diff, verticalDiff, new CellVector(x2, y2), bottomEdge)
-                || lineSegmentImpalesVertex(start, diff, bottomEdge, new CellVector(x1, y2), leftEdge);
+        return lineSegmentImpalesVertex(start, diff, diffs[0], vertices[1], diffs[1])
+                || lineSegmentImpalesVertex(start, diff, diffs[3], vertices[0], diffs[0])
+                || lineSegmentImpalesVertex(start, diff, diffs[1], vertices[2], diffs[2])
+                || lineSegmentImpalesVertex(start, diff, diffs[2], vertices[3], diffs[3]);
     }
     
     private static boolean segIntersectsHorizontalSeg(
@@ -1048,13 +1108,12 @@ public abstract class Hitbox {
     
     //Credit to Mecki of StackOverflow for the point-polygon intersection algorithm.
     
-    private static boolean pointIntersectsPolygon(CellVector point,
+    private static boolean pointIntersectsPolygon(long x, long y,
             long startX, CellVector[] vertices, CellVector[] diffs) {
         //Line segment entering polygon to point crosses polygon's edges an odd number of times
         boolean intersects = false;
         for (int i = 0; i < vertices.length; i++) {
-            if (segIntersectsHorizontalSeg(vertices[i], diffs[i],
-                    startX, point.getX(), point.getY(), intersects)) {
+            if (segIntersectsHorizontalSeg(vertices[i], diffs[i], startX, x, y, intersects)) {
                 intersects = !intersects;
             }
         }
@@ -1066,89 +1125,89 @@ public abstract class Hitbox {
         if (numVertices <= 1) { //Polygon can't overlap points
             return false;
         }
-        CellVector firstVertex = polygon.getAbsVertex(0);
+        polygon.updateEdges();
         if (numVertices == 2) { //Polygon is a line segment
             //Point is on segment
-            return lineSegmentIntersectsPoint(firstVertex, polygon.getAbsVertex(1).sub(firstVertex), point);
+            return lineSegmentIntersectsPoint(polygon.edgeStarts[0], polygon.edgeDiffs[0], point);
         }
-        long startX = polygon.getLeftEdge() - 1;
-        CellVector lastVertex = firstVertex;
-        //Line segment entering polygon to point crosses polygon's edges an odd number of times
-        boolean intersects = false;
-        for (int i = 1; i < numVertices; i++) {
-            CellVector vertex = polygon.getAbsVertex(i);
-            if (segIntersectsHorizontalSeg(lastVertex, CellVector.sub(vertex, lastVertex),
-                    startX, point.getX(), point.getY(), intersects)) {
-                intersects = !intersects;
-            }
-            lastVertex = vertex;
-        }
-        if (segIntersectsHorizontalSeg(lastVertex, CellVector.sub(firstVertex, lastVertex),
-                startX, point.getX(), point.getY(), intersects)) {
-            intersects = !intersects;
-        }
-        return intersects;
+        return pointIntersectsPolygon(point.getX(), point.getY(),
+                polygon.getLeftEdge() - 1, polygon.edgeStarts, polygon.edgeDiffs);
+    }
+    
+    /*
+     * Returns whether the bounding box of the edge at the specified index
+     * overlaps the specified box, not counting their boundaries. Two line
+     * segments can only intersect if their bounding boxes overlap in this way,
+     * so an edge can only intersect another polygon's edges if its bounding box
+     * overlaps that polygon's.
+     */
+    private static boolean edgeBoxOverlaps(long[] boxes, int index, long x1, long y1, long x2, long y2) {
+        int i = 4*index;
+        return boxes[i] < x2 && boxes[i + 2] > x1 && boxes[i + 1] < y2 && boxes[i + 3] > y1;
     }
     
-    private static boolean polygonsIntersect(PolygonHitbox polygon1,
-            long startX2, CellVector[] vertices2, CellVector[] diffs2) {
+    private static boolean polygonsIntersect(PolygonHitbox polygon1, CellVector[] vertices2,
+            CellVector[] diffs2, long[] boxes2, long x1, long y1, long x2, long y2) {
+        //Polygon 2's bounding box goes from (x1, y1) to (x2, y2)
+        polygon1.updateEdges();
         int numVertices1 = polygon1.getNumVertices();
         int numVertices2 = vertices2.length;
-        CellVector firstVertex1 = polygon1.getAbsVertex(0);
-        CellVector[] vertices1 = new CellVector[numVertices1];
-        vertices1[0] = firstVertex1;
-        CellVector[] diffs1 = new CellVector[numVertices1];
-        CellVector firstVertex2 = vertices2[0];
-        CellVector firstDiff2 = diffs2[0];
-        //Any of polygon 1's edges intersect polygon 2's first edge
-        for (int i = 0; i < numVertices1 - 1; i++) {
-            vertices1[i + 1] = polygon1.getAbsVertex(i + 1);
-            diffs1[i] = CellVector.sub(vertices1[i + 1], vertices1[i]);
-            if (CellVector.lineSegmentsIntersect(firstVertex2, firstDiff2, vertices1[i], diffs1[i])) {
-                return true;
-            }
-        }
-        diffs1[numVertices1 - 1] = CellVector.sub(firstVertex1, vertices1[numVertices1 - 1]);
-        if (CellVector.lineSegmentsIntersect(firstVertex2, firstDiff2,
-                vertices1[numVertices1 - 1], diffs1[numVertices1 - 1])) {
-            return true;
-        }
-        //Any of polygon 1's edges intersect any of polygon 2's other edges
-        for (int i = 1; i < numVertices2; i++) {
-            for (int j = 0; j < numVertices1; j++) {
-                if (CellVector.lineSegmentsIntersect(vertices2[i], diffs2[i], vertices1[j], diffs1[j])) {
-                    return true;
+        CellVector[] vertices1 = polygon1.edgeStarts;
+        CellVector[] diffs1 = polygon1.edgeDiffs;
+        long[] boxes1 = polygon1.edgeBoxes;
+        long left1 = polygon1.getLeftEdge();
+        long top1 = polygon1.getTopEdge();
+        long right1 = polygon1.getRightEdge();
+        long bottom1 = polygon1.getBottomEdge();
+        //Only edges whose bounding boxes overlap the other polygon's can intersect its edges
+        int firstEdge1 = 0;
+        while (firstEdge1 < numVertices1 && !edgeBoxOverlaps(boxes1, firstEdge1, x1, y1, x2, y2)) {
+            firstEdge1++;
+        }
+        if (firstEdge1 < numVertices1) {
+            //Any of polygon 1's edges intersect any of polygon 2's edges
+            for (int i = 0; i < numVertices2; i++) {
+                if (edgeBoxOverlaps(boxes2, i, left1, top1, right1, bottom1)) {
+                    for (int j = firstEdge1; j < numVertices1; j++) {
+                        if (edgeBoxOverlaps(boxes1, j, x1, y1, x2, y2) && CellVector.lineSegmentsIntersect(
+                                vertices2[i], diffs2[i], vertices1[j], diffs1[j])) {
+                            return true;
+                        }
+                    }
                 }
             }
         }
-        //Any of polygon 1's edges impale any of polygon 2's vertices
+        //Any of polygon 1's edges impale any of polygon 2's vertices, which are all in x1 to x2
         for (int i = 0; i < numVertices1; i++) {
-            if (lineSegmentImpalesPolygonVertices(vertices1[i], diffs1[i], vertices2, diffs2)) {
+            if (boxes1[4*i] <= x2 && boxes1[4*i + 2] >= x1
+                    && lineSegmentImpalesPolygonVertices(vertices1[i], diffs1[i], vertices2, diffs2)) {
                 return true;
             }
         }
         //Any of polygon 2's edges impale any of polygon 1's vertices
         for (int i = 0; i < numVertices2; i++) {
-            if (lineSegmentImpalesPolygonVertices(vertices2[i], diffs2[i], vertices1, diffs1)) {
+            if (boxes2[4*i] <= right1 && boxes2[4*i + 2] >= left1
+                    && lineSegmentImpalesPolygonVertices(vertices2[i], diffs2[i], vertices1, diffs1)) {
                 return true;
             }
         }
-        //Any of polygon 1's edge midpoints are in polygon 2
+        //Any of polygon 1's edge midpoints are in polygon 2, which a point outside y1 to y2 can't be
         for (int i = 0; i < numVertices1; i++) {
             CellVector start = vertices1[i];
             CellVector diff = diffs1[i];
-            if (pointIntersectsPolygon(new CellVector(start.getX() + diff.getX()/2,
-                    start.getY() + diff.getY()/2), startX2, vertices2, diffs2)) {
+            long midY = start.getY() + diff.getY()/2;
+            if (midY >= y1 && midY <= y2 && pointIntersectsPolygon(
+                    start.getX() + diff.getX()/2, midY, x1 - 1, vertices2, diffs2)) {
                 return true;
             }
         }
         //Any of polygon 2's edge midpoints are in polygon 1
-        long startX1 = polygon1.getLeftEdge() - 1;
         for (int i = 0; i < numVertices2; i++) {
             CellVector start = vertices2[i];
             CellVector diff = diffs2[i];
-            if (pointIntersectsPolygon(new CellVector(start.getX() + diff.getX()/2,
-                    start.getY() + diff.getY()/2), startX1, vertices1, diffs1)) {
+            long midY = start.getY() + diff.getY()/2;
+            if (midY >= top1 && midY <= bottom1 && pointIntersectsPolygon(
+                    start.getX() + diff.getX()/2, midY, left1 - 1, vertices1, diffs1)) {
                 return true;
             }
         }
@@ -1162,21 +1221,16 @@ public abstract class Hitbox {
             return pointIntersectsPolygon(polygon1.getAbsPosition(), polygon2); //Point is in polygon 2
         } else if (numVertices2 == 0) { //Polygon 2 is point at its center
             return pointIntersectsPolygon(polygon2.getAbsPosition(), polygon1); //Point is in polygon 1
-        } else if (numVertices1 == 1) { //Polygon 1 is a point at its first vertex
-            return pointIntersectsPolygon(polygon1.getAbsVertex(0), polygon2); //Point is in polygon 2
-        } else if (numVertices2 == 1) { //Polygon 2 is a point at its first vertex
-            return pointIntersectsPolygon(polygon2.getAbsVertex(0), polygon1); //Point is in polygon 1
         }
-        CellVector firstVertex2 = polygon2.getAbsVertex(0);
-        CellVector[] vertices2 = new CellVector[numVertices2];
-        vertices2[0] = firstVertex2;
-        CellVector[] diffs2 = new CellVector[numVertices2];
-        for (int i = 0; i < numVertices2 - 1; i++) {
-            vertices2[i + 1] = polygon2.getAbsVertex(i);
-            diffs2[i] = CellVector.sub(vertices2[i + 1], vertices2[i]);
+        polygon1.updateEdges();
+        polygon2.updateEdges();
+        if (numVertices1 == 1) { //Polygon 1 is a point at its first vertex
+            return pointIntersectsPolygon(polygon1.edgeStarts[0], polygon2); //Point is in polygon 2
+        } else if (numVertices2 == 1) { //Polygon 2 is a point at its first vertex
+            return pointIntersectsPolygon(polygon2.edgeStarts[0], polygon1); //Point is in polygon 1
         }
-        diffs2[numVertices2 - 1] = CellVector.sub(firstVertex2, vertices2[numVertices2 - 1]);
-        return polygonsIntersect(polygon1, polygon2.getLeftEdge() - 1, vertices2, diffs2);
+        return polygonsIntersect(polygon1, polygon2.edgeStarts, polygon2.edgeDiffs, polygon2.edgeBoxes,
+                polygon2.getLeftEdge(), polygon2.getTopEdge(), polygon2.getRightEdge(), polygon2.getBottomEdge());
     }
     
     private static boolean polygonIntersectsRectangle(
@@ -1189,16 +1243,13 @@ public abstract class Hitbox {
             return true;
         }
         if (numVertices == 2) { //Polygon is a line segment
-            CellVector firstVertex = polygon.getAbsVertex(0);
+            polygon.updateEdges();
             //Segment intersects rectangle
             return lineSegmentIntersectsRectangle(
-                    firstVertex, polygon.getAbsVertex(1).sub(firstVertex), x1, y1, x2, y2);
+                    polygon.edgeStarts[0], polygon.edgeDiffs[0], x1, y1, x2, y2);
         }
-        CellVector[] rectVertices = {new CellVector(x1, y1), new CellVector(x2, y1),
-            new CellVector(x2, y2), new CellVector(x1, y2)};
-        CellVector[] rectDiffs = {new CellVector(x2 - x1, 0), new CellVector(0, y2 - y1),
-            new CellVector(x1 - x2, 0), new CellVector(0, y1 - y2)};
-        return polygonsIntersect(polygon, x1 - 1, rectVertices, rectDiffs);
+        RectangleEdges rectangle = RECTANGLE_EDGES.get().set(x1, y1, x2, y2);
+        return polygonsIntersect(polygon, rectangle.vertices, rectangle.diffs, rectangle.boxes, x1, y1, x2, y2);
     }
     
     /**
@@ -1233,19 +1284,9 @@ public abstract class Hitbox {
                 && hitbox1.getTopEdge() < hitbox2.getBottomEdge()
                 && hitbox1.getBottomEdge() > hitbox2.getTopEdge()) {
             if (hitbox1 instanceof CompositeHitbox) {
-                for (Hitbox component : ((CompositeHitbox)hitbox1).components.values()) {
-                    if (overlap(component, hitbox2)) {
-                        return true;
-                    }
-                }
-                return false;
+                return ((CompositeHitbox)hitbox1).componentsOverlap(hitbox2, true);
             } else if (hitbox2 instanceof CompositeHitbox) {
-                for (Hitbox component : ((CompositeHitbox)hitbox2).components.values()) {
-                    if (overlap(hitbox1, component)) {
-                        return true;
-                    }
-                }
-                return false;
+                return ((CompositeHitbox)hitbox2).componentsOverlap(hitbox1, false);
             } else if (hitbox1 instanceof CircleHitbox) {
                 if (hitbox2 instanceof CircleHitbox) {
                     return hitbox1.distanceTo(hitbox2) < ((CircleHitbox)hitbox1).getRadius() + ((CircleHitbox)hitbox2).getRadius();
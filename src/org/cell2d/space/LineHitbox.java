@@ -44,6 +44,7 @@ public class LineHitbox extends Hitbox {
     }
     
     private void updateData() {
+        updateAbsData();
         absDifference.setCoordinates(relDifference).relativeTo(this);
         left = Math.min(absDifference.getX(), 0);
         right = Math.max(absDifference.getX(), 0);
@@ -120,6 +121,7 @@ public class LineHitbox extends Hitbox {
      * @return This LineHitbox's absolute difference
      */
     public final CellVector getAbsDifference() {
+        updateAbsData();
         return new CellVector(absDifference);
     }
     
@@ -128,6 +130,7 @@ public class LineHitbox extends Hitbox {
      * @return The x-coordinate of this LineHitbox's relative difference
      */
     public final long getAbsDX() {
+        updateAbsData();
         return absDifference.getX();
     }
     
@@ -136,6 +139,7 @@ public class LineHitbox extends Hitbox {
      * @return The y-coordinate of this LineHitbox's relative difference
      */
     public final long getAbsDY() {
+        updateAbsData();
         return absDifference.getY();
     }
     
@@ -186,6 +190,11 @@ public class LineHitbox extends Hitbox {
         return getAbsY() + bottom;
     }
     
+    @Override
+    final int getShapeDependencies() {
+        return ABS_ALL;
+    }
+    
     @Override
     final void updateAbsXFlipActions() {
         updateData();
@@ -69,6 +69,8 @@ public abstract class MobileObject extends SpaceObject {
     private MobileObject leader = null;
     final Set<MobileObject> followers = new HashSet<>();
     MobileObject effLeader = null;
+    //This MobileObject's index in movement order when its SpaceState last moved it in parallel
+    int movementIndex = -1;
     final Map<SpaceObject,Set<Direction>> collisions = new HashMap<>();
     final Set<Direction> collisionDirections = EnumSet.noneOf(Direction.class);
     private final CellVector velocity = new CellVector();
@@ -287,9 +289,14 @@ public abstract class MobileObject extends SpaceObject {
      * @return This MobileObject's absolute pressing angle
      */
     public final Double getAbsPressingAngle() {
-        if (relPressingAngle == null) {
-            return null;
-        }
+        return (relPressingAngle == null ? null : getAbsPressingAngleValue());
+    }
+    
+    /*
+     * Unboxed version of getAbsPressingAngle(), for use when this MobileObject
+     * is known to have a relative pressing angle.
+     */
+    final double getAbsPressingAngleValue() {
         double angle = relPressingAngle + getAngle();
         if (getXFlip()) {
             angle = 180 - angle;
@@ -312,9 +319,11 @@ public abstract class MobileObject extends SpaceObject {
      * press in the specified Direction
      */
     public final boolean isPressingIn(Direction direction) {
-        Double angle = getAbsPressingAngle();
-        return angle != null
-                && ((direction == Direction.LEFT && (angle < 90 || angle > 270))
+        if (relPressingAngle == null) {
+            return false;
+        }
+        double angle = getAbsPressingAngleValue();
+        return ((direction == Direction.LEFT && (angle < 90 || angle > 270))
                 || (direction == Direction.RIGHT && angle > 90 && angle < 270)
                 || (direction == Direction.UP && angle > 0 && angle < 180)
                 || (direction == Direction.DOWN && angle > 180));
@@ -604,7 +613,7 @@ public abstract class MobileObject extends SpaceObject {
             collisions.clear();
             collisionDirections.clear();
             displacement.clear();
-            displacement.setCoordinates(state.move(this, changeX, changeY));
+            state.move(this, changeX, changeY, displacement);
         }
     }
     
@@ -715,6 +724,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param velocity The new velocity
      */
     public final void setVelocity(CellVector velocity) {
+        checkParallelChange();
         this.velocity.setCoordinates(velocity);
     }
     
@@ -724,6 +734,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param velocityY The new y-component of the velocity
      */
     public final void setVelocity(long velocityX, long velocityY) {
+        checkParallelChange();
         velocity.setCoordinates(velocityX, velocityY);
     }
     
@@ -733,6 +744,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param velocityX The new x-component of the velocity
      */
     public final void setVelocityX(long velocityX) {
+        checkParallelChange();
         velocity.setX(velocityX);
     }
     
@@ -742,6 +754,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param velocityY The new y-component of the velocity
      */
     public final void setVelocityY(long velocityY) {
+        checkParallelChange();
         velocity.setY(velocityY);
     }
     
@@ -751,6 +764,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param speed The new speed
      */
     public final void setSpeed(long speed) {
+        checkParallelChange();
         velocity.setMagnitude(speed);
     }
     
@@ -816,6 +830,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param step The new step
      */
     public final void setStep(CellVector step) {
+        checkParallelChange();
         this.step.setCoordinates(step);
     }
     
@@ -825,6 +840,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param stepY The y-component of the new step
      */
     public final void setStep(long stepX, long stepY) {
+        checkParallelChange();
         step.setCoordinates(stepX, stepY);
     }
     
@@ -833,6 +849,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param stepX The new x-component of the step
      */
     public final void setStepX(long stepX) {
+        checkParallelChange();
         step.setX(stepX);
     }
     
@@ -841,6 +858,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param stepY The new y-component of the step
      */
     public final void setStepY(long stepY) {
+        checkParallelChange();
         step.setY(stepY);
     }
     
@@ -849,6 +867,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param length The new step length
      */
     public final void setStepLength(long length) {
+        checkParallelChange();
         step.setMagnitude(length);
     }
     
@@ -857,6 +876,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param change The amount to change the step by
      */
     public final void changeStep(CellVector change) {
+        checkParallelChange();
         step.add(change);
     }
     
@@ -866,6 +886,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param changeY The amount to change the step's y-component by
      */
     public final void changeStep(long changeX, long changeY) {
+        checkParallelChange();
         step.add(changeX, changeY);
     }
     
@@ -875,6 +896,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param changeX The amount to change the step's x-component by
      */
     public final void changeStepX(long changeX) {
+        checkParallelChange();
         step.add(changeX, 0);
     }
     
@@ -884,6 +906,7 @@ public abstract class MobileObject extends SpaceObject {
      * @param changeY The amount to change the step's y-component by
      */
     public final void changeStepY(long changeY) {
+        checkParallelChange();
         step.add(0, changeY);
     }
     
@@ -0,0 +1,35 @@
+package org.cell2d.space;
+
+/**
+ * <p>A MultiQueryVisitor is handed, one at a time, the SpaceObjects that a
+ * batch of SpaceState queries finds, along with the index of the query in the
+ * batch that found each one. A SpaceObject that more than one query in the
+ * batch finds is handed to the MultiQueryVisitor once per such query. It is
+ * useful to create a MultiQueryVisitor as a lambda expression to simplify
+ * code.</p>
+ * <p>While a MultiQueryVisitor is being run, it may not make another query of
+ * the SpaceState whose queries found the SpaceObject it was handed. Such a
+ * query will throw an IllegalStateException.</p>
+ * <p>Nor may it add SpaceObjects to or remove them from that SpaceState, or
+ * change which Hitboxes its SpaceObjects have or their draw priorities, since
+ * the queries are still looking through the SpaceState's cells. Attempts to
+ * do so will also throw an IllegalStateException. Changing the positions of
+ * SpaceObjects is allowed.</p>
+ * @see SpaceState
+ * @param <O> The type of SpaceObject that this MultiQueryVisitor can visit
+ * @author Alex Heyman
+ */
+public interface MultiQueryVisitor<O extends SpaceObject> {
+    
+    /**
+     * Actions for this MultiQueryVisitor to take upon being handed a
+     * SpaceObject that a query in a batch found.
+     * @param query The index of the query in the batch that found the
+     * SpaceObject
+     * @param object The SpaceObject that the query found
+     * @return Whether the batch of queries should continue looking for more
+     * SpaceObjects
+     */
+    boolean visit(int query, O object);
+    
+}
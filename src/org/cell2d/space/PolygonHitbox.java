@@ -32,6 +32,20 @@ public class PolygonHitbox extends Hitbox {
     
     private final List<RelAbsPair> vertices;
     private long left, right, top, bottom;
+    /*
+     * The vertices' absolute positions in space, rather than relative to this
+     * PolygonHitbox's position, along with the difference from each of them to
+     * the next and the bounding box of the edge between them. Overlap tests
+     * read them instead of working them out anew each time. They are found
+     * again the next time they are needed after this PolygonHitbox's vertices
+     * or absolute data change.
+     */
+    private boolean edgesChanged = true;
+    private long edgesX, edgesY;
+    CellVector[] edgeStarts = null;
+    CellVector[] edgeDiffs = null;
+    //For each edge, its left, top, right, and bottom boundaries
+    long[] edgeBoxes = null;
     
     /**
      * Constructs a PolygonHitbox with the specified relative position and
@@ -125,6 +139,7 @@ public class PolygonHitbox extends Hitbox {
     }
     
     private void updateData() {
+        updateAbsData();
         if (vertices.isEmpty()) {
             left = 0;
             right = 0;
@@ -148,9 +163,45 @@ public class PolygonHitbox extends Hitbox {
                 }
             }
         }
+        edgesChanged = true;
         updateBoundaries();
     }
     
+    final void updateEdges() {
+        long x = getAbsX();
+        long y = getAbsY();
+        if (!edgesChanged && x == edgesX && y == edgesY) {
+            return;
+        }
+        int numVertices = vertices.size();
+        if (edgeStarts == null || edgeStarts.length != numVertices) {
+            edgeStarts = new CellVector[numVertices];
+            edgeDiffs = new CellVector[numVertices];
+            for (int i = 0; i < numVertices; i++) {
+                edgeStarts[i] = new CellVector();
+                edgeDiffs[i] = new CellVector();
+            }
+            edgeBoxes = new long[4*numVertices];
+        }
+        for (int i = 0; i < numVertices; i++) {
+            CellVector abs = vertices.get(i).abs;
+            edgeStarts[i].setCoordinates(x + abs.getX(), y + abs.getY());
+        }
+        for (int i = 0; i < numVertices; i++) {
+            CellVector start = edgeStarts[i];
+            CellVector end = edgeStarts[i == numVertices - 1 ? 0 : i + 1];
+            edgeDiffs[i].setCoordinates(end).sub(start);
+            int j = 4*i;
+            edgeBoxes[j] = Math.min(start.getX(), end.getX());
+            edgeBoxes[j + 1] = Math.min(start.getY(), end.getY());
+            edgeBoxes[j + 2] = Math.max(start.getX(), end.getX());
+            edgeBoxes[j + 3] = Math.max(start.getY(), end.getY());
+        }
+        edgesChanged = false;
+        edgesX = x;
+        edgesY = y;
+    }
+    
     /**
      * Returns the List of this PolygonHitbox's relative vertices. Changes to
      * the returned List will not be reflected in this PolygonHitbox.
@@ -170,6 +221,7 @@ public class PolygonHitbox extends Hitbox {
      * @return The List of this PolygonHitbox's absolute vertices
      */
     public final List<CellVector> getAbsVertices() {
+        updateAbsData();
         List<CellVector> absVertices = new ArrayList<>(vertices.size());
         for (int i = 0; i < vertices.size(); i++) {
             absVertices.add(new CellVector(vertices.get(i).abs));
@@ -220,6 +272,7 @@ public class PolygonHitbox extends Hitbox {
      * @return The absolute vertex at the specified index
      */
     public final CellVector getAbsVertex(int index) {
+        updateAbsData();
         return new CellVector(vertices.get(index).abs);
     }
     
@@ -230,6 +283,7 @@ public class PolygonHitbox extends Hitbox {
      * @return The x-coordinate of the absolute vertex at the specified index
      */
     public final long getAbsVertexX(int index) {
+        updateAbsData();
         return vertices.get(index).abs.getX();
     }
     
@@ -240,6 +294,7 @@ public class PolygonHitbox extends Hitbox {
      * @return The y-coordinate of the absolute vertex at the specified index
      */
     public final long getAbsVertexY(int index) {
+        updateAbsData();
         return vertices.get(index).abs.getY();
     }
     
@@ -381,6 +436,17 @@ public class PolygonHitbox extends Hitbox {
         return getAbsY() + bottom;
     }
     
+    @Override
+    final int getShapeDependencies() {
+        return ABS_ALL;
+    }
+    
+    @Override
+    final void updateLazyData() {
+        super.updateLazyData();
+        updateEdges();
+    }
+    
     @Override
     final void updateAbsXFlipActions() {
         updateData();
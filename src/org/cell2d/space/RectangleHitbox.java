@@ -108,6 +108,7 @@ public class RectangleHitbox extends Hitbox {
      * @return This RectangleHitbox's absolute left-side difference
      */
     public final long getAbsLeft() {
+        updateAbsData();
         return absLeft;
     }
     
@@ -147,6 +148,7 @@ public class RectangleHitbox extends Hitbox {
      * @return This RectangleHitbox's absolute right-side difference
      */
     public final long getAbsRight() {
+        updateAbsData();
         return absRight;
     }
     
@@ -186,6 +188,7 @@ public class RectangleHitbox extends Hitbox {
      * @return This RectangleHitbox's absolute top-side difference
      */
     public final long getAbsTop() {
+        updateAbsData();
         return absTop;
     }
     
@@ -225,6 +228,7 @@ public class RectangleHitbox extends Hitbox {
      * @return This RectangleHitbox's absolute bottom-side difference
      */
     public final long getAbsBottom() {
+        updateAbsData();
         return absBottom;
     }
     
@@ -248,6 +252,11 @@ public class RectangleHitbox extends Hitbox {
         return getAbsY() + absBottom;
     }
     
+    @Override
+    final int getShapeDependencies() {
+        return ABS_X_FLIP | ABS_Y_FLIP;
+    }
+    
     @Override
     final void updateAbsXFlipActions() {
         if (getAbsXFlip()) {
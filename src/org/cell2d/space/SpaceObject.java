@@ -213,10 +213,18 @@ public abstract class SpaceObject {
      * @param timeFactor The new time factor
      */
     public final void setTimeFactor(long timeFactor) {
+        checkParallelChange();
         this.timeFactor = timeFactor;
         setTimeFactorActions(timeFactor);
     }
     
+    //Aborts parallel movement if changing this SpaceObject could make its SpaceState's parallel movement depend on timing
+    final void checkParallelChange() {
+        if (state != null) {
+            state.checkParallelChange(this);
+        }
+    }
+    
     void setTimeFactorActions(long timeFactor) {
         if (!animInstancesToIDs.isEmpty()) {
             for (AnimationInstance instance : animInstancesToIDs.keySet()) {
@@ -311,6 +319,7 @@ public abstract class SpaceObject {
      * @param position The new position
      */
     public final void setPosition(CellVector position) {
+        checkParallelChange();
         locatorHitbox.setRelPosition(position);
     }
     
@@ -320,6 +329,7 @@ public abstract class SpaceObject {
      * @param y The y-coordinate of the new position
      */
     public final void setPosition(long x, long y) {
+        checkParallelChange();
         locatorHitbox.setRelPosition(x, y);
     }
     
@@ -329,6 +339,7 @@ public abstract class SpaceObject {
      * @param x The x-coordinate of the new position
      */
     public final void setX(long x) {
+        checkParallelChange();
         locatorHitbox.setRelX(x);
     }
     
@@ -338,6 +349,7 @@ public abstract class SpaceObject {
      * @param y The y-coordinate of the new position
      */
     public final void setY(long y) {
+        checkParallelChange();
         locatorHitbox.setRelY(y);
     }
     
@@ -346,6 +358,7 @@ public abstract class SpaceObject {
      * @param change The amount to change the position by
      */
     public final void changePosition(CellVector change) {
+        checkParallelChange();
         locatorHitbox.changeRelPosition(change);
     }
     
@@ -356,6 +369,7 @@ public abstract class SpaceObject {
      * @param changeY The amount to change the position's y-coordinate by
      */
     public final void changePosition(long changeX, long changeY) {
+        checkParallelChange();
         locatorHitbox.changeRelPosition(changeX, changeY);
     }
     
@@ -365,6 +379,7 @@ public abstract class SpaceObject {
      * @param changeX The amount to change the position's x-coordinate by
      */
     public final void changeX(long changeX) {
+        checkParallelChange();
         locatorHitbox.changeRelX(changeX);
     }
     
@@ -374,6 +389,7 @@ public abstract class SpaceObject {
      * @param changeY The amount to change the position's y-coordinate by
      */
     public final void changeY(long changeY) {
+        checkParallelChange();
         locatorHitbox.changeRelY(changeY);
     }
     
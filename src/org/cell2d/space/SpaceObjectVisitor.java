@@ -0,0 +1,30 @@
+package org.cell2d.space;
+
+/**
+ * <p>A SpaceObjectVisitor is handed, one at a time, the SpaceObjects that a
+ * SpaceState query finds, as an alternative to having the query collect them
+ * into a new List. It is useful to create a SpaceObjectVisitor as a lambda
+ * expression to simplify code.</p>
+ * <p>While a SpaceObjectVisitor is being run, it may not make another query of
+ * the SpaceState whose query found the SpaceObject it was handed. Such a query
+ * will throw an IllegalStateException.</p>
+ * <p>Nor may it add SpaceObjects to or remove them from that SpaceState, or
+ * change which Hitboxes its SpaceObjects have or their draw priorities, since
+ * the query is still looking through the SpaceState's cells. Attempts to do
+ * so will also throw an IllegalStateException. Changing the positions of
+ * SpaceObjects is allowed.</p>
+ * @see SpaceState
+ * @param <O> The type of SpaceObject that this SpaceObjectVisitor can visit
+ * @author Alex Heyman
+ */
+public interface SpaceObjectVisitor<O extends SpaceObject> {
+    
+    /**
+     * Actions for this SpaceObjectVisitor to take upon being handed a
+     * SpaceObject that a query found.
+     * @param object The SpaceObject that the query found
+     * @return Whether the query should continue looking for more SpaceObjects
+     */
+    boolean visit(O object);
+    
+}
@@ -1,7 +1,9 @@
 package org.cell2d.space;
 
-import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.EnumSet;
@@ -12,19 +14,22 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import org.cell2d.CellGame;
 import org.cell2d.CellVector;
 import org.cell2d.Direction;
 import org.cell2d.EventGroup;
 import org.cell2d.Frac;
 import org.cell2d.GameState;
+import org.cell2d.Profiler;
 import org.cell2d.SafeIterator;
 import org.cell2d.celick.Graphics;
 
@@ -125,62 +130,125 @@ public abstract class SpaceState<T extends CellGame,
                 System.identityHashCode(object1) - System.identityHashCode(object2) : priorityDiff);
     };
     
+    //No coordinate difference this large can have a square that overflows in CellVector.distanceBetween()
+    private static final long MAX_NEAREST_REACH = 1L << ((61 + Frac.BITS)/2);
+    
     private static final Comparator<MoveEvent> moveComparator = (event1, event2) -> {
         long metricDiff = event1.metric - event2.metric;
         if (metricDiff == 0) {
             int typeDiff = event1.type - event2.type;
-            return (typeDiff == 0 ?
-                    System.identityHashCode(event1) - System.identityHashCode(event2) : typeDiff);
+            return (typeDiff == 0 ? event1.index - event2.index : typeDiff);
         }
         return (int)Math.signum(metricDiff);
     };
     
     private static final Comparator<Hitbox> drawPriorityComparator = (hitbox1, hitbox2) -> {
-        int priorityDiff = hitbox1.drawPriority - hitbox2.drawPriority;
-        return (priorityDiff == 0 ?
-                System.identityHashCode(hitbox1) - System.identityHashCode(hitbox2) : priorityDiff);
+        int priorityComparison = Integer.compare(hitbox1.drawPriority, hitbox2.drawPriority);
+        return (priorityComparison == 0 ?
+                Integer.compare(System.identityHashCode(hitbox1), System.identityHashCode(hitbox2))
+                : priorityComparison);
     };
     
-    private static class HitboxIteratorData {
+    /*
+     * Each spatial query marks the Hitboxes it has already examined with a
+     * stamp that no earlier query used, so a Hitbox has been seen by the
+     * current query exactly when its stamp matches, and nothing needs to be
+     * unmarked afterward. Stamps are shared between SpaceStates so that a
+     * Hitbox carries no stale stamp from one SpaceState into another.
+     *
+     * A query hands what it finds to visitors while its stamp is still in use,
+     * so a second query of the same SpaceState made by a visitor would restamp
+     * the first query's Hitboxes and make it skip some of them. Every query
+     * that reads cells first calls updateChangedCells(), which therefore
+     * throws an exception if a visitor is being run. A visitor that added
+     * Hitboxes to or removed them from the cells would change the sets that
+     * the query is iterating through, so that throws an exception as well.
+     */
+    private static final AtomicLong queryStamps = new AtomicLong();
+    
+    private static long newQueryStamp() {
+        return queryStamps.incrementAndGet();
+    }
+    
+    /*
+     * Returns whether the query with the specified stamp has yet to examine
+     * hitbox, counting hitbox as scanned for the Profiler either way.
+     */
+    private static boolean isUnscanned(Hitbox hitbox, long stamp) {
+        Profiler.count(Profiler.HITBOXES_SCANNED);
+        return hitbox.scanStamp != stamp;
+    }
+    
+    private void checkNotVisiting(String action) {
+        if (visiting) {
+            throw new IllegalStateException("Attempted to " + action + " from a visitor of the results"
+                    + " of a query of its SpaceState");
+        }
+    }
+    
+    /*
+     * Reports a SpaceObject that a query found to wherever the query's results
+     * go, and returns whether the query should continue.
+     */
+    private <O extends SpaceObject> boolean found(
+            O object, Collection<? super O> results, SpaceObjectVisitor<? super O> visitor) {
+        if (visitor == null) {
+            results.add(object);
+            return true;
+        }
+        visiting = true;
+        try {
+            return visitor.visit(object);
+        } finally {
+            visiting = false;
+        }
+    }
+    
+    /*
+     * Index of the SpaceObjects of one class, and the Hitboxes of those
+     * SpaceObjects that typed queries look for, so that queries for that class
+     * need not visit SpaceObjects of other classes.
+     */
+    private static class ClassIndex {
         
-        private final Iterator<Hitbox> iterator;
-        private Hitbox currentHitbox;
+        private final Class<? extends SpaceObject> cls;
+        private final Set<SpaceObject> objects = new HashSet<>();
+        private final SortedSet<MobileObject> mobileObjects = new TreeSet<>(movementPriorityComparator);
         
-        private HitboxIteratorData(Iterator<Hitbox> iterator, Hitbox currentHitbox) {
-            this.iterator = iterator;
-            this.currentHitbox = currentHitbox;
+        private ClassIndex(Class<? extends SpaceObject> cls) {
+            this.cls = cls;
         }
         
     }
     
-    private static final Comparator<HitboxIteratorData> flatModeComparator = (data1, data2) -> {
-        return drawPriorityComparator.compare(data1.currentHitbox, data2.currentHitbox);
-    };
+    private static final ClassIndex[] noClassIndices = new ClassIndex[0];
+    //HitboxRole.values() makes a new array each time it is called
+    private static final HitboxRole[] hitboxRoles = HitboxRole.values();
     
-    private static final Comparator<HitboxIteratorData> overModeComparator = (data1, data2) -> {
-        Hitbox hitbox1 = data1.currentHitbox;
-        Hitbox hitbox2 = data2.currentHitbox;
-        int priorityDiff = hitbox1.drawPriority - hitbox2.drawPriority;
-        if (priorityDiff == 0) {
-            long yDiff = hitbox1.getAbsY() - hitbox2.getAbsY();
-            return (yDiff == 0 ?
-                    System.identityHashCode(hitbox1) - System.identityHashCode(hitbox2)
-                    : (int)Math.signum(yDiff));
-        }
-        return priorityDiff;
+    private static boolean isIndexedRole(HitboxRole role) {
+        return role == HitboxRole.CENTER || role == HitboxRole.OVERLAP || role == HitboxRole.SOLID;
+    }
+    
+    private static final Comparator<Hitbox> overModeComparator = (hitbox1, hitbox2) -> {
+        int priorityComparison = Integer.compare(hitbox1.drawPriority, hitbox2.drawPriority);
+        if (priorityComparison == 0) {
+            int yComparison = Long.compare(hitbox1.getAbsY(), hitbox2.getAbsY());
+            return (yComparison == 0 ?
+                    Integer.compare(System.identityHashCode(hitbox1), System.identityHashCode(hitbox2))
+                    : yComparison);
+        }
+        return priorityComparison;
     };
     
-    private static final Comparator<HitboxIteratorData> underModeComparator = (data1, data2) -> {
-        Hitbox hitbox1 = data1.currentHitbox;
-        Hitbox hitbox2 = data2.currentHitbox;
-        int priorityDiff = hitbox1.drawPriority - hitbox2.drawPriority;
-        if (priorityDiff == 0) {
-            long yDiff = hitbox2.getAbsY() - hitbox1.getAbsY();
-            return (yDiff == 0 ?
-                    System.identityHashCode(hitbox1) - System.identityHashCode(hitbox2)
-                    : (int)Math.signum(yDiff));
-        }
-        return priorityDiff;
+    private static final Comparator<Hitbox> underModeComparator = (hitbox1, hitbox2) -> {
+        int priorityComparison = Integer.compare(hitbox1.drawPriority, hitbox2.drawPriority);
+        if (priorityComparison == 0) {
+            int yComparison = Long.compare(hitbox2.getAbsY(), hitbox1.getAbsY());
+            return (yComparison == 0 ?
+                    Integer.compare(System.identityHashCode(hitbox1), System.identityHashCode(hitbox2))
+                    : yComparison);
+        }
+        return priorityComparison;
     };
     
     private final EventGroup<T,U> beforeMovementEvents = new EventGroup<>();
@@ -191,15 +259,40 @@ public abstract class SpaceState<T extends CellGame,
     private final SortedSet<MobileObject> mobileObjects = new TreeSet<>(movementPriorityComparator);
     private int mobileObjectIterators = 0;
     private final Queue<MobileObjectChange> mobileObjectChanges = new LinkedList<>();
+    private final Map<Class<? extends SpaceObject>,ClassIndex> classIndices = new HashMap<>();
+    //Caches which ClassIndices each class of SpaceObject belongs to
+    private final Map<Class<? extends SpaceObject>,ClassIndex[]> classIndicesByClass = new HashMap<>();
+    private final MoveStack moveStack = new MoveStack(null);
+    //Whether a query is handing a SpaceObject that it found to a visitor
+    private boolean visiting = false;
+    /*
+     * The Hitboxes whose boundaries have changed since their cells were last
+     * updated. Their cells are updated together the next time this SpaceState
+     * reads its cells, and at the end of each frame's movement, so a Hitbox
+     * that changes several times in between is moved between cells only once.
+     * Each listed Hitbox knows its index in the list, so a Hitbox is listed
+     * at most once, and one that leaves the cells before then is taken out
+     * of the list right away. Otherwise it could be added to another
+     * SpaceState's cells, and this SpaceState would put it back in its own.
+     */
+    private final List<Hitbox> changedHitboxes = new ArrayList<>();
+    private ForkJoinPool movementPool = null;
+    private boolean movingInParallel = false;
+    //The group that each thread is moving during parallel movement
+    private final ThreadLocal<MovementGroup> movementGroup = new ThreadLocal<>();
+    private ParallelMovement parallelMovement = null;
     private long cellWidth, cellHeight;
-    private final Map<Point,Cell> cells = new HashMap<>();
+    private CellMap<Cell> cells = new HashCellMap<>();
+    private boolean hasCellBounds = false;
+    private long cellBoundsX1, cellBoundsY1, cellBoundsX2, cellBoundsY2;
     private int cellLeft = 0;
     private int cellRight = 0;
     private int cellTop = 0;
     private int cellBottom = 0;
     private DrawMode drawMode;
-    private Comparator<HitboxIteratorData> drawComparator;
+    private Comparator<Hitbox> drawComparator;
     private final Map<Integer,Viewport<T,U>> viewports = new HashMap<>();
+    private final Map<Viewport<T,U>,VisibleSet> visibleSets = new HashMap<>();
     private HUD hud = null;
     private final SortedMap<Integer,SpaceLayer> spaceLayers = new TreeMap<>();
     
@@ -244,11 +337,68 @@ public abstract class SpaceState<T extends CellGame,
         return beforeMovementEvents;
     }
     
+    /**
+     * Returns the ForkJoinPool that this SpaceState uses to move its
+     * MobileObjects in parallel, or null if it moves them one at a time.
+     * @return This SpaceState's movement pool
+     */
+    public final ForkJoinPool getMovementPool() {
+        return movementPool;
+    }
+    
+    /**
+     * Sets the ForkJoinPool that this SpaceState uses to move its MobileObjects
+     * in parallel. If the pool is null, as it is by default, this SpaceState
+     * will move its MobileObjects one at a time in order of their movement
+     * priorities.
+     *
+     * <p>While a SpaceState has a movement pool, each frame it splits its
+     * MobileObjects into groups whose paths of movement do not share any cells
+     * or solid SpaceObjects and that are not related by leader-follower
+     * relationships, and moves
+     * the groups at the same time on the pool's threads. Within each group,
+     * MobileObjects still move in order of their movement priorities.
+     * Parallel movement produces exactly the same positions, velocities,
+     * displacements, and collisions as moving one at a time, as long as the
+     * collide() methods of the SpaceState's MobileObjects affect only the
+     * MobileObjects on which they are called, do not add or remove
+     * SpaceObjects, do not move SpaceObjects by any means but their responses,
+     * and do not run queries on the SpaceState. Only a collide() method can
+     * speed up a MobileObject after the frame's movement has begun, and only
+     * one that follows another MobileObject or lies within reach of a solid
+     * one in its group can collide with anything before its own turn to move.
+     * The groups move in parallel only up to the first such MobileObject in
+     * movement order, which moves one at a time after them, along with every
+     * MobileObject after it.</p>
+     *
+     * <p>If a collide() method breaks the rules above during parallel
+     * movement, such as by changing a SpaceObject outside of the group being
+     * moved or by calling doMovement(), or a MobileObject would leave the
+     * cells that its group reserved, the change is not made. Instead, the
+     * frame's movement is undone, putting every MobileObject back where it
+     * started with the velocity and step that it started with and no
+     * collisions, and the frame is moved one at a time from the start. The
+     * collide() methods that were called before that point are called again.
+     * State that this SpaceState does not keep, such as a MobileObject
+     * subclass's own fields, is not undone, so a collide() method that may
+     * break the rules should do so before it changes any such state.
+     * Frames in which the MobileObjects cannot be split into at least two
+     * groups that have something to move in parallel are moved one at a time
+     * as usual.</p>
+     * @param movementPool The new movement pool, or null if this SpaceState
+     * should move its MobileObjects one at a time
+     */
+    public final void setMovementPool(ForkJoinPool movementPool) {
+        this.movementPool = movementPool;
+    }
+    
     private class Cell {
         
         private int x, y;
         private long left, right, top, bottom;
         private final Map<HitboxRole,Set<Hitbox>> hitboxes = new EnumMap<>(HitboxRole.class);
+        //The subsets of hitboxes whose SpaceObjects belong to each ClassIndex
+        private Map<ClassIndex,Map<HitboxRole,Set<Hitbox>>> indexedHitboxes = null;
         
         private Cell(int x, int y) {
             this.x = x;
@@ -263,15 +413,65 @@ public abstract class SpaceState<T extends CellGame,
             }
         }
         
+        private Set<Hitbox> getHitboxes(HitboxRole role, ClassIndex index) {
+            if (index == null) {
+                return hitboxes.get(role);
+            }
+            Map<HitboxRole,Set<Hitbox>> indexHitboxes = (indexedHitboxes == null ? null : indexedHitboxes.get(index));
+            return (indexHitboxes == null ? Collections.<Hitbox>emptySet() : indexHitboxes.get(role));
+        }
+        
+        private void addHitbox(Hitbox hitbox, HitboxRole role, ClassIndex[] indices) {
+            hitboxes.get(role).add(hitbox);
+            if (isIndexedRole(role)) {
+                for (ClassIndex index : indices) {
+                    addIndexedHitbox(hitbox, role, index);
+                }
+            }
+        }
+        
+        private void addIndexedHitbox(Hitbox hitbox, HitboxRole role, ClassIndex index) {
+            if (indexedHitboxes == null) {
+                indexedHitboxes = new HashMap<>();
+            }
+            Map<HitboxRole,Set<Hitbox>> indexHitboxes = indexedHitboxes.get(index);
+            if (indexHitboxes == null) {
+                indexHitboxes = new EnumMap<>(HitboxRole.class);
+                indexHitboxes.put(HitboxRole.CENTER, new HashSet<>());
+                indexHitboxes.put(HitboxRole.OVERLAP, new HashSet<>());
+                indexHitboxes.put(HitboxRole.SOLID, new HashSet<>());
+                indexedHitboxes.put(index, indexHitboxes);
+            }
+            indexHitboxes.get(role).add(hitbox);
+        }
+        
+        private void removeHitbox(Hitbox hitbox, HitboxRole role, ClassIndex[] indices) {
+            hitboxes.get(role).remove(hitbox);
+            if (indexedHitboxes != null && isIndexedRole(role)) {
+                for (ClassIndex index : indices) {
+                    Map<HitboxRole,Set<Hitbox>> indexHitboxes = indexedHitboxes.get(index);
+                    if (indexHitboxes != null) {
+                        indexHitboxes.get(role).remove(hitbox);
+                    }
+                }
+            }
+        }
+        
     }
     
     private int[] getCellRangeInclusive(long x1, long y1, long x2, long y2) {
-        int[] cellRange = {
-            Frac.intCeil(Frac.div(x1, cellWidth)) - 1, Frac.intCeil(Frac.div(y1, cellHeight)) - 1,
-            Frac.intFloor(Frac.div(x2, cellWidth)), Frac.intFloor(Frac.div(y2, cellHeight))};
+        int[] cellRange = new int[4];
+        getCellRangeInclusive(x1, y1, x2, y2, cellRange);
         return cellRange;
     }
     
+    private void getCellRangeInclusive(long x1, long y1, long x2, long y2, int[] cellRange) {
+        cellRange[0] = Frac.intCeil(Frac.div(x1, cellWidth)) - 1;
+        cellRange[1] = Frac.intCeil(Frac.div(y1, cellHeight)) - 1;
+        cellRange[2] = Frac.intFloor(Frac.div(x2, cellWidth));
+        cellRange[3] = Frac.intFloor(Frac.div(y2, cellHeight));
+    }
+    
     private int[] getCellRangeInclusive(Hitbox hitbox) {
         return getCellRangeInclusive(hitbox.getLeftEdge(), hitbox.getTopEdge(),
                 hitbox.getRightEdge(), hitbox.getBottomEdge());
@@ -302,27 +502,57 @@ public abstract class SpaceState<T extends CellGame,
     private class ReadCellRangeIterator implements Iterator<Cell> {
         
         private final int left, right, top, bottom;
+        private final MovementGroup group;
         private int xPos, yPos;
         private Cell nextCell;
         
         private ReadCellRangeIterator(int x1, int y1, int x2, int y2) {
-            left = Math.max(x1, cellLeft);
-            right = Math.min(x2, cellRight);
-            top = Math.max(y1, cellTop);
-            bottom = Math.min(y2, cellBottom);
+            this(x1, y1, x2, y2, null);
+        }
+        
+        /*
+         * A ReadCellRangeIterator for the movement of a group moving in
+         * parallel also visits the cells that the group has created. There
+         * are no changed Hitboxes waiting for their cells during parallel
+         * movement, and anything else that reads the cells then is a query.
+         */
+        private ReadCellRangeIterator(int x1, int y1, int x2, int y2, MovementGroup group) {
+            this.group = group;
+            if (group == null) {
+                updateChangedCells();
+            }
+            if (group == null || group.newRange == null) {
+                left = Math.max(x1, cellLeft);
+                right = Math.min(x2, cellRight);
+                top = Math.max(y1, cellTop);
+                bottom = Math.min(y2, cellBottom);
+            } else {
+                int[] newRange = group.newRange;
+                left = Math.max(x1, Math.min(cellLeft, newRange[0]));
+                right = Math.min(x2, Math.max(cellRight, newRange[2]));
+                top = Math.max(y1, Math.min(cellTop, newRange[1]));
+                bottom = Math.min(y2, Math.max(cellBottom, newRange[3]));
+            }
             xPos = left;
             yPos = (left > right || top > bottom ? bottom + 1 : top);
             advance();
         }
         
         private ReadCellRangeIterator(int[] cellRange) {
-            this(cellRange[0], cellRange[1], cellRange[2], cellRange[3]);
+            this(cellRange, null);
+        }
+        
+        private ReadCellRangeIterator(int[] cellRange, MovementGroup group) {
+            this(cellRange[0], cellRange[1], cellRange[2], cellRange[3], group);
         }
         
         private void advance() {
             nextCell = null;
             while (nextCell == null && yPos <= bottom) {
-                nextCell = cells.get(new Point(xPos, yPos));
+                nextCell = cells.get(xPos, yPos);
+                if (nextCell == null && group != null) {
+                    nextCell = group.newCells.get(xPos, yPos);
+                }
                 if (xPos == right) {
                     xPos = left;
                     yPos++;
@@ -341,11 +571,48 @@ public abstract class SpaceState<T extends CellGame,
         public final Cell next() {
             Cell next = nextCell;
             advance();
+            Profiler.count(Profiler.CELLS_VISITED);
             return next;
         }
         
     }
     
+    private Cell getCell(int x, int y) {
+        if (movingInParallel) {
+            return movementGroup.get().getCell(x, y);
+        }
+        Cell cell = cells.get(x, y);
+        if (cell == null) {
+            //There needs to be a cell here, but there isn't, so it's time to make one
+            cell = new Cell(x, y);
+            addCell(cell);
+        }
+        return cell;
+    }
+    
+    private void addCell(Cell cell) {
+        int x = cell.x;
+        int y = cell.y;
+        if (cells.isEmpty()) {
+            cellLeft = x;
+            cellRight = x;
+            cellTop = y;
+            cellBottom = y;
+        } else {
+            if (x < cellLeft) {
+                cellLeft = x;
+            } else if (x > cellRight) {
+                cellRight = x;
+            }
+            if (y < cellTop) {
+                cellTop = y;
+            } else if (y > cellBottom) {
+                cellBottom = y;
+            }
+        }
+        cells.put(x, y, cell);
+    }
+    
     private class WriteCellRangeIterator implements Iterator<Cell> {
         
         private final int[] cellRange;
@@ -364,30 +631,7 @@ public abstract class SpaceState<T extends CellGame,
         
         @Override
         public final Cell next() {
-            Point point = new Point(xPos, yPos);
-            Cell next = cells.get(point);
-            if (next == null) {
-                //There needs to be a cell here, but there isn't, so it's time to make one
-                if (cells.isEmpty()) {
-                    cellLeft = xPos;
-                    cellRight = xPos;
-                    cellTop = yPos;
-                    cellBottom = yPos;
-                } else {
-                    if (xPos < cellLeft) {
-                        cellLeft = xPos;
-                    } else if (xPos > cellRight) {
-                        cellRight = xPos;
-                    }
-                    if (yPos < cellTop) {
-                        cellTop = yPos;
-                    } else if (yPos > cellBottom) {
-                        cellBottom = yPos;
-                    }
-                }
-                next = new Cell(xPos, yPos);
-                cells.put(point, next);
-            }
+            Cell next = getCell(xPos, yPos);
             if (xPos == cellRange[2]) {
                 xPos = cellRange[0];
                 yPos++;
@@ -441,9 +685,11 @@ public abstract class SpaceState<T extends CellGame,
             throw new RuntimeException("Attempted to give a SpaceState a non-positive cell height (about "
                     + Frac.toDouble(cellHeight) + " fracunits)");
         }
-        cells.clear();
+        updateChangedCells();
         this.cellWidth = cellWidth;
         this.cellHeight = cellHeight;
+        cells = newCellMap();
+        invalidateVisibleSets();
         if (!spaceObjects.isEmpty()) {
             for (SpaceObject object : spaceObjects) {
                 object.addCellData();
@@ -451,14 +697,89 @@ public abstract class SpaceState<T extends CellGame,
         }
     }
     
+    private CellMap<Cell> newCellMap() {
+        if (hasCellBounds) {
+            int[] cellRange = getCellRangeExclusive(cellBoundsX1, cellBoundsY1, cellBoundsX2, cellBoundsY2);
+            long numCells = ((long)cellRange[2] - cellRange[0] + 1)*((long)cellRange[3] - cellRange[1] + 1);
+            if (numCells > Integer.MAX_VALUE) {
+                throw new RuntimeException("Attempted to give a SpaceState cell bounds that contain too many"
+                        + " cells (" + numCells + ") to store in an array");
+            }
+            return new ArrayCellMap<>(cellRange[0], cellRange[1], cellRange[2], cellRange[3]);
+        }
+        return new HashCellMap<>();
+    }
+    
+    private void changeCellMap() {
+        CellMap<Cell> oldCells = cells;
+        cells = newCellMap();
+        for (Cell cell : oldCells) {
+            cells.put(cell.x, cell.y, cell);
+        }
+    }
+    
+    /**
+     * Returns whether this SpaceState has cell bounds.
+     * @return Whether this SpaceState has cell bounds
+     */
+    public final boolean hasCellBounds() {
+        return hasCellBounds;
+    }
+    
+    /**
+     * Sets the cell bounds of this SpaceState to the specified rectangular
+     * region. A SpaceState with cell bounds stores the cells that overlap its
+     * cell bounds in an array, making them quicker to access than cells that
+     * lie outside of them. This is most useful for SpaceStates whose levels
+     * have fixed dimensions. Cells outside the cell bounds can still be created
+     * and used, so the cell bounds need not contain every SpaceObject. Memory
+     * for every cell that overlaps the cell bounds is allocated at once, so the
+     * cell bounds should not be much larger than the area that SpaceObjects
+     * will actually occupy.
+     * @param x1 The x-coordinate of the region's left edge
+     * @param y1 The y-coordinate of the region's top edge
+     * @param x2 The x-coordinate of the region's right edge
+     * @param y2 The y-coordinate of the region's bottom edge
+     */
+    public final void setCellBounds(long x1, long y1, long x2, long y2) {
+        if (x1 > x2) {
+            throw new RuntimeException("Attempted to give a SpaceState cell bounds with a left edge (about "
+                    + Frac.toDouble(x1) + " fracunits) to the right of their right edge (about "
+                    + Frac.toDouble(x2) + " fracunits)");
+        }
+        if (y1 > y2) {
+            throw new RuntimeException("Attempted to give a SpaceState cell bounds with a top edge (about "
+                    + Frac.toDouble(y1) + " fracunits) below their bottom edge (about "
+                    + Frac.toDouble(y2) + " fracunits)");
+        }
+        hasCellBounds = true;
+        cellBoundsX1 = x1;
+        cellBoundsY1 = y1;
+        cellBoundsX2 = x2;
+        cellBoundsY2 = y2;
+        changeCellMap();
+    }
+    
+    /**
+     * Removes this SpaceState's cell bounds, if it has any. All of its cells
+     * will then be stored in the same way as cells outside of cell bounds.
+     */
+    public final void removeCellBounds() {
+        if (hasCellBounds) {
+            hasCellBounds = false;
+            changeCellMap();
+        }
+    }
+    
     /**
      * Removes any cells that no longer have SpaceObjects in them, freeing up
      * the memory that they occupied. The more cells this SpaceState has, the
      * longer this operation takes.
      */
     public final void clearEmptyCells() {
+        updateChangedCells();
         boolean firstCell = true;
-        Iterator<Cell> iterator = cells.values().iterator();
+        Iterator<Cell> iterator = cells.iterator();
         while (iterator.hasNext()) {
             Cell cell = iterator.next();
             boolean cellIsEmpty = true;
@@ -491,6 +812,94 @@ public abstract class SpaceState<T extends CellGame,
         }
     }
     
+    /**
+     * Returns whether this SpaceState keeps an index of its SpaceObjects of the
+     * specified class.
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @return Whether this SpaceState keeps an index of its SpaceObjects of the
+     * specified class
+     */
+    public final boolean isIndexedClass(Class<? extends SpaceObject> cls) {
+        return classIndices.containsKey(cls);
+    }
+    
+    /**
+     * Makes this SpaceState keep an index of its SpaceObjects of the specified
+     * class. This SpaceState's queries for SpaceObjects of exactly that class
+     * will then visit only SpaceObjects of that class, rather than all of the
+     * SpaceObjects in the region that they search. In exchange, adding,
+     * removing, and moving SpaceObjects of that class will take slightly
+     * longer. Indexing is worthwhile for classes that are queried often, but
+     * make up a small fraction of this SpaceState's SpaceObjects.
+     * @param cls The Class object that represents the SpaceObject subclass
+     */
+    public final void addIndexedClass(Class<? extends SpaceObject> cls) {
+        if (classIndices.containsKey(cls)) {
+            return;
+        }
+        ClassIndex index = new ClassIndex(cls);
+        classIndices.put(cls, index);
+        classIndicesByClass.clear();
+        for (SpaceObject object : spaceObjects) {
+            if (cls.isAssignableFrom(object.getClass())) {
+                index.objects.add(object);
+            }
+        }
+        for (MobileObject object : mobileObjects) {
+            if (cls.isAssignableFrom(object.getClass())) {
+                index.mobileObjects.add(object);
+            }
+        }
+        for (Cell cell : cells) {
+            for (HitboxRole role : HitboxRole.values()) {
+                if (isIndexedRole(role)) {
+                    for (Hitbox hitbox : cell.hitboxes.get(role)) {
+                        if (cls.isAssignableFrom(hitbox.getObject().getClass())) {
+                            cell.addIndexedHitbox(hitbox, role, index);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Makes this SpaceState stop keeping an index of its SpaceObjects of the
+     * specified class, if it was doing so.
+     * @param cls The Class object that represents the SpaceObject subclass
+     */
+    public final void removeIndexedClass(Class<? extends SpaceObject> cls) {
+        ClassIndex index = classIndices.remove(cls);
+        if (index == null) {
+            return;
+        }
+        classIndicesByClass.clear();
+        for (Cell cell : cells) {
+            if (cell.indexedHitboxes != null) {
+                cell.indexedHitboxes.remove(index);
+            }
+        }
+    }
+    
+    private ClassIndex[] getClassIndices(SpaceObject object) {
+        if (classIndices.isEmpty()) {
+            return noClassIndices;
+        }
+        Class<? extends SpaceObject> objectClass = object.getClass();
+        ClassIndex[] indices = classIndicesByClass.get(objectClass);
+        if (indices == null) {
+            List<ClassIndex> indexList = new ArrayList<>();
+            for (ClassIndex index : classIndices.values()) {
+                if (index.cls.isAssignableFrom(objectClass)) {
+                    indexList.add(index);
+                }
+            }
+            indices = indexList.toArray(new ClassIndex[indexList.size()]);
+            classIndicesByClass.put(objectClass, indices);
+        }
+        return indices;
+    }
+    
     /**
      * Returns this SpaceState's DrawMode.
      * @return This SpaceState's DrawMode
@@ -505,9 +914,10 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final void setDrawMode(DrawMode drawMode) {
         this.drawMode = drawMode;
+        invalidateVisibleSets();
         switch (drawMode) {
             case FLAT:
-                drawComparator = flatModeComparator;
+                drawComparator = drawPriorityComparator;
                 break;
             case OVER:
                 drawComparator = overModeComparator;
@@ -536,6 +946,7 @@ public abstract class SpaceState<T extends CellGame,
      * @param area The Area to load
      */
     public final void loadArea(long originX, long originY, Area<T,U> area) {
+        checkNotVisiting("load an Area into a SpaceState");
         for (SpaceObject object : area.load(getGame(), getThis())) {
             if (object.state == null && object.newState == null) {
                 object.changePosition(originX, originY);
@@ -546,27 +957,76 @@ public abstract class SpaceState<T extends CellGame,
         updateObjects();
     }
     
-    final void updateCells(Hitbox hitbox) {
+    /*
+     * Called when the boundaries of a Hitbox in this SpaceState's cells may
+     * have changed. Groups moving in parallel can't share changedHitboxes, so
+     * their Hitboxes' cells are updated immediately.
+     */
+    final void boundariesChanged(Hitbox hitbox) {
+        if (movingInParallel) {
+            checkParallelChange(hitbox.getObject());
+            updateCells(hitbox);
+        } else if (hitbox.changedIndex < 0) {
+            hitbox.changedIndex = changedHitboxes.size();
+            changedHitboxes.add(hitbox);
+        }
+    }
+    
+    private void updateChangedCells() {
+        if (movingInParallel) {
+            //Only queries and changes to the cells' layout get here then, and other groups are reading the cells
+            abortParallelMovement();
+        }
+        if (visiting) {
+            throw new IllegalStateException("Attempted to query a SpaceState from a visitor of the results"
+                    + " of another query of it");
+        }
+        for (int i = 0; i < changedHitboxes.size(); i++) {
+            Hitbox hitbox = changedHitboxes.get(i);
+            hitbox.changedIndex = -1;
+            updateCells(hitbox);
+        }
+        changedHitboxes.clear();
+    }
+    
+    private void updateCells(Hitbox hitbox) {
         int[] oldRange = hitbox.cellRange;
-        updateCellRange(hitbox);
-        int[] newRange = hitbox.cellRange;
+        int[] newRange = getCellRangeInclusive(hitbox);
+        if (movingInParallel) {
+            checkParallelCells(hitbox.getObject(), newRange);
+        }
+        hitbox.cellRange = newRange;
+        if (!visibleSets.isEmpty() && hitbox.roles.contains(HitboxRole.LOCATOR)) {
+            locatorHitboxChanged(hitbox, oldRange, newRange);
+        }
         if (oldRange[0] != newRange[0] || oldRange[1] != newRange[1]
                 || oldRange[2] != newRange[2] || oldRange[3] != newRange[3]) {
-            Iterator<Cell> iterator = new WriteCellRangeIterator(oldRange);
-            while (iterator.hasNext()) {
-                Cell cell = iterator.next();
-                for (HitboxRole role : HitboxRole.values()) {
-                    if (hitbox.roles.contains(role)) {
-                        cell.hitboxes.get(role).remove(hitbox);
+            Set<HitboxRole> roles = hitbox.roles;
+            ClassIndex[] indices = getClassIndices(hitbox.getObject());
+            //Only the cells that the Hitbox is leaving or entering need to change
+            for (int y = oldRange[1]; y <= oldRange[3]; y++) {
+                boolean rowInNewRange = (y >= newRange[1] && y <= newRange[3]);
+                for (int x = oldRange[0]; x <= oldRange[2]; x++) {
+                    if (!rowInNewRange || x < newRange[0] || x > newRange[2]) {
+                        Cell cell = getCell(x, y);
+                        for (HitboxRole role : hitboxRoles) {
+                            if (roles.contains(role)) {
+                                cell.removeHitbox(hitbox, role, indices);
+                            }
+                        }
                     }
                 }
             }
-            iterator = new WriteCellRangeIterator(newRange);
-            while (iterator.hasNext()) {
-                Cell cell = iterator.next();
-                for (HitboxRole role : HitboxRole.values()) {
-                    if (hitbox.roles.contains(role)) {
-                        cell.hitboxes.get(role).add(hitbox);
+            for (int y = newRange[1]; y <= newRange[3]; y++) {
+                boolean rowInOldRange = (y >= oldRange[1] && y <= oldRange[3]);
+                for (int x = newRange[0]; x <= newRange[2]; x++) {
+                    if (!rowInOldRange || x < oldRange[0] || x > oldRange[2]) {
+                        Cell cell = getCell(x, y);
+                        for (HitboxRole role : hitboxRoles) {
+                            if (roles.contains(role)) {
+                                cell.addHitbox(hitbox, role, indices);
+                            }
+                        }
                     }
                 }
             }
@@ -574,36 +1034,66 @@ public abstract class SpaceState<T extends CellGame,
     }
     
     final void addHitbox(Hitbox hitbox, HitboxRole role) {
+        checkNotVisiting("add a Hitbox to a SpaceState's cells");
+        if (movingInParallel) {
+            checkParallelChange(hitbox.getObject());
+            checkParallelCells(hitbox.getObject(),
+                    (hitbox.numCellRoles == 0 ? getCellRangeInclusive(hitbox) : hitbox.cellRange));
+        }
         if (hitbox.numCellRoles == 0) {
             updateCellRange(hitbox);
         }
         hitbox.numCellRoles++;
+        ClassIndex[] indices = getClassIndices(hitbox.getObject());
         Iterator<Cell> iterator = new WriteCellRangeIterator(hitbox.cellRange);
         while (iterator.hasNext()) {
-            iterator.next().hitboxes.get(role).add(hitbox);
+            iterator.next().addHitbox(hitbox, role, indices);
+        }
+        if (role == HitboxRole.LOCATOR && !visibleSets.isEmpty()) {
+            locatorHitboxChanged(hitbox, null, hitbox.cellRange);
         }
     }
     
     final void removeHitbox(Hitbox hitbox, HitboxRole role) {
+        checkNotVisiting("remove a Hitbox from a SpaceState's cells");
+        checkParallelChange(hitbox.getObject());
+        if (role == HitboxRole.LOCATOR && !visibleSets.isEmpty()) {
+            locatorHitboxChanged(hitbox, hitbox.cellRange, null);
+        }
+        ClassIndex[] indices = getClassIndices(hitbox.getObject());
         Iterator<Cell> iterator = new WriteCellRangeIterator(hitbox.cellRange);
         while (iterator.hasNext()) {
-            iterator.next().hitboxes.get(role).remove(hitbox);
+            iterator.next().removeHitbox(hitbox, role, indices);
         }
         hitbox.numCellRoles--;
         if (hitbox.numCellRoles == 0) {
             hitbox.cellRange = null;
+            if (hitbox.changedIndex >= 0) {
+                //Fill the Hitbox's place with the last Hitbox in the list
+                Hitbox last = changedHitboxes.remove(changedHitboxes.size() - 1);
+                if (last != hitbox) {
+                    changedHitboxes.set(hitbox.changedIndex, last);
+                    last.changedIndex = hitbox.changedIndex;
+                }
+                hitbox.changedIndex = -1;
+            }
         }
     }
     
     final void setLocatorHitboxDrawPriority(Hitbox hitbox, int drawPriority) {
+        checkNotVisiting("change a SpaceObject's draw priority");
+        checkParallelChange(hitbox.getObject());
         List<Cell> cellList = getCells(hitbox.cellRange);
         for (Cell cell : cellList) {
             cell.hitboxes.get(HitboxRole.LOCATOR).remove(hitbox);
         }
+        //Sorted sets that contain hitbox must let go of it before its place in them changes
+        locatorHitboxChanged(hitbox, hitbox.cellRange, null);
         hitbox.drawPriority = drawPriority;
         for (Cell cell : cellList) {
             cell.hitboxes.get(HitboxRole.LOCATOR).add(hitbox);
         }
+        locatorHitboxChanged(hitbox, null, hitbox.cellRange);
     }
     
     /**
@@ -621,6 +1111,9 @@ public abstract class SpaceState<T extends CellGame,
         private SpaceObject lastObject = null;
         
         private ObjectIterator() {
+            if (movingInParallel) {
+                abortParallelMovement();
+            }
             objectIterators++;
         }
         
@@ -731,6 +1224,7 @@ public abstract class SpaceState<T extends CellGame,
      * assigned to it.
      */
     public final void clearObjects() {
+        checkNotVisiting("remove SpaceObjects from a SpaceState");
         for (SpaceObject object : spaceObjects) {
             if (object.newState == this) {
                 object.newState = null;
@@ -750,11 +1244,12 @@ public abstract class SpaceState<T extends CellGame,
      * @param y2 The y-coordinate of the region's bottom edge
      */
     public final void removeRectangle(long x1, long y1, long x2, long y2) {
-        List<Hitbox> scanned = new ArrayList<>();
+        checkNotVisiting("remove SpaceObjects from a SpaceState");
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(x1, y1, x2, y2));
         while (iterator.hasNext()) {
             for (Hitbox locatorHitbox : iterator.next().hitboxes.get(HitboxRole.LOCATOR)) {
-                if (!locatorHitbox.scanned) {
+                if (isUnscanned(locatorHitbox, stamp)) {
                     SpaceObject object = locatorHitbox.getObject();
                     if (object.newState == this
                             && locatorHitbox.getLeftEdge() >= x1
@@ -764,13 +1259,10 @@ public abstract class SpaceState<T extends CellGame,
                         object.newState = null;
                         objectChanges.add(new ObjectChange(object, null));
                     }
-                    locatorHitbox.scanned = true;
+                    locatorHitbox.scanStamp = stamp;
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         updateObjects();
     }
     
@@ -784,11 +1276,13 @@ public abstract class SpaceState<T extends CellGame,
      * @param y2 The y-coordinate of the region's bottom edge
      */
     public final void removeOutsideRectangle(long x1, long y1, long x2, long y2) {
-        List<Hitbox> scanned = new ArrayList<>();
-        for (Cell cell : cells.values()) {
+        checkNotVisiting("remove SpaceObjects from a SpaceState");
+        updateChangedCells();
+        long stamp = newQueryStamp();
+        for (Cell cell : cells) {
             if (cell.left < x1 || cell.right > x2 || cell.top < y1 || cell.bottom > y2) {
                 for (Hitbox locatorHitbox : cell.hitboxes.get(HitboxRole.LOCATOR)) {
-                    if (!locatorHitbox.scanned) {
+                    if (isUnscanned(locatorHitbox, stamp)) {
                         SpaceObject object = locatorHitbox.getObject();
                         if (object.newState == this
                                 && (locatorHitbox.getLeftEdge() >= x2
@@ -798,14 +1292,11 @@ public abstract class SpaceState<T extends CellGame,
                             object.newState = null;
                             objectChanges.add(new ObjectChange(object, null));
                         }
-                        locatorHitbox.scanned = true;
+                        locatorHitbox.scanStamp = stamp;
                     }
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         updateObjects();
     }
     
@@ -816,24 +1307,22 @@ public abstract class SpaceState<T extends CellGame,
      * @param x The line's x-coordinate
      */
     public final void removeLeftOfLine(long x) {
-        List<Hitbox> scanned = new ArrayList<>();
+        checkNotVisiting("remove SpaceObjects from a SpaceState");
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(
                 cellLeft, cellTop, Frac.intCeil(Frac.div(x, cellWidth)) - 1, cellBottom);
         while (iterator.hasNext()) {
             for (Hitbox locatorHitbox : iterator.next().hitboxes.get(HitboxRole.LOCATOR)) {
-                if (!locatorHitbox.scanned) {
+                if (isUnscanned(locatorHitbox, stamp)) {
                     SpaceObject object = locatorHitbox.getObject();
                     if (object.newState == this && locatorHitbox.getRightEdge() <= x) {
                         object.newState = null;
                         objectChanges.add(new ObjectChange(object, null));
                     }
-                    locatorHitbox.scanned = true;
+                    locatorHitbox.scanStamp = stamp;
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         updateObjects();
     }
     
@@ -844,24 +1333,22 @@ public abstract class SpaceState<T extends CellGame,
      * @param x The line's x-coordinate
      */
     public final void removeRightOfLine(long x) {
-        List<Hitbox> scanned = new ArrayList<>();
+        checkNotVisiting("remove SpaceObjects from a SpaceState");
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(
                 Frac.intFloor(Frac.div(x, cellWidth)), cellTop, cellRight, cellBottom);
         while (iterator.hasNext()) {
             for (Hitbox locatorHitbox : iterator.next().hitboxes.get(HitboxRole.LOCATOR)) {
-                if (!locatorHitbox.scanned) {
+                if (isUnscanned(locatorHitbox, stamp)) {
                     SpaceObject object = locatorHitbox.getObject();
                     if (object.newState == this && locatorHitbox.getLeftEdge() >= x) {
                         object.newState = null;
                         objectChanges.add(new ObjectChange(object, null));
                     }
-                    locatorHitbox.scanned = true;
+                    locatorHitbox.scanStamp = stamp;
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         updateObjects();
     }
     
@@ -872,24 +1359,22 @@ public abstract class SpaceState<T extends CellGame,
      * @param y The line's y-coordinate
      */
     public final void removeAboveLine(long y) {
-        List<Hitbox> scanned = new ArrayList<>();
+        checkNotVisiting("remove SpaceObjects from a SpaceState");
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(
                 cellLeft, cellTop, cellRight, Frac.intCeil(Frac.div(y, cellHeight)) - 1);
         while (iterator.hasNext()) {
             for (Hitbox locatorHitbox : iterator.next().hitboxes.get(HitboxRole.LOCATOR)) {
-                if (!locatorHitbox.scanned) {
+                if (isUnscanned(locatorHitbox, stamp)) {
                     SpaceObject object = locatorHitbox.getObject();
                     if (object.newState == this && locatorHitbox.getBottomEdge() <= y) {
                         object.newState = null;
                         objectChanges.add(new ObjectChange(object, null));
                     }
-                    locatorHitbox.scanned = true;
+                    locatorHitbox.scanStamp = stamp;
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         updateObjects();
     }
     
@@ -900,28 +1385,35 @@ public abstract class SpaceState<T extends CellGame,
      * @param y The line's y-coordinate
      */
     public final void removeBelowLine(long y) {
-        List<Hitbox> scanned = new ArrayList<>();
+        checkNotVisiting("remove SpaceObjects from a SpaceState");
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(
                 cellLeft, Frac.intFloor(Frac.div(y, cellHeight)), cellRight, cellBottom);
         while (iterator.hasNext()) {
             for (Hitbox locatorHitbox : iterator.next().hitboxes.get(HitboxRole.LOCATOR)) {
-                if (!locatorHitbox.scanned) {
+                if (isUnscanned(locatorHitbox, stamp)) {
                     SpaceObject object = locatorHitbox.getObject();
                     if (object.newState == this && locatorHitbox.getTopEdge() >= y) {
                         object.newState = null;
                         objectChanges.add(new ObjectChange(object, null));
                     }
-                    locatorHitbox.scanned = true;
+                    locatorHitbox.scanStamp = stamp;
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         updateObjects();
     }
     
     private void addObjectChange(SpaceObject object, SpaceState newState) {
+        if (movingInParallel) {
+            abortParallelMovement();
+        }
+        if (object.state != null) {
+            object.state.checkNotVisiting("add or remove a SpaceObject");
+        }
+        if (newState != null) {
+            newState.checkNotVisiting("add or remove a SpaceObject");
+        }
         object.newState = newState;
         ObjectChange change = new ObjectChange(object, newState);
         if (object.state != null) {
@@ -936,6 +1428,9 @@ public abstract class SpaceState<T extends CellGame,
     
     private void add(SpaceObject object) {
         spaceObjects.add(object);
+        for (ClassIndex index : getClassIndices(object)) {
+            index.objects.add(object);
+        }
         object.game = getGame();
         object.state = this;
         object.addCellData();
@@ -945,6 +1440,9 @@ public abstract class SpaceState<T extends CellGame,
     private void remove(SpaceObject object) {
         object.removeData();
         spaceObjects.remove(object);
+        for (ClassIndex index : getClassIndices(object)) {
+            index.objects.remove(object);
+        }
         object.game = null;
         object.state = null;
     }
@@ -983,6 +1481,9 @@ public abstract class SpaceState<T extends CellGame,
         private MobileObject lastObject = null;
         
         private MobileObjectIterator() {
+            if (movingInParallel) {
+                abortParallelMovement();
+            }
             mobileObjectIterators++;
         }
         
@@ -1072,16 +1573,25 @@ public abstract class SpaceState<T extends CellGame,
     }
     
     final void addMobileObject(MobileObject object) {
+        if (movingInParallel) {
+            abortParallelMovement();
+        }
         mobileObjectChanges.add(new MobileObjectChange(object, true));
         updateMobileObjects();
     }
     
     final void removeMobileObject(MobileObject object) {
+        if (movingInParallel) {
+            abortParallelMovement();
+        }
         mobileObjectChanges.add(new MobileObjectChange(object, false));
         updateMobileObjects();
     }
     
     final void changeMobileObjectMovementPriority(MobileObject object, int movementPriority) {
+        if (movingInParallel) {
+            abortParallelMovement();
+        }
         mobileObjectChanges.add(new MobileObjectChange(object, movementPriority));
         updateMobileObjects();
     }
@@ -1096,24 +1606,41 @@ public abstract class SpaceState<T extends CellGame,
                         if (change.object.state == null) {
                             change.object.movementPriority = change.movementPriority;
                         } else {
-                            mobileObjects.remove(change.object);
+                            removeFromMobileObjects(change.object);
                             change.object.movementPriority = change.movementPriority;
-                            mobileObjects.add(change.object);
+                            addToMobileObjects(change.object);
                         }
                     } else if (change.add) {
-                        mobileObjects.add(change.object);
+                        addToMobileObjects(change.object);
                     } else {
-                        mobileObjects.remove(change.object);
+                        removeFromMobileObjects(change.object);
                     }
                 }
             }
         }
     }
     
+    private void addToMobileObjects(MobileObject object) {
+        mobileObjects.add(object);
+        for (ClassIndex index : getClassIndices(object)) {
+            index.mobileObjects.add(object);
+        }
+    }
+    
+    private void removeFromMobileObjects(MobileObject object) {
+        mobileObjects.remove(object);
+        for (ClassIndex index : getClassIndices(object)) {
+            index.mobileObjects.remove(object);
+        }
+    }
+    
     /**
      * Returns this SpaceState's SpaceObject of the specified class whose center
      * is nearest to the specified point, or null if this SpaceState has no
      * SpaceObjects of that class.
+     * If several are equally near, the one returned is the one that moves
+     * first if the class is a subclass of MobileObject, and otherwise the one
+     * whose System.identityHashCode() is lowest.
      * @param <O> The subclass of SpaceObject to search for
      * @param point The point to check distance to
      * @param cls The Class object that represents the SpaceObject subclass
@@ -1128,6 +1655,9 @@ public abstract class SpaceState<T extends CellGame,
      * Returns this SpaceState's SpaceObject of the specified class whose center
      * is nearest to the specified point, or null if this SpaceState has no
      * SpaceObjects of that class.
+     * If several are equally near, the one returned is the one that moves
+     * first if the class is a subclass of MobileObject, and otherwise the one
+     * whose System.identityHashCode() is lowest.
      * @param <O> The subclass of SpaceObject to search for
      * @param pointX The x-coordinate of the point to check the distance to
      * @param pointY The y-coordinate of the point to check the distance to
@@ -1136,14 +1666,142 @@ public abstract class SpaceState<T extends CellGame,
      * point
      */
     public final <O extends SpaceObject> O nearestObject(long pointX, long pointY, Class<O> cls) {
+        updateChangedCells();
+        ClassIndex index = classIndices.get(cls);
+        boolean mobile = MobileObject.class.isAssignableFrom(cls);
+        int numObjects;
+        if (index == null) {
+            numObjects = (mobile ? mobileObjects.size() : spaceObjects.size());
+        } else {
+            numObjects = (mobile ? index.mobileObjects.size() : index.objects.size());
+        }
+        if (numObjects == 0) {
+            return null;
+        }
+        //Search the cells in square rings of increasing size around the point's cell
+        long pointCellX = Math.floorDiv(pointX, cellWidth);
+        long pointCellY = Math.floorDiv(pointY, cellHeight);
+        //Rings entirely outside the range of cells in use have no objects to find
+        long minRing = Math.max(Math.max(0, Math.max(cellLeft - pointCellX, pointCellX - cellRight)),
+                Math.max(cellTop - pointCellY, pointCellY - cellBottom));
+        long maxRing = Math.max(Math.max(pointCellX - cellLeft, cellRight - pointCellX),
+                Math.max(pointCellY - cellTop, cellBottom - pointCellY));
+        /*
+         * Frac.div() is off by less than 1 in its last place, so a center that
+         * getCellRangeInclusive() puts in a cell lies less than 1/Frac.UNIT of
+         * a cell outside it, and less than these slacks in fracunits.
+         */
+        long xSlack = (cellWidth >> Frac.BITS) + 1;
+        long ySlack = (cellHeight >> Frac.BITS) + 1;
+        /*
+         * The stopping test below relies on CellVector.distanceBetween() not
+         * decreasing as the distances along the axes grow, which holds only if
+         * the sum of their squares can't overflow. If a center could be far
+         * enough from the point for that, search linearly instead.
+         */
+        long reach = Math.max(
+                Math.max(Math.abs(pointX - cellLeft*cellWidth), Math.abs((cellRight + 1)*cellWidth - pointX)),
+                Math.max(Math.abs(pointY - cellTop*cellHeight), Math.abs((cellBottom + 1)*cellHeight - pointY)));
+        if (reach + Math.max(xSlack, ySlack) >= MAX_NEAREST_REACH) {
+            return nearestObjectLinear(pointX, pointY, cls, index, mobile);
+        }
+        //If the rings cover this many cells, they're mostly empty space; fall back on a linear search
+        long cellsLeft = 4L*numObjects + 16;
+        O nearest = null;
+        long nearestDistance = -1;
+        long stamp = newQueryStamp();
+        for (long ring = minRing; ring <= maxRing; ring++) {
+            long ringLeft = pointCellX - ring;
+            long ringRight = pointCellX + ring;
+            long ringTop = pointCellY - ring;
+            long ringBottom = pointCellY + ring;
+            if (nearest != null) {
+                /*
+                 * Every center not yet examined is in a cell in this ring or
+                 * beyond, so it is at least gap from the point along one axis,
+                 * and distanceBetween() gives it a distance at least that of a
+                 * point gap away. Once that is more than the nearest distance
+                 * so far, nothing left can be as near, even to tie.
+                 */
+                long gap = Math.min(
+                        Math.min(pointX - (ringLeft + 1)*cellWidth, ringRight*cellWidth - pointX) - xSlack,
+                        Math.min(pointY - (ringTop + 1)*cellHeight, ringBottom*cellHeight - pointY) - ySlack);
+                if (gap > 0 && CellVector.distanceBetween(0, 0, gap, 0) > nearestDistance) {
+                    break;
+                }
+            }
+            long y1 = Math.max(ringTop, cellTop);
+            long y2 = Math.min(ringBottom, cellBottom);
+            for (long y = y1; y <= y2; y++) {
+                //Rows strictly inside the ring only have cells at its left and right ends
+                boolean fullRow = (y == ringTop || y == ringBottom);
+                long x1 = (fullRow ? Math.max(ringLeft, cellLeft) : ringLeft);
+                long x2 = (fullRow ? Math.min(ringRight, cellRight) : ringRight);
+                long xStep = (fullRow ? 1 : 2*ring);
+                for (long x = x1; x <= x2; x += xStep) {
+                    if (x < cellLeft || x > cellRight) {
+                        continue;
+                    }
+                    if (--cellsLeft < 0) {
+                        return nearestObjectLinear(pointX, pointY, cls, index, mobile);
+                    }
+                    Cell cell = cells.get((int)x, (int)y);
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Hitbox centerHitbox : cell.getHitboxes(HitboxRole.CENTER, index)) {
+                        if (isUnscanned(centerHitbox, stamp)) {
+                            centerHitbox.scanStamp = stamp;
+                            SpaceObject object = centerHitbox.getObject();
+                            if (cls.isAssignableFrom(object.getClass())) {
+                                long distance = CellVector.distanceBetween(
+                                        pointX, pointY, centerHitbox.getAbsX(), centerHitbox.getAbsY());
+                                if (isNearer(object, distance, nearest, nearestDistance, mobile)) {
+                                    nearest = cls.cast(object);
+                                    nearestDistance = distance;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+    
+    /*
+     * Returns whether object, at the specified distance from a point, is
+     * nearer to it than nearest, the nearest SpaceObject found so far. Ties go
+     * to the MobileObject that moves first, or to the SpaceObject with the
+     * lower identity hash code, so that the result doesn't depend on the order
+     * in which the SpaceObjects are examined.
+     */
+    private static boolean isNearer(SpaceObject object, long distance,
+            SpaceObject nearest, long nearestDistance, boolean mobile) {
+        if (nearest == null || distance != nearestDistance) {
+            return nearest == null || distance < nearestDistance;
+        }
+        if (mobile) {
+            return movementPriorityComparator.compare((MobileObject)object, (MobileObject)nearest) < 0;
+        }
+        return System.identityHashCode(object) < System.identityHashCode(nearest);
+    }
+    
+    private <O extends SpaceObject> O nearestObjectLinear(
+            long pointX, long pointY, Class<O> cls, ClassIndex index, boolean mobile) {
         O nearest = null;
         long nearestDistance = -1;
-        for (SpaceObject object :
-                (MobileObject.class.isAssignableFrom(cls) ? mobileObjects : spaceObjects)) {
+        Set<? extends SpaceObject> objects;
+        if (index == null) {
+            objects = (mobile ? mobileObjects : spaceObjects);
+        } else {
+            objects = (mobile ? index.mobileObjects : index.objects);
+        }
+        for (SpaceObject object : objects) {
             if (cls.isAssignableFrom(object.getClass())) {
                 long distance = CellVector.distanceBetween(
                         pointX, pointY, object.getCenterX(), object.getCenterY());
-                if (nearestDistance < 0 || distance < nearestDistance) {
+                if (isNearer(object, distance, nearest, nearestDistance, mobile)) {
                     nearest = cls.cast(object);
                     nearestDistance = distance;
                 }
@@ -1184,29 +1842,23 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> O objectWithinRectangle(
             long x1, long y1, long x2, long y2, Class<O> cls) {
-        List<Hitbox> scanned = new ArrayList<>();
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(x1, y1, x2, y2));
         while (iterator.hasNext()) {
-            for (Hitbox centerHitbox : iterator.next().hitboxes.get(HitboxRole.CENTER)) {
-                if (!centerHitbox.scanned) {
+            for (Hitbox centerHitbox : iterator.next().getHitboxes(HitboxRole.CENTER, index)) {
+                if (isUnscanned(centerHitbox, stamp)) {
                     if (cls.isAssignableFrom(centerHitbox.getObject().getClass())
                             && centerHitbox.getAbsX() >= x1
                             && centerHitbox.getAbsY() >= y1
                             && centerHitbox.getAbsX() <= x2
                             && centerHitbox.getAbsY() <= y2) {
-                        for (Hitbox hitbox : scanned) {
-                            hitbox.scanned = false;
-                        }
                         return cls.cast(centerHitbox.getObject());
                     }
-                    centerHitbox.scanned = true;
-                    scanned.add(centerHitbox);
+                    centerHitbox.scanStamp = stamp;
                 }
             }
         }
-        for (Hitbox hitbox : scanned) {
-            hitbox.scanned = false;
-        }
         return null;
     }
     
@@ -1225,27 +1877,69 @@ public abstract class SpaceState<T extends CellGame,
     public final <O extends SpaceObject> List<O> objectsWithinRectangle(
             long x1, long y1, long x2, long y2, Class<O> cls) {
         List<O> within = new ArrayList<>();
-        List<Hitbox> scanned = new ArrayList<>();
+        objectsWithinRectangle(x1, y1, x2, y2, cls, within, null);
+        return within;
+    }
+    
+    /**
+     * Adds to the specified Collection all of this SpaceState's SpaceObjects of
+     * the specified class with their centers within the specified rectangular
+     * region.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param x1 The x-coordinate of the region's left edge
+     * @param y1 The y-coordinate of the region's top edge
+     * @param x2 The x-coordinate of the region's right edge
+     * @param y2 The y-coordinate of the region's bottom edge
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param results The Collection to add the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void objectsWithinRectangle(
+            long x1, long y1, long x2, long y2, Class<O> cls,
+            Collection<? super O> results) {
+        objectsWithinRectangle(x1, y1, x2, y2, cls, results, null);
+    }
+    
+    /**
+     * Hands to the specified SpaceObjectVisitor, one at a time, all of this
+     * SpaceState's SpaceObjects of the specified class with their centers
+     * within the specified rectangular region, until the SpaceObjectVisitor
+     * returns false.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param x1 The x-coordinate of the region's left edge
+     * @param y1 The y-coordinate of the region's top edge
+     * @param x2 The x-coordinate of the region's right edge
+     * @param y2 The y-coordinate of the region's bottom edge
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param visitor The SpaceObjectVisitor to hand the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void objectsWithinRectangle(
+            long x1, long y1, long x2, long y2, Class<O> cls,
+            SpaceObjectVisitor<? super O> visitor) {
+        objectsWithinRectangle(x1, y1, x2, y2, cls, null, visitor);
+    }
+    
+    private <O extends SpaceObject> void objectsWithinRectangle(
+            long x1, long y1, long x2, long y2, Class<O> cls,
+            Collection<? super O> results, SpaceObjectVisitor<? super O> visitor) {
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(x1, y1, x2, y2));
         while (iterator.hasNext()) {
-            for (Hitbox centerHitbox : iterator.next().hitboxes.get(HitboxRole.CENTER)) {
-                if (!centerHitbox.scanned) {
-                    centerHitbox.scanned = true;
-                    scanned.add(centerHitbox);
+            for (Hitbox centerHitbox : iterator.next().getHitboxes(HitboxRole.CENTER, index)) {
+                if (isUnscanned(centerHitbox, stamp)) {
+                    centerHitbox.scanStamp = stamp;
                     if (cls.isAssignableFrom(centerHitbox.getObject().getClass())
                             && centerHitbox.getAbsX() >= x1
                             && centerHitbox.getAbsY() >= y1
                             && centerHitbox.getAbsX() <= x2
                             && centerHitbox.getAbsY() <= y2) {
-                        within.add(cls.cast(centerHitbox.getObject()));
+                        if (!found(cls.cast(centerHitbox.getObject()), results, visitor)) {
+                            return;
+                        }
                     }
                 }
             }
         }
-        for (Hitbox hitbox : scanned) {
-            hitbox.scanned = false;
-        }
-        return within;
     }
     
     /**
@@ -1284,15 +1978,15 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> O nearestObjectWithinRectangle(
             long pointX, long pointY, long x1, long y1, long x2, long y2, Class<O> cls) {
+        ClassIndex index = classIndices.get(cls);
         O nearest = null;
         long nearestDistance = -1;
-        List<Hitbox> scanned = new ArrayList<>();
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(x1, y1, x2, y2));
         while (iterator.hasNext()) {
-            for (Hitbox centerHitbox : iterator.next().hitboxes.get(HitboxRole.CENTER)) {
-                if (!centerHitbox.scanned) {
-                    centerHitbox.scanned = true;
-                    scanned.add(centerHitbox);
+            for (Hitbox centerHitbox : iterator.next().getHitboxes(HitboxRole.CENTER, index)) {
+                if (isUnscanned(centerHitbox, stamp)) {
+                    centerHitbox.scanStamp = stamp;
                     SpaceObject object = centerHitbox.getObject();
                     if (cls.isAssignableFrom(object.getClass())
                             && centerHitbox.getAbsX() >= x1
@@ -1309,9 +2003,6 @@ public abstract class SpaceState<T extends CellGame,
                 }
             }
         }
-        for (Hitbox hitbox : scanned) {
-            hitbox.scanned = false;
-        }
         return nearest;
     }
     
@@ -1398,29 +2089,23 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> O objectWithinCircle(
             long centerX, long centerY, long radius, Class<O> cls) {
-        List<Hitbox> scanned = new ArrayList<>();
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(centerX - radius, centerY - radius, centerX + radius, centerY + radius));
         while (iterator.hasNext()) {
             Cell cell = iterator.next();
             if (circleMeetsRectangle(centerX, centerY, radius, cell.left, cell.top, cell.right, cell.bottom)) {
-                for (Hitbox centerHitbox : cell.hitboxes.get(HitboxRole.CENTER)) {
-                    if (!centerHitbox.scanned) {
+                for (Hitbox centerHitbox : cell.getHitboxes(HitboxRole.CENTER, index)) {
+                    if (isUnscanned(centerHitbox, stamp)) {
                         if (cls.isAssignableFrom(centerHitbox.getObject().getClass())
                                 && CellVector.distanceBetween(centerX, centerY, centerHitbox.getAbsX(), centerHitbox.getAbsY()) <= radius) {
-                            for (Hitbox hitbox : scanned) {
-                                hitbox.scanned = false;
-                            }
                             return cls.cast(centerHitbox.getObject());
                         }
-                        centerHitbox.scanned = true;
-                        scanned.add(centerHitbox);
+                        centerHitbox.scanStamp = stamp;
                     }
                 }
             }
         }
-        for (Hitbox hitbox : scanned) {
-            hitbox.scanned = false;
-        }
         return null;
     }
     
@@ -1453,27 +2138,249 @@ public abstract class SpaceState<T extends CellGame,
     public final <O extends SpaceObject> List<O> objectsWithinCircle(
             long centerX, long centerY, long radius, Class<O> cls) {
         List<O> within = new ArrayList<>();
-        List<Hitbox> scanned = new ArrayList<>();
+        objectsWithinCircle(centerX, centerY, radius, cls, within, null);
+        return within;
+    }
+    
+    /**
+     * Adds to the specified Collection all of this SpaceState's SpaceObjects of
+     * the specified class with their centers within the specified circular
+     * region.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param centerX The x-coordinate of the region's center
+     * @param centerY The y-coordinate of the region's center
+     * @param radius The region's radius
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param results The Collection to add the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void objectsWithinCircle(
+            long centerX, long centerY, long radius, Class<O> cls,
+            Collection<? super O> results) {
+        objectsWithinCircle(centerX, centerY, radius, cls, results, null);
+    }
+    
+    /**
+     * Hands to the specified SpaceObjectVisitor, one at a time, all of this
+     * SpaceState's SpaceObjects of the specified class with their centers
+     * within the specified circular region, until the SpaceObjectVisitor
+     * returns false.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param centerX The x-coordinate of the region's center
+     * @param centerY The y-coordinate of the region's center
+     * @param radius The region's radius
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param visitor The SpaceObjectVisitor to hand the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void objectsWithinCircle(
+            long centerX, long centerY, long radius, Class<O> cls,
+            SpaceObjectVisitor<? super O> visitor) {
+        objectsWithinCircle(centerX, centerY, radius, cls, null, visitor);
+    }
+    
+    private <O extends SpaceObject> void objectsWithinCircle(
+            long centerX, long centerY, long radius, Class<O> cls,
+            Collection<? super O> results, SpaceObjectVisitor<? super O> visitor) {
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(centerX - radius, centerY - radius, centerX + radius, centerY + radius));
         while (iterator.hasNext()) {
             Cell cell = iterator.next();
             if (circleMeetsRectangle(centerX, centerY, radius, cell.left, cell.top, cell.right, cell.bottom)) {
-                for (Hitbox centerHitbox : cell.hitboxes.get(HitboxRole.CENTER)) {
-                    if (!centerHitbox.scanned) {
-                        centerHitbox.scanned = true;
-                        scanned.add(centerHitbox);
+                for (Hitbox centerHitbox : cell.getHitboxes(HitboxRole.CENTER, index)) {
+                    if (isUnscanned(centerHitbox, stamp)) {
+                        centerHitbox.scanStamp = stamp;
                         if (cls.isAssignableFrom(centerHitbox.getObject().getClass())
                                 && CellVector.distanceBetween(centerX, centerY, centerHitbox.getAbsX(), centerHitbox.getAbsY()) <= radius) {
-                            within.add(cls.cast(centerHitbox.getObject()));
+                            if (!found(cls.cast(centerHitbox.getObject()), results, visitor)) {
+                                return;
+                            }
                         }
                     }
                 }
             }
         }
-        for (Hitbox hitbox : scanned) {
-            hitbox.scanned = false;
+    }
+    
+    /**
+     * Answers a batch of queries for this SpaceState's SpaceObjects of the
+     * specified class with their centers within rectangular regions, handing
+     * the SpaceObjects that each query finds to the specified
+     * MultiQueryVisitor until it returns false. The queries share a single
+     * pass over this SpaceState's cells, so a batch of queries whose regions
+     * are near each other takes less time than the same queries made one at a
+     * time.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param rectangles The regions, stored as consecutive groups of four
+     * numbers: the x-coordinate of a region's left edge, the y-coordinate of
+     * its top edge, the x-coordinate of its right edge, and the y-coordinate
+     * of its bottom edge. The index of a query in the batch is the index of
+     * its group.
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param visitor The MultiQueryVisitor to hand the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void objectsWithinRectangles(
+            long[] rectangles, Class<O> cls, MultiQueryVisitor<? super O> visitor) {
+        objectsWithinRegions(rectangles, false, cls, visitor);
+    }
+    
+    /**
+     * Answers a batch of queries for this SpaceState's SpaceObjects of the
+     * specified class with their centers within circular regions, handing the
+     * SpaceObjects that each query finds to the specified MultiQueryVisitor
+     * until it returns false. The queries share a single pass over this
+     * SpaceState's cells, so a batch of queries whose regions are near each
+     * other takes less time than the same queries made one at a time.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param circles The regions, stored as consecutive groups of three
+     * numbers: the x-coordinate of a region's center, the y-coordinate of its
+     * center, and its radius. The index of a query in the batch is the index
+     * of its group.
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param visitor The MultiQueryVisitor to hand the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void objectsWithinCircles(
+            long[] circles, Class<O> cls, MultiQueryVisitor<? super O> visitor) {
+        objectsWithinRegions(circles, true, cls, visitor);
+    }
+    
+    private <O extends SpaceObject> void objectsWithinRegions(
+            long[] regions, boolean circles, Class<O> cls, MultiQueryVisitor<? super O> visitor) {
+        updateChangedCells();
+        int regionLength = (circles ? 3 : 4);
+        if (regions.length % regionLength != 0) {
+            throw new RuntimeException("Attempted to query a SpaceState with an array of "
+                    + (circles ? "circles" : "rectangles") + " whose length (" + regions.length
+                    + ") is not a multiple of " + regionLength);
+        }
+        int numQueries = regions.length/regionLength;
+        //Each query's range of cells, clipped to the cells in use
+        int[] ranges = new int[4*numQueries];
+        //Queries with non-empty ranges, sorted by the left edges of their ranges
+        long[] order = new long[numQueries];
+        int numOrdered = 0;
+        int top = Integer.MAX_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < numQueries; i++) {
+            int r = regionLength*i;
+            int[] cellRange;
+            if (circles) {
+                long radius = regions[r + 2];
+                cellRange = getCellRangeExclusive(regions[r] - radius, regions[r + 1] - radius,
+                        regions[r] + radius, regions[r + 1] + radius);
+            } else {
+                cellRange = getCellRangeExclusive(regions[r], regions[r + 1], regions[r + 2], regions[r + 3]);
+            }
+            int x1 = Math.max(cellRange[0], cellLeft);
+            int y1 = Math.max(cellRange[1], cellTop);
+            int x2 = Math.min(cellRange[2], cellRight);
+            int y2 = Math.min(cellRange[3], cellBottom);
+            ranges[4*i] = x1;
+            ranges[4*i + 1] = y1;
+            ranges[4*i + 2] = x2;
+            ranges[4*i + 3] = y2;
+            if (x1 <= x2 && y1 <= y2) {
+                order[numOrdered] = ((long)x1 << 32) | i;
+                numOrdered++;
+                top = Math.min(top, y1);
+                bottom = Math.max(bottom, y2);
+            }
+        }
+        if (numOrdered == 0) {
+            return;
+        }
+        Arrays.sort(order, 0, numOrdered);
+        ClassIndex index = classIndices.get(cls);
+        int[] active = new int[numOrdered];
+        for (int y = top; y <= bottom; y++) {
+            //Find the queries whose ranges include this row, still sorted by left edge
+            int numActive = 0;
+            for (int j = 0; j < numOrdered; j++) {
+                int i = (int)order[j];
+                if (ranges[4*i + 1] <= y && ranges[4*i + 3] >= y) {
+                    active[numActive] = i;
+                    numActive++;
+                }
+            }
+            //Visit each cell in the row that any of those queries includes exactly once
+            int x = Integer.MIN_VALUE;
+            for (int j = 0; j < numActive; j++) {
+                int right = ranges[4*active[j] + 2];
+                if (x <= right) {
+                    x = Math.max(x, ranges[4*active[j]]);
+                    for (; x <= right; x++) {
+                        Cell cell = cells.get(x, y);
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (int k = j; k < numActive; k++) {
+                            int i = active[k];
+                            int x1 = ranges[4*i];
+                            if (x1 > x) {
+                                break;
+                            }
+                            if (ranges[4*i + 2] >= x && !visitCellForRegion(
+                                    cell, i, regions, circles, x1, ranges[4*i + 1], cls, index, visitor)) {
+                                return;
+                            }
+                        }
+                    }
+                }
+            }
         }
-        return within;
+    }
+    
+    private <O extends SpaceObject> boolean visitCellForRegion(Cell cell, int query,
+            long[] regions, boolean circles, int rangeX1, int rangeY1,
+            Class<O> cls, ClassIndex index, MultiQueryVisitor<? super O> visitor) {
+        long x1 = 0, y1 = 0, x2 = 0, y2 = 0, centerX = 0, centerY = 0, radius = 0;
+        if (circles) {
+            centerX = regions[3*query];
+            centerY = regions[3*query + 1];
+            radius = regions[3*query + 2];
+            if (!circleMeetsRectangle(centerX, centerY, radius, cell.left, cell.top, cell.right, cell.bottom)) {
+                return true;
+            }
+        } else {
+            x1 = regions[4*query];
+            y1 = regions[4*query + 1];
+            x2 = regions[4*query + 2];
+            y2 = regions[4*query + 3];
+        }
+        for (Hitbox centerHitbox : cell.getHitboxes(HitboxRole.CENTER, index)) {
+            Profiler.count(Profiler.HITBOXES_SCANNED);
+            //Query stamps can't tell the queries apart, so only consider each Hitbox
+            //in the first of its cells that the query visits
+            if (cell.x != Math.max(centerHitbox.cellRange[0], rangeX1)
+                    || cell.y != Math.max(centerHitbox.cellRange[1], rangeY1)) {
+                continue;
+            }
+            SpaceObject object = centerHitbox.getObject();
+            if (cls.isAssignableFrom(object.getClass())) {
+                boolean within;
+                if (circles) {
+                    within = CellVector.distanceBetween(
+                            centerX, centerY, centerHitbox.getAbsX(), centerHitbox.getAbsY()) <= radius;
+                } else {
+                    within = centerHitbox.getAbsX() >= x1
+                            && centerHitbox.getAbsY() >= y1
+                            && centerHitbox.getAbsX() <= x2
+                            && centerHitbox.getAbsY() <= y2;
+                }
+                if (within) {
+                    boolean proceed;
+                    visiting = true;
+                    try {
+                        proceed = visitor.visit(query, cls.cast(object));
+                    } finally {
+                        visiting = false;
+                    }
+                    if (!proceed) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
     }
     
     /**
@@ -1510,17 +2417,17 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> O nearestObjectWithinCircle(
             long pointX, long pointY, long centerX, long centerY, long radius, Class<O> cls) {
+        ClassIndex index = classIndices.get(cls);
         O nearest = null;
         long nearestDistance = -1;
-        List<Hitbox> scanned = new ArrayList<>();
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(centerX - radius, centerY - radius, centerX + radius, centerY + radius));
         while (iterator.hasNext()) {
             Cell cell = iterator.next();
             if (circleMeetsRectangle(centerX, centerY, radius, cell.left, cell.top, cell.right, cell.bottom)) {
-                for (Hitbox centerHitbox : cell.hitboxes.get(HitboxRole.CENTER)) {
-                    if (!centerHitbox.scanned) {
-                        centerHitbox.scanned = true;
-                        scanned.add(centerHitbox);
+                for (Hitbox centerHitbox : cell.getHitboxes(HitboxRole.CENTER, index)) {
+                    if (isUnscanned(centerHitbox, stamp)) {
+                        centerHitbox.scanStamp = stamp;
                         SpaceObject object = centerHitbox.getObject();
                         if (cls.isAssignableFrom(object.getClass())
                                 && CellVector.distanceBetween(centerX, centerY, centerHitbox.getAbsX(), centerHitbox.getAbsY()) <= radius) {
@@ -1534,9 +2441,6 @@ public abstract class SpaceState<T extends CellGame,
                 }
             }
         }
-        for (Hitbox hitbox : scanned) {
-            hitbox.scanned = false;
-        }
         return nearest;
     }
     
@@ -1563,26 +2467,20 @@ public abstract class SpaceState<T extends CellGame,
      * Hitbox
      */
     public final <O extends SpaceObject> O overlappingObject(Hitbox hitbox, Class<O> cls) {
-        List<Hitbox> scanned = new ArrayList<>();
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(hitbox));
         while (iterator.hasNext()) {
-            for (Hitbox overlapHitbox : iterator.next().hitboxes.get(HitboxRole.OVERLAP)) {
-                if (!overlapHitbox.scanned) {
+            for (Hitbox overlapHitbox : iterator.next().getHitboxes(HitboxRole.OVERLAP, index)) {
+                if (isUnscanned(overlapHitbox, stamp)) {
                     if (cls.isAssignableFrom(overlapHitbox.getObject().getClass())
                             && Hitbox.overlap(hitbox, overlapHitbox)) {
-                        for (Hitbox scannedHitbox : scanned) {
-                            scannedHitbox.scanned = false;
-                        }
                         return cls.cast(overlapHitbox.getObject());
                     }
-                    overlapHitbox.scanned = true;
-                    scanned.add(overlapHitbox);
+                    overlapHitbox.scanStamp = stamp;
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         return null;
     }
     
@@ -1597,24 +2495,55 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> List<O> overlappingObjects(Hitbox hitbox, Class<O> cls) {
         List<O> overlapping = new ArrayList<>();
-        List<Hitbox> scanned = new ArrayList<>();
+        overlappingObjects(hitbox, cls, overlapping, null);
+        return overlapping;
+    }
+    
+    /**
+     * Adds to the specified Collection all of this SpaceState's SpaceObjects of
+     * the specified class that overlap the specified Hitbox.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param hitbox The Hitbox to check for overlapping
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param results The Collection to add the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void overlappingObjects(Hitbox hitbox, Class<O> cls,
+            Collection<? super O> results) {
+        overlappingObjects(hitbox, cls, results, null);
+    }
+    
+    /**
+     * Hands to the specified SpaceObjectVisitor, one at a time, all of this
+     * SpaceState's SpaceObjects of the specified class that overlap the
+     * specified Hitbox, until the SpaceObjectVisitor returns false.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param hitbox The Hitbox to check for overlapping
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param visitor The SpaceObjectVisitor to hand the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void overlappingObjects(Hitbox hitbox, Class<O> cls,
+            SpaceObjectVisitor<? super O> visitor) {
+        overlappingObjects(hitbox, cls, null, visitor);
+    }
+    
+    private <O extends SpaceObject> void overlappingObjects(Hitbox hitbox, Class<O> cls,
+            Collection<? super O> results, SpaceObjectVisitor<? super O> visitor) {
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(hitbox));
         while (iterator.hasNext()) {
-            for (Hitbox overlapHitbox : iterator.next().hitboxes.get(HitboxRole.OVERLAP)) {
-                if (!overlapHitbox.scanned) {
-                    overlapHitbox.scanned = true;
-                    scanned.add(overlapHitbox);
+            for (Hitbox overlapHitbox : iterator.next().getHitboxes(HitboxRole.OVERLAP, index)) {
+                if (isUnscanned(overlapHitbox, stamp)) {
+                    overlapHitbox.scanStamp = stamp;
                     if (cls.isAssignableFrom(overlapHitbox.getObject().getClass())
                             && Hitbox.overlap(hitbox, overlapHitbox)) {
-                        overlapping.add(cls.cast(overlapHitbox.getObject()));
+                        if (!found(cls.cast(overlapHitbox.getObject()), results, visitor)) {
+                            return;
+                        }
                     }
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
-        return overlapping;
     }
     
     /**
@@ -1647,15 +2576,15 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> O nearestOverlappingObject(
             long pointX, long pointY, Hitbox hitbox, Class<O> cls) {
+        ClassIndex index = classIndices.get(cls);
         O nearest = null;
         long nearestDistance = -1;
-        List<Hitbox> scanned = new ArrayList<>();
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(hitbox));
         while (iterator.hasNext()) {
-            for (Hitbox overlapHitbox : iterator.next().hitboxes.get(HitboxRole.OVERLAP)) {
-                if (!overlapHitbox.scanned) {
-                    overlapHitbox.scanned = true;
-                    scanned.add(overlapHitbox);
+            for (Hitbox overlapHitbox : iterator.next().getHitboxes(HitboxRole.OVERLAP, index)) {
+                if (isUnscanned(overlapHitbox, stamp)) {
+                    overlapHitbox.scanStamp = stamp;
                     SpaceObject object = overlapHitbox.getObject();
                     if (cls.isAssignableFrom(object.getClass())
                             && Hitbox.overlap(hitbox, overlapHitbox)) {
@@ -1668,9 +2597,6 @@ public abstract class SpaceState<T extends CellGame,
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         return nearest;
     }
     
@@ -1686,27 +2612,60 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> List<O> boundingBoxesMeet(Hitbox hitbox, Class<O> cls) {
         List<O> meeting = new ArrayList<>();
-        List<Hitbox> scanned = new ArrayList<>();
+        boundingBoxesMeet(hitbox, cls, meeting, null);
+        return meeting;
+    }
+    
+    /**
+     * Adds to the specified Collection all of this SpaceState's SpaceObjects of
+     * the specified class whose overlap Hitboxes' rectangular bounding boxes
+     * touch or intersect the specified Hitbox's rectangular bounding box.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param hitbox The Hitbox whose bounding box to check
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param results The Collection to add the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void boundingBoxesMeet(Hitbox hitbox, Class<O> cls,
+            Collection<? super O> results) {
+        boundingBoxesMeet(hitbox, cls, results, null);
+    }
+    
+    /**
+     * Hands to the specified SpaceObjectVisitor, one at a time, all of this
+     * SpaceState's SpaceObjects of the specified class whose overlap Hitboxes'
+     * rectangular bounding boxes touch or intersect the specified Hitbox's
+     * rectangular bounding box, until the SpaceObjectVisitor returns false.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param hitbox The Hitbox whose bounding box to check
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param visitor The SpaceObjectVisitor to hand the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void boundingBoxesMeet(Hitbox hitbox, Class<O> cls,
+            SpaceObjectVisitor<? super O> visitor) {
+        boundingBoxesMeet(hitbox, cls, null, visitor);
+    }
+    
+    private <O extends SpaceObject> void boundingBoxesMeet(Hitbox hitbox, Class<O> cls,
+            Collection<? super O> results, SpaceObjectVisitor<? super O> visitor) {
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(hitbox));
         while (iterator.hasNext()) {
-            for (Hitbox overlapHitbox : iterator.next().hitboxes.get(HitboxRole.OVERLAP)) {
-                if (!overlapHitbox.scanned) {
-                    overlapHitbox.scanned = true;
-                    scanned.add(overlapHitbox);
+            for (Hitbox overlapHitbox : iterator.next().getHitboxes(HitboxRole.OVERLAP, index)) {
+                if (isUnscanned(overlapHitbox, stamp)) {
+                    overlapHitbox.scanStamp = stamp;
                     if (cls.isAssignableFrom(overlapHitbox.getObject().getClass())
                             && hitbox.getLeftEdge() <= overlapHitbox.getRightEdge()
                             && hitbox.getRightEdge() >= overlapHitbox.getLeftEdge()
                             && hitbox.getTopEdge() <= overlapHitbox.getBottomEdge()
                             && hitbox.getBottomEdge() >= overlapHitbox.getTopEdge()) {
-                        meeting.add(cls.cast(overlapHitbox.getObject()));
+                        if (!found(cls.cast(overlapHitbox.getObject()), results, visitor)) {
+                            return;
+                        }
                     }
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
-        return meeting;
     }
     
     /**
@@ -1733,26 +2692,20 @@ public abstract class SpaceState<T extends CellGame,
      * the specified Hitbox
      */
     public final <O extends SpaceObject> O intersectingSolidObject(Hitbox hitbox, Class<O> cls) {
-        List<Hitbox> scanned = new ArrayList<>();
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(hitbox));
         while (iterator.hasNext()) {
-            for (Hitbox solidHitbox : iterator.next().hitboxes.get(HitboxRole.SOLID)) {
-                if (!solidHitbox.scanned) {
+            for (Hitbox solidHitbox : iterator.next().getHitboxes(HitboxRole.SOLID, index)) {
+                if (isUnscanned(solidHitbox, stamp)) {
                     if (cls.isAssignableFrom(solidHitbox.getObject().getClass())
                             && Hitbox.overlap(hitbox, solidHitbox)) {
-                        for (Hitbox scannedHitbox : scanned) {
-                            scannedHitbox.scanned = false;
-                        }
                         return cls.cast(solidHitbox.getObject());
                     }
-                    solidHitbox.scanned = true;
-                    scanned.add(solidHitbox);
+                    solidHitbox.scanStamp = stamp;
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         return null;
     }
     
@@ -1767,24 +2720,55 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> List<O> intersectingSolidObjects(Hitbox hitbox, Class<O> cls) {
         List<O> intersecting = new ArrayList<>();
-        List<Hitbox> scanned = new ArrayList<>();
+        intersectingSolidObjects(hitbox, cls, intersecting, null);
+        return intersecting;
+    }
+    
+    /**
+     * Adds to the specified Collection all of this SpaceState's SpaceObjects of
+     * the specified class whose solid Hitboxes overlap the specified Hitbox.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param hitbox The Hitbox to check for overlapping
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param results The Collection to add the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void intersectingSolidObjects(Hitbox hitbox, Class<O> cls,
+            Collection<? super O> results) {
+        intersectingSolidObjects(hitbox, cls, results, null);
+    }
+    
+    /**
+     * Hands to the specified SpaceObjectVisitor, one at a time, all of this
+     * SpaceState's SpaceObjects of the specified class whose solid Hitboxes
+     * overlap the specified Hitbox, until the SpaceObjectVisitor returns false.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param hitbox The Hitbox to check for overlapping
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param visitor The SpaceObjectVisitor to hand the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void intersectingSolidObjects(Hitbox hitbox, Class<O> cls,
+            SpaceObjectVisitor<? super O> visitor) {
+        intersectingSolidObjects(hitbox, cls, null, visitor);
+    }
+    
+    private <O extends SpaceObject> void intersectingSolidObjects(Hitbox hitbox, Class<O> cls,
+            Collection<? super O> results, SpaceObjectVisitor<? super O> visitor) {
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(hitbox));
         while (iterator.hasNext()) {
-            for (Hitbox solidHitbox : iterator.next().hitboxes.get(HitboxRole.SOLID)) {
-                if (!solidHitbox.scanned) {
-                    solidHitbox.scanned = true;
-                    scanned.add(solidHitbox);
+            for (Hitbox solidHitbox : iterator.next().getHitboxes(HitboxRole.SOLID, index)) {
+                if (isUnscanned(solidHitbox, stamp)) {
+                    solidHitbox.scanStamp = stamp;
                     if (cls.isAssignableFrom(solidHitbox.getObject().getClass())
                             && Hitbox.overlap(hitbox, solidHitbox)) {
-                        intersecting.add(cls.cast(solidHitbox.getObject()));
+                        if (!found(cls.cast(solidHitbox.getObject()), results, visitor)) {
+                            return;
+                        }
                     }
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
-        return intersecting;
     }
     
     /**
@@ -1817,15 +2801,15 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> O nearestIntersectingSolidObject(
             long pointX, long pointY, Hitbox hitbox, Class<O> cls) {
+        ClassIndex index = classIndices.get(cls);
         O nearest = null;
         long nearestDistance = -1;
-        List<Hitbox> scanned = new ArrayList<>();
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(hitbox));
         while (iterator.hasNext()) {
-            for (Hitbox solidHitbox : iterator.next().hitboxes.get(HitboxRole.SOLID)) {
-                if (!solidHitbox.scanned) {
-                    solidHitbox.scanned = true;
-                    scanned.add(solidHitbox);
+            for (Hitbox solidHitbox : iterator.next().getHitboxes(HitboxRole.SOLID, index)) {
+                if (isUnscanned(solidHitbox, stamp)) {
+                    solidHitbox.scanStamp = stamp;
                     SpaceObject object = solidHitbox.getObject();
                     if (cls.isAssignableFrom(object.getClass())
                             && Hitbox.overlap(hitbox, solidHitbox)) {
@@ -1838,9 +2822,6 @@ public abstract class SpaceState<T extends CellGame,
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
         return nearest;
     }
     
@@ -1856,27 +2837,62 @@ public abstract class SpaceState<T extends CellGame,
      */
     public final <O extends SpaceObject> List<O> solidBoundingBoxesMeet(Hitbox hitbox, Class<O> cls) {
         List<O> meeting = new ArrayList<>();
-        List<Hitbox> scanned = new ArrayList<>();
+        solidBoundingBoxesMeet(hitbox, cls, meeting, null);
+        return meeting;
+    }
+    
+    /**
+     * Adds to the specified Collection all of this SpaceState's solid
+     * SpaceObjects of the specified class whose solid Hitboxes' rectangular
+     * bounding boxes touch or intersect the specified Hitbox's rectangular
+     * bounding box.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param hitbox The Hitbox whose bounding box to check
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param results The Collection to add the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void solidBoundingBoxesMeet(Hitbox hitbox, Class<O> cls,
+            Collection<? super O> results) {
+        solidBoundingBoxesMeet(hitbox, cls, results, null);
+    }
+    
+    /**
+     * Hands to the specified SpaceObjectVisitor, one at a time, all of this
+     * SpaceState's solid SpaceObjects of the specified class whose solid
+     * Hitboxes' rectangular bounding boxes touch or intersect the specified
+     * Hitbox's rectangular bounding box, until the SpaceObjectVisitor returns
+     * false.
+     * @param <O> The subclass of SpaceObject to search for
+     * @param hitbox The Hitbox whose bounding box to check
+     * @param cls The Class object that represents the SpaceObject subclass
+     * @param visitor The SpaceObjectVisitor to hand the SpaceObjects to
+     */
+    public final <O extends SpaceObject> void solidBoundingBoxesMeet(Hitbox hitbox, Class<O> cls,
+            SpaceObjectVisitor<? super O> visitor) {
+        solidBoundingBoxesMeet(hitbox, cls, null, visitor);
+    }
+    
+    private <O extends SpaceObject> void solidBoundingBoxesMeet(Hitbox hitbox, Class<O> cls,
+            Collection<? super O> results, SpaceObjectVisitor<? super O> visitor) {
+        ClassIndex index = classIndices.get(cls);
+        long stamp = newQueryStamp();
         Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(hitbox));
         while (iterator.hasNext()) {
-            for (Hitbox solidHitbox : iterator.next().hitboxes.get(HitboxRole.SOLID)) {
-                if (!solidHitbox.scanned) {
-                    solidHitbox.scanned = true;
-                    scanned.add(solidHitbox);
+            for (Hitbox solidHitbox : iterator.next().getHitboxes(HitboxRole.SOLID, index)) {
+                if (isUnscanned(solidHitbox, stamp)) {
+                    solidHitbox.scanStamp = stamp;
                     if (cls.isAssignableFrom(solidHitbox.getObject().getClass())
                             && hitbox.getLeftEdge() <= solidHitbox.getRightEdge()
                             && hitbox.getRightEdge() >= solidHitbox.getLeftEdge()
                             && hitbox.getTopEdge() <= solidHitbox.getBottomEdge()
                             && hitbox.getBottomEdge() >= solidHitbox.getTopEdge()) {
-                        meeting.add(cls.cast(solidHitbox.getObject()));
+                        if (!found(cls.cast(solidHitbox.getObject()), results, visitor)) {
+                            return;
+                        }
                     }
                 }
             }
         }
-        for (Hitbox scannedHitbox : scanned) {
-            scannedHitbox.scanned = false;
-        }
-        return meeting;
     }
     
     /**
@@ -1915,6 +2931,7 @@ public abstract class SpaceState<T extends CellGame,
             if (oldViewport != null) {
                 oldViewport.setGameState(null);
                 viewports.remove(id);
+                visibleSets.remove(oldViewport);
                 return true;
             }
             return false;
@@ -1924,6 +2941,7 @@ public abstract class SpaceState<T extends CellGame,
             Viewport<T,U> oldViewport = viewports.get(id);
             if (oldViewport != null) {
                 oldViewport.setGameState(null);
+                visibleSets.remove(oldViewport);
             }
             viewports.put(id, viewport);
             return true;
@@ -1940,6 +2958,7 @@ public abstract class SpaceState<T extends CellGame,
             viewport.setGameState(null);
         }
         viewports.clear();
+        visibleSets.clear();
     }
     
     /**
@@ -2086,31 +3105,33 @@ public abstract class SpaceState<T extends CellGame,
          * If multiple events happen after you travel the same distance, lower types cancel higher types
          * if the collisions are successful.
          */
-        private final int type;
-        private final SpaceObject object;
-        private final Direction direction;
-        private final long metric;
-        private final long diffX, diffY;
+        private int type;
+        private SpaceObject object;
+        private Direction direction;
+        private long metric;
+        private long diffX, diffY;
+        private int index; //Breaks ties between otherwise simultaneous events of the same type
         
-        private MoveEvent(int type, SpaceObject object,
-                Direction direction, long metric, long diffX, long diffY) {
+        private void set(int type, SpaceObject object,
+                Direction direction, long metric, long diffX, long diffY, int index) {
             this.type = type;
             this.object = object;
             this.direction = direction;
             this.metric = metric;
             this.diffX = diffX;
             this.diffY = diffY;
+            this.index = index;
         }
         
     }
     
     private static class MoveData {
         
-        private final MobileObject object;
-        private final boolean moveX, moveY;
-        private final long diffX, diffY;
+        private MobileObject object;
+        private boolean moveX, moveY;
+        private long diffX, diffY;
         
-        private MoveData(MobileObject object, boolean moveX, boolean moveY, long diffX, long diffY) {
+        private void set(MobileObject object, boolean moveX, boolean moveY, long diffX, long diffY) {
             this.object = object;
             this.moveX = moveX;
             this.moveY = moveY;
@@ -2120,10 +3141,192 @@ public abstract class SpaceState<T extends CellGame,
         
     }
     
-    final CellVector move(MobileObject object, long changeX, long changeY) {
+    /*
+     * Scratch space for one level of move() recursion. Frames are reused across
+     * calls to move() so that moving objects allocates nothing in the common
+     * case, and each level of recursion gets its own frame so that moves
+     * triggered by other moves don't trample each other's data.
+     */
+    private static class MoveFrame {
+        
+        //Record encounters that object needs to have as it moves, kept sorted by moveComparator
+        private MoveEvent[] moveEvents = new MoveEvent[8];
+        private int numMoveEvents = 0;
+        //Record objects that need to move along with this object
+        private final List<MoveData> moveData = new ArrayList<>();
+        private int numMoveData = 0;
+        private final List<SpaceObject> pressingObjects = new ArrayList<>();
+        private final List<Direction> pressingDirections = new ArrayList<>();
+        private final CellVector nextDisplacement = new CellVector();
+        
+        private void addMoveEvent(int type, SpaceObject object,
+                Direction direction, long metric, long diffX, long diffY) {
+            if (numMoveEvents == moveEvents.length) {
+                moveEvents = Arrays.copyOf(moveEvents, 2*moveEvents.length);
+            }
+            MoveEvent event = moveEvents[numMoveEvents];
+            if (event == null) {
+                event = new MoveEvent();
+            }
+            event.set(type, object, direction, metric, diffX, diffY, numMoveEvents);
+            int i = numMoveEvents;
+            while (i > 0 && moveComparator.compare(moveEvents[i - 1], event) > 0) {
+                moveEvents[i] = moveEvents[i - 1];
+                i--;
+            }
+            moveEvents[i] = event;
+            numMoveEvents++;
+        }
+        
+        private void addMoveData(MobileObject object, boolean moveX, boolean moveY, long diffX, long diffY) {
+            if (numMoveData == moveData.size()) {
+                moveData.add(new MoveData());
+            }
+            moveData.get(numMoveData).set(object, moveX, moveY, diffX, diffY);
+            numMoveData++;
+        }
+        
+        private void setPressing(SpaceObject object, Direction direction) {
+            int i = pressingObjects.indexOf(object);
+            if (i >= 0) {
+                pressingDirections.set(i, direction);
+            } else {
+                pressingObjects.add(object);
+                pressingDirections.add(direction);
+            }
+        }
+        
+        /*
+         * Takes back the marks that a move left on the objects it encountered,
+         * for when parallel movement is aborted in the middle of it
+         */
+        private void abandon() {
+            for (int i = 0; i < numMoveEvents; i++) {
+                moveEvents[i].object.solidEvent = false;
+                moveEvents[i].object.moved = false;
+            }
+            for (int i = 0; i < numMoveData; i++) {
+                MobileObject dataObject = moveData.get(i).object;
+                dataObject.effLeader = dataObject.getLeader();
+            }
+        }
+        
+        private void clear() {
+            for (int i = 0; i < numMoveEvents; i++) {
+                moveEvents[i].object = null;
+            }
+            numMoveEvents = 0;
+            for (int i = 0; i < numMoveData; i++) {
+                moveData.get(i).object = null;
+            }
+            numMoveData = 0;
+            pressingObjects.clear();
+            pressingDirections.clear();
+        }
+        
+    }
+    
+    private static final int SLIDE_LEFT = 1;
+    private static final int SLIDE_RIGHT = 2;
+    private static final int SLIDE_UP = 4;
+    private static final int SLIDE_DOWN = 8;
+    
+    private static int getSlideFlag(Direction direction) {
+        switch (direction) {
+            case LEFT:
+                return SLIDE_LEFT;
+            case RIGHT:
+                return SLIDE_RIGHT;
+            case UP:
+                return SLIDE_UP;
+            default:
+                return SLIDE_DOWN;
+        }
+    }
+    
+    /*
+     * The MoveFrames for one chain of nested calls to move(). Each group of
+     * MobileObjects that moves in parallel with others gets its own MoveStack,
+     * so that groups moving at the same time never share scratch space.
+     */
+    private class MoveStack {
+        
+        //The group that moves with this MoveStack, or null for the SpaceState's own
+        private final MovementGroup group;
+        private final List<MoveFrame> frames = new ArrayList<>();
+        private int depth = 0;
+        
+        private MoveStack(MovementGroup group) {
+            this.group = group;
+        }
+        
+        private MoveFrame push() {
+            MoveFrame frame;
+            if (depth == frames.size()) {
+                frame = new MoveFrame();
+                frames.add(frame);
+            } else {
+                frame = frames.get(depth);
+            }
+            depth++;
+            return frame;
+        }
+        
+        private void pop() {
+            depth--;
+            frames.get(depth).clear();
+        }
+        
+    }
+    
+    /*
+     * Returns whether cell is the first cell that a ReadCellRangeIterator over
+     * scanRange visits among the cells that hitbox occupies. Scans in move()
+     * examine each Hitbox only in this cell, which visits the Hitboxes in the
+     * same order as marking them with query stamps would, but without writing
+     * to them, so groups of MobileObjects can move in parallel.
+     */
+    private boolean isFirstCellOf(Cell cell, Hitbox hitbox, int[] scanRange) {
+        Profiler.count(Profiler.HITBOXES_SCANNED);
+        return cell.x == Math.max(hitbox.cellRange[0], scanRange[0])
+                && cell.y == Math.max(hitbox.cellRange[1], scanRange[1]);
+    }
+    
+    //Calls object.collide(), counting the time it takes as the Profiler's COLLISIONS time
+    private static CollisionResponse collide(MobileObject object, SpaceObject other, Direction direction) {
+        long startTime = Profiler.start();
+        CollisionResponse response = object.collide(other, direction);
+        Profiler.stop(Profiler.COLLISIONS, startTime);
+        return response;
+    }
+    
+    /*
+     * Moves object by (changeX, changeY), and, if displacement is not null,
+     * sets displacement to how far object was displaced in total.
+     */
+    final void move(MobileObject object, long changeX, long changeY, CellVector displacement) {
+        if (movingInParallel) {
+            abortParallelMovement();
+        }
+        move(moveStack, object, changeX, changeY, displacement);
+    }
+    
+    private void move(MoveStack stack, MobileObject object, long changeX, long changeY, CellVector displacement) {
+        MoveFrame frame = stack.push();
+        try {
+            move(stack, frame, object, changeX, changeY, displacement);
+        } catch (ParallelMovementAbort e) {
+            frame.abandon();
+            throw e;
+        } finally {
+            stack.pop();
+        }
+    }
+    
+    private void move(MoveStack stack, MoveFrame frame, MobileObject object, long changeX, long changeY, CellVector displacement) {
         if (changeX == 0 && changeY == 0) { //Object isn't changing position
-            Double pressingAngle = object.getAbsPressingAngle();
-            if (object.hasCollision() && object.getCollisionHitbox() != null && pressingAngle != null) {
+            if (object.hasCollision() && object.getCollisionHitbox() != null && object.getRelPressingAngle() != null) {
+                double pressingAngle = object.getAbsPressingAngleValue();
                 //Object can collide and is pressing; check for solid objects that it's pressing against
                 Hitbox collisionHitbox = object.getCollisionHitbox();
                 long leftEdge = collisionHitbox.getLeftEdge();
@@ -2134,70 +3337,52 @@ public abstract class SpaceState<T extends CellGame,
                 boolean pressingRight = pressingAngle < 90 || pressingAngle > 270;
                 boolean pressingUp = pressingAngle > 0 && pressingAngle < 180;
                 boolean pressingDown = pressingAngle > 180;
-                List<Hitbox> scanned = new ArrayList<>();
-                Map<SpaceObject,Direction> pressingAgainst = null;
-                Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(leftEdge, topEdge, rightEdge, bottomEdge));
+                int[] scanRange = getCellRangeExclusive(leftEdge, topEdge, rightEdge, bottomEdge);
+                Iterator<Cell> iterator = new ReadCellRangeIterator(scanRange, stack.group);
                 while (iterator.hasNext()) {
                     Cell cell = iterator.next();
                     for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
-                        if (!hitbox.scanned) {
-                            hitbox.scanned = true;
-                            scanned.add(hitbox);
+                        if (isFirstCellOf(cell, hitbox, scanRange)) {
                             if (pressingLeft && hitbox.surfaceIsSolid(Direction.RIGHT)
                                     && hitbox.getRightEdge() == leftEdge
                                     && hitbox.getBottomEdge() > topEdge && hitbox.getTopEdge() < bottomEdge) {
                                 if (!(hitbox.getObject() instanceof MobileObject && areRelated(object, (MobileObject)hitbox.getObject()))) {
-                                    if (pressingAgainst == null) {
-                                        pressingAgainst = new HashMap<>();
-                                    }
-                                    pressingAgainst.put(hitbox.getObject(), Direction.LEFT);
+                                    frame.setPressing(hitbox.getObject(), Direction.LEFT);
                                 }
                             } else if (pressingRight && hitbox.surfaceIsSolid(Direction.LEFT)
                                     && hitbox.getLeftEdge() == rightEdge
                                     && hitbox.getBottomEdge() > topEdge && hitbox.getTopEdge() < bottomEdge) {
                                 if (!(hitbox.getObject() instanceof MobileObject && areRelated(object, (MobileObject)hitbox.getObject()))) {
-                                    if (pressingAgainst == null) {
-                                        pressingAgainst = new HashMap<>();
-                                    }
-                                    pressingAgainst.put(hitbox.getObject(), Direction.RIGHT);
+                                    frame.setPressing(hitbox.getObject(), Direction.RIGHT);
                                 }
                             } else if (pressingUp && hitbox.surfaceIsSolid(Direction.DOWN)
                                     && hitbox.getBottomEdge() == topEdge
                                     && hitbox.getRightEdge() > leftEdge && hitbox.getLeftEdge() < rightEdge) {
                                 if (!(hitbox.getObject() instanceof MobileObject && areRelated(object, (MobileObject)hitbox.getObject()))) {
-                                    if (pressingAgainst == null) {
-                                        pressingAgainst = new HashMap<>();
-                                    }
-                                    pressingAgainst.put(hitbox.getObject(), Direction.UP);
+                                    frame.setPressing(hitbox.getObject(), Direction.UP);
                                 }
                             } else if (pressingDown && hitbox.surfaceIsSolid(Direction.UP)
                                     && hitbox.getTopEdge() == bottomEdge
                                     && hitbox.getRightEdge() > leftEdge && hitbox.getLeftEdge() < rightEdge) {
                                 if (!(hitbox.getObject() instanceof MobileObject && areRelated(object, (MobileObject)hitbox.getObject()))) {
-                                    if (pressingAgainst == null) {
-                                        pressingAgainst = new HashMap<>();
-                                    }
-                                    pressingAgainst.put(hitbox.getObject(), Direction.DOWN);
+                                    frame.setPressing(hitbox.getObject(), Direction.DOWN);
                                 }
                             }
                         }
                     }
                 }
-                for (Hitbox scannedHitbox : scanned) {
-                    scannedHitbox.scanned = false;
-                }
-                if (pressingAgainst != null) {
+                if (!frame.pressingObjects.isEmpty()) {
                     //Object is pressing against things; make it collide with them
-                    EnumSet<Direction> slideDirections = EnumSet.noneOf(Direction.class);
+                    int slideDirections = 0;
                     boolean stop = false;
-                    for (Map.Entry<SpaceObject,Direction> entry : pressingAgainst.entrySet()) {
-                        SpaceObject pressingObject = entry.getKey();
-                        Direction direction = entry.getValue();
-                        CollisionResponse response = object.collide(pressingObject, direction);
+                    for (int i = 0; i < frame.pressingObjects.size(); i++) {
+                        SpaceObject pressingObject = frame.pressingObjects.get(i);
+                        Direction direction = frame.pressingDirections.get(i);
+                        CollisionResponse response = collide(object, pressingObject, direction);
                         if (response != CollisionResponse.NONE) {
                             switch (response) {
                                 case SLIDE:
-                                    slideDirections.add(direction);
+                                    slideDirections |= getSlideFlag(direction);
                                     break;
                                 case STOP:
                                     stop = true;
@@ -2211,29 +3396,36 @@ public abstract class SpaceState<T extends CellGame,
                         object.setVelocity(0, 0);
                     } else {
                         if (object.getVelocityX() < 0) {
-                            if (slideDirections.contains(Direction.LEFT)) {
+                            if ((slideDirections & SLIDE_LEFT) != 0) {
                                 object.setVelocityX(0);
                             }
                         } else if (object.getVelocityX() > 0) {
-                            if (slideDirections.contains(Direction.RIGHT)) {
+                            if ((slideDirections & SLIDE_RIGHT) != 0) {
                                 object.setVelocityX(0);
                             }
                         }
                         if (object.getVelocityY() < 0) {
-                            if (slideDirections.contains(Direction.UP)) {
+                            if ((slideDirections & SLIDE_UP) != 0) {
                                 object.setVelocityY(0);
                             }
                         } else if (object.getVelocityY() > 0) {
-                            if (slideDirections.contains(Direction.DOWN)) {
+                            if ((slideDirections & SLIDE_DOWN) != 0) {
                                 object.setVelocityY(0);
                             }
                         }
                     }
                 }
             }
-            return new CellVector(); //Object was not displaced
+            if (displacement != null) {
+                displacement.clear(); //Object was not displaced
+            }
+            return;
         }
-        CellVector nextMovement = null; //Object might need to move again due to sliding or something
+        Profiler.count(Profiler.OBJECTS_MOVED);
+        //Object might need to move again due to sliding or something
+        boolean moveAgain = false;
+        long nextChangeX = 0;
+        long nextChangeY = 0;
         long left, right, top, bottom;
         if (changeX > 0) {
             left = 0;
@@ -2249,7 +3441,6 @@ public abstract class SpaceState<T extends CellGame,
             top = changeY;
             bottom = 0;
         }
-        SortedSet<MoveEvent> moveEvents = new TreeSet<>(moveComparator); //Record encounters that object needs to have as it moves
         if (object.hasCollision() && object.getCollisionHitbox() != null) {
             //Object can collide; check for solid objects in the path of its movement
             Hitbox collisionHitbox = object.getCollisionHitbox();
@@ -2261,23 +3452,21 @@ public abstract class SpaceState<T extends CellGame,
             boolean pressingRight = false;
             boolean pressingUp = false;
             boolean pressingDown = false;
-            Double pressingAngle = object.getAbsPressingAngle();
-            if (pressingAngle != null) {
+            if (object.getRelPressingAngle() != null) {
+                double pressingAngle = object.getAbsPressingAngleValue();
                 pressingLeft = pressingAngle > 90 && pressingAngle < 270;
                 pressingRight = pressingAngle < 90 || pressingAngle > 270;
                 pressingUp = pressingAngle > 0 && pressingAngle < 180;
                 pressingDown = pressingAngle > 180;
             }
-            List<Hitbox> scanned = new ArrayList<>();
-            Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(leftEdge + left, topEdge + top, rightEdge + right, bottomEdge + bottom));
+            int[] scanRange = getCellRangeExclusive(leftEdge + left, topEdge + top, rightEdge + right, bottomEdge + bottom);
+            Iterator<Cell> iterator = new ReadCellRangeIterator(scanRange, stack.group);
             if (changeX > 0) {
                 if (changeY > 0) { //Object is moving diagonally down-right
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxLeft = hitbox.getLeftEdge();
                                 long hitboxTop = hitbox.getTopEdge();
                                 long verticalDiff = Frac.div(Frac.mul(hitboxLeft - rightEdge, changeY), changeX);
@@ -2288,7 +3477,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.RIGHT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, verticalDiff));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.RIGHT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, verticalDiff);
                                     }
                                 } else if (hitbox.surfaceIsSolid(Direction.UP) && hitboxTop >= bottomEdge
                                         && hitbox.getLeftEdge() < rightEdge + horizontalDiff && hitbox.getRightEdge() > leftEdge + horizontalDiff
@@ -2296,7 +3485,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.DOWN, horizontalDiff, horizontalDiff, hitboxTop - bottomEdge));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.DOWN, horizontalDiff, horizontalDiff, hitboxTop - bottomEdge);
                                     }
                                 }
                             }
@@ -2306,9 +3495,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxLeft = hitbox.getLeftEdge();
                                 long hitboxBottom = hitbox.getBottomEdge();
                                 long verticalDiff = Frac.div(Frac.mul(hitboxLeft - rightEdge, changeY), changeX);
@@ -2319,7 +3506,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.RIGHT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, verticalDiff));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.RIGHT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, verticalDiff);
                                     }
                                 } else if (hitbox.surfaceIsSolid(Direction.DOWN) && hitboxBottom <= topEdge
                                         && hitbox.getLeftEdge() < rightEdge + horizontalDiff && hitbox.getRightEdge() > leftEdge + horizontalDiff
@@ -2327,7 +3514,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.UP, horizontalDiff, horizontalDiff, hitboxBottom - topEdge));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.UP, horizontalDiff, horizontalDiff, hitboxBottom - topEdge);
                                     }
                                 }
                             }
@@ -2337,9 +3524,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxLeft = hitbox.getLeftEdge();
                                 if (hitbox.surfaceIsSolid(Direction.LEFT) && hitboxLeft >= rightEdge
                                         && hitbox.getTopEdge() < bottomEdge && hitbox.getBottomEdge() > topEdge
@@ -2347,7 +3532,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.RIGHT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, 0));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.RIGHT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, 0);
                                     }
                                 } else if (pressingUp && hitbox.surfaceIsSolid(Direction.DOWN)
                                         && hitbox.getBottomEdge() == topEdge
@@ -2356,7 +3541,7 @@ public abstract class SpaceState<T extends CellGame,
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
                                         long distance = Math.max(hitboxLeft - rightEdge, -1);
-                                        moveEvents.add(new MoveEvent(1, hitboxObject, Direction.UP, distance, distance, 0));
+                                        frame.addMoveEvent(1, hitboxObject, Direction.UP, distance, distance, 0);
                                     }
                                 } else if (pressingDown && hitbox.surfaceIsSolid(Direction.UP)
                                         && hitbox.getTopEdge() == bottomEdge
@@ -2365,7 +3550,7 @@ public abstract class SpaceState<T extends CellGame,
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
                                         long distance = Math.max(hitboxLeft - rightEdge, -1);
-                                        moveEvents.add(new MoveEvent(1, hitboxObject, Direction.DOWN, distance, distance, 0));
+                                        frame.addMoveEvent(1, hitboxObject, Direction.DOWN, distance, distance, 0);
                                     }
                                 }
                             }
@@ -2377,9 +3562,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxRight = hitbox.getRightEdge();
                                 long hitboxTop = hitbox.getTopEdge();
                                 long verticalDiff = Frac.div(Frac.mul(hitboxRight - leftEdge, changeY), changeX);
@@ -2390,7 +3573,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.LEFT, leftEdge - hitboxRight, hitboxRight - leftEdge, verticalDiff));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.LEFT, leftEdge - hitboxRight, hitboxRight - leftEdge, verticalDiff);
                                     }
                                 } else if (hitbox.surfaceIsSolid(Direction.UP) && hitboxTop >= bottomEdge
                                         && hitbox.getLeftEdge() < rightEdge + horizontalDiff && hitbox.getRightEdge() > leftEdge + horizontalDiff
@@ -2398,7 +3581,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.DOWN, -horizontalDiff, horizontalDiff, hitboxTop - bottomEdge));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.DOWN, -horizontalDiff, horizontalDiff, hitboxTop - bottomEdge);
                                     }
                                 }
                             }
@@ -2408,9 +3591,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxRight = hitbox.getRightEdge();
                                 long hitboxBottom = hitbox.getBottomEdge();
                                 long verticalDiff = Frac.div(Frac.mul(hitboxRight - leftEdge, changeY), changeX);
@@ -2421,7 +3602,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.LEFT, leftEdge - hitboxRight, hitboxRight - leftEdge, verticalDiff));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.LEFT, leftEdge - hitboxRight, hitboxRight - leftEdge, verticalDiff);
                                     }
                                 } else if (hitbox.surfaceIsSolid(Direction.DOWN) && hitboxBottom <= topEdge
                                         && hitbox.getLeftEdge() < rightEdge + horizontalDiff && hitbox.getRightEdge() > leftEdge + horizontalDiff
@@ -2429,7 +3610,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.UP, -horizontalDiff, horizontalDiff, hitboxBottom - topEdge));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.UP, -horizontalDiff, horizontalDiff, hitboxBottom - topEdge);
                                     }
                                 }
                             }
@@ -2439,9 +3620,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxRight = hitbox.getRightEdge();
                                 if (hitbox.surfaceIsSolid(Direction.RIGHT) && hitboxRight <= leftEdge
                                         && hitbox.getTopEdge() < bottomEdge && hitbox.getBottomEdge() > topEdge
@@ -2449,7 +3628,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.LEFT, leftEdge - hitboxRight, hitboxRight - leftEdge, 0));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.LEFT, leftEdge - hitboxRight, hitboxRight - leftEdge, 0);
                                     }
                                 } else if (pressingUp && hitbox.surfaceIsSolid(Direction.DOWN)
                                         && hitbox.getBottomEdge() == topEdge
@@ -2458,7 +3637,7 @@ public abstract class SpaceState<T extends CellGame,
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
                                         long distance = Math.max(leftEdge - hitboxRight, -1);
-                                        moveEvents.add(new MoveEvent(1, hitboxObject, Direction.UP, distance, -distance, 0));
+                                        frame.addMoveEvent(1, hitboxObject, Direction.UP, distance, -distance, 0);
                                     }
                                 } else if (pressingDown && hitbox.surfaceIsSolid(Direction.UP)
                                         && hitbox.getTopEdge() == bottomEdge
@@ -2467,7 +3646,7 @@ public abstract class SpaceState<T extends CellGame,
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
                                         long distance = Math.max(leftEdge - hitboxRight, -1);
-                                        moveEvents.add(new MoveEvent(1, hitboxObject, Direction.DOWN, distance, -distance, 0));
+                                        frame.addMoveEvent(1, hitboxObject, Direction.DOWN, distance, -distance, 0);
                                     }
                                 }
                             }
@@ -2479,9 +3658,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxTop = hitbox.getTopEdge();
                                 if (hitbox.surfaceIsSolid(Direction.UP) && hitboxTop >= bottomEdge
                                         && hitbox.getLeftEdge() < rightEdge && hitbox.getRightEdge() > leftEdge
@@ -2489,7 +3666,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.DOWN, hitboxTop - bottomEdge, 0, hitboxTop - bottomEdge));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.DOWN, hitboxTop - bottomEdge, 0, hitboxTop - bottomEdge);
                                     }
                                 } else if (pressingLeft && hitbox.surfaceIsSolid(Direction.RIGHT)
                                         && hitbox.getRightEdge() == leftEdge
@@ -2498,7 +3675,7 @@ public abstract class SpaceState<T extends CellGame,
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
                                         long distance = Math.max(hitboxTop - bottomEdge, -1);
-                                        moveEvents.add(new MoveEvent(1, hitboxObject, Direction.LEFT, distance, 0, distance));
+                                        frame.addMoveEvent(1, hitboxObject, Direction.LEFT, distance, 0, distance);
                                     }
                                 } else if (pressingRight && hitbox.surfaceIsSolid(Direction.LEFT)
                                         && hitbox.getLeftEdge() == rightEdge
@@ -2507,7 +3684,7 @@ public abstract class SpaceState<T extends CellGame,
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
                                         long distance = Math.max(hitboxTop - bottomEdge, -1);
-                                        moveEvents.add(new MoveEvent(1, hitboxObject, Direction.RIGHT, distance, 0, distance));
+                                        frame.addMoveEvent(1, hitboxObject, Direction.RIGHT, distance, 0, distance);
                                     }
                                 }
                             }
@@ -2517,9 +3694,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxBottom = hitbox.getBottomEdge();
                                 if (hitbox.surfaceIsSolid(Direction.DOWN) && hitboxBottom <= topEdge
                                         && hitbox.getLeftEdge() < rightEdge && hitbox.getRightEdge() > leftEdge
@@ -2527,7 +3702,7 @@ public abstract class SpaceState<T extends CellGame,
                                     SpaceObject hitboxObject = hitbox.getObject();
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
-                                        moveEvents.add(new MoveEvent(0, hitboxObject, Direction.UP, topEdge - hitboxBottom, 0, hitboxBottom - topEdge));
+                                        frame.addMoveEvent(0, hitboxObject, Direction.UP, topEdge - hitboxBottom, 0, hitboxBottom - topEdge);
                                     }
                                 } else if (pressingLeft && hitbox.surfaceIsSolid(Direction.RIGHT)
                                         && hitbox.getRightEdge() == leftEdge
@@ -2536,7 +3711,7 @@ public abstract class SpaceState<T extends CellGame,
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
                                         long distance = Math.max(topEdge - hitboxBottom, -1);
-                                        moveEvents.add(new MoveEvent(1, hitboxObject, Direction.LEFT, distance, 0, -distance));
+                                        frame.addMoveEvent(1, hitboxObject, Direction.LEFT, distance, 0, -distance);
                                     }
                                 } else if (pressingRight && hitbox.surfaceIsSolid(Direction.LEFT)
                                         && hitbox.getLeftEdge() == rightEdge
@@ -2545,7 +3720,7 @@ public abstract class SpaceState<T extends CellGame,
                                     if (!(hitboxObject instanceof MobileObject && areRelated(object, (MobileObject)hitboxObject))) {
                                         hitboxObject.solidEvent = true;
                                         long distance = Math.max(topEdge - hitboxBottom, -1);
-                                        moveEvents.add(new MoveEvent(1, hitboxObject, Direction.RIGHT, distance, 0, -distance));
+                                        frame.addMoveEvent(1, hitboxObject, Direction.RIGHT, distance, 0, -distance);
                                     }
                                 }
                             }
@@ -2553,9 +3728,6 @@ public abstract class SpaceState<T extends CellGame,
                     }
                 }
             }
-            for (Hitbox scannedHitbox : scanned) {
-                scannedHitbox.scanned = false;
-            }
         }
         if (object.isSolid()) {
             //Object has solid surfaces; check for colliding objects to move along with it
@@ -2568,16 +3740,14 @@ public abstract class SpaceState<T extends CellGame,
             long rightEdge = solidHitbox.getRightEdge();
             long topEdge = solidHitbox.getTopEdge();
             long bottomEdge = solidHitbox.getBottomEdge();
-            List<Hitbox> scanned = new ArrayList<>();
-            Iterator<Cell> iterator = new ReadCellRangeIterator(getCellRangeExclusive(leftEdge + left, topEdge + top, rightEdge + right, bottomEdge + bottom));
+            int[] scanRange = getCellRangeExclusive(leftEdge + left, topEdge + top, rightEdge + right, bottomEdge + bottom);
+            Iterator<Cell> iterator = new ReadCellRangeIterator(scanRange, stack.group);
             if (changeX > 0) {
                 if (changeY > 0) { //Object is moving diagonally down-right
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.COLLISION)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxLeft = hitbox.getLeftEdge();
                                 long hitboxTop = hitbox.getTopEdge();
                                 long verticalDiff = Frac.div(Frac.mul(hitboxLeft - rightEdge, changeY), changeX);
@@ -2587,25 +3757,25 @@ public abstract class SpaceState<T extends CellGame,
                                         && hitbox.getTopEdge() <= bottomEdge + verticalDiff && hitbox.getBottomEdge() > topEdge + verticalDiff) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.LEFT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, verticalDiff));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.LEFT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, verticalDiff);
                                     }
                                 } else if (solidBottom && hitboxTop >= bottomEdge && hitboxTop < bottomEdge + changeY
                                         && hitbox.getLeftEdge() < rightEdge + horizontalDiff && hitbox.getRightEdge() > leftEdge + horizontalDiff) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.UP, horizontalDiff, horizontalDiff, hitboxTop - bottomEdge));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.UP, horizontalDiff, horizontalDiff, hitboxTop - bottomEdge);
                                     }
                                 } else if (solidLeft && hitboxObject.isPressingIn(Direction.RIGHT) && hitbox.getRightEdge() == leftEdge
                                         && hitboxTop < bottomEdge && hitbox.getBottomEdge() > topEdge && hitboxObject.getVelocityX() + hitboxObject.getStepX() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.RIGHT, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.RIGHT, 0, 0, 0);
                                     }
                                 } else if (solidTop && hitboxObject.isPressingIn(Direction.DOWN) && hitbox.getBottomEdge() == topEdge
                                         && hitboxLeft < rightEdge && hitbox.getRightEdge() > leftEdge && hitboxObject.getVelocityY() + hitboxObject.getStepY() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.DOWN, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.DOWN, 0, 0, 0);
                                     }
                                 }
                             }
@@ -2615,9 +3785,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.COLLISION)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxLeft = hitbox.getLeftEdge();
                                 long hitboxBottom = hitbox.getBottomEdge();
                                 long verticalDiff = Frac.div(Frac.mul(hitboxLeft - rightEdge, changeY), changeX);
@@ -2627,25 +3795,25 @@ public abstract class SpaceState<T extends CellGame,
                                         && hitbox.getTopEdge() < bottomEdge + verticalDiff && hitbox.getBottomEdge() >= topEdge + verticalDiff) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.LEFT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, verticalDiff));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.LEFT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, verticalDiff);
                                     }
                                 } else if (solidTop && hitboxBottom <= topEdge && hitboxBottom > topEdge + changeY
                                         && hitbox.getLeftEdge() < rightEdge + horizontalDiff && hitbox.getRightEdge() > leftEdge + horizontalDiff) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.DOWN, horizontalDiff, horizontalDiff, hitboxBottom - topEdge));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.DOWN, horizontalDiff, horizontalDiff, hitboxBottom - topEdge);
                                     }
                                 } else if (solidLeft && hitboxObject.isPressingIn(Direction.RIGHT) && hitbox.getRightEdge() == leftEdge
                                         && hitbox.getTopEdge() < bottomEdge && hitboxBottom > topEdge && hitboxObject.getVelocityX() + hitboxObject.getStepX() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.RIGHT, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.RIGHT, 0, 0, 0);
                                     }
                                 } else if (solidBottom && hitboxObject.isPressingIn(Direction.UP) && hitbox.getTopEdge() == bottomEdge
                                         && hitboxLeft < rightEdge && hitbox.getRightEdge() > leftEdge && hitboxObject.getVelocityY() + hitboxObject.getStepY() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.UP, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.UP, 0, 0, 0);
                                     }
                                 }
                             }
@@ -2655,36 +3823,34 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.COLLISION)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxLeft = hitbox.getLeftEdge();
                                 MobileObject hitboxObject = (MobileObject)hitbox.getObject();
                                 if (solidRight && hitboxLeft >= rightEdge && hitboxLeft < rightEdge + changeX
                                         && hitbox.getTopEdge() < bottomEdge && hitbox.getBottomEdge() > topEdge) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.LEFT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.LEFT, hitboxLeft - rightEdge, hitboxLeft - rightEdge, 0);
                                     }
                                 } else if (solidTop && hitboxObject.isPressingIn(Direction.DOWN) && hitbox.getBottomEdge() == topEdge
                                         && hitbox.getRightEdge() > leftEdge && hitboxLeft < rightEdge + changeX && hitboxObject.getVelocityY() + hitboxObject.getStepY() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
                                         long distance = Math.max(hitboxLeft - rightEdge, -1);
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.DOWN, distance, distance, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.DOWN, distance, distance, 0);
                                     }
                                 } else if (solidBottom && hitboxObject.isPressingIn(Direction.UP) && hitbox.getTopEdge() == bottomEdge
                                         && hitbox.getRightEdge() > leftEdge && hitboxLeft < rightEdge + changeX && hitboxObject.getVelocityY() + hitboxObject.getStepY() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
                                         long distance = Math.max(hitboxLeft - rightEdge, -1);
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.UP, distance, distance, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.UP, distance, distance, 0);
                                     }
                                 } else if (solidLeft && hitboxObject.isPressingIn(Direction.RIGHT) && hitbox.getRightEdge() == leftEdge
                                         && hitbox.getTopEdge() < bottomEdge && hitbox.getBottomEdge() > topEdge && hitboxObject.getVelocityX() + hitboxObject.getStepX() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.RIGHT, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.RIGHT, 0, 0, 0);
                                     }
                                 }
                             }
@@ -2696,9 +3862,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.COLLISION)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxRight = hitbox.getRightEdge();
                                 long hitboxTop = hitbox.getTopEdge();
                                 long verticalDiff = Frac.div(Frac.mul(hitboxRight - leftEdge, changeY), changeX);
@@ -2708,25 +3872,25 @@ public abstract class SpaceState<T extends CellGame,
                                         && hitbox.getTopEdge() <= bottomEdge + verticalDiff && hitbox.getBottomEdge() > topEdge + verticalDiff) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.RIGHT, leftEdge - hitboxRight, hitboxRight - leftEdge, verticalDiff));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.RIGHT, leftEdge - hitboxRight, hitboxRight - leftEdge, verticalDiff);
                                     }
                                 } else if (solidBottom && hitboxTop >= bottomEdge && hitboxTop < bottomEdge + changeY
                                         && hitbox.getLeftEdge() < rightEdge + horizontalDiff && hitbox.getRightEdge() > leftEdge + horizontalDiff) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.UP, -horizontalDiff, horizontalDiff, hitboxTop - bottomEdge));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.UP, -horizontalDiff, horizontalDiff, hitboxTop - bottomEdge);
                                     }
                                 } else if (solidRight && hitboxObject.isPressingIn(Direction.LEFT) && hitbox.getLeftEdge() == rightEdge
                                         && hitboxTop < bottomEdge && hitbox.getBottomEdge() > topEdge && hitboxObject.getVelocityX() + hitboxObject.getStepX() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.LEFT, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.LEFT, 0, 0, 0);
                                     }
                                 } else if (solidTop && hitboxObject.isPressingIn(Direction.DOWN) && hitbox.getBottomEdge() == topEdge
                                         && hitbox.getLeftEdge() < rightEdge && hitboxRight > leftEdge && hitboxObject.getVelocityY() + hitboxObject.getStepY() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.DOWN, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.DOWN, 0, 0, 0);
                                     }
                                 }
                             }
@@ -2736,9 +3900,7 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.COLLISION)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxRight = hitbox.getRightEdge();
                                 long hitboxBottom = hitbox.getBottomEdge();
                                 long verticalDiff = Frac.div(Frac.mul(hitboxRight - leftEdge, changeY), changeX);
@@ -2748,25 +3910,25 @@ public abstract class SpaceState<T extends CellGame,
                                         && hitbox.getTopEdge() < bottomEdge + verticalDiff && hitbox.getBottomEdge() >= topEdge + verticalDiff) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.RIGHT, leftEdge - hitboxRight, hitboxRight - leftEdge, verticalDiff));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.RIGHT, leftEdge - hitboxRight, hitboxRight - leftEdge, verticalDiff);
                                     }
                                 } else if (solidTop && hitboxBottom <= topEdge && hitboxBottom > topEdge + changeY
                                         && hitbox.getLeftEdge() < rightEdge + horizontalDiff && hitbox.getRightEdge() > leftEdge + horizontalDiff) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.DOWN, -horizontalDiff, horizontalDiff, hitboxBottom - topEdge));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.DOWN, -horizontalDiff, horizontalDiff, hitboxBottom - topEdge);
                                     }
                                 } else if (solidRight && hitboxObject.isPressingIn(Direction.LEFT) && hitbox.getLeftEdge() == rightEdge
                                         && hitbox.getTopEdge() < bottomEdge && hitboxBottom > topEdge && hitboxObject.getVelocityX() + hitboxObject.getStepX() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.LEFT, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.LEFT, 0, 0, 0);
                                     }
                                 } else if (solidBottom && hitboxObject.isPressingIn(Direction.UP) && hitbox.getTopEdge() == bottomEdge
                                         && hitbox.getLeftEdge() < rightEdge && hitboxRight > leftEdge && hitboxObject.getVelocityY() + hitboxObject.getStepY() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.UP, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.UP, 0, 0, 0);
                                     }
                                 }
                             }
@@ -2776,36 +3938,34 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.COLLISION)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxRight = hitbox.getRightEdge();
                                 MobileObject hitboxObject = (MobileObject)hitbox.getObject();
                                 if (solidLeft && hitboxRight <= leftEdge && hitboxRight > leftEdge + changeX
                                         && hitbox.getTopEdge() < bottomEdge && hitbox.getBottomEdge() > topEdge) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.RIGHT, leftEdge - hitboxRight, hitboxRight - leftEdge, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.RIGHT, leftEdge - hitboxRight, hitboxRight - leftEdge, 0);
                                     }
                                 } else if (solidTop && hitboxObject.isPressingIn(Direction.DOWN) && hitbox.getBottomEdge() == topEdge
                                         && hitbox.getLeftEdge() < rightEdge && hitboxRight > leftEdge + changeX && hitboxObject.getVelocityY() + hitboxObject.getStepY() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
                                         long distance = Math.max(leftEdge - hitboxRight, -1);
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.DOWN, distance, -distance, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.DOWN, distance, -distance, 0);
                                     }
                                 } else if (solidBottom && hitboxObject.isPressingIn(Direction.UP) && hitbox.getTopEdge() == bottomEdge
                                         && hitbox.getLeftEdge() < rightEdge && hitboxRight > leftEdge + changeX && hitboxObject.getVelocityY() + hitboxObject.getStepY() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
                                         long distance = Math.max(leftEdge - hitboxRight, -1);
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.UP, distance, -distance, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.UP, distance, -distance, 0);
                                     }
                                 } else if (solidRight && hitboxObject.isPressingIn(Direction.LEFT) && hitbox.getLeftEdge() == rightEdge
                                         && hitbox.getTopEdge() < bottomEdge && hitbox.getBottomEdge() > topEdge && hitboxObject.getVelocityX() + hitboxObject.getStepX() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.LEFT, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.LEFT, 0, 0, 0);
                                     }
                                 }
                             }
@@ -2817,36 +3977,34 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.COLLISION)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxTop = hitbox.getTopEdge();
                                 MobileObject hitboxObject = (MobileObject)hitbox.getObject();
                                 if (solidBottom && hitboxTop >= bottomEdge && hitboxTop < bottomEdge + changeY
                                         && hitbox.getLeftEdge() < rightEdge && hitbox.getRightEdge() > leftEdge) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.UP, hitboxTop - bottomEdge, 0, hitboxTop - bottomEdge));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.UP, hitboxTop - bottomEdge, 0, hitboxTop - bottomEdge);
                                     }
                                 } else if (solidLeft && hitboxObject.isPressingIn(Direction.RIGHT) && hitbox.getRightEdge() == leftEdge
                                         && hitbox.getBottomEdge() > topEdge && hitboxTop < bottomEdge + changeY && hitboxObject.getVelocityX() + hitboxObject.getStepX() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
                                         long distance = Math.max(hitboxTop - bottomEdge, -1);
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.RIGHT, distance, distance, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.RIGHT, distance, distance, 0);
                                     }
                                 } else if (solidRight && hitboxObject.isPressingIn(Direction.LEFT) && hitbox.getLeftEdge() == rightEdge
                                         && hitbox.getBottomEdge() > topEdge && hitboxTop < bottomEdge + changeY && hitboxObject.getVelocityX() + hitboxObject.getStepX() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
                                         long distance = Math.max(hitboxTop - bottomEdge, -1);
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.LEFT, distance, distance, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.LEFT, distance, distance, 0);
                                     }
                                 } else if (solidTop && hitboxObject.isPressingIn(Direction.DOWN) && hitbox.getBottomEdge() == topEdge
                                         && hitbox.getLeftEdge() < rightEdge && hitbox.getRightEdge() > leftEdge && hitboxObject.getVelocityY() + hitboxObject.getStepY() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.DOWN, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.DOWN, 0, 0, 0);
                                     }
                                 }
                             }
@@ -2856,36 +4014,34 @@ public abstract class SpaceState<T extends CellGame,
                     while (iterator.hasNext()) {
                         Cell cell = iterator.next();
                         for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.COLLISION)) {
-                            if (!hitbox.scanned) {
-                                hitbox.scanned = true;
-                                scanned.add(hitbox);
+                            if (isFirstCellOf(cell, hitbox, scanRange)) {
                                 long hitboxBottom = hitbox.getBottomEdge();
                                 MobileObject hitboxObject = (MobileObject)hitbox.getObject();
                                 if (solidTop && hitboxBottom <= topEdge && hitboxBottom > topEdge + changeY
                                         && hitbox.getLeftEdge() < rightEdge && hitbox.getRightEdge() > leftEdge) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.DOWN, topEdge - hitboxBottom, 0, hitboxBottom - topEdge));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.DOWN, topEdge - hitboxBottom, 0, hitboxBottom - topEdge);
                                     }
                                 } else if (solidLeft && hitboxObject.isPressingIn(Direction.RIGHT) && hitbox.getRightEdge() == leftEdge
                                         && hitbox.getTopEdge() < bottomEdge && hitboxBottom > topEdge + changeY && hitboxObject.getVelocityX() + hitboxObject.getStepX() >= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
                                         long distance = Math.max(topEdge - hitboxBottom, -1);
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.RIGHT, distance, -distance, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.RIGHT, distance, -distance, 0);
                                     }
                                 } else if (solidRight && hitboxObject.isPressingIn(Direction.LEFT) && hitbox.getLeftEdge() == rightEdge
                                         && hitbox.getTopEdge() < bottomEdge && hitboxBottom > topEdge + changeY && hitboxObject.getVelocityX() + hitboxObject.getStepX() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
                                         long distance = Math.max(topEdge - hitboxBottom, -1);
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.LEFT, distance, -distance, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.LEFT, distance, -distance, 0);
                                     }
                                 } else if (solidBottom && hitboxObject.isPressingIn(Direction.UP) && hitbox.getTopEdge() == bottomEdge
                                         && hitbox.getLeftEdge() < rightEdge && hitbox.getRightEdge() > leftEdge && hitboxObject.getVelocityY() + hitboxObject.getStepY() <= 0) {
                                     if (!areRelated(object, hitboxObject)
                                             && (!hitboxObject.solidEvent || movementPriorityComparator.compare(object, hitboxObject) > 0)) {
-                                        moveEvents.add(new MoveEvent(2, hitboxObject, Direction.UP, 0, 0, 0));
+                                        frame.addMoveEvent(2, hitboxObject, Direction.UP, 0, 0, 0);
                                     }
                                 }
                             }
@@ -2893,28 +4049,25 @@ public abstract class SpaceState<T extends CellGame,
                     }
                 }
             }
-            for (Hitbox scannedHitbox : scanned) {
-                scannedHitbox.scanned = false;
-            }
         }
-        List<MoveData> moveData = null; //Record objects that need to move along with this object
-        if (!moveEvents.isEmpty()) { //Does object need to collide with anything?
+        if (frame.numMoveEvents > 0) { //Does object need to collide with anything?
             boolean blocked = false;
             long blockedMetric = 0;
             int blockedType = 0;
             long realChangeX = 0;
             long realChangeY = 0;
-            EnumSet<Direction> slideDirections = EnumSet.noneOf(Direction.class);
+            int slideDirections = 0;
             boolean stop = false;
             //Make object collide with things
-            for (MoveEvent event : moveEvents) {
+            for (int i = 0; i < frame.numMoveEvents; i++) {
+                MoveEvent event = frame.moveEvents[i];
                 if (blocked && (event.metric > blockedMetric || event.type > blockedType)) {
                     break;
                 }
                 Direction direction = event.direction;
                 if (event.type == 2) { //Colliding object that will collide with this object
                     MobileObject objectToMove = (MobileObject)event.object;
-                    CollisionResponse response = objectToMove.collide(object, direction);
+                    CollisionResponse response = collide(objectToMove, object, direction);
                     if (response != CollisionResponse.NONE) {
                         switch (response) {
                             case SLIDE:
@@ -2948,23 +4101,20 @@ public abstract class SpaceState<T extends CellGame,
                         objectToMove.addCollision(object, direction);
                         objectToMove.moved = true;
                         objectToMove.effLeader = object;
-                        if (moveData == null) {
-                            moveData = new ArrayList<>();
-                        }
                         boolean objectPressing = objectToMove.isPressingIn(direction);
-                        moveData.add(new MoveData(objectToMove, objectPressing || direction == Direction.LEFT || direction == Direction.RIGHT,
-                                objectPressing || direction == Direction.UP || direction == Direction.DOWN, event.diffX, event.diffY));
+                        frame.addMoveData(objectToMove, objectPressing || direction == Direction.LEFT || direction == Direction.RIGHT,
+                                objectPressing || direction == Direction.UP || direction == Direction.DOWN, event.diffX, event.diffY);
                     }
                 } else { //Solid object that this object will collide with
                     SpaceObject solidObject = event.object;
                     if (solidObject.moved) {
                         continue;
                     }
-                    CollisionResponse response = object.collide(solidObject, direction);
+                    CollisionResponse response = collide(object, solidObject, direction);
                     if (response != CollisionResponse.NONE) {
                         switch (response) {
                             case SLIDE:
-                                slideDirections.add(direction);
+                                slideDirections |= getSlideFlag(direction);
                                 break;
                             case STOP:
                                 stop = true;
@@ -2986,60 +4136,723 @@ public abstract class SpaceState<T extends CellGame,
                 if (stop) {
                     object.setVelocity(0, 0);
                 } else {
-                    nextMovement = new CellVector(changeX - realChangeX, changeY - realChangeY);
-                    if (slideDirections.contains(Direction.LEFT)) {
+                    moveAgain = true;
+                    nextChangeX = changeX - realChangeX;
+                    nextChangeY = changeY - realChangeY;
+                    if ((slideDirections & SLIDE_LEFT) != 0) {
                         if (object.getVelocityX() < 0) {
                             object.setVelocityX(0);
                         }
-                        nextMovement.setX(0);
-                    } else if (slideDirections.contains(Direction.RIGHT)) {
+                        nextChangeX = 0;
+                    } else if ((slideDirections & SLIDE_RIGHT) != 0) {
                         if (object.getVelocityX() > 0) {
                             object.setVelocityX(0);
                         }
-                        nextMovement.setX(0);
+                        nextChangeX = 0;
                     }
-                    if (slideDirections.contains(Direction.UP)) {
+                    if ((slideDirections & SLIDE_UP) != 0) {
                         if (object.getVelocityY() < 0) {
                             object.setVelocityY(0);
                         }
-                        nextMovement.setY(0);
-                    } else if (slideDirections.contains(Direction.DOWN)) {
+                        nextChangeY = 0;
+                    } else if ((slideDirections & SLIDE_DOWN) != 0) {
                         if (object.getVelocityY() > 0) {
                             object.setVelocityY(0);
                         }
-                        nextMovement.setY(0);
+                        nextChangeY = 0;
                     }
                 }
                 changeX = realChangeX;
                 changeY = realChangeY;
             }
-            for (MoveEvent event : moveEvents) {
-                event.object.solidEvent = false;
-                event.object.moved = false;
+            for (int i = 0; i < frame.numMoveEvents; i++) {
+                SpaceObject eventObject = frame.moveEvents[i].object;
+                eventObject.solidEvent = false;
+                eventObject.moved = false;
             }
         }
-        CellVector displacement = new CellVector(changeX, changeY); //How far was object displaced in total?
+        //How far was object displaced in total?
+        long displacementX = changeX;
+        long displacementY = changeY;
         object.setPosition(object.getX() + changeX, object.getY() + changeY); //Move object
         if (!object.followers.isEmpty()) {
             //Object has followers; move them along with it
             for (MobileObject follower : object.followers) {
-                move(follower, changeX, changeY);
+                move(stack, follower, changeX, changeY, null);
             }
         }
-        if (moveData != null) {
+        if (frame.numMoveData > 0) {
             //Object needs to move certain colliding objects along with it; do so
-            for (MoveData data : moveData) {
-                move(data.object, (data.moveX ? changeX - data.diffX : 0), (data.moveY ? changeY - data.diffY : 0));
+            for (int i = 0; i < frame.numMoveData; i++) {
+                MoveData data = frame.moveData.get(i);
+                move(stack, data.object, (data.moveX ? changeX - data.diffX : 0), (data.moveY ? changeY - data.diffY : 0), null);
             }
-            for (MoveData data : moveData) {
-                data.object.effLeader = data.object.getLeader();
+            for (int i = 0; i < frame.numMoveData; i++) {
+                MobileObject dataObject = frame.moveData.get(i).object;
+                dataObject.effLeader = dataObject.getLeader();
             }
         }
-        if (nextMovement != null && (nextMovement.getX() != 0 || nextMovement.getY() != 0)) {
+        if (moveAgain && (nextChangeX != 0 || nextChangeY != 0)) {
             //Object needs to move again immediately; do so
-            displacement.add(move(object, nextMovement.getX(), nextMovement.getY()));
+            move(stack, object, nextChangeX, nextChangeY, frame.nextDisplacement);
+            displacementX += frame.nextDisplacement.getX();
+            displacementY += frame.nextDisplacement.getY();
+        }
+        if (displacement != null) {
+            displacement.setCoordinates(displacementX, displacementY);
+        }
+    }
+    
+    private static long getFrameChangeX(MobileObject object) {
+        return Frac.mul(object.getEffectiveTimeFactor(), object.getVelocityX() + object.getStepX());
+    }
+    
+    private static long getFrameChangeY(MobileObject object) {
+        return Frac.mul(object.getEffectiveTimeFactor(), object.getVelocityY() + object.getStepY());
+    }
+    
+    //Returns an upper bound on how far a MobileObject can be displaced by a change
+    private static long getChangeBudget(long changeX, long changeY) {
+        long budget = Math.abs(changeX) + Math.abs(changeY);
+        return (budget < 0 ? Long.MAX_VALUE : budget);
+    }
+    
+    private void moveForFrame(MoveStack stack, MobileObject object, long changeX, long changeY) {
+        move(stack, object, changeX, changeY, object.displacement);
+        object.setStep(0, 0);
+    }
+    
+    /*
+     * A parallel grouping gives up if its groups' regions would cover more
+     * than this many cells per MobileObject, since reserving that many cells
+     * would cost more than moving one at a time.
+     */
+    private static final int PARALLEL_CELLS_PER_OBJECT = 64;
+    //Far-moving groups give up before their cell ranges can overflow
+    private static final int MAX_PARALLEL_REACH = 1 << 16;
+    
+    private static int findGroup(int[] groups, int i) {
+        while (groups[i] != i) {
+            groups[i] = groups[groups[i]];
+            i = groups[i];
+        }
+        return i;
+    }
+    
+    private static boolean unionGroups(int[] groups, int i, int j) {
+        i = findGroup(groups, i);
+        j = findGroup(groups, j);
+        if (i == j) {
+            return false;
+        }
+        //The group's representative is its first MobileObject in movement order
+        if (i < j) {
+            groups[j] = i;
+        } else {
+            groups[i] = j;
+        }
+        return true;
+    }
+    
+    private static void addToRange(int[] range, int[] cellRange) {
+        if (cellRange != null) {
+            range[0] = Math.min(range[0], cellRange[0]);
+            range[1] = Math.min(range[1], cellRange[1]);
+            range[2] = Math.max(range[2], cellRange[2]);
+            range[3] = Math.max(range[3], cellRange[3]);
         }
-        return displacement;
+    }
+    
+    /*
+     * Sets range to the range of cells that object's Hitboxes currently
+     * occupy, which any movement of object starts from.
+     */
+    private void getOccupiedCellRange(MobileObject object, int[] range) {
+        getCellRangeInclusive(object.getCenterX(), object.getCenterY(),
+                object.getCenterX(), object.getCenterY(), range);
+        addToRange(range, object.getLocatorHitbox().cellRange);
+        if (object.getOverlapHitbox() != null) {
+            addToRange(range, object.getOverlapHitbox().cellRange);
+        }
+        if (object.getSolidHitbox() != null) {
+            addToRange(range, object.getSolidHitbox().cellRange);
+        }
+        if (object.getCollisionHitbox() != null) {
+            addToRange(range, object.getCollisionHitbox().cellRange);
+        }
+    }
+    
+    /*
+     * A group of MobileObjects that moves in parallel with other groups, along
+     * with the cells that it reserved. The SpaceState's CellMap can't gain
+     * cells while the groups read it, so the cells that the group creates
+     * stay in newCells, which only the group's own thread uses, until all of
+     * the groups are done. Running a MovementGroup moves its members in
+     * movement order up to the first MobileObject that could be sped up
+     * before it moves. MovementGroups are kept from frame to frame and
+     * reinitialized for each frame's grouping.
+     */
+    private class MovementGroup extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private int index;
+        private int[] members = new int[1];
+        private int numMembers = 0;
+        private final MoveStack stack = new MoveStack(this);
+        private final CellMap<Cell> newCells = new HashCellMap<>();
+        //The range of newCells, or null if newCells is empty
+        private int[] newRange = null;
+        private final int[] newRangeStorage = new int[4];
+        
+        private void reset(int index, int size) {
+            this.index = index;
+            if (members.length < size) {
+                members = new int[Math.max(size, 2*members.length)];
+            }
+            numMembers = 0;
+            if (!newCells.isEmpty()) {
+                newCells.clear();
+            }
+            newRange = null;
+            reinitialize();
+        }
+        
+        private void addMember(int index) {
+            members[numMembers] = index;
+            numMembers++;
+        }
+        
+        private boolean contains(SpaceObject object) {
+            if (object instanceof MobileObject) {
+                int index = ((MobileObject)object).movementIndex;
+                return index >= 0 && index < parallelMovement.numObjects
+                        && parallelMovement.objects[index] == object
+                        && parallelMovement.objectGroups[index] == this.index;
+            }
+            return false;
+        }
+        
+        /*
+         * Returns whether every cell in cellRange lies in the region of one of
+         * this group's members. The region of object, which belongs to this
+         * group, is checked first, since its Hitboxes rarely leave it.
+         */
+        private boolean reserves(SpaceObject object, int[] cellRange) {
+            int[][] regions = parallelMovement.regions;
+            if (contains(object) && rangeWithin(cellRange, regions[((MobileObject)object).movementIndex])) {
+                return true;
+            }
+            for (int y = cellRange[1]; y <= cellRange[3]; y++) {
+                for (int x = cellRange[0]; x <= cellRange[2]; x++) {
+                    boolean reserved = false;
+                    for (int i = 0; i < numMembers; i++) {
+                        if (rangeContains(regions[members[i]], x, y)) {
+                            reserved = true;
+                            break;
+                        }
+                    }
+                    if (!reserved) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        
+        //Only cells that the group reserves get here, by way of checkParallelCells()
+        private Cell getCell(int x, int y) {
+            Cell cell = cells.get(x, y);
+            if (cell == null) {
+                cell = newCells.get(x, y);
+                if (cell == null) {
+                    if (newRange == null) {
+                        newRange = newRangeStorage;
+                        newRange[0] = x;
+                        newRange[1] = y;
+                        newRange[2] = x;
+                        newRange[3] = y;
+                    } else {
+                        newRange[0] = Math.min(newRange[0], x);
+                        newRange[1] = Math.min(newRange[1], y);
+                        newRange[2] = Math.max(newRange[2], x);
+                        newRange[3] = Math.max(newRange[3], y);
+                    }
+                    cell = new Cell(x, y);
+                    newCells.put(x, y, cell);
+                }
+            }
+            return cell;
+        }
+        
+        /*
+         * The members before firstAtRisk can't be sped up before they move, so
+         * only a collide() method that breaks the rules of parallel movement
+         * could make one exceed its budget and leave the group's region. The
+         * group then aborts parallel movement instead of moving it.
+         */
+        @Override
+        protected final void compute() {
+            MobileObject[] objects = parallelMovement.objects;
+            long[] budgets = parallelMovement.budgets;
+            int firstAtRisk = parallelMovement.firstAtRisk;
+            movementGroup.set(this);
+            try {
+                for (int m = 0; m < numMembers; m++) {
+                    int i = members[m];
+                    if (i >= firstAtRisk || parallelMovement.aborted) {
+                        break;
+                    }
+                    MobileObject object = objects[i];
+                    long changeX = getFrameChangeX(object);
+                    long changeY = getFrameChangeY(object);
+                    if (getChangeBudget(changeX, changeY) > budgets[i]) {
+                        parallelMovement.aborted = true;
+                        break;
+                    }
+                    moveForFrame(stack, object, changeX, changeY);
+                }
+            } catch (ParallelMovementAbort e) {
+                //The abort is recorded, and the frame will be moved again one MobileObject at a time
+            } finally {
+                //Setting the ThreadLocal to null rather than removing it keeps its entry for the next frame
+                movementGroup.set(null);
+            }
+        }
+        
+    }
+    
+    /*
+     * Thrown during parallel movement to stop a group from doing something
+     * that could make the results depend on timing, such as changing a
+     * SpaceObject outside of the group. It has no stack trace, since its group
+     * catches it and nothing reports it.
+     */
+    private static class ParallelMovementAbort extends RuntimeException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private ParallelMovementAbort() {
+            super(null, null, false, false);
+        }
+        
+    }
+    
+    /*
+     * Records that parallel movement must be undone and throws a
+     * ParallelMovementAbort to the group moving on this thread. Threads that
+     * aren't moving a group can't change the SpaceState during parallel
+     * movement at all.
+     */
+    private void abortParallelMovement() {
+        if (movementGroup.get() == null) {
+            throw new RuntimeException("Attempted to change a SpaceState from outside of its movement"
+                    + " during parallel movement");
+        }
+        parallelMovement.aborted = true;
+        throw new ParallelMovementAbort();
+    }
+    
+    /*
+     * Aborts parallel movement if object is changed during it by anything but
+     * the movement of the group that it belongs to. Changes to other
+     * SpaceObjects could make the results depend on timing.
+     */
+    final void checkParallelChange(SpaceObject object) {
+        if (movingInParallel) {
+            MovementGroup group = movementGroup.get();
+            if (group == null || !group.contains(object)) {
+                abortParallelMovement();
+            }
+        }
+    }
+    
+    /*
+     * Aborts parallel movement unless cellRange lies within the cells that
+     * the group moving on this thread reserved, so that no group writes to
+     * cells that another group can read. object must belong to the group.
+     */
+    private void checkParallelCells(SpaceObject object, int[] cellRange) {
+        if (!movementGroup.get().reserves(object, cellRange)) {
+            abortParallelMovement();
+        }
+    }
+    
+    /*
+     * The arrays and MovementGroups that parallel movement works with, kept
+     * from frame to frame so that once they have grown large enough for this
+     * SpaceState's MobileObjects, splitting them into groups allocates
+     * nothing. Running a ParallelMovement on the movement pool runs all of
+     * the groups at once and waits for them all to finish.
+     */
+    private class ParallelMovement extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        //This frame's MobileObjects in movement order, and the data of each
+        private int numObjects = 0;
+        private MobileObject[] objects = new MobileObject[0];
+        private long[] budgets = new long[0];
+        private int[][] occupiedRanges = new int[0][];
+        private int[][] regions = new int[0][];
+        //Each region's left edge in the high bits and its index in the low bits
+        private long[] regionOrder = new long[0];
+        //Whether the region of a solid MobileObject reaches the cells that each MobileObject occupies
+        private boolean[] inSolidReach = new boolean[0];
+        //Each MobileObject's position, velocity, and step before parallel movement, six entries apiece
+        private long[] startData = new long[0];
+        //The union-find forest of the MobileObjects' groups
+        private int[] groups = new int[0];
+        private long[] groupBudgets = new long[0];
+        private int[] groupIndices = new int[0];
+        //The index in movementGroups of each MobileObject's group, or -1 if it has nothing to move in parallel
+        private int[] objectGroups = new int[0];
+        private final List<Hitbox> solidHitboxes = new ArrayList<>();
+        private final List<MovementGroup> movementGroups = new ArrayList<>();
+        private int numGroups = 0;
+        //The index of the first MobileObject that could be sped up before it moves, or numObjects if none could
+        private int firstAtRisk = 0;
+        //Whether a group has aborted parallel movement
+        private volatile boolean aborted = false;
+        
+        private void ensureCapacity(int capacity) {
+            if (objects.length >= capacity) {
+                return;
+            }
+            capacity = Math.max(capacity, 2*objects.length);
+            objects = new MobileObject[capacity];
+            budgets = new long[capacity];
+            int[][] newOccupiedRanges = new int[capacity][];
+            int[][] newRegions = new int[capacity][];
+            for (int i = 0; i < capacity; i++) {
+                newOccupiedRanges[i] = new int[4];
+                newRegions[i] = new int[4];
+            }
+            occupiedRanges = newOccupiedRanges;
+            regions = newRegions;
+            regionOrder = new long[capacity];
+            inSolidReach = new boolean[capacity];
+            startData = new long[6*capacity];
+            groups = new int[capacity];
+            groupBudgets = new long[capacity];
+            groupIndices = new int[capacity];
+            objectGroups = new int[capacity];
+        }
+        
+        /*
+         * Moves this SpaceState's MobileObjects for this frame, moving
+         * independent groups of them in parallel. Returns false without having
+         * moved anything if the MobileObjects don't split into at least two
+         * groups that have something to move in parallel, or if parallel
+         * movement was aborted and undone.
+         */
+        private boolean move() {
+            numObjects = mobileObjects.size();
+            ensureCapacity(numObjects);
+            int n = 0;
+            for (MobileObject object : mobileObjects) {
+                objects[n] = object;
+                n++;
+            }
+            try {
+                return split() && moveGroups();
+            } finally {
+                Arrays.fill(objects, 0, numObjects, null);
+                numObjects = 0;
+            }
+        }
+        
+        /*
+         * Splits the MobileObjects into groups that can move in parallel.
+         * Returns false if they don't split into at least two groups that have
+         * something to move in parallel, or if the groups would have to
+         * reserve too many cells.
+         */
+        private boolean split() {
+            for (int i = 0; i < numObjects; i++) {
+                MobileObject object = objects[i];
+                budgets[i] = getChangeBudget(getFrameChangeX(object), getFrameChangeY(object));
+                getOccupiedCellRange(object, occupiedRanges[i]);
+                object.movementIndex = i;
+            }
+            //MobileObjects that lead or follow each other always move together
+            for (int i = 0; i < numObjects; i++) {
+                groups[i] = i;
+            }
+            for (int i = 0; i < numObjects; i++) {
+                for (MobileObject follower : objects[i].followers) {
+                    int j = follower.movementIndex;
+                    if (j >= 0 && j < numObjects && objects[j] == follower) {
+                        unionGroups(groups, i, j);
+                    }
+                }
+                MobileObject leader = objects[i].effLeader;
+                if (leader != null) {
+                    int j = leader.movementIndex;
+                    if (j >= 0 && j < numObjects && objects[j] == leader) {
+                        unionGroups(groups, i, j);
+                    }
+                }
+            }
+            /*
+             * A group's MobileObjects, including ones that its members push or
+             * carry, can't be displaced farther than the sum of its members'
+             * budgets, so each member's region is its occupied cells expanded
+             * by that far plus a cell of margin for surfaces that only touch.
+             * Groups whose regions meet are merged. So are groups whose
+             * regions both hold part of the same solid Hitbox, since a
+             * MobileObject that runs into a SpaceObject marks it during its
+             * movement. Merging groups enlarges their regions, so this repeats
+             * until no more groups merge.
+             */
+            long cellLimit = (long)PARALLEL_CELLS_PER_OBJECT*numObjects;
+            boolean merged = true;
+            while (merged) {
+                merged = false;
+                Arrays.fill(groupBudgets, 0, numObjects, 0);
+                for (int i = 0; i < numObjects; i++) {
+                    int group = findGroup(groups, i);
+                    groupBudgets[group] = getChangeBudget(groupBudgets[group], budgets[i]);
+                }
+                long numCells = 0;
+                for (int i = 0; i < numObjects; i++) {
+                    long budget = groupBudgets[findGroup(groups, i)];
+                    long reachX = budget/cellWidth + 2;
+                    long reachY = budget/cellHeight + 2;
+                    if (reachX > MAX_PARALLEL_REACH || reachY > MAX_PARALLEL_REACH) {
+                        return false;
+                    }
+                    int[] region = regions[i];
+                    region[0] = occupiedRanges[i][0] - (int)reachX;
+                    region[1] = occupiedRanges[i][1] - (int)reachY;
+                    region[2] = occupiedRanges[i][2] + (int)reachX;
+                    region[3] = occupiedRanges[i][3] + (int)reachY;
+                    numCells += (long)(region[2] - region[0] + 1)*(region[3] - region[1] + 1);
+                    if (numCells > cellLimit) {
+                        return false;
+                    }
+                    regionOrder[i] = ((long)region[0] << 32) | i;
+                }
+                //Sweep from left to right, comparing each region to the ones that start within its columns
+                Arrays.sort(regionOrder, 0, numObjects);
+                Arrays.fill(inSolidReach, 0, numObjects, false);
+                for (int a = 0; a < numObjects; a++) {
+                    int i = (int)regionOrder[a];
+                    for (int b = a + 1; b < numObjects; b++) {
+                        int j = (int)regionOrder[b];
+                        if (regions[j][0] > regions[i][2]) {
+                            break;
+                        }
+                        if (rangesMeet(regions[i], regions[j])) {
+                            if (unionGroups(groups, i, j)) {
+                                merged = true;
+                            }
+                            if (objects[i].isSolid() && rangesMeet(regions[i], occupiedRanges[j])) {
+                                inSolidReach[j] = true;
+                            }
+                            if (objects[j].isSolid() && rangesMeet(regions[j], occupiedRanges[i])) {
+                                inSolidReach[i] = true;
+                            }
+                        }
+                    }
+                }
+                if (merged) {
+                    continue;
+                }
+                /*
+                 * Each solid Hitbox in a region is stamped with the index of
+                 * the first MobileObject in whose region it was found, using a
+                 * block of stamps that no query will use.
+                 */
+                long stampBase = queryStamps.getAndAdd(numObjects) + 1;
+                solidHitboxes.clear();
+                for (int i = 0; i < numObjects; i++) {
+                    int[] region = regions[i];
+                    int right = Math.min(region[2], cellRight);
+                    int bottom = Math.min(region[3], cellBottom);
+                    for (int y = Math.max(region[1], cellTop); y <= bottom; y++) {
+                        for (int x = Math.max(region[0], cellLeft); x <= right; x++) {
+                            Cell cell = cells.get(x, y);
+                            //Skipping cells with no solid Hitboxes also skips making Iterators for them
+                            if (cell != null && !cell.hitboxes.get(HitboxRole.SOLID).isEmpty()) {
+                                for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.SOLID)) {
+                                    Profiler.count(Profiler.HITBOXES_SCANNED);
+                                    long finder = hitbox.scanStamp - stampBase;
+                                    if (finder >= 0 && finder < numObjects) {
+                                        if (unionGroups(groups, i, (int)finder)) {
+                                            merged = true;
+                                        }
+                                    } else {
+                                        hitbox.scanStamp = stampBase + i;
+                                        solidHitboxes.add(hitbox);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            /*
+             * Before a MobileObject's turn to move, only a collide() method
+             * called on it can speed it up, and only a MobileObject with
+             * collision that is moved along with its leader, or is pushed or
+             * carried by a solid MobileObject, can collide with anything then.
+             * Either must happen during the movement of an earlier member of
+             * its group, so the first member of a group is never at risk.
+             * Moving the groups in parallel up to the first MobileObject at
+             * risk, then moving it and every MobileObject after it one at a
+             * time, moves them exactly as moving them all one at a time would.
+             */
+            firstAtRisk = numObjects;
+            for (int i = 0; i < numObjects; i++) {
+                MobileObject object = objects[i];
+                if (findGroup(groups, i) != i && object.hasCollision() && object.getCollisionHitbox() != null
+                        && (inSolidReach[i] || object.getLeader() != null)) {
+                    firstAtRisk = i;
+                    break;
+                }
+            }
+            //Groups are numbered in order of their first members, so the groups with anything to move come first
+            numGroups = 0;
+            for (int i = 0; i < numObjects; i++) {
+                if (findGroup(groups, i) == i) {
+                    if (i < firstAtRisk) {
+                        groupIndices[i] = numGroups;
+                        numGroups++;
+                    } else {
+                        groupIndices[i] = -1;
+                    }
+                }
+            }
+            if (numGroups < 2) {
+                return false;
+            }
+            //groupBudgets is free again, so it counts the groups' sizes
+            Arrays.fill(groupBudgets, 0, numGroups, 0);
+            for (int i = 0; i < numObjects; i++) {
+                objectGroups[i] = groupIndices[findGroup(groups, i)];
+                if (objectGroups[i] >= 0) {
+                    groupBudgets[objectGroups[i]]++;
+                }
+            }
+            while (movementGroups.size() < numGroups) {
+                movementGroups.add(new MovementGroup());
+            }
+            for (int group = 0; group < numGroups; group++) {
+                movementGroups.get(group).reset(group, (int)groupBudgets[group]);
+            }
+            for (int i = 0; i < numObjects; i++) {
+                if (objectGroups[i] >= 0) {
+                    movementGroups.get(objectGroups[i]).addMember(i);
+                }
+            }
+            return true;
+        }
+        
+        private boolean moveGroups() {
+            /*
+             * Everything that moving the groups could need to create, other
+             * than cells, must exist before they start, so that the groups
+             * only read this SpaceState's shared structures and each write
+             * only to its own cells
+             */
+            for (int i = 0; i < numObjects; i++) {
+                getClassIndices(objects[i]);
+            }
+            /*
+             * Reading a Hitbox can bring its lazily computed data up to date,
+             * so the data of every Hitbox that the groups can read, which
+             * belong to their MobileObjects and to the SpaceObjects that they
+             * can run into, is brought up to date first. During parallel
+             * movement, a Hitbox's data then only goes out of date when its
+             * own group moves it, and only that group reads it. Bringing a
+             * Hitbox up to date can report that its boundaries changed, so the
+             * cells are updated again, and the groups start with no Hitboxes
+             * waiting for their cells.
+             */
+            for (int i = 0; i < numObjects; i++) {
+                objects[i].getLocatorHitbox().updateLazyData();
+            }
+            for (int i = 0; i < solidHitboxes.size(); i++) {
+                solidHitboxes.get(i).getObject().getLocatorHitbox().updateLazyData();
+            }
+            updateChangedCells();
+            for (int i = 0; i < numObjects; i++) {
+                MobileObject object = objects[i];
+                int j = 6*i;
+                startData[j] = object.getX();
+                startData[j + 1] = object.getY();
+                startData[j + 2] = object.getVelocityX();
+                startData[j + 3] = object.getVelocityY();
+                startData[j + 4] = object.getStepX();
+                startData[j + 5] = object.getStepY();
+            }
+            aborted = false;
+            reinitialize();
+            movingInParallel = true;
+            try {
+                movementPool.invoke(this);
+            } finally {
+                movingInParallel = false;
+                for (int group = 0; group < numGroups; group++) {
+                    CellMap<Cell> newCells = movementGroups.get(group).newCells;
+                    if (!newCells.isEmpty()) {
+                        for (Cell cell : newCells) {
+                            addCell(cell);
+                        }
+                    }
+                }
+                invalidateVisibleSets();
+            }
+            if (aborted) {
+                //Undo the frame's movement so that it can be moved again one MobileObject at a time
+                for (int i = 0; i < numObjects; i++) {
+                    MobileObject object = objects[i];
+                    int j = 6*i;
+                    object.setPosition(startData[j], startData[j + 1]);
+                    object.setVelocity(startData[j + 2], startData[j + 3]);
+                    object.setStep(startData[j + 4], startData[j + 5]);
+                    object.collisions.clear();
+                    object.collisionDirections.clear();
+                    object.displacement.clear();
+                }
+                return false;
+            }
+            //Move the first MobileObject at risk and the ones after it one at a time in movement order
+            if (firstAtRisk < numObjects) {
+                Iterator<MobileObject> iterator = mobileObjectIterator();
+                int i = 0;
+                while (iterator.hasNext()) {
+                    MobileObject object = iterator.next();
+                    if (i >= firstAtRisk) {
+                        moveForFrame(moveStack, object, getFrameChangeX(object), getFrameChangeY(object));
+                    }
+                    i++;
+                }
+            }
+            return true;
+        }
+        
+        /*
+         * Runs every group but the first on another thread and the first on
+         * this one. Every group is waited for before any exception that one
+         * of them threw is rethrown, so that none is still moving once
+         * parallel movement has ended.
+         */
+        @Override
+        protected final void compute() {
+            for (int group = numGroups - 1; group > 0; group--) {
+                movementGroups.get(group).fork();
+            }
+            movementGroups.get(0).quietlyInvoke();
+            for (int group = 1; group < numGroups; group++) {
+                movementGroups.get(group).quietlyJoin();
+            }
+            for (int group = 0; group < numGroups; group++) {
+                movementGroups.get(group).join();
+            }
+        }
+        
     }
     
     @Override
@@ -3050,22 +4863,195 @@ public abstract class SpaceState<T extends CellGame,
             object.collisionDirections.clear();
             object.displacement.clear();
         }
-        Iterator<MobileObject> iterator = mobileObjectIterator();
-        while (iterator.hasNext()) {
-            MobileObject object = iterator.next();
-            long objectTimeFactor = object.getEffectiveTimeFactor();
-            long changeX = Frac.mul(objectTimeFactor, object.getVelocityX() + object.getStepX());
-            long changeY = Frac.mul(objectTimeFactor, object.getVelocityY() + object.getStepY());
-            object.displacement.setCoordinates(move(object, changeX, changeY));
-            object.setStep(0, 0);
+        long startTime = Profiler.start();
+        updateChangedCells();
+        if (movementPool == null || mobileObjects.size() <= 1 || !getParallelMovement().move()) {
+            Iterator<MobileObject> iterator = mobileObjectIterator();
+            while (iterator.hasNext()) {
+                MobileObject object = iterator.next();
+                moveForFrame(moveStack, object, getFrameChangeX(object), getFrameChangeY(object));
+            }
+        }
+        updateChangedCells();
+        Profiler.stop(Profiler.MOVEMENT, Profiler.THINKERS, startTime);
+    }
+    
+    private ParallelMovement getParallelMovement() {
+        if (parallelMovement == null) {
+            parallelMovement = new ParallelMovement();
+        }
+        return parallelMovement;
+    }
+    
+    private static boolean rangesMeet(int[] range1, int[] range2) {
+        return range1[0] <= range2[2] && range1[2] >= range2[0]
+                && range1[1] <= range2[3] && range1[3] >= range2[1];
+    }
+    
+    private static boolean rangeContains(int[] range, int x, int y) {
+        return x >= range[0] && x <= range[2] && y >= range[1] && y <= range[3];
+    }
+    
+    private static boolean rangeWithin(int[] range, int[] outerRange) {
+        return range[0] >= outerRange[0] && range[2] <= outerRange[2]
+                && range[1] >= outerRange[1] && range[3] <= outerRange[3];
+    }
+    
+    /*
+     * The locator Hitboxes in the range of cells that a Viewport can see, kept
+     * between frames in the order in which their SpaceObjects are drawn, so
+     * that rendering doesn't have to gather and order every visible cell's
+     * locator Hitboxes each frame.
+     *
+     * In FLAT mode, the draw order is drawPriorityComparator's, which doesn't
+     * depend on position, so the set keeps the Hitboxes in a TreeSet that gains
+     * and loses Hitboxes as they enter and leave the range and as the range
+     * moves. In OVER and UNDER mode, the order depends on the Hitboxes'
+     * y-coordinates, so the set keeps them in a list that it sorts again only
+     * once one of them has moved or changed its draw priority. Since the list
+     * is usually still nearly in order, re-sorting it is quick. The list is
+     * gathered again from the cells only once a Hitbox has entered or left
+     * the range or the range has changed.
+     */
+    private class VisibleSet {
+        
+        private int[] cellRange = null;
+        private final SortedSet<Hitbox> sortedHitboxes = new TreeSet<>(drawPriorityComparator);
+        private final List<Hitbox> orderedHitboxes = new ArrayList<>();
+        private boolean gathered = false;
+        private boolean ordered = false;
+        
+        private Iterable<Hitbox> getHitboxes(int[] newRange) {
+            if (drawMode == DrawMode.FLAT) {
+                if (cellRange == null) {
+                    fill(newRange);
+                } else if (!Arrays.equals(cellRange, newRange)) {
+                    //Shift the range only if most of it stays put
+                    long area = ((long)newRange[2] - newRange[0] + 1)*((long)newRange[3] - newRange[1] + 1);
+                    long overlap = 0;
+                    if (rangesMeet(cellRange, newRange)) {
+                        overlap = ((long)Math.min(cellRange[2], newRange[2]) - Math.max(cellRange[0], newRange[0]) + 1)
+                                *((long)Math.min(cellRange[3], newRange[3]) - Math.max(cellRange[1], newRange[1]) + 1);
+                    }
+                    if (2*overlap >= area) {
+                        shift(newRange);
+                    } else {
+                        fill(newRange);
+                    }
+                }
+                return sortedHitboxes;
+            }
+            if (!gathered || !Arrays.equals(cellRange, newRange)) {
+                gather(newRange);
+            }
+            if (!ordered) {
+                orderedHitboxes.sort(drawComparator);
+                ordered = true;
+            }
+            return orderedHitboxes;
+        }
+        
+        private void fill(int[] newRange) {
+            sortedHitboxes.clear();
+            Iterator<Cell> iterator = new ReadCellRangeIterator(newRange);
+            while (iterator.hasNext()) {
+                sortedHitboxes.addAll(iterator.next().hitboxes.get(HitboxRole.LOCATOR));
+            }
+            cellRange = newRange;
+        }
+        
+        private void shift(int[] newRange) {
+            Iterator<Cell> iterator = new ReadCellRangeIterator(cellRange);
+            while (iterator.hasNext()) {
+                Cell cell = iterator.next();
+                if (!rangeContains(newRange, cell.x, cell.y)) {
+                    for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.LOCATOR)) {
+                        Profiler.count(Profiler.HITBOXES_SCANNED);
+                        if (!rangesMeet(hitbox.cellRange, newRange)) {
+                            sortedHitboxes.remove(hitbox);
+                        }
+                    }
+                }
+            }
+            iterator = new ReadCellRangeIterator(newRange);
+            while (iterator.hasNext()) {
+                Cell cell = iterator.next();
+                if (!rangeContains(cellRange, cell.x, cell.y)) {
+                    sortedHitboxes.addAll(cell.hitboxes.get(HitboxRole.LOCATOR));
+                }
+            }
+            cellRange = newRange;
+        }
+        
+        private void gather(int[] newRange) {
+            orderedHitboxes.clear();
+            Iterator<Cell> iterator = new ReadCellRangeIterator(newRange);
+            while (iterator.hasNext()) {
+                Cell cell = iterator.next();
+                for (Hitbox hitbox : cell.hitboxes.get(HitboxRole.LOCATOR)) {
+                    if (isFirstCellOf(cell, hitbox, newRange)) {
+                        orderedHitboxes.add(hitbox);
+                    }
+                }
+            }
+            cellRange = newRange;
+            gathered = true;
+            ordered = false;
+        }
+        
+        private void hitboxChanged(Hitbox hitbox, int[] oldRange, int[] newRange) {
+            if (cellRange == null) {
+                return;
+            }
+            boolean wasIn = (oldRange != null && rangesMeet(oldRange, cellRange));
+            boolean isIn = (newRange != null && rangesMeet(newRange, cellRange));
+            if (drawMode == DrawMode.FLAT) {
+                if (wasIn && !isIn) {
+                    sortedHitboxes.remove(hitbox);
+                } else if (isIn && !wasIn) {
+                    sortedHitboxes.add(hitbox);
+                }
+            } else if (wasIn != isIn) {
+                gathered = false;
+            } else if (wasIn) {
+                ordered = false;
+            }
+        }
+        
+    }
+    
+    /*
+     * Informs the VisibleSets that a locator Hitbox has moved from oldRange to
+     * newRange, either of which is null if the Hitbox is just arriving or
+     * leaving. Groups moving in parallel can't share the VisibleSets, so
+     * parallel movement ignores them and invalidates them all afterward.
+     */
+    private void locatorHitboxChanged(Hitbox hitbox, int[] oldRange, int[] newRange) {
+        if (movingInParallel) {
+            return;
+        }
+        for (VisibleSet visibleSet : visibleSets.values()) {
+            visibleSet.hitboxChanged(hitbox, oldRange, newRange);
+        }
+    }
+    
+    private void invalidateVisibleSets() {
+        for (VisibleSet visibleSet : visibleSets.values()) {
+            visibleSet.cellRange = null;
+            visibleSet.sortedHitboxes.clear();
+            visibleSet.orderedHitboxes.clear();
+            visibleSet.gathered = false;
         }
     }
     
     @Override
     public void renderActions(T game, Graphics g, int x1, int y1, int x2, int y2) {
+        updateChangedCells();
         g.clearWorldClip();
-        for (Viewport viewport : viewports.values()) {
+        for (Map.Entry<Integer,Viewport<T,U>> entry : viewports.entrySet()) {
+            Viewport<T,U> viewport = entry.getValue();
             if (viewport.roundX1 != viewport.roundX2 && viewport.roundY1 != viewport.roundY2) {
+                long startTime = Profiler.start();
                 int vx1 = x1 + viewport.roundX1;
                 int vy1 = y1 + viewport.roundY1;
                 int vx2 = x1 + viewport.roundX2;
@@ -3088,53 +5074,19 @@ public abstract class SpaceState<T extends CellGame,
                         layer.renderActions(g, cx, cy, scx, scy, vx1, vy1, vx2, vy2);
                     }
                     int[] cellRange = getCellRangeExclusive(leftEdge, topEdge, rightEdge, bottomEdge);
-                    if (drawMode == DrawMode.FLAT
-                            && cellRange[0] == cellRange[2] && cellRange[1] == cellRange[3]) {
-                        Cell cell = cells.get(new Point(cellRange[0], cellRange[1]));
-                        if (cell != null) {
-                            for (Hitbox locatorHitbox : cell.hitboxes.get(HitboxRole.LOCATOR)) {
-                                if (locatorHitbox.getLeftEdge() < rightEdge
-                                        && locatorHitbox.getRightEdge() > leftEdge
-                                        && locatorHitbox.getTopEdge() < bottomEdge
-                                        && locatorHitbox.getBottomEdge() > topEdge) {
-                                    locatorHitbox.getObject().draw(g,
-                                            scx + Frac.intRound(locatorHitbox.getAbsX() - cx),
-                                            scy + Frac.intRound(locatorHitbox.getAbsY() - cy));
-                                }
-                            }
-                        }
-                    } else {
-                        List<Set<Hitbox>> hitboxesList = new ArrayList<>((cellRange[2] - cellRange[0] + 1)*(cellRange[3] - cellRange[1] + 1));
-                        Iterator<Cell> iterator = new ReadCellRangeIterator(cellRange);
-                        while (iterator.hasNext()) {
-                            hitboxesList.add(iterator.next().hitboxes.get(HitboxRole.LOCATOR));
-                        }
-                        PriorityQueue<HitboxIteratorData> queue = new PriorityQueue<>(drawComparator);
-                        for (Set<Hitbox> locatorHitboxes : hitboxesList) {
-                            if (!locatorHitboxes.isEmpty()) {
-                                Iterator<Hitbox> hitboxIterator = locatorHitboxes.iterator();
-                                queue.add(new HitboxIteratorData(hitboxIterator, hitboxIterator.next()));
-                            }
-                        }
-                        Hitbox lastHitbox = null;
-                        while (!queue.isEmpty()) {
-                            HitboxIteratorData data = queue.poll();
-                            Hitbox locatorHitbox = data.currentHitbox;
-                            if (locatorHitbox != lastHitbox) {
-                                if (locatorHitbox.getLeftEdge() < rightEdge
-                                        && locatorHitbox.getRightEdge() > leftEdge
-                                        && locatorHitbox.getTopEdge() < bottomEdge
-                                        && locatorHitbox.getBottomEdge() > topEdge) {
-                                    locatorHitbox.getObject().draw(g,
-                                            scx + Frac.intRound(locatorHitbox.getAbsX() - cx),
-                                            scy + Frac.intRound(locatorHitbox.getAbsY() - cy));
-                                }
-                                lastHitbox = locatorHitbox;
-                            }
-                            if (data.iterator.hasNext()) {
-                                data.currentHitbox = data.iterator.next();
-                                queue.add(data);
-                            }
+                    VisibleSet visibleSet = visibleSets.get(viewport);
+                    if (visibleSet == null) {
+                        visibleSet = new VisibleSet();
+                        visibleSets.put(viewport, visibleSet);
+                    }
+                    for (Hitbox locatorHitbox : visibleSet.getHitboxes(cellRange)) {
+                        if (locatorHitbox.getLeftEdge() < rightEdge
+                                && locatorHitbox.getRightEdge() > leftEdge
+                                && locatorHitbox.getTopEdge() < bottomEdge
+                                && locatorHitbox.getBottomEdge() > topEdge) {
+                            locatorHitbox.getObject().draw(g,
+                                    scx + Frac.intRound(locatorHitbox.getAbsX() - cx),
+                                    scy + Frac.intRound(locatorHitbox.getAbsY() - cy));
                         }
                     }
                     for (SpaceLayer layer : spaceLayers.tailMap(0).values()) {
@@ -3145,6 +5097,9 @@ public abstract class SpaceState<T extends CellGame,
                     viewport.getHUD().renderActions(g, vx1, vy1, vx2, vy2);
                 }
                 g.clearWorldClip();
+                if (Profiler.isEnabled()) {
+                    Profiler.stop(Profiler.getViewportMetric(entry.getKey()), startTime);
+                }
             }
         }
         g.setWorldClip(x1, y1, x2 - x1, y2 - y1);
@@ -186,6 +186,7 @@ public class ArrayTileGrid extends TileGrid {
             numNonNullTiles += (tile == null ? -1 : 1);
         }
         tiles[i][j] = tile;
+        tileChanged(column, row);
         return true;
     }
     
@@ -211,6 +212,7 @@ public class ArrayTileGrid extends TileGrid {
         } else {
             flags[i][j] &= ~FL_FLIPX;
         }
+        tileChanged(column, row);
         return true;
     }
     
@@ -236,6 +238,7 @@ public class ArrayTileGrid extends TileGrid {
         } else {
             flags[i][j] &= ~FL_FLIPY;
         }
+        tileChanged(column, row);
         return true;
     }
     
@@ -273,9 +276,20 @@ public class ArrayTileGrid extends TileGrid {
         } else {
             return false;
         }
+        tileChanged(column, row);
         return true;
     }
     
+    @Override
+    final int getTileFlags(int column, int row) {
+        int i = column - leftmostColumn;
+        int j = row - topmostRow;
+        if (i < 0 || i >= tiles.length || j < 0 || j >= tiles[0].length) {
+            return 0;
+        }
+        return flags[i][j];
+    }
+    
     @Override
     public final List<Rectangle> cover() {
         return TileGrid.coverObjects(leftmostColumn, topmostRow, tiles);
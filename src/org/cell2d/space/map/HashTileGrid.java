@@ -115,6 +115,7 @@ public class HashTileGrid extends TileGrid {
         } else {
             tiles.put(new Point(column, row), tile);
         }
+        tileChanged(column, row);
         return true;
     }
     
@@ -143,6 +144,7 @@ public class HashTileGrid extends TileGrid {
         } else {
             removeFlags(point, FL_FLIPX);
         }
+        tileChanged(column, row);
         return true;
     }
     
@@ -162,6 +164,7 @@ public class HashTileGrid extends TileGrid {
         } else {
             removeFlags(point, FL_FLIPY);
         }
+        tileChanged(column, row);
         return true;
     }
     
@@ -191,9 +194,15 @@ public class HashTileGrid extends TileGrid {
         } else {
             return false;
         }
+        tileChanged(column, row);
         return true;
     }
     
+    @Override
+    final int getTileFlags(int column, int row) {
+        return flags.getOrDefault(new Point(column, row), 0);
+    }
+    
     @Override
     public final List<Rectangle> cover() {
         return TileGrid.coverPoints(tiles.keySet());
@@ -3,14 +3,20 @@ package org.cell2d.space.map;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import org.cell2d.Drawable;
 import org.cell2d.Filter;
 import org.cell2d.Frac;
+import org.cell2d.Sprite;
 import org.cell2d.celick.Graphics;
+import org.cell2d.celick.Image;
 
 /**
  * <p>A TileGrid is a Drawable that displays a rectangular grid of other
@@ -44,7 +50,23 @@ import org.cell2d.celick.Graphics;
  * <p>The computational time taken to draw a TileGrid is proportional to the
  * number of its grid cells that are visible on screen, not to its total number
  * of grid cells. This means that memory usage is the only factor limiting a
- * TileGrid's size in practice.</p>
+ * TileGrid's size in practice. Tiles that are Sprites are drawn especially
+ * quickly: a TileGrid works out the corners of each of its Sprite tiles once
+ * for each way that the tile is flipped and rotated, and draws consecutive
+ * Sprite tiles that share a texture together.</p>
+ * 
+ * <p>A TileGrid whose tiles rarely change can also be given a <i>chunk
+ * size</i>. It will then divide itself into square chunks of that many columns
+ * and rows, and bake the corners of each chunk's consecutive Sprite tiles that
+ * share a texture into one list the first time the chunk is drawn. The tiles
+ * are drawn in the same order as without chunks, column by column across all
+ * of the visible chunks, so tiles that overlap their neighbors' grid cells
+ * still overlap each other the same way. After that, drawing a chunk costs
+ * little more than submitting those lists, and only the chunks that are
+ * visible on screen are drawn at all. A chunk is baked again whenever
+ * a tile in it is set, flipped, or rotated, or when one of its Sprites is
+ * reloaded or drawn through a different Filter. Tiles that are not Sprites are
+ * drawn as usual.</p>
  * 
  * <p>The TileGrid class also contains the static methods coverObjects() and
  * coverPoints(), which are useful for compactly representing the occupied
@@ -168,7 +190,297 @@ public abstract class TileGrid implements Drawable {
         return coverAndClearPoints(new HashSet<>(points));
     }
     
+    /*
+     * The drawn quads of a Sprite tile's Image, one for each possible
+     * combination of tile flags, worked out when first needed. The flags are
+     * 1 for a horizontal flip, 2 for a vertical flip, and the number of 90
+     * degree rotations times 4.
+     */
+    private class PreparedTile {
+        
+        private final Sprite sprite;
+        private final Image image;
+        private final float[][] quads = new float[16][];
+        
+        private PreparedTile(Sprite sprite, Image image) {
+            this.sprite = sprite;
+            this.image = image;
+        }
+        
+        private float[] getQuad(int flags) {
+            float[] quad = quads[flags];
+            if (quad == null) {
+                quad = makeQuad(flags);
+                quads[flags] = quad;
+            }
+            return quad;
+        }
+        
+        /*
+         * Places the corners exactly where drawing the Sprite flipped and
+         * rotated at the tile's draw offset would, but with the rotation done
+         * once in integers rather than by OpenGL every time.
+         */
+        private float[] makeQuad(int flags) {
+            boolean xFlip = (flags & 1) != 0;
+            boolean yFlip = (flags & 2) != 0;
+            int turns = (flags >> 2) & 3;
+            boolean absXFlip, absYFlip;
+            if (turns == 1 || turns == 3) {
+                absXFlip = yFlip;
+                absYFlip = xFlip;
+            } else {
+                absXFlip = xFlip;
+                absYFlip = yFlip;
+            }
+            int drawOffsetX = (absXFlip ^ (turns == 2 || turns == 3) ? tileWidth : 0);
+            int drawOffsetY = (absYFlip ^ (turns == 1 || turns == 2) ? tileHeight : 0);
+            //The Sprite draws its Image rotated by the negation of its own angle
+            int cos = (turns == 0 ? 1 : (turns == 2 ? -1 : 0));
+            int sin = (turns == 1 ? -1 : (turns == 3 ? 1 : 0));
+            int width = sprite.getWidth();
+            int height = sprite.getHeight();
+            int anchorX = (xFlip ? width - sprite.getOriginX() : sprite.getOriginX());
+            int anchorY = (yFlip ? height - sprite.getOriginY() : sprite.getOriginY());
+            float u = image.getTextureOffsetX();
+            float v = image.getTextureOffsetY();
+            float uWidth = image.getTextureWidth();
+            float vHeight = image.getTextureHeight();
+            if (xFlip) {
+                u += uWidth;
+                uWidth = -uWidth;
+            }
+            if (yFlip) {
+                v += vHeight;
+                vHeight = -vHeight;
+            }
+            //Corners in the order that Image.drawEmbedded() draws them
+            int[] cornerX = {0, 0, width, width};
+            int[] cornerY = {0, height, height, 0};
+            float[] quad = new float[16];
+            for (int i = 0; i < 4; i++) {
+                int dx = cornerX[i] - anchorX;
+                int dy = cornerY[i] - anchorY;
+                quad[4*i] = drawOffsetX + dx*cos - dy*sin;
+                quad[4*i + 1] = drawOffsetY + dx*sin + dy*cos;
+                quad[4*i + 2] = (cornerX[i] == 0 ? u : u + uWidth);
+                quad[4*i + 3] = (cornerY[i] == 0 ? v : v + vHeight);
+            }
+            return quad;
+        }
+        
+    }
+    
+    /*
+     * The quads of a series of Sprite tiles in one column of a chunk that are
+     * consecutive in drawing order and whose Images share one texture, with
+     * their positions relative to the TileGrid's origin.
+     */
+    private static class Run {
+        
+        private final Image image;
+        //The number of the chunk's other tiles that are drawn before this Run
+        private final int otherTilesBefore;
+        private float[] quads = new float[256];
+        private int numQuads = 0;
+        
+        private Run(Image image, int otherTilesBefore) {
+            this.image = image;
+            this.otherTilesBefore = otherTilesBefore;
+        }
+        
+        private void add(int x, int y, float[] quad) {
+            int i = numQuads*16;
+            if (i == quads.length) {
+                float[] newQuads = new float[quads.length*2];
+                System.arraycopy(quads, 0, newQuads, 0, quads.length);
+                quads = newQuads;
+            }
+            for (int j = 0; j < 16; j += 4) {
+                quads[i + j] = x + quad[j];
+                quads[i + j + 1] = y + quad[j + 1];
+                quads[i + j + 2] = quad[j + 2];
+                quads[i + j + 3] = quad[j + 3];
+            }
+            numQuads++;
+        }
+        
+    }
+    
+    private class Chunk {
+        
+        private boolean valid = false;
+        private Filter filter = null;
+        //Each of the chunk's distinct Sprite tiles, and the Image that it had when the chunk was baked
+        private Sprite[] bakedSprites = new Sprite[0];
+        private Image[] bakedImages = new Image[0];
+        private int numBakedSprites = 0;
+        private final List<Run> runs = new ArrayList<>();
+        //Column and row indices, in pairs, of the tiles that are not Sprites
+        private int[] otherTiles = new int[0];
+        private int numOtherTiles = 0;
+        /*
+         * For each of the chunk's columns, counting from its left edge, the
+         * index in runs of its first Run and the index of its first tile that
+         * is not a Sprite. One extra entry marks where the last column ends.
+         */
+        private final int[] columnRuns = new int[chunkSize + 1];
+        private final int[] columnOtherTiles = new int[chunkSize + 1];
+        
+        private boolean isValid(Filter filter) {
+            if (!valid || !Objects.equals(this.filter, filter)) {
+                return false;
+            }
+            for (int i = 0; i < numBakedSprites; i++) {
+                if (bakedSprites[i].getImage(filter) != bakedImages[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private void addBakedSprite(Sprite sprite, Image image) {
+            if (numBakedSprites == bakedSprites.length) {
+                int capacity = Math.max(bakedSprites.length*2, 8);
+                Sprite[] newBakedSprites = new Sprite[capacity];
+                System.arraycopy(bakedSprites, 0, newBakedSprites, 0, numBakedSprites);
+                bakedSprites = newBakedSprites;
+                Image[] newBakedImages = new Image[capacity];
+                System.arraycopy(bakedImages, 0, newBakedImages, 0, numBakedSprites);
+                bakedImages = newBakedImages;
+            }
+            bakedSprites[numBakedSprites] = sprite;
+            bakedImages[numBakedSprites] = image;
+            numBakedSprites++;
+        }
+        
+        private void bake(int chunkX, int chunkY, Filter filter) {
+            this.filter = filter;
+            Arrays.fill(bakedSprites, 0, numBakedSprites, null);
+            Arrays.fill(bakedImages, 0, numBakedSprites, null);
+            numBakedSprites = 0;
+            runs.clear();
+            numOtherTiles = 0;
+            int chunkLeft = chunkX*chunkSize;
+            int firstColumn = Math.max(chunkLeft, getLeftmostColumn());
+            int lastColumn = Math.min(chunkLeft + chunkSize - 1, getRightmostColumn());
+            int firstRow = Math.max(chunkY*chunkSize, getTopmostRow());
+            int lastRow = Math.min(chunkY*chunkSize + chunkSize - 1, getBottommostRow());
+            for (int i = 0; i <= chunkSize; i++) {
+                int column = chunkLeft + i;
+                columnRuns[i] = runs.size();
+                columnOtherTiles[i] = numOtherTiles;
+                if (column < firstColumn || column > lastColumn) {
+                    continue;
+                }
+                //The Run that the next Sprite tile can join if its texture matches, if any
+                Run run = null;
+                for (int row = firstRow; row <= lastRow; row++) {
+                    Drawable tile = getTile(column, row);
+                    if (tile instanceof Sprite) {
+                        Sprite sprite = (Sprite)tile;
+                        PreparedTile prepared = prepare(sprite, filter);
+                        if (bakingSprites.add(sprite)) {
+                            addBakedSprite(sprite, (prepared == null ? null : prepared.image));
+                        }
+                        if (prepared != null) {
+                            if (run == null || run.image.getTexture() != prepared.image.getTexture()) {
+                                run = new Run(prepared.image, numOtherTiles);
+                                runs.add(run);
+                            }
+                            run.add(column*tileWidth, row*tileHeight,
+                                    prepared.getQuad(getTileFlags(column, row)));
+                        }
+                    } else if (tile != null) {
+                        if (numOtherTiles*2 == otherTiles.length) {
+                            int[] newOtherTiles = new int[Math.max(otherTiles.length*2, 8)];
+                            System.arraycopy(otherTiles, 0, newOtherTiles, 0, otherTiles.length);
+                            otherTiles = newOtherTiles;
+                        }
+                        otherTiles[numOtherTiles*2] = column;
+                        otherTiles[numOtherTiles*2 + 1] = row;
+                        numOtherTiles++;
+                        run = null;
+                    }
+                }
+            }
+            bakingSprites.clear();
+            valid = true;
+        }
+        
+    }
+    
+    /*
+     * A hash table of chunks keyed by their chunk coordinates packed into one
+     * long, so that finding a chunk to draw doesn't create a key object.
+     * Chunks are never removed one at a time, only all at once.
+     */
+    private static class ChunkMap {
+        
+        private static final int INITIAL_CAPACITY = 16;
+        
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private Chunk[] values = new Chunk[INITIAL_CAPACITY];
+        private int size = 0;
+        
+        private static long toKey(int chunkX, int chunkY) {
+            return ((long)chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+        }
+        
+        //Returns the slot that holds the key, or the empty slot where it would go
+        private static int indexOf(long[] keys, Chunk[] values, long key) {
+            long hash = key*0x9E3779B97F4A7C15L;
+            int mask = values.length - 1;
+            int i = (int)(hash ^ (hash >>> 32)) & mask;
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+        
+        private Chunk get(int chunkX, int chunkY) {
+            return values[indexOf(keys, values, toKey(chunkX, chunkY))];
+        }
+        
+        private void put(int chunkX, int chunkY, Chunk chunk) {
+            if (2*(size + 1) > values.length) {
+                long[] newKeys = new long[2*keys.length];
+                Chunk[] newValues = new Chunk[2*values.length];
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        int j = indexOf(newKeys, newValues, keys[i]);
+                        newKeys[j] = keys[i];
+                        newValues[j] = values[i];
+                    }
+                }
+                keys = newKeys;
+                values = newValues;
+            }
+            long key = toKey(chunkX, chunkY);
+            int i = indexOf(keys, values, key);
+            if (values[i] == null) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = chunk;
+        }
+        
+        private void clear() {
+            keys = new long[INITIAL_CAPACITY];
+            values = new Chunk[INITIAL_CAPACITY];
+            size = 0;
+        }
+        
+    }
+    
     private final int tileWidth, tileHeight;
+    private final Map<Sprite,PreparedTile> preparedTiles = new HashMap<>();
+    private int chunkSize = 0;
+    private final ChunkMap chunks = new ChunkMap();
+    //The distinct Sprite tiles found so far by the chunk being baked
+    private final Set<Sprite> bakingSprites = new HashSet<>();
+    //The visible chunks in the column of chunks being drawn, from top to bottom
+    private Chunk[] chunkColumn = new Chunk[0];
     
     /**
      * Constructs a TileGrid with all of its grid cells unoccupied by tiles, and
@@ -328,6 +640,22 @@ public abstract class TileGrid implements Drawable {
      */
     public abstract boolean setTileAngle(int column, int row, double angle);
     
+    /*
+     * Returns the flags of the tile at the specified location in the form that
+     * PreparedTile uses. Subclasses that store their flags that way already
+     * override this to skip converting them.
+     */
+    int getTileFlags(int column, int row) {
+        int flags = (((int)getTileAngle(column, row))/90) << 2;
+        if (getTileXFlip(column, row)) {
+            flags |= 1;
+        }
+        if (getTileYFlip(column, row)) {
+            flags |= 2;
+        }
+        return flags;
+    }
+    
     /**
      * Returns a list of non-overlapping rectangles that collectively overlap or
      * "cover" all and only the grid cells in this TileGrid that are occupied by
@@ -344,6 +672,48 @@ public abstract class TileGrid implements Drawable {
      */
     public abstract List<Rectangle> cover();
     
+    /**
+     * Returns the number of columns and rows in each of the chunks into which
+     * this TileGrid bakes its Sprite tiles, or 0 if it does not bake them.
+     * @return This TileGrid's chunk size
+     */
+    public final int getChunkSize() {
+        return chunkSize;
+    }
+    
+    /**
+     * Sets the number of columns and rows in each of the chunks into which
+     * this TileGrid bakes its Sprite tiles. If the chunk size is 0, this
+     * TileGrid will not bake its Sprite tiles, which is the default.
+     * @param chunkSize The new chunk size
+     */
+    public final void setChunkSize(int chunkSize) {
+        if (chunkSize < 0) {
+            throw new RuntimeException("Attempted to give a TileGrid a negative chunk size (" + chunkSize
+                    + ")");
+        }
+        this.chunkSize = chunkSize;
+        chunks.clear();
+    }
+    
+    /**
+     * Notifies this TileGrid that the tile at the specified location, or its
+     * flipped status or angle, has changed, so that the baked chunk that
+     * contains that location will be baked again before it is next drawn.
+     * Subclasses of TileGrid must call this method whenever they successfully
+     * change a tile or its flipped status or angle.
+     * @param column The location's column index
+     * @param row The location's row index
+     */
+    protected final void tileChanged(int column, int row) {
+        if (chunkSize > 0) {
+            Chunk chunk = chunks.get(Math.floorDiv(column, chunkSize), Math.floorDiv(row, chunkSize));
+            if (chunk != null) {
+                chunk.valid = false;
+            }
+        }
+    }
+    
     private void draw(Graphics g, int x, int y, double alpha, Filter filter) {
         Rectangle region = Drawable.getRenderableRegion(g);
         draw(region.x, region.y, region.x + region.width, region.y + region.height, g, x, y, alpha, filter);
@@ -380,6 +750,18 @@ public abstract class TileGrid implements Drawable {
         }
         int rightmostColumn = getRightmostColumn();
         int bottommostRow = getBottommostRow();
+        if (chunkSize > 0) {
+            int lastColumn = Math.min(rightmostColumn, leftColumn + Math.floorDiv(x2 - left - 1, tileWidth));
+            int lastRow = Math.min(bottommostRow, topRow + Math.floorDiv(y2 - top - 1, tileHeight));
+            if (x2 > left && y2 > top && lastColumn >= leftColumn && lastRow >= topRow) {
+                drawChunks(leftColumn, lastColumn, topRow, lastRow, g, x, y, alpha, filter);
+            }
+            return;
+        }
+        //The Image whose texture is in use for drawing Sprite tiles, if any
+        Image usedImage = null;
+        Sprite lastSprite = null;
+        PreparedTile lastPrepared = null;
         int drawX = left;
         int column = leftColumn;
         while (drawX < x2 && column <= rightmostColumn) {
@@ -387,22 +769,29 @@ public abstract class TileGrid implements Drawable {
             int row = topRow;
             while (drawY < y2 && row <= bottommostRow) {
                 Drawable tile = getTile(column, row);
-                if (tile != null) {
-                    boolean tileXFlip = getTileXFlip(column, row);
-                    boolean tileYFlip = getTileYFlip(column, row);
-                    double tileAngle = getTileAngle(column, row);
-                    boolean absXFlip, absYFlip;
-                    if (tileAngle == 90 || tileAngle == 270) {
-                        absXFlip = tileYFlip;
-                        absYFlip = tileXFlip;
-                    } else {
-                        absXFlip = tileXFlip;
-                        absYFlip = tileYFlip;
+                if (tile instanceof Sprite) {
+                    Sprite sprite = (Sprite)tile;
+                    if (sprite != lastSprite) {
+                        lastSprite = sprite;
+                        lastPrepared = prepare(sprite, filter);
+                    }
+                    if (lastPrepared != null && alpha > 0) {
+                        Image image = lastPrepared.image;
+                        if (usedImage == null || usedImage.getTexture() != image.getTexture()) {
+                            if (usedImage != null) {
+                                g.endUse(usedImage);
+                            }
+                            g.startUse(image, (float)alpha);
+                            usedImage = image;
+                        }
+                        image.drawEmbedded(drawX, drawY, lastPrepared.getQuad(getTileFlags(column, row)));
+                    }
+                } else if (tile != null) {
+                    if (usedImage != null) {
+                        g.endUse(usedImage);
+                        usedImage = null;
                     }
-                    int drawOffsetX = (absXFlip ^ (tileAngle == 180 || tileAngle == 270) ? tileWidth : 0);
-                    int drawOffsetY = (absYFlip ^ (tileAngle == 90 || tileAngle == 180) ? tileHeight : 0);
-                    tile.draw(g, drawX + drawOffsetX, drawY + drawOffsetY,
-                            tileXFlip, tileYFlip, tileAngle, alpha, filter);
+                    drawTile(tile, column, row, g, drawX, drawY, alpha, filter);
                 }
                 drawY += tileHeight;
                 row++;
@@ -410,6 +799,111 @@ public abstract class TileGrid implements Drawable {
             drawX += tileWidth;
             column++;
         }
+        if (usedImage != null) {
+            g.endUse(usedImage);
+        }
+    }
+    
+    private void drawChunks(int leftColumn, int lastColumn, int topRow, int lastRow, Graphics g,
+            int x, int y, double alpha, Filter filter) {
+        //The Image whose texture is in use for drawing baked quads, if any
+        Image usedImage = null;
+        int firstChunkY = Math.floorDiv(topRow, chunkSize);
+        int numChunkRows = Math.floorDiv(lastRow, chunkSize) - firstChunkY + 1;
+        if (chunkColumn.length < numChunkRows) {
+            chunkColumn = new Chunk[numChunkRows];
+        }
+        int lastChunkX = Math.floorDiv(lastColumn, chunkSize);
+        for (int chunkX = Math.floorDiv(leftColumn, chunkSize); chunkX <= lastChunkX; chunkX++) {
+            for (int i = 0; i < numChunkRows; i++) {
+                int chunkY = firstChunkY + i;
+                Chunk chunk = chunks.get(chunkX, chunkY);
+                if (chunk == null) {
+                    chunk = new Chunk();
+                    chunks.put(chunkX, chunkY, chunk);
+                }
+                if (!chunk.isValid(filter)) {
+                    chunk.bake(chunkX, chunkY, filter);
+                }
+                chunkColumn[i] = chunk;
+            }
+            //Draw column by column down through all of the chunks, as the tiles would be without chunks
+            int chunkLeft = chunkX*chunkSize;
+            int firstColumn = Math.max(leftColumn, chunkLeft);
+            int endColumn = Math.min(lastColumn + 1, chunkLeft + chunkSize);
+            for (int column = firstColumn; column < endColumn; column++) {
+                int c = column - chunkLeft;
+                for (int j = 0; j < numChunkRows; j++) {
+                    Chunk chunk = chunkColumn[j];
+                    //Each Run is drawn after the other tiles that come before it in drawing order
+                    int runsEnd = chunk.columnRuns[c + 1];
+                    int otherTile = chunk.columnOtherTiles[c];
+                    int columnOtherTilesEnd = chunk.columnOtherTiles[c + 1];
+                    for (int i = chunk.columnRuns[c]; i <= runsEnd; i++) {
+                        Run run = (i < runsEnd ? chunk.runs.get(i) : null);
+                        int otherTilesEnd = (run == null ? columnOtherTilesEnd : run.otherTilesBefore);
+                        for (; otherTile < otherTilesEnd; otherTile++) {
+                            int row = chunk.otherTiles[otherTile*2 + 1];
+                            if (row < topRow || row > lastRow) {
+                                continue;
+                            }
+                            if (usedImage != null) {
+                                g.endUse(usedImage);
+                                usedImage = null;
+                            }
+                            drawTile(getTile(column, row), column, row,
+                                    g, x + column*tileWidth, y + row*tileHeight, alpha, filter);
+                        }
+                        if (run != null && alpha > 0) {
+                            if (usedImage == null || usedImage.getTexture() != run.image.getTexture()) {
+                                if (usedImage != null) {
+                                    g.endUse(usedImage);
+                                }
+                                g.startUse(run.image, (float)alpha);
+                                usedImage = run.image;
+                            }
+                            run.image.drawEmbedded(x, y, run.quads, run.numQuads);
+                        }
+                    }
+                }
+            }
+        }
+        if (usedImage != null) {
+            g.endUse(usedImage);
+        }
+    }
+    
+    private void drawTile(Drawable tile, int column, int row, Graphics g,
+            int drawX, int drawY, double alpha, Filter filter) {
+        boolean tileXFlip = getTileXFlip(column, row);
+        boolean tileYFlip = getTileYFlip(column, row);
+        double tileAngle = getTileAngle(column, row);
+        boolean absXFlip, absYFlip;
+        if (tileAngle == 90 || tileAngle == 270) {
+            absXFlip = tileYFlip;
+            absYFlip = tileXFlip;
+        } else {
+            absXFlip = tileXFlip;
+            absYFlip = tileYFlip;
+        }
+        int drawOffsetX = (absXFlip ^ (tileAngle == 180 || tileAngle == 270) ? tileWidth : 0);
+        int drawOffsetY = (absYFlip ^ (tileAngle == 90 || tileAngle == 180) ? tileHeight : 0);
+        tile.draw(g, drawX + drawOffsetX, drawY + drawOffsetY,
+                tileXFlip, tileYFlip, tileAngle, alpha, filter);
+    }
+    
+    private PreparedTile prepare(Sprite sprite, Filter filter) {
+        Image image = sprite.getImage(filter);
+        if (image == null) {
+            return null;
+        }
+        PreparedTile prepared = preparedTiles.get(sprite);
+        //If the Sprite has been reloaded or is being drawn through another Filter, start over
+        if (prepared == null || prepared.image != image) {
+            prepared = new PreparedTile(sprite, image);
+            preparedTiles.put(sprite, prepared);
+        }
+        return prepared;
     }
     
     @Override
@@ -89,6 +89,7 @@ public abstract class TiledArea<T extends CellGame, U extends SpaceState<T,U,?>>
     private final int[] drawPriorities;
     private TiledTileLayer solidLayer;
     private final int backgroundColorLayerID;
+    private int tileChunkSize = 0;
     private List<Loadable> loadables;
     
     private static class TileImageDef {
@@ -355,6 +356,32 @@ public abstract class TiledArea<T extends CellGame, U extends SpaceState<T,U,?>>
         converter.addArea(this);
     }
     
+    /**
+     * Returns the chunk size that this TiledArea gives the TileGrids it
+     * generates to represent its TiledMap's tile layers.
+     * @return This TiledArea's tile chunk size
+     * @see TileGrid#getChunkSize()
+     */
+    public final int getTileChunkSize() {
+        return tileChunkSize;
+    }
+    
+    /**
+     * Sets the chunk size that this TiledArea gives the TileGrids it generates
+     * to represent its TiledMap's tile layers. A positive chunk size makes
+     * large tile layers whose tiles do not change much quicker to draw. The
+     * default is 0, which means that the TileGrids will not bake their tiles.
+     * @param tileChunkSize This TiledArea's new tile chunk size
+     * @see TileGrid#setChunkSize(int)
+     */
+    public final void setTileChunkSize(int tileChunkSize) {
+        if (tileChunkSize < 0) {
+            throw new RuntimeException("Attempted to give a TiledArea a negative tile chunk size ("
+                    + tileChunkSize + ")");
+        }
+        this.tileChunkSize = tileChunkSize;
+    }
+    
     @Override
     public Iterable<SpaceObject> load(T game, U state) {
         loadLoadables();
@@ -421,6 +448,7 @@ public abstract class TiledArea<T extends CellGame, U extends SpaceState<T,U,?>>
             tileGrid = new ArrayTileGrid(layer.getX1(), layer.getX2(),
                     layer.getY1(), layer.getY2(), map.getTileWidth(), map.getTileHeight());
         }
+        tileGrid.setChunkSize(tileChunkSize);
         Map<TiledTile,Drawable> tilesToDrawables = new HashMap<>();
         for (Point point : layer.getTileLocations()) {
             TiledTile tile = layer.getTile(point.x, point.y);